@@ -0,0 +1,18 @@
+SET ROLE zalando_nakadi_data_owner;
+
+-- Indexes are created concurrently to not block subscription creation, so the script can't be run in a transaction
+
+-- 1) Filtering by owning application, ordered by creation date
+CREATE INDEX CONCURRENTLY IF NOT EXISTS subscription_owning_application_created_at_idx ON zn_data.subscription
+  ((s_subscription_object->>'owning_application'), (s_subscription_object->>'created_at'), s_id);
+
+-- 2) Filtering by event types (s_subscription_object->'event_types' @> '"et"')
+CREATE INDEX CONCURRENTLY IF NOT EXISTS subscription_event_types_idx ON zn_data.subscription
+  USING GIN ((s_subscription_object->'event_types') jsonb_path_ops);
+
+-- 3) Listing without filters and keyset pagination ("after" parameter) with stable order
+CREATE INDEX CONCURRENTLY IF NOT EXISTS subscription_created_at_id_idx ON zn_data.subscription
+  ((s_subscription_object->>'created_at'), s_id);
+
+-- 4) Index on creation date only is covered by the previous one
+DROP INDEX CONCURRENTLY IF EXISTS zn_data.subscription_expr_idx;
@@ -0,0 +1,10 @@
+SET ROLE zalando_nakadi_data_owner;
+
+CREATE TABLE zn_data.topic_pool (
+  tp_topic      VARCHAR(255)             NOT NULL PRIMARY KEY,
+  st_id         VARCHAR(36)              NOT NULL REFERENCES zn_data.storage (st_id),
+  tp_partitions INT                      NOT NULL,
+  tp_created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+CREATE INDEX ON zn_data.topic_pool (st_id, tp_partitions, tp_created_at);
@@ -13,6 +13,10 @@ CREATE TABLE IF NOT EXISTS zn_data.subscription (
   CONSTRAINT subscription_key_fields_hash_is_unique UNIQUE (s_key_fields_hash)
 );
 
-CREATE INDEX ON zn_data.subscription ((s_subscription_object->>'created_at'));
+CREATE INDEX subscription_owning_application_created_at_idx ON zn_data.subscription
+  ((s_subscription_object->>'owning_application'), (s_subscription_object->>'created_at'), s_id);
+CREATE INDEX subscription_event_types_idx ON zn_data.subscription
+  USING GIN ((s_subscription_object->'event_types') jsonb_path_ops);
+CREATE INDEX subscription_created_at_id_idx ON zn_data.subscription ((s_subscription_object->>'created_at'), s_id);
 
 COMMIT;
\ No newline at end of file
@@ -0,0 +1,115 @@
+package org.zalando.nakadi.repository.db;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.zalando.nakadi.config.DbConfig;
+import org.zalando.nakadi.domain.EventType;
+import org.zalando.nakadi.utils.TestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.zalando.nakadi.utils.TestUtils.buildDefaultEventType;
+import static org.zalando.nakadi.webservice.BaseAT.POSTGRES_PWD;
+import static org.zalando.nakadi.webservice.BaseAT.POSTGRES_URL;
+import static org.zalando.nakadi.webservice.BaseAT.POSTGRES_USER;
+
+public class DbConnectionPoolTest extends AbstractDbRepositoryTest {
+
+    private static final String CONNECTION_PROPERTIES = "prepareThreshold=1;preparedStatementCacheQueries=256";
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private DataSource mainDataSource;
+    private DataSource cacheDataSource;
+    private JdbcTemplate mainTemplate;
+    private JdbcTemplate cacheTemplate;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        final DbConfig dbConfig = new DbConfig(POSTGRES_URL, POSTGRES_USER, POSTGRES_PWD, "org.postgresql.Driver");
+        mainDataSource = configurePool((DataSource) dbConfig.dataSource());
+        cacheDataSource = configurePool((DataSource) dbConfig.cacheDataSource());
+        mainTemplate = dbConfig.jdbcTemplate(mainDataSource, metricRegistry);
+        cacheTemplate = dbConfig.cacheJdbcTemplate(cacheDataSource, metricRegistry);
+    }
+
+    @After
+    public void tearDown() throws java.sql.SQLException {
+        executor.shutdownNow();
+        mainDataSource.close();
+        cacheDataSource.close();
+        super.tearDown();
+    }
+
+    @Test(timeout = 30000)
+    public void whenMainPoolIsExhaustedThenCacheReloadsAreNotBlocked() throws Exception {
+        final EventType eventType = buildDefaultEventType();
+        new EventTypeDbRepository(template, TestUtils.OBJECT_MAPPER).saveEventType(eventType);
+
+        final List<Future<?>> adminQueries = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            adminQueries.add(executor.submit(() -> mainTemplate.execute("SELECT pg_sleep(2)")));
+        }
+        while (mainDataSource.getActive() < 1) {
+            Thread.sleep(10);
+        }
+
+        final EventTypeDbRepository cacheRepository = new EventTypeDbRepository(cacheTemplate,
+                TestUtils.OBJECT_MAPPER);
+        final List<Future<EventType>> reloads = new ArrayList<>();
+        for (int i = 0; i < 40; ++i) {
+            reloads.add(executor.submit(() -> cacheRepository.findByName(eventType.getName())));
+        }
+        for (final Future<EventType> reload : reloads) {
+            assertThat(reload.get(1, TimeUnit.SECONDS).getName(), equalTo(eventType.getName()));
+        }
+        assertThat(adminQueries.stream().anyMatch(Future::isDone), equalTo(false));
+
+        for (final Future<?> adminQuery : adminQueries) {
+            adminQuery.get();
+        }
+        assertThat(metricRegistry.timer("nakadi.db.cache.EventTypeDbRepository").getCount(), equalTo(40L));
+        assertThat(metricRegistry.timer("nakadi.db.main.other").getCount(), equalTo(4L));
+    }
+
+    @Test
+    public void whenQueryIsRepeatedThenServerSidePreparedStatementIsReused() throws Exception {
+        final EventType eventType = buildDefaultEventType();
+        final EventTypeDbRepository cacheRepository = new EventTypeDbRepository(cacheTemplate,
+                TestUtils.OBJECT_MAPPER);
+        cacheRepository.saveEventType(eventType);
+
+        for (int i = 0; i < 5; ++i) {
+            cacheRepository.findByName(eventType.getName());
+        }
+
+        // cache pool has one connection, so the query below runs in the same session as the ones above
+        final Integer prepared = cacheTemplate.queryForObject(
+                "SELECT count(*) FROM pg_prepared_statements WHERE statement LIKE '%et_event_type_object%'",
+                Integer.class);
+        assertThat(prepared, greaterThan(0));
+    }
+
+    private static DataSource configurePool(final DataSource dataSource) {
+        dataSource.setInitialSize(1);
+        dataSource.setMaxActive(1);
+        dataSource.setMaxIdle(1);
+        dataSource.setMinIdle(1);
+        dataSource.setMaxWait(60000);
+        dataSource.setConnectionProperties(CONNECTION_PROPERTIES);
+        return dataSource;
+    }
+}
@@ -128,8 +128,8 @@ public class EventTypeCacheTestAT {
     @SuppressWarnings("unchecked")
     @Test
     public void invalidateCacheOnUpdate() throws Exception {
-        final EventTypeCache etc = new RepositoriesConfig()
-                .eventTypeCache(client, eventTypeRepository, timelineRepository, timelineSync);
+        final EventTypeCache etc = RepositoriesConfig
+                .createEventTypeCache(client, eventTypeRepository, timelineRepository, timelineSync);
         final EventType et = buildDefaultEventType();
 
         Mockito
@@ -155,8 +155,8 @@ public class EventTypeCacheTestAT {
 
     @Test
     public void testGetTimelines() throws Exception {
-        final EventTypeCache etc = new RepositoriesConfig()
-                .eventTypeCache(client, eventTypeRepository, timelineRepository, timelineSync);
+        final EventTypeCache etc = RepositoriesConfig
+                .createEventTypeCache(client, eventTypeRepository, timelineRepository, timelineSync);
         final EventType et = buildDefaultEventType();
 
         Mockito.when(timelineRepository.listTimelinesOrdered(et.getName()))
@@ -170,8 +170,8 @@ public class EventTypeCacheTestAT {
     @Test
     public void invalidateCacheOnTimelineChange() throws Exception {
         final TestTimelineSync timelineSync = new TestTimelineSync();
-        final EventTypeCache etc = new RepositoriesConfig()
-                .eventTypeCache(client, eventTypeRepository, timelineRepository, timelineSync);
+        final EventTypeCache etc = RepositoriesConfig
+                .createEventTypeCache(client, eventTypeRepository, timelineRepository, timelineSync);
         final EventType et = buildDefaultEventType();
 
         Mockito.when(timelineRepository.listTimelinesOrdered(et.getName()))
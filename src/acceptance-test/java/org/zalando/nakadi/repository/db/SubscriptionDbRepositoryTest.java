@@ -16,6 +16,9 @@ import org.zalando.nakadi.util.UUIDGenerator;
 import org.zalando.nakadi.utils.RandomSubscriptionBuilder;
 import org.zalando.nakadi.utils.TestUtils;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +27,7 @@ import java.util.Optional;
 import static java.util.Collections.emptySet;
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.isEmptyOrNullString;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
@@ -173,6 +177,53 @@ public class SubscriptionDbRepositoryTest extends AbstractDbRepositoryTest {
         assertThat(subscriptions, equalTo(testSubscriptions));
     }
 
+    @Test
+    public void whenListSubscriptionsAfterThenNextPageIsReturned() throws ServiceTemporarilyUnavailableException {
+        final String owningApp = TestUtils.randomUUID();
+        final List<Subscription> testSubscriptions = createRandomSubscriptions(10, owningApp);
+        testSubscriptions.forEach(this::insertSubscriptionToDB);
+        testSubscriptions.sort(SUBSCRIPTION_CREATION_DATE_DESC_COMPARATOR);
+
+        final List<Subscription> firstPage = repository.listSubscriptions(emptySet(), Optional.of(owningApp), 0, 4);
+        final List<Subscription> secondPage = repository.listSubscriptionsAfter(emptySet(), Optional.of(owningApp),
+                firstPage.get(firstPage.size() - 1).getId(), 4);
+        final List<Subscription> lastPage = repository.listSubscriptionsAfter(emptySet(), Optional.of(owningApp),
+                secondPage.get(secondPage.size() - 1).getId(), 4);
+
+        assertThat(firstPage, equalTo(testSubscriptions.subList(0, 4)));
+        assertThat(secondPage, equalTo(testSubscriptions.subList(4, 8)));
+        assertThat(lastPage, equalTo(testSubscriptions.subList(8, 10)));
+    }
+
+    @Test
+    public void whenListSubscriptionsByOwningApplicationThenIndexIsUsed() throws Exception {
+        final String plan = explain("SELECT s_subscription_object FROM zn_data.subscription " +
+                "WHERE s_subscription_object->>'owning_application' = 'app' " +
+                "ORDER BY s_subscription_object->>'created_at' DESC, s_id DESC LIMIT 20 OFFSET 0");
+        assertThat(plan, containsString("subscription_owning_application_created_at_idx"));
+        assertThat(plan, not(containsString("\"Sort\"")));
+    }
+
+    @Test
+    public void whenListSubscriptionsByEventTypeThenIndexIsUsed() throws Exception {
+        final String plan = explain("SELECT s_subscription_object FROM zn_data.subscription " +
+                "WHERE s_subscription_object->'event_types' @> '\"et\"'::jsonb " +
+                "ORDER BY s_subscription_object->>'created_at' DESC, s_id DESC LIMIT 20 OFFSET 0");
+        assertThat(plan, containsString("subscription_event_types_idx"));
+    }
+
+    @Test
+    public void whenListSubscriptionsAfterThenPositionIsFoundByIndex() throws Exception {
+        // the page after a given subscription is read straight from the index, so it costs the same on any depth
+        final String plan = explain("SELECT s_subscription_object FROM zn_data.subscription " +
+                "WHERE (s_subscription_object->>'created_at', s_id) < (SELECT s_subscription_object->>'created_at'," +
+                " s_id FROM zn_data.subscription WHERE s_id = 'id') " +
+                "ORDER BY s_subscription_object->>'created_at' DESC, s_id DESC LIMIT 20 OFFSET 0");
+        assertThat(plan, containsString("subscription_created_at_id_idx"));
+        assertThat(plan, containsString("\"Index Cond\""));
+        assertThat(plan, not(containsString("\"Sort\"")));
+    }
+
     @Test
     public void whenDeleteSubscriptionThenOk()
             throws ServiceTemporarilyUnavailableException, NoSuchSubscriptionException {
@@ -193,6 +244,19 @@ public class SubscriptionDbRepositoryTest extends AbstractDbRepositoryTest {
         repository.deleteSubscription("some-dummy-id");
     }
 
+    private String explain(final String query) throws SQLException {
+        // the test table is small, so sequential scan is forbidden to see which indexes the planner can use
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET enable_seqscan = off");
+            try (ResultSet rs = statement.executeQuery("EXPLAIN (FORMAT JSON) " + query)) {
+                rs.next();
+                return rs.getString(1);
+            } finally {
+                statement.execute("RESET enable_seqscan");
+            }
+        }
+    }
+
     private void insertSubscriptionToDB(final Subscription subscription) {
         try {
             template.update("INSERT INTO zn_data.subscription (s_id, s_subscription_object, s_key_fields_hash) " +
@@ -0,0 +1,61 @@
+package org.zalando.nakadi.repository.db;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zalando.nakadi.domain.Storage;
+import org.zalando.nakadi.utils.TestUtils;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.zalando.nakadi.utils.TestUtils.randomUUID;
+
+public class TopicPoolDbRepositoryTest extends AbstractDbRepositoryTest {
+
+    private TopicPoolDbRepository repository;
+    private Storage storage;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        repository = new TopicPoolDbRepository(template, TestUtils.OBJECT_MAPPER);
+        storage = new StorageDbRepository(template, TestUtils.OBJECT_MAPPER).createStorage(
+                StorageDbRepositoryTest.createStorage(randomUUID(), "localhost", 8181, "address", null));
+    }
+
+    @Test
+    public void whenTopicsAreAddedThenTheyAreCountedPerPartitionCount() {
+        repository.addTopic(storage.getId(), 1, randomUUID());
+        repository.addTopic(storage.getId(), 1, randomUUID());
+        repository.addTopic(storage.getId(), 4, randomUUID());
+
+        assertEquals(2, repository.countTopics(storage.getId(), 1));
+        assertEquals(1, repository.countTopics(storage.getId(), 4));
+        assertEquals(0, repository.countTopics(storage.getId(), 8));
+    }
+
+    @Test
+    public void whenTopicIsClaimedThenItIsRemovedFromPool() {
+        final String first = randomUUID();
+        final String second = randomUUID();
+        repository.addTopic(storage.getId(), 1, first);
+        repository.addTopic(storage.getId(), 1, second);
+
+        final Optional<String> claimed = repository.claimTopic(storage.getId(), 1);
+        final Optional<String> next = repository.claimTopic(storage.getId(), 1);
+
+        assertEquals(first, claimed.get());
+        assertEquals(second, next.get());
+        assertFalse(repository.claimTopic(storage.getId(), 1).isPresent());
+        assertEquals(0, repository.countTopics(storage.getId(), 1));
+    }
+
+    @Test
+    public void whenNoTopicWithPartitionCountThenNothingIsClaimed() {
+        repository.addTopic(storage.getId(), 1, randomUUID());
+
+        assertFalse(repository.claimTopic(storage.getId(), 2).isPresent());
+        assertEquals(1, repository.countTopics(storage.getId(), 1));
+    }
+}
@@ -84,7 +84,8 @@ public class KafkaRepositoryAT extends BaseAT {
                 DEFAULT_ADMIN_VALUE,
                 DEFAULT_WARN_ALL_DATA_ACCESS_MESSAGE);
         kafkaSettings = new KafkaSettings(KAFKA_REQUEST_TIMEOUT, KAFKA_BATCH_SIZE,
-                KAFKA_LINGER_MS, KAFKA_ENABLE_AUTO_COMMIT);
+                KAFKA_LINGER_MS, KAFKA_ENABLE_AUTO_COMMIT, KafkaCircuitBreaker.Type.HYSTRIX,
+                20, 50, 5000, 10000, 10);
         zookeeperSettings = new ZookeeperSettings(ZK_SESSION_TIMEOUT, ZK_CONNECTION_TIMEOUT);
         kafkaHelper = new KafkaTestHelper(KAFKA_URL);
         kafkaTopicRepository = createKafkaTopicRepository();
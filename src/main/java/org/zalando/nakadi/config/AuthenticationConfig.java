@@ -19,6 +19,7 @@ import org.springframework.security.oauth2.provider.OAuth2Authentication;
 import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
 import org.springframework.web.client.RestTemplate;
 import org.zalando.nakadi.metrics.MetricUtils;
+import org.zalando.nakadi.security.CachingResourceServerTokenServices;
 import org.zalando.nakadi.service.FeatureToggleService;
 import org.zalando.stups.oauth2.spring.authorization.DefaultUserRolesProvider;
 import org.zalando.stups.oauth2.spring.server.DefaultAuthenticationExtractor;
@@ -30,12 +31,22 @@ import org.zalando.stups.oauth2.spring.server.TokenResponseErrorHandler;
 public class AuthenticationConfig {
 
     @Bean
-    public ResourceServerTokenServices zalandoResourceTokenServices(final SecuritySettings settings,
-                                                                    final MetricRegistry metricRegistry,
-                                                                    final RestTemplate restTemplate,
-                                                                    final FeatureToggleService featureToggleService) {
-        return new MeasureAndDispatchResourceServerTokenServices(
+    public ResourceServerTokenServices zalandoResourceTokenServices(
+            final SecuritySettings settings,
+            final MetricRegistry metricRegistry,
+            final RestTemplate restTemplate,
+            final FeatureToggleService featureToggleService,
+            @Value("${nakadi.oauth2.tokenCache.maxSize:100000}") final long cacheMaxSize,
+            @Value("${nakadi.oauth2.tokenCache.maxTtlMs:60000}") final long cacheMaxTtlMs,
+            @Value("${nakadi.oauth2.tokenCache.refreshAfterMs:30000}") final long cacheRefreshAfterMs,
+            @Value("${nakadi.oauth2.tokenCache.invalidTokenTtlMs:5000}") final long cacheInvalidTokenTtlMs) {
+        final ResourceServerTokenServices tokenServices = new MeasureAndDispatchResourceServerTokenServices(
                 metricRegistry, settings, restTemplate, featureToggleService);
+        if (cacheMaxTtlMs <= 0) {
+            return tokenServices;
+        }
+        return new CachingResourceServerTokenServices(
+                tokenServices, cacheMaxSize, cacheMaxTtlMs, cacheRefreshAfterMs, cacheInvalidTokenTtlMs);
     }
 
     @Bean
@@ -0,0 +1,76 @@
+package org.zalando.nakadi.config;
+
+import com.codahale.metrics.MetricRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceBuilder;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.zalando.nakadi.metrics.MetricUtils;
+import org.zalando.nakadi.repository.db.TimedJdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Nakadi uses two connection pools to the same database. The main pool serves all the repositories, the cache pool is
+ * used only to reload {@link org.zalando.nakadi.repository.db.EventTypeCache}, so that publishing never waits for a
+ * connection behind subscription listing or other admin operations.
+ */
+@Configuration
+public class DbConfig {
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final String driverClassName;
+
+    public DbConfig(@Value("${spring.datasource.url}") final String url,
+                    @Value("${spring.datasource.username}") final String username,
+                    @Value("${spring.datasource.password}") final String password,
+                    @Value("${spring.datasource.driverClassName}") final String driverClassName) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.driverClassName = driverClassName;
+    }
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource.tomcat")
+    public DataSource dataSource() {
+        return createDataSource();
+    }
+
+    @Bean
+    @Qualifier("cacheDataSource")
+    @ConfigurationProperties("nakadi.db.cachePool")
+    public DataSource cacheDataSource() {
+        return createDataSource();
+    }
+
+    @Bean
+    @Primary
+    public JdbcTemplate jdbcTemplate(final DataSource dataSource, final MetricRegistry metricRegistry) {
+        return new TimedJdbcTemplate(dataSource, metricRegistry, MetricUtils.NAKADI_PREFIX + "db.main");
+    }
+
+    @Bean
+    @Qualifier("cacheJdbcTemplate")
+    public JdbcTemplate cacheJdbcTemplate(@Qualifier("cacheDataSource") final DataSource dataSource,
+                                          final MetricRegistry metricRegistry) {
+        return new TimedJdbcTemplate(dataSource, metricRegistry, MetricUtils.NAKADI_PREFIX + "db.cache");
+    }
+
+    private DataSource createDataSource() {
+        return DataSourceBuilder.create()
+                .type(org.apache.tomcat.jdbc.pool.DataSource.class)
+                .driverClassName(driverClassName)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+    }
+}
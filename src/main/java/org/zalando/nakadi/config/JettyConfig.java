@@ -27,6 +27,8 @@ public class JettyConfig {
             final GzipHandler gzipHandler = new GzipHandler();
             gzipHandler.setHandler(server.getHandler());
             gzipHandler.setSyncFlush(true);
+            // event streams are compressed by StreamCompressionService, which limits the number of such streams
+            gzipHandler.addExcludedMimeTypes("application/x-json-stream");
             server.setHandler(gzipHandler);
         });
         return factory;
@@ -1,15 +1,19 @@
 package org.zalando.nakadi.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Profile;
-import org.zalando.nakadi.annotations.DB;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.zalando.nakadi.repository.EventTypeRepository;
 import org.zalando.nakadi.repository.db.EventTypeCache;
+import org.zalando.nakadi.repository.db.EventTypeDbRepository;
 import org.zalando.nakadi.repository.db.TimelineDbRepository;
 import org.zalando.nakadi.repository.kafka.KafkaConfig;
 import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
@@ -57,9 +61,19 @@ public class RepositoriesConfig {
 
     @Bean
     public EventTypeCache eventTypeCache(final ZooKeeperHolder zooKeeperHolder,
-                                         @DB final EventTypeRepository eventTypeRepository,
-                                         @DB final TimelineDbRepository timelineRepository,
+                                         @Qualifier("cacheJdbcTemplate") final JdbcTemplate cacheJdbcTemplate,
+                                         final ObjectMapper objectMapper,
                                          final TimelineSync timelineSync) {
+        // cache reloads have their own connection pool, so that they do not queue behind admin operations
+        return createEventTypeCache(zooKeeperHolder, new EventTypeDbRepository(cacheJdbcTemplate, objectMapper),
+                new TimelineDbRepository(cacheJdbcTemplate, objectMapper), timelineSync);
+    }
+
+    @VisibleForTesting
+    public static EventTypeCache createEventTypeCache(final ZooKeeperHolder zooKeeperHolder,
+                                                      final EventTypeRepository eventTypeRepository,
+                                                      final TimelineDbRepository timelineRepository,
+                                                      final TimelineSync timelineSync) {
         ValidationStrategy.register(EventBodyMustRespectSchema.NAME, new EventBodyMustRespectSchema(
                 new JsonSchemaEnrichment()
         ));
@@ -21,6 +21,7 @@ import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandl
 import org.zalando.nakadi.security.ClientResolver;
 import org.zalando.nakadi.util.FlowIdRequestFilter;
 import org.zalando.nakadi.util.GzipBodyRequestFilter;
+import org.zalando.nakadi.util.PooledGzipInflater;
 
 import javax.servlet.Filter;
 import java.util.List;
@@ -54,9 +55,13 @@ public class WebConfig extends WebMvcConfigurationSupport {
     }
 
     @Bean
-    public FilterRegistrationBean gzipBodyRequestFilter(final ObjectMapper mapper) {
+    public FilterRegistrationBean gzipBodyRequestFilter(
+            final ObjectMapper mapper,
+            @Value("${nakadi.http.gzip.inflaterPoolSize:64}") final int inflaterPoolSize,
+            @Value("${nakadi.http.gzip.maxDecompressedBytes:50000000}") final long maxDecompressedBytes) {
         return createFilterRegistrationBean(
-                new GzipBodyRequestFilter(mapper), Ordered.HIGHEST_PRECEDENCE + 2);
+                new GzipBodyRequestFilter(mapper, new PooledGzipInflater(inflaterPoolSize, maxDecompressedBytes)),
+                Ordered.HIGHEST_PRECEDENCE + 2);
     }
 
     @Bean
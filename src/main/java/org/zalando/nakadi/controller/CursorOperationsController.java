@@ -13,6 +13,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.context.request.NativeWebRequest;
 import org.zalando.nakadi.domain.EventType;
 import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.NakadiCursorDistanceQuery;
 import org.zalando.nakadi.domain.NakadiCursorLag;
 import org.zalando.nakadi.domain.ShiftedNakadiCursor;
 import org.zalando.nakadi.exceptions.InternalNakadiException;
@@ -74,22 +75,26 @@ public class CursorOperationsController {
         final EventType eventType = eventTypeRepository.findByName(eventTypeName);
         authorizationValidator.authorizeStreamRead(eventType);
 
-        queries.getList().forEach(query -> {
-            try {
-                final NakadiCursor initialCursor = cursorConverter
-                        .convert(eventTypeName, query.getInitialCursor());
-                final NakadiCursor finalCursor = cursorConverter
-                        .convert(eventTypeName, query.getFinalCursor());
-                final Long distance = cursorOperationsService.calculateDistance(initialCursor, finalCursor);
-                query.setDistance(distance);
-            } catch (InternalNakadiException | ServiceTemporarilyUnavailableException e) {
-                throw new MyNakadiRuntimeException1("problem calculating cursors distance", e);
-            } catch (final NoSuchEventTypeException e) {
-                throw new NotFoundException("event type not found", e);
-            } catch (final InvalidCursorException e) {
-                throw new CursorConversionException("problem converting cursors", e);
-            }
-        });
+        final List<NakadiCursorDistanceQuery> domainQueries = queries.getList().stream()
+                .map(query -> {
+                    try {
+                        return new NakadiCursorDistanceQuery(
+                                cursorConverter.convert(eventTypeName, query.getInitialCursor()),
+                                cursorConverter.convert(eventTypeName, query.getFinalCursor()));
+                    } catch (InternalNakadiException | ServiceTemporarilyUnavailableException e) {
+                        throw new MyNakadiRuntimeException1("problem calculating cursors distance", e);
+                    } catch (final NoSuchEventTypeException e) {
+                        throw new NotFoundException("event type not found", e);
+                    } catch (final InvalidCursorException e) {
+                        throw new CursorConversionException("problem converting cursors", e);
+                    }
+                })
+                .collect(Collectors.toList());
+
+        final List<Long> distances = cursorOperationsService.calculateDistances(domainQueries);
+        for (int i = 0; i < distances.size(); ++i) {
+            queries.getList().get(i).setDistance(distances.get(i));
+        }
 
         return status(OK).body(queries.getList());
     }
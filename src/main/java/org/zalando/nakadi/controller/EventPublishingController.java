@@ -2,7 +2,6 @@ package org.zalando.nakadi.controller;
 
 import com.google.common.base.Charsets;
 import org.json.JSONException;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +13,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
 import org.zalando.nakadi.domain.EventPublishResult;
 import org.zalando.nakadi.domain.EventPublishingStatus;
 import org.zalando.nakadi.exceptions.NakadiException;
@@ -25,7 +25,9 @@ import org.zalando.nakadi.metrics.EventTypeMetrics;
 import org.zalando.nakadi.security.Client;
 import org.zalando.nakadi.service.BlacklistService;
 import org.zalando.nakadi.service.EventPublisher;
+import org.zalando.nakadi.service.KpiEvent;
 import org.zalando.nakadi.service.NakadiKpiPublisher;
+import org.zalando.nakadi.util.GzipBodyRequestFilter;
 import org.zalando.problem.Problem;
 import org.zalando.problem.ThrowableProblem;
 import org.zalando.problem.spring.web.advice.Responses;
@@ -98,7 +100,7 @@ public class EventPublishingController {
             final EventPublishResult result = publisher.publish(eventsAsString, eventTypeName);
 
             final int eventCount = result.getResponses().size();
-            final int totalSizeBytes = eventsAsString.getBytes(Charsets.UTF_8).length;
+            final int totalSizeBytes = getBodySize(eventsAsString, nativeWebRequest);
 
             reportMetrics(eventTypeMetrics, result, totalSizeBytes, eventCount);
             reportSLOs(startingNanos, totalSizeBytes, eventCount, result, eventTypeName, client);
@@ -118,6 +120,15 @@ public class EventPublishingController {
         }
     }
 
+    private static int getBodySize(final String eventsAsString, final NativeWebRequest nativeWebRequest) {
+        final Object decompressedSize = nativeWebRequest.getAttribute(
+                GzipBodyRequestFilter.DECOMPRESSED_SIZE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (decompressedSize instanceof Integer) {
+            return (Integer) decompressedSize;
+        }
+        return eventsAsString.getBytes(Charsets.UTF_8).length;
+    }
+
     private void reportSLOs(final long startingNanos, final int totalSizeBytes, final int eventCount,
                             final EventPublishResult eventPublishResult, final String eventTypeName,
                             final Client client) {
@@ -128,7 +139,7 @@ public class EventPublishingController {
             LOG.info("[SLO] [publishing-latency] time={} size={} count={} eventTypeName={} app={}", msSpent,
                     totalSizeBytes, eventCount, eventTypeName, applicationName);
 
-            nakadiKpiPublisher.publish(kpiBatchPublishedEventType, () -> new JSONObject()
+            nakadiKpiPublisher.publish(kpiBatchPublishedEventType, () -> new KpiEvent()
                     .put("event_type", eventTypeName)
                     .put("app", applicationName)
                     .put("app_hashed", nakadiKpiPublisher.hash(applicationName))
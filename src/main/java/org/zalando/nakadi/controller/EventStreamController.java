@@ -41,7 +41,7 @@ import org.zalando.nakadi.repository.TopicRepository;
 import org.zalando.nakadi.security.Client;
 import org.zalando.nakadi.service.AuthorizationValidator;
 import org.zalando.nakadi.service.BlacklistService;
-import org.zalando.nakadi.service.ClosedConnectionsCrutch;
+import org.zalando.nakadi.service.ConnectionCloseDetector;
 import org.zalando.nakadi.service.ConnectionSlot;
 import org.zalando.nakadi.service.ConsumerLimitingService;
 import org.zalando.nakadi.service.CursorConverter;
@@ -50,6 +50,7 @@ import org.zalando.nakadi.service.EventStreamConfig;
 import org.zalando.nakadi.service.EventStreamFactory;
 import org.zalando.nakadi.service.EventTypeChangeListener;
 import org.zalando.nakadi.service.FeatureToggleService;
+import org.zalando.nakadi.service.StreamCompressionService;
 import org.zalando.nakadi.service.timeline.TimelineService;
 import org.zalando.nakadi.util.FlowIdUtils;
 import org.zalando.nakadi.view.Cursor;
@@ -90,7 +91,7 @@ public class EventStreamController {
     private final ObjectMapper jsonMapper;
     private final EventStreamFactory eventStreamFactory;
     private final MetricRegistry metricRegistry;
-    private final ClosedConnectionsCrutch closedConnectionsCrutch;
+    private final ConnectionCloseDetector connectionCloseDetector;
     private final BlacklistService blacklistService;
     private final ConsumerLimitingService consumerLimitingService;
     private final FeatureToggleService featureToggleService;
@@ -98,6 +99,7 @@ public class EventStreamController {
     private final MetricRegistry streamMetrics;
     private final AuthorizationValidator authorizationValidator;
     private final EventTypeChangeListener eventTypeChangeListener;
+    private final StreamCompressionService streamCompressionService;
     private final Long maxMemoryUsageBytes;
 
     @Autowired
@@ -107,13 +109,14 @@ public class EventStreamController {
                                  final EventStreamFactory eventStreamFactory,
                                  final MetricRegistry metricRegistry,
                                  @Qualifier("streamMetricsRegistry") final MetricRegistry streamMetrics,
-                                 final ClosedConnectionsCrutch closedConnectionsCrutch,
+                                 final ConnectionCloseDetector connectionCloseDetector,
                                  final BlacklistService blacklistService,
                                  final ConsumerLimitingService consumerLimitingService,
                                  final FeatureToggleService featureToggleService,
                                  final CursorConverter cursorConverter,
                                  final AuthorizationValidator authorizationValidator,
                                  final EventTypeChangeListener eventTypeChangeListener,
+                                 final StreamCompressionService streamCompressionService,
                                  @Value("${nakadi.stream.maxStreamMemoryBytes}") final Long maxMemoryUsageBytes) {
         this.eventTypeRepository = eventTypeRepository;
         this.timelineService = timelineService;
@@ -121,13 +124,14 @@ public class EventStreamController {
         this.eventStreamFactory = eventStreamFactory;
         this.metricRegistry = metricRegistry;
         this.streamMetrics = streamMetrics;
-        this.closedConnectionsCrutch = closedConnectionsCrutch;
+        this.connectionCloseDetector = connectionCloseDetector;
         this.blacklistService = blacklistService;
         this.consumerLimitingService = consumerLimitingService;
         this.featureToggleService = featureToggleService;
         this.cursorConverter = cursorConverter;
         this.authorizationValidator = authorizationValidator;
         this.eventTypeChangeListener = eventTypeChangeListener;
+        this.streamCompressionService = streamCompressionService;
         this.maxMemoryUsageBytes = maxMemoryUsageBytes;
     }
 
@@ -206,16 +210,18 @@ public class EventStreamController {
             final HttpServletRequest request, final HttpServletResponse response, final Client client) {
         final String flowId = FlowIdUtils.peek();
 
-        return outputStream -> {
+        return responseStream -> {
             FlowIdUtils.push(flowId);
 
             if (blacklistService.isConsumptionBlocked(eventTypeName, client.getClientId())) {
-                writeProblemResponse(response, outputStream,
+                writeProblemResponse(response, responseStream,
                         Problem.valueOf(Response.Status.FORBIDDEN, "Application or event type is blocked"));
                 return;
             }
 
-            final AtomicBoolean connectionReady = closedConnectionsCrutch.listenForConnectionClose(request);
+            final OutputStream outputStream = streamCompressionService.compress(request, response, responseStream,
+                    MetricUtils.compressedMetricNameForLoLAStream(client.getClientId(), eventTypeName));
+            final AtomicBoolean connectionReady = connectionCloseDetector.listenForConnectionClose(request);
             Counter consumerCounter = null;
             EventStream eventStream = null;
             List<ConnectionSlot> connectionSlots = ImmutableList.of();
@@ -15,8 +15,6 @@ import org.springframework.web.context.request.NativeWebRequest;
 import org.zalando.nakadi.domain.EventType;
 import org.zalando.nakadi.domain.NakadiCursor;
 import org.zalando.nakadi.domain.NakadiCursorLag;
-import org.zalando.nakadi.domain.PartitionStatistics;
-import org.zalando.nakadi.domain.Timeline;
 import org.zalando.nakadi.exceptions.InternalNakadiException;
 import org.zalando.nakadi.exceptions.InvalidCursorException;
 import org.zalando.nakadi.exceptions.NakadiException;
@@ -29,7 +27,7 @@ import org.zalando.nakadi.repository.EventTypeRepository;
 import org.zalando.nakadi.service.AuthorizationValidator;
 import org.zalando.nakadi.service.CursorConverter;
 import org.zalando.nakadi.service.CursorOperationsService;
-import org.zalando.nakadi.service.timeline.TimelineService;
+import org.zalando.nakadi.service.PartitionsViewService;
 import org.zalando.nakadi.view.Cursor;
 import org.zalando.nakadi.view.CursorLag;
 import org.zalando.nakadi.view.EventTypePartitionView;
@@ -39,10 +37,7 @@ import org.zalando.problem.spring.web.advice.Responses;
 
 import javax.annotation.Nullable;
 import javax.ws.rs.core.Response;
-import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
 
 import static javax.ws.rs.core.Response.Status.NOT_FOUND;
 import static org.springframework.http.ResponseEntity.ok;
@@ -53,7 +48,7 @@ public class PartitionsController {
 
     private static final Logger LOG = LoggerFactory.getLogger(PartitionsController.class);
 
-    private final TimelineService timelineService;
+    private final PartitionsViewService partitionsViewService;
     private final CursorConverter cursorConverter;
     private final CursorOperationsService cursorOperationsService;
     private static final String INVALID_CURSOR_MESSAGE = "invalid consumed_offset or partition";
@@ -61,12 +56,12 @@ public class PartitionsController {
     private final AuthorizationValidator authorizationValidator;
 
     @Autowired
-    public PartitionsController(final TimelineService timelineService,
+    public PartitionsController(final PartitionsViewService partitionsViewService,
                                 final CursorConverter cursorConverter,
                                 final CursorOperationsService cursorOperationsService,
                                 final EventTypeRepository eventTypeRepository,
                                 final AuthorizationValidator authorizationValidator) {
-        this.timelineService = timelineService;
+        this.partitionsViewService = partitionsViewService;
         this.cursorConverter = cursorConverter;
         this.cursorOperationsService = cursorOperationsService;
         this.eventTypeRepository = eventTypeRepository;
@@ -81,26 +76,7 @@ public class PartitionsController {
             final EventType eventType = eventTypeRepository.findByName(eventTypeName);
             authorizationValidator.authorizeStreamRead(eventType);
 
-            final List<Timeline> timelines = timelineService.getActiveTimelinesOrdered(eventTypeName);
-            final List<PartitionStatistics> firstStats = timelineService.getTopicRepository(timelines.get(0))
-                    .loadTopicStatistics(Collections.singletonList(timelines.get(0)));
-            final List<PartitionStatistics> lastStats;
-            if (timelines.size() == 1) {
-                lastStats = firstStats;
-            } else {
-                lastStats = timelineService.getTopicRepository(timelines.get(timelines.size() - 1))
-                        .loadTopicStatistics(Collections.singletonList(timelines.get(timelines.size() - 1)));
-            }
-            final List<EventTypePartitionView> result = firstStats.stream().map(first -> {
-                final PartitionStatistics last = lastStats.stream()
-                        .filter(l -> l.getPartition().equals(first.getPartition()))
-                        .findAny().get();
-                return new EventTypePartitionView(
-                        eventTypeName,
-                        first.getPartition(),
-                        cursorConverter.convert(first.getFirst()).getOffset(),
-                        cursorConverter.convert(last.getLast()).getOffset());
-            }).collect(Collectors.toList());
+            final List<EventTypePartitionView> result = partitionsViewService.getPartitionsView(eventTypeName);
             return ok().body(result);
         } catch (final NoSuchEventTypeException e) {
             return create(Problem.valueOf(NOT_FOUND, "topic not found"), request);
@@ -166,25 +142,8 @@ public class PartitionsController {
 
     private EventTypePartitionView getTopicPartition(final String eventTypeName, final String partition)
             throws InternalNakadiException, NoSuchEventTypeException, ServiceTemporarilyUnavailableException {
-        final List<Timeline> timelines = timelineService.getActiveTimelinesOrdered(eventTypeName);
-        final Optional<PartitionStatistics> firstStats = timelineService.getTopicRepository(timelines.get(0))
-                .loadPartitionStatistics(timelines.get(0), partition);
-        if (!firstStats.isPresent()) {
-            throw new NotFoundException("partition not found");
-        }
-        final PartitionStatistics lastStats;
-        if (timelines.size() == 1) {
-            lastStats = firstStats.get();
-        } else  {
-            lastStats = timelineService.getTopicRepository(timelines.get(timelines.size() - 1))
-                    .loadPartitionStatistics(timelines.get(timelines.size() - 1), partition).get();
-        }
-
-        return new EventTypePartitionView(
-                eventTypeName,
-                lastStats.getPartition(),
-                cursorConverter.convert(firstStats.get().getFirst()).getOffset(),
-                cursorConverter.convert(lastStats.getLast()).getOffset());
+        return partitionsViewService.getPartitionView(eventTypeName, partition)
+                .orElseThrow(() -> new NotFoundException("partition not found"));
     }
 
     private CursorLag toCursorLag(final NakadiCursorLag nakadiCursorLag) {
@@ -55,11 +55,12 @@ public class SubscriptionController {
             @RequestParam(value = "show_status", required = false, defaultValue = "false") final boolean showStatus,
             @RequestParam(value = "limit", required = false, defaultValue = "20") final int limit,
             @RequestParam(value = "offset", required = false, defaultValue = "0") final int offset,
+            @Nullable @RequestParam(value = "after", required = false) final String after,
             final NativeWebRequest request) {
         featureToggleService.checkFeatureOn(HIGH_LEVEL_API);
 
         return WebResult.wrap(() ->
-                subscriptionService.listSubscriptions(owningApplication, eventTypes, showStatus, limit, offset),
+                subscriptionService.listSubscriptions(owningApplication, eventTypes, showStatus, limit, offset, after),
                 request);
     }
 
@@ -26,11 +26,13 @@ import org.zalando.nakadi.exceptions.NoSuchSubscriptionException;
 import org.zalando.nakadi.exceptions.runtime.AccessDeniedException;
 import org.zalando.nakadi.exceptions.runtime.SubscriptionPartitionConflictException;
 import org.zalando.nakadi.exceptions.runtime.WrongStreamParametersException;
+import org.zalando.nakadi.metrics.MetricUtils;
 import org.zalando.nakadi.repository.db.SubscriptionDbRepository;
 import org.zalando.nakadi.security.Client;
 import org.zalando.nakadi.service.BlacklistService;
-import org.zalando.nakadi.service.ClosedConnectionsCrutch;
+import org.zalando.nakadi.service.ConnectionCloseDetector;
 import org.zalando.nakadi.service.FeatureToggleService;
+import org.zalando.nakadi.service.StreamCompressionService;
 import org.zalando.nakadi.service.subscription.StreamParameters;
 import org.zalando.nakadi.service.subscription.SubscriptionOutput;
 import org.zalando.nakadi.service.subscription.SubscriptionStreamer;
@@ -62,32 +64,35 @@ public class SubscriptionStreamController {
     private final SubscriptionStreamerFactory subscriptionStreamerFactory;
     private final FeatureToggleService featureToggleService;
     private final ObjectMapper jsonMapper;
-    private final ClosedConnectionsCrutch closedConnectionsCrutch;
+    private final ConnectionCloseDetector connectionCloseDetector;
     private final NakadiSettings nakadiSettings;
     private final BlacklistService blacklistService;
     private final MetricRegistry metricRegistry;
     private final SubscriptionDbRepository subscriptionDbRepository;
     private final SubscriptionValidationService subscriptionValidationService;
+    private final StreamCompressionService streamCompressionService;
 
     @Autowired
     public SubscriptionStreamController(final SubscriptionStreamerFactory subscriptionStreamerFactory,
                                         final FeatureToggleService featureToggleService,
                                         final ObjectMapper objectMapper,
-                                        final ClosedConnectionsCrutch closedConnectionsCrutch,
+                                        final ConnectionCloseDetector connectionCloseDetector,
                                         final NakadiSettings nakadiSettings,
                                         final BlacklistService blacklistService,
                                         @Qualifier("perPathMetricRegistry") final MetricRegistry metricRegistry,
                                         final SubscriptionDbRepository subscriptionDbRepository,
-                                        final SubscriptionValidationService subscriptionValidationService) {
+                                        final SubscriptionValidationService subscriptionValidationService,
+                                        final StreamCompressionService streamCompressionService) {
         this.subscriptionStreamerFactory = subscriptionStreamerFactory;
         this.featureToggleService = featureToggleService;
         this.jsonMapper = objectMapper;
-        this.closedConnectionsCrutch = closedConnectionsCrutch;
+        this.connectionCloseDetector = connectionCloseDetector;
         this.nakadiSettings = nakadiSettings;
         this.blacklistService = blacklistService;
         this.metricRegistry = metricRegistry;
         this.subscriptionDbRepository = subscriptionDbRepository;
         this.subscriptionValidationService = subscriptionValidationService;
+        this.streamCompressionService = streamCompressionService;
     }
 
     private class SubscriptionOutputImpl implements SubscriptionOutput {
@@ -194,7 +199,7 @@ public class SubscriptionStreamController {
                                          final StreamParameters streamParameters) {
         final String flowId = FlowIdUtils.peek();
 
-        return outputStream -> {
+        return responseStream -> {
             FlowIdUtils.push(flowId);
 
             if (!featureToggleService.isFeatureEnabled(HIGH_LEVEL_API)) {
@@ -206,8 +211,10 @@ public class SubscriptionStreamController {
             final Counter consumerCounter = metricRegistry.counter(metricName);
             consumerCounter.inc();
 
-            final AtomicBoolean connectionReady = closedConnectionsCrutch.listenForConnectionClose(request);
+            final AtomicBoolean connectionReady = connectionCloseDetector.listenForConnectionClose(request);
 
+            final OutputStream outputStream = streamCompressionService.compress(request, response, responseStream,
+                    MetricUtils.compressedMetricNameForHiLAStream(client.getClientId(), subscriptionId));
             SubscriptionStreamer streamer = null;
             final SubscriptionOutputImpl output = new SubscriptionOutputImpl(response, outputStream);
             try {
@@ -231,6 +238,7 @@ public class SubscriptionStreamController {
             } catch (final Exception e) {
                 output.onException(e);
             } finally {
+                connectionReady.set(false);
                 consumerCounter.dec();
                 outputStream.close();
             }
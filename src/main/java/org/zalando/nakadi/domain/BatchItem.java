@@ -5,6 +5,7 @@ import org.json.JSONObject;
 import javax.annotation.Nullable;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
@@ -51,6 +52,7 @@ public class BatchItem {
 
     private static final EmptyInjectionConfiguration CONFIG_COMMA = new EmptyInjectionConfiguration(1, true);
     private static final EmptyInjectionConfiguration CONFIG_NO_COMMA = new EmptyInjectionConfiguration(1, false);
+    private static final byte[] TRUSTED_METADATA_PREFIX = "\"metadata\":".getBytes(StandardCharsets.UTF_8);
 
     private final BatchItemResponse response;
     private final String rawEvent;
@@ -68,17 +70,48 @@ public class BatchItem {
             final EmptyInjectionConfiguration emptyInjectionConfiguration,
             final InjectionConfiguration[] injections,
             final List<Integer> skipCharacters) {
-        this.rawEvent = event;
+        this(event, new JSONObject(event), emptyInjectionConfiguration, injections, skipCharacters);
+
+        Optional.ofNullable(this.event.optJSONObject("metadata"))
+                .map(e -> e.optString("eid", null))
+                .ifPresent(this.response::setEid);
+    }
+
+    private BatchItem(
+            final String rawEvent,
+            @Nullable final JSONObject event,
+            final EmptyInjectionConfiguration emptyInjectionConfiguration,
+            final InjectionConfiguration[] injections,
+            final List<Integer> skipCharacters) {
+        this.rawEvent = rawEvent;
         this.skipCharacters = skipCharacters;
-        this.event = new JSONObject(event);
-        this.eventSize = event.getBytes(StandardCharsets.UTF_8).length;
+        this.event = event;
+        this.eventSize = rawEvent.getBytes(StandardCharsets.UTF_8).length;
         this.emptyInjectionConfiguration = emptyInjectionConfiguration;
         this.injections = injections;
         this.response = new BatchItemResponse();
+    }
 
-        Optional.ofNullable(this.event.optJSONObject("metadata"))
-                .map(e -> e.optString("eid", null))
-                .ifPresent(this.response::setEid);
+    /**
+     * Creates item for an event that was serialized by nakadi itself and therefore is not parsed again. Such an item
+     * has no json representation ({@link #getEvent()} returns null) and must not contain metadata field, metadata is
+     * provided separately and is injected at the beginning of the event.
+     *
+     * @param event    Compact json object without metadata field, like {"a":"b"}
+     * @param metadata Compact json object to use as metadata
+     */
+    public static BatchItem trusted(final String event, final String metadata) {
+        final BatchItem item = new BatchItem(
+                event,
+                null,
+                EmptyInjectionConfiguration.build(1, event.length() > 2),
+                new InjectionConfiguration[Injection.values().length],
+                Collections.emptyList());
+        item.inject(Injection.METADATA, metadata);
+        // size of the event as it is published, with metadata injected at the beginning
+        item.eventSize += TRUSTED_METADATA_PREFIX.length + metadata.getBytes(StandardCharsets.UTF_8).length
+                + (event.length() > 2 ? 1 : 0);
+        return item;
     }
 
     public void inject(final Injection type, final String value) {
@@ -88,6 +121,12 @@ public class BatchItem {
         injectionValues[type.ordinal()] =value;
     }
 
+    @Nullable
+    public String getInjection(final Injection type) {
+        return null == injectionValues ? null : injectionValues[type.ordinal()];
+    }
+
+    @Nullable
     public JSONObject getEvent() {
         return this.event;
     }
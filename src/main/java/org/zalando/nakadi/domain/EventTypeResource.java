@@ -22,6 +22,10 @@ public class EventTypeResource implements Resource {
         return name;
     }
 
+    public ResourceAuthorization getAuthorization() {
+        return etAuthorization;
+    }
+
     @Override
     public String getType() {
         return "event-type";
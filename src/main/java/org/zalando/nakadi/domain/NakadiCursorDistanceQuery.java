@@ -0,0 +1,22 @@
+package org.zalando.nakadi.domain;
+
+import javax.annotation.concurrent.Immutable;
+
+@Immutable
+public class NakadiCursorDistanceQuery {
+    private final NakadiCursor initialCursor;
+    private final NakadiCursor finalCursor;
+
+    public NakadiCursorDistanceQuery(final NakadiCursor initialCursor, final NakadiCursor finalCursor) {
+        this.initialCursor = initialCursor;
+        this.finalCursor = finalCursor;
+    }
+
+    public NakadiCursor getInitialCursor() {
+        return initialCursor;
+    }
+
+    public NakadiCursor getFinalCursor() {
+        return finalCursor;
+    }
+}
@@ -1,15 +1,22 @@
 package org.zalando.nakadi.filters;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.net.HttpHeaders;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.zalando.nakadi.metrics.MetricUtils;
+import org.zalando.nakadi.service.KpiEvent;
 import org.zalando.nakadi.service.NakadiKpiPublisher;
+import org.zalando.nakadi.util.FlowIdUtils;
+import org.zalando.nakadi.util.MpscRingBuffer;
 
+import javax.annotation.PreDestroy;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -17,20 +24,55 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.security.Principal;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Writes access log and publishes access log KPI event for every request. Access log lines are written by a
+ * background thread from a bounded buffer, so that request threads do not wait for the console. When the buffer is
+ * full, access log lines are dropped and counted.
+ */
 @Component
 public class LoggingFilter extends OncePerRequestFilter {
 
     private static final Logger LOG = LoggerFactory.getLogger(LoggingFilter.class);
+    private static final long WRITE_PERIOD_MS = 10;
 
     private final NakadiKpiPublisher nakadiKpiPublisher;
     private final String accessLogEventType;
+    private final MpscRingBuffer<AccessLogRecord> accessLog;
+    private final Counter droppedAccessLogRecords;
+    private final ScheduledExecutorService accessLogWriter;
 
     @Autowired
     public LoggingFilter(final NakadiKpiPublisher nakadiKpiPublisher,
-                         @Value("${nakadi.kpi.event-types.nakadiAccessLog}") final String accessLogEventType) {
+                         @Value("${nakadi.kpi.event-types.nakadiAccessLog}") final String accessLogEventType,
+                         final MetricRegistry metricRegistry,
+                         @Value("${nakadi.accessLog.queueSize:10000}") final int accessLogQueueSize) {
+        this(nakadiKpiPublisher, accessLogEventType, metricRegistry, accessLogQueueSize,
+                Executors.newSingleThreadScheduledExecutor());
+    }
+
+    @VisibleForTesting
+    LoggingFilter(final NakadiKpiPublisher nakadiKpiPublisher,
+                  final String accessLogEventType,
+                  final MetricRegistry metricRegistry,
+                  final int accessLogQueueSize,
+                  final ScheduledExecutorService accessLogWriter) {
         this.nakadiKpiPublisher = nakadiKpiPublisher;
         this.accessLogEventType = accessLogEventType;
+        this.accessLog = new MpscRingBuffer<>(accessLogQueueSize);
+        this.droppedAccessLogRecords = metricRegistry.counter(MetricUtils.NAKADI_PREFIX + "general.accessLog.dropped");
+        this.accessLogWriter = accessLogWriter;
+        this.accessLogWriter.scheduleWithFixedDelay(
+                this::writeAccessLog, WRITE_PERIOD_MS, WRITE_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        accessLogWriter.shutdown();
+        writeAccessLog();
     }
 
     @Override
@@ -43,35 +85,93 @@ public class LoggingFilter extends OncePerRequestFilter {
             filterChain.doFilter(request, response);
         } finally {
             final long time = System.currentTimeMillis();
-            final Long timing = time - start;
-            final String userAgent = Optional.ofNullable(request.getHeader("User-Agent")).orElse("-");
-            final String user = Optional.ofNullable(request.getUserPrincipal()).map(Principal::getName).orElse("-");
-            final String method = request.getMethod();
-            final String path = request.getRequestURI();
-            final String query = Optional.ofNullable(request.getQueryString()).map(q -> "?" + q).orElse("");
-            final String contentEncoding = Optional.ofNullable(request.getHeader(HttpHeaders.CONTENT_ENCODING))
-                    .orElse("-");
-            final String acceptEncoding = Optional.ofNullable(request.getHeader(HttpHeaders.ACCEPT_ENCODING))
-                    .orElse("-");
+            final AccessLogRecord record = new AccessLogRecord(
+                    request.getMethod(),
+                    request.getRequestURI(),
+                    Optional.ofNullable(request.getQueryString()).map(q -> "?" + q).orElse(""),
+                    Optional.ofNullable(request.getHeader("User-Agent")).orElse("-"),
+                    Optional.ofNullable(request.getUserPrincipal()).map(Principal::getName).orElse("-"),
+                    response.getStatus(),
+                    time - start,
+                    Optional.ofNullable(request.getHeader(HttpHeaders.CONTENT_ENCODING)).orElse("-"),
+                    Optional.ofNullable(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).orElse("-"),
+                    FlowIdUtils.peek());
+
+            if (!accessLog.offer(record)) {
+                droppedAccessLogRecords.inc();
+            }
+            nakadiKpiPublisher.publish(accessLogEventType, () -> toKpiEvent(record));
+        }
+    }
+
+    void writeAccessLog() {
+        try {
+            accessLog.drain(this::write, accessLog.getCapacity());
+        } catch (final RuntimeException e) {
+            LOG.error("Failed to write access log", e);
+        }
+    }
 
+    private void write(final AccessLogRecord record) {
+        // flow id is logged by the layout from log4j's NDC of the thread that writes the line
+        final boolean hasFlowId = null != record.flowId && !record.flowId.isEmpty();
+        if (hasFlowId) {
+            FlowIdUtils.push(record.flowId);
+        }
+        try {
             LOG.info("[ACCESS_LOG] {} \"{}{}\" \"{}\" \"{}\" statusCode: {} {} ms \"{}\" \"{}\"",
-                    method,
-                    path,
-                    query,
-                    userAgent,
-                    user,
-                    response.getStatus(),
-                    timing,
-                    contentEncoding,
-                    acceptEncoding);
-            nakadiKpiPublisher.publish(accessLogEventType, () -> new JSONObject()
-                    .put("method", method)
-                    .put("path", path)
-                    .put("query", query)
-                    .put("app", user)
-                    .put("app_hashed", nakadiKpiPublisher.hash(user))
-                    .put("status_code", response.getStatus())
-                    .put("response_time_ms", timing));
+                    record.method,
+                    record.path,
+                    record.query,
+                    record.userAgent,
+                    record.user,
+                    record.statusCode,
+                    record.timing,
+                    record.contentEncoding,
+                    record.acceptEncoding);
+        } finally {
+            if (hasFlowId) {
+                FlowIdUtils.pop();
+            }
+        }
+    }
+
+    private KpiEvent toKpiEvent(final AccessLogRecord record) {
+        return new KpiEvent()
+                .put("method", record.method)
+                .put("path", record.path)
+                .put("query", record.query)
+                .put("app", record.user)
+                .put("app_hashed", nakadiKpiPublisher.hash(record.user))
+                .put("status_code", record.statusCode)
+                .put("response_time_ms", record.timing);
+    }
+
+    private static class AccessLogRecord {
+        private final String method;
+        private final String path;
+        private final String query;
+        private final String userAgent;
+        private final String user;
+        private final int statusCode;
+        private final long timing;
+        private final String contentEncoding;
+        private final String acceptEncoding;
+        private final String flowId;
+
+        private AccessLogRecord(final String method, final String path, final String query, final String userAgent,
+                                final String user, final int statusCode, final long timing,
+                                final String contentEncoding, final String acceptEncoding, final String flowId) {
+            this.method = method;
+            this.path = path;
+            this.query = query;
+            this.userAgent = userAgent;
+            this.user = user;
+            this.statusCode = statusCode;
+            this.timing = timing;
+            this.contentEncoding = contentEncoding;
+            this.acceptEncoding = acceptEncoding;
+            this.flowId = flowId;
         }
     }
 }
@@ -10,6 +10,7 @@ public class MetricUtils {
     private static final String LOW_LEVEL_STREAM = "lola";
     private static final String HIGH_LEVEL_STREAM = "hila";
     private static final String BYTES_FLUSHED = "bytes-flushed";
+    private static final String BYTES_FLUSHED_COMPRESSED = "bytes-flushed-compressed";
 
     public static String metricNameFor(final String eventTypeName, final String metricName) {
         return MetricRegistry.name(EVENTTYPES_PREFIX, eventTypeName.replace('.', '#'), metricName);
@@ -20,18 +21,36 @@ public class MetricUtils {
     }
 
     public static String metricNameForLoLAStream(final String applicationId, final String eventTypeName) {
+        return metricNameForLoLAStream(applicationId, eventTypeName, BYTES_FLUSHED);
+    }
+
+    public static String compressedMetricNameForLoLAStream(final String applicationId, final String eventTypeName) {
+        return metricNameForLoLAStream(applicationId, eventTypeName, BYTES_FLUSHED_COMPRESSED);
+    }
+
+    public static String metricNameForHiLAStream(final String applicationId, final String subscriptionId) {
+        return metricNameForHiLAStream(applicationId, subscriptionId, BYTES_FLUSHED);
+    }
+
+    public static String compressedMetricNameForHiLAStream(final String applicationId, final String subscriptionId) {
+        return metricNameForHiLAStream(applicationId, subscriptionId, BYTES_FLUSHED_COMPRESSED);
+    }
+
+    private static String metricNameForLoLAStream(final String applicationId, final String eventTypeName,
+                                                  final String metricName) {
         return MetricRegistry.name(
                 LOW_LEVEL_STREAM,
                 applicationId.replace(".", "#"),
                 eventTypeName.replace(".", "#"),
-                BYTES_FLUSHED);
+                metricName);
     }
 
-    public static String metricNameForHiLAStream(final String applicationId, final String subscriptionId) {
+    private static String metricNameForHiLAStream(final String applicationId, final String subscriptionId,
+                                                  final String metricName) {
         return MetricRegistry.name(
                 HIGH_LEVEL_STREAM,
                 applicationId.replace(".", "#"),
                 subscriptionId,
-                BYTES_FLUSHED);
+                metricName);
     }
 }
@@ -30,8 +30,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -126,55 +124,84 @@ public class MultiTimelineEventConsumer implements EventConsumer.ReassignableEve
         return result == null ? Collections.emptyList() : result;
     }
 
-    private TopicRepository selectCorrectTopicRepo(
-            final NakadiCursor cursor,
-            final Consumer<NakadiCursor> cursorReplacer,
-            final Consumer<NakadiCursor> lastTimelinePosition)
-            throws ServiceTemporarilyUnavailableException {
+    /**
+     * Returns timelines that may contain events following the cursor, starting from the latest one. The cursor will
+     * be positioned on one of them.
+     */
+    private List<Timeline> getCandidateTimelines(final NakadiCursor cursor) {
         final List<Timeline> eventTimelines = eventTypeTimelines.get(cursor.getEventType());
         final ListIterator<Timeline> itTimeline = eventTimelines.listIterator(eventTimelines.size());
-        // select last timeline, and then move back until position was found.
-        Timeline electedTimeline = itTimeline.previous();
+        final List<Timeline> result = new ArrayList<>();
+        result.add(itTimeline.previous());
         while (itTimeline.hasPrevious()) {
             final Timeline toCheck = itTimeline.previous();
+            final NakadiCursor latest = toCheck.calculateNakadiLatestPosition(cursor.getPartition());
+            if (latest != null && comparator.compare(latest, cursor) <= 0) {
+                break;
+            }
+            result.add(toCheck);
+        }
+        return result;
+    }
+
+    private Timeline electTimeline(
+            final NakadiCursor cursor,
+            final List<Timeline> candidates,
+            final Map<String, Map<String, PartitionStatistics>> statistics)
+            throws ServiceTemporarilyUnavailableException {
+        // select last timeline, and then move back until position was found.
+        Timeline electedTimeline = candidates.get(0);
+        for (final Timeline toCheck : candidates.subList(1, candidates.size())) {
             final NakadiCursor latest = toCheck.calculateNakadiLatestPosition(cursor.getPartition());
             if (latest == null) {
                 electedTimeline = toCheck;
-            } else if (comparator.compare(latest, cursor) > 0) {
-                // There is a border case - latest is equal to begin (that means that there are no available events
-                // there), and one should position on timeline that have something inside.
-                final NakadiCursor firstItem = timelineService.getTopicRepository(toCheck)
-                        .loadPartitionStatistics(toCheck, cursor.getPartition())
-                        .get().getFirst();
-                if (comparator.compare(latest, firstItem) >= 0) {
-                    electedTimeline = toCheck;
-                } else {
-                    LOG.info("Timeline {} is empty, skipping", toCheck);
-                }
+                continue;
+            }
+            // There is a border case - latest is equal to begin (that means that there are no available events
+            // there), and one should position on timeline that have something inside.
+            final NakadiCursor firstItem = getStatistics(statistics, toCheck, cursor.getPartition()).getFirst();
+            if (comparator.compare(latest, firstItem) >= 0) {
+                electedTimeline = toCheck;
             } else {
-                break;
+                LOG.info("Timeline {} is empty, skipping", toCheck);
             }
         }
-        final TopicRepository result = timelineService.getTopicRepository(electedTimeline);
-        if (electedTimeline.getOrder() != cursor.getTimeline().getOrder()) {
-            // It seems that cursor jumped to different timeline. One need to fetch very first cursor in timeline.
-            final NakadiCursor replacement = getBeforeFirstCursor(result, electedTimeline, cursor.getPartition());
-            LOG.info("Replacing cursor because of jumping between timelines from {} to {}", cursor, replacement);
-            cursorReplacer.accept(replacement);
+        return electedTimeline;
+    }
+
+    private static PartitionStatistics getStatistics(
+            final Map<String, Map<String, PartitionStatistics>> statistics,
+            final Timeline timeline,
+            final String partition) throws ServiceTemporarilyUnavailableException {
+        final PartitionStatistics result = statistics.getOrDefault(timeline.getTopic(), Collections.emptyMap())
+                .get(partition);
+        if (null == result) {
+            throw new ServiceTemporarilyUnavailableException(
+                    "It is expected that partition statistics exists for timeline " + timeline +
+                            " and partition " + partition + ", but it wasn't found");
         }
-        lastTimelinePosition.accept(electedTimeline.calculateNakadiLatestPosition(cursor.getPartition()));
         return result;
     }
 
-    private NakadiCursor getBeforeFirstCursor(
-            final TopicRepository topicRepository, final Timeline electedTimeline, final String partition)
+    /**
+     * Loads statistics of all partitions of timelines with one call per topic repository.
+     *
+     * @return Mapping from topic to partition statistics.
+     */
+    private Map<String, Map<String, PartitionStatistics>> loadStatistics(final Collection<Timeline> timelines)
             throws ServiceTemporarilyUnavailableException {
-        final Optional<PartitionStatistics> statistics =
-                topicRepository.loadPartitionStatistics(electedTimeline, partition);
-        return statistics
-                .orElseThrow(() -> new ServiceTemporarilyUnavailableException(
-                        "It is expected that partition statistics exists for timeline " + electedTimeline +
-                                " and partition " + partition + ", but it wasn't found")).getBeforeFirst();
+        final Map<TopicRepository, List<Timeline>> timelinesByRepository = new HashMap<>();
+        for (final Timeline timeline : timelines) {
+            timelinesByRepository.computeIfAbsent(timelineService.getTopicRepository(timeline), r -> new ArrayList<>())
+                    .add(timeline);
+        }
+        final Map<String, Map<String, PartitionStatistics>> result = new HashMap<>();
+        for (final Map.Entry<TopicRepository, List<Timeline>> entry : timelinesByRepository.entrySet()) {
+            for (final PartitionStatistics stats : entry.getKey().loadTopicStatistics(entry.getValue())) {
+                result.computeIfAbsent(stats.getTopic(), t -> new HashMap<>()).put(stats.getPartition(), stats);
+            }
+        }
+        return result;
     }
 
     private void electTopicRepositories() throws NakadiException, InvalidCursorException {
@@ -182,23 +209,51 @@ public class MultiTimelineEventConsumer implements EventConsumer.ReassignableEve
         borderOffsets.clear();
         // Purpose of this collection is to hold tr that definitely changed their positions and should be recreated.
         final Set<TopicPartition> actualReadPositionChanged = new HashSet<>();
-        // load new topic repositories and possibly replace cursors to newer timelines.
+
+        // Statistics are needed to detect empty timelines and to get the first position in timeline when cursor jumps
+        // to it. Both are loaded for all the cursors at once, instead of querying storage for each partition.
+        final Map<EventTypePartition, List<Timeline>> candidates = new HashMap<>();
+        final Set<Timeline> timelinesToCheck = new HashSet<>();
         for (final NakadiCursor cursor : latestOffsets.values()) {
-            final AtomicReference<NakadiCursor> cursorReplacement = new AtomicReference<>();
-            final TopicRepository topicRepository = selectCorrectTopicRepo(
-                    cursor,
-                    cursorReplacement::set,
-                    nc -> Optional.ofNullable(nc).ifPresent(
-                            itm -> borderOffsets.put(itm.getEventTypePartition(), itm.getOffset())));
-            if (!newAssignment.containsKey(topicRepository)) {
-                newAssignment.put(topicRepository, new ArrayList<>());
+            final List<Timeline> cursorCandidates = getCandidateTimelines(cursor);
+            candidates.put(cursor.getEventTypePartition(), cursorCandidates);
+            cursorCandidates.subList(1, cursorCandidates.size()).stream()
+                    .filter(t -> null != t.calculateNakadiLatestPosition(cursor.getPartition()))
+                    .forEach(timelinesToCheck::add);
+        }
+        final Map<String, Map<String, PartitionStatistics>> statistics = timelinesToCheck.isEmpty() ?
+                new HashMap<>() : loadStatistics(timelinesToCheck);
+
+        final Map<EventTypePartition, Timeline> electedTimelines = new HashMap<>();
+        final Set<Timeline> jumpTargets = new HashSet<>();
+        for (final NakadiCursor cursor : latestOffsets.values()) {
+            final Timeline elected = electTimeline(
+                    cursor, candidates.get(cursor.getEventTypePartition()), statistics);
+            electedTimelines.put(cursor.getEventTypePartition(), elected);
+            if (elected.getOrder() != cursor.getTimeline().getOrder() && !statistics.containsKey(elected.getTopic())) {
+                jumpTargets.add(elected);
             }
-            if (cursorReplacement.get() != null) {
+        }
+        if (!jumpTargets.isEmpty()) {
+            statistics.putAll(loadStatistics(jumpTargets));
+        }
+
+        // load new topic repositories and possibly replace cursors to newer timelines.
+        for (final NakadiCursor cursor : latestOffsets.values()) {
+            final Timeline electedTimeline = electedTimelines.get(cursor.getEventTypePartition());
+            final TopicRepository topicRepository = timelineService.getTopicRepository(electedTimeline);
+            final NakadiCursor actualCursor;
+            if (electedTimeline.getOrder() != cursor.getTimeline().getOrder()) {
+                // It seems that cursor jumped to different timeline. One need to fetch very first cursor in timeline.
+                actualCursor = getStatistics(statistics, electedTimeline, cursor.getPartition()).getBeforeFirst();
+                LOG.info("Replacing cursor because of jumping between timelines from {} to {}", cursor, actualCursor);
                 actualReadPositionChanged.add(cursor.getTopicPartition());
-                newAssignment.get(topicRepository).add(cursorReplacement.get());
             } else {
-                newAssignment.get(topicRepository).add(cursor);
+                actualCursor = cursor;
             }
+            Optional.ofNullable(electedTimeline.calculateNakadiLatestPosition(cursor.getPartition())).ifPresent(
+                    itm -> borderOffsets.put(itm.getEventTypePartition(), itm.getOffset()));
+            newAssignment.computeIfAbsent(topicRepository, tr -> new ArrayList<>()).add(actualCursor);
         }
         final Set<TopicRepository> removedTopicRepositories = eventConsumers.keySet().stream()
                 .filter(tr -> !newAssignment.containsKey(tr))
@@ -9,7 +9,9 @@ public abstract class AbstractDbRepository {
     protected final ObjectMapper jsonMapper;
 
     public AbstractDbRepository(final JdbcTemplate jdbcTemplate, final ObjectMapper jsonMapper) {
-        this.jdbcTemplate = jdbcTemplate;
+        // every repository reports its queries to its own timer
+        this.jdbcTemplate = jdbcTemplate instanceof TimedJdbcTemplate ?
+                ((TimedJdbcTemplate) jdbcTemplate).forRepository(getClass().getSimpleName()) : jdbcTemplate;
         this.jsonMapper = jsonMapper;
     }
 
@@ -11,6 +11,7 @@ import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
 import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zalando.nakadi.domain.EventType;
@@ -24,6 +25,7 @@ import org.zalando.nakadi.validation.EventTypeValidator;
 import org.zalando.nakadi.validation.EventValidation;
 
 import javax.annotation.Nonnull;
+import javax.annotation.PreDestroy;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -31,11 +33,18 @@ import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+/**
+ * Keeps event types together with their validators and timelines. When an event type or its timelines change, the
+ * new entry is built away from request threads and swapped in at once, while readers keep using the previous one.
+ */
 public class EventTypeCache {
 
     public static final String ZKNODE_PATH = "/nakadi/event_types";
@@ -48,6 +57,18 @@ public class EventTypeCache {
     private final TimelineSync timelineSync;
     private final List<Consumer<String>> invalidationListeners = new CopyOnWriteArrayList<>();
     private Map<String, TimelineSync.ListenerRegistration> timelineRegistrations;
+    // entries loaded later are never replaced by the ones that started loading earlier
+    private final AtomicLong loadSequence = new AtomicLong();
+    // modification zxid of the latest event type znode change that is reflected by the cached entry
+    private final Map<String, Long> refreshedZxids = new ConcurrentHashMap<>();
+    private final Map<String, Long> pendingRefreshes = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "event-type-cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final EventTypeRepository eventTypeRepository;
+    private final TimelineDbRepository timelineRepository;
 
     public EventTypeCache(final EventTypeRepository eventTypeRepository,
                           final TimelineDbRepository timelineRepository,
@@ -64,7 +85,9 @@ public class EventTypeCache {
                    final PathChildrenCache cache,
                    final TimelineSync timelineSync) {
         this.zkClient = zkClient;
-        this.eventTypeCache = setupInMemoryEventTypeCache(eventTypeRepository, timelineRepository);
+        this.eventTypeRepository = eventTypeRepository;
+        this.timelineRepository = timelineRepository;
+        this.eventTypeCache = setupInMemoryEventTypeCache();
         this.cacheSync = cache;
         this.timelineSync = timelineSync;
         this.timelineRegistrations = new ConcurrentHashMap<>();
@@ -74,6 +97,11 @@ public class EventTypeCache {
         preloadEventTypes(eventTypeRepository, timelineRepository);
     }
 
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
     private static PathChildrenCache setupCacheSync(final CuratorFramework zkClient) throws Exception {
         try {
             zkClient.create()
@@ -106,7 +134,8 @@ public class EventTypeCache {
                     et -> new CachedValue(
                             et,
                             EventValidation.forType(et),
-                            eventTypeTimelines.getOrDefault(et.getName(), emptyList))
+                            eventTypeTimelines.getOrDefault(et.getName(), emptyList),
+                            0L)
             ));
             final Iterator<Map.Entry<String, CachedValue>> it = preloaded.entrySet().iterator();
             while (it.hasNext()) {
@@ -147,7 +176,7 @@ public class EventTypeCache {
         }
 
         timelineRegistrations.computeIfAbsent(name,
-                n -> timelineSync.registerTimelineChangeListener(n, (etName) -> eventTypeCache.invalidate(etName)));
+                n -> timelineSync.registerTimelineChangeListener(n, this::onTimelineChange));
     }
 
     public void removed(final String name) throws Exception {
@@ -190,36 +219,95 @@ public class EventTypeCache {
     private void onZkEvent(final PathChildrenCacheEvent event) {
         // Lock is needed only to support massive load on startup. In all other cases it will be called for
         // event type creation/update, so it won't create any additional load.
-        String invalidatedEventType = null;
+        final boolean changed = event.getType() == PathChildrenCacheEvent.Type.CHILD_UPDATED ||
+                event.getType() == PathChildrenCacheEvent.Type.CHILD_ADDED;
+        final boolean removed = event.getType() == PathChildrenCacheEvent.Type.CHILD_REMOVED;
+        if (!changed && !removed) {
+            return;
+        }
+        final String[] path = event.getData().getPath().split("/");
+        final String eventTypeName = path[path.length - 1];
         rwLock.readLock().lock();
         try {
-            final boolean needInvalidate = event.getType() == PathChildrenCacheEvent.Type.CHILD_UPDATED ||
-                    event.getType() == PathChildrenCacheEvent.Type.CHILD_REMOVED ||
-                    event.getType() == PathChildrenCacheEvent.Type.CHILD_ADDED;
-            if (needInvalidate) {
-                final String[] path = event.getData().getPath().split("/");
-                invalidatedEventType = path[path.length - 1];
-                eventTypeCache.invalidate(invalidatedEventType);
+            if (removed) {
+                pendingRefreshes.remove(eventTypeName);
+                refreshedZxids.remove(eventTypeName);
+                eventTypeCache.invalidate(eventTypeName);
+            } else if (null != eventTypeCache.getIfPresent(eventTypeName)) {
+                final Stat stat = event.getData().getStat();
+                if (null != stat && stat.getMzxid() <= refreshedZxids.getOrDefault(eventTypeName, -1L)) {
+                    LOG.debug("Change {} of {} is already in cache", stat.getMzxid(), eventTypeName);
+                    return;
+                }
+                // several changes of the same event type that come before the refresh starts are loaded once
+                pendingRefreshes.merge(eventTypeName, null == stat ? -1L : stat.getMzxid(), Math::max);
+                refreshExecutor.submit(() -> refresh(eventTypeName));
+                return;
             }
         } finally {
             rwLock.readLock().unlock();
         }
-        if (null != invalidatedEventType) {
-            for (final Consumer<String> listener : invalidationListeners) {
-                listener.accept(invalidatedEventType);
+        notifyInvalidationListeners(eventTypeName);
+    }
+
+    private void refresh(final String eventTypeName) {
+        final Long zxid = pendingRefreshes.remove(eventTypeName);
+        if (null == zxid) {
+            return;
+        }
+        try {
+            replace(eventTypeName, loadValue(eventTypeName));
+            refreshedZxids.merge(eventTypeName, zxid, Math::max);
+        } catch (final Exception e) {
+            if (!(e instanceof NoSuchEventTypeException)) {
+                LOG.error("Failed to refresh event type {}, it will be loaded on next access", eventTypeName, e);
             }
+            eventTypeCache.invalidate(eventTypeName);
         }
+        notifyInvalidationListeners(eventTypeName);
     }
 
-    private LoadingCache<String, CachedValue> setupInMemoryEventTypeCache(
-            final EventTypeRepository eventTypeRepository, final TimelineDbRepository timelineRepository) {
+    /**
+     * Timeline change listeners are called before publishers are allowed to work with the event type again, so the
+     * new timelines have to be in cache by the time the listener returns.
+     */
+    private void onTimelineChange(final String eventTypeName) {
+        if (null == eventTypeCache.getIfPresent(eventTypeName)) {
+            return;
+        }
+        try {
+            replace(eventTypeName, loadValue(eventTypeName));
+        } catch (final Exception e) {
+            LOG.error("Failed to reload timelines of {}, they will be loaded on next access", eventTypeName, e);
+            eventTypeCache.invalidate(eventTypeName);
+        }
+    }
+
+    private void replace(final String eventTypeName, final CachedValue value) {
+        eventTypeCache.asMap().computeIfPresent(eventTypeName,
+                (name, old) -> old.getLoadSequence() < value.getLoadSequence() ? value : old);
+    }
+
+    private void notifyInvalidationListeners(final String eventTypeName) {
+        for (final Consumer<String> listener : invalidationListeners) {
+            listener.accept(eventTypeName);
+        }
+    }
+
+    private CachedValue loadValue(final String eventTypeName)
+            throws NoSuchEventTypeException, InternalNakadiException {
+        final long sequence = loadSequence.incrementAndGet();
+        final EventType eventType = eventTypeRepository.findByName(eventTypeName);
+        final List<Timeline> timelines = timelineRepository.listTimelinesOrdered(eventTypeName);
+        timelineRegistrations.computeIfAbsent(eventTypeName, n ->
+                timelineSync.registerTimelineChangeListener(n, this::onTimelineChange));
+        return new CachedValue(eventType, EventValidation.forType(eventType), timelines, sequence);
+    }
+
+    private LoadingCache<String, CachedValue> setupInMemoryEventTypeCache() {
         final CacheLoader<String, CachedValue> loader = new CacheLoader<String, CachedValue>() {
             public CachedValue load(final String key) throws Exception {
-                final EventType eventType = eventTypeRepository.findByName(key);
-                final List<Timeline> timelines = timelineRepository.listTimelinesOrdered(key);
-                timelineRegistrations.computeIfAbsent(key, n ->
-                        timelineSync.registerTimelineChangeListener(n, (etName) -> eventTypeCache.invalidate(etName)));
-                return new CachedValue(eventType, EventValidation.forType(eventType), timelines);
+                return loadValue(key);
             }
         };
 
@@ -239,13 +327,16 @@ public class EventTypeCache {
         private final EventTypeValidator eventTypeValidator;
         @Nonnull
         private final List<Timeline> timelines;
+        private final long loadSequence;
 
         CachedValue(final EventType eventType,
                     final EventTypeValidator eventTypeValidator,
-                    final List<Timeline> timelines) {
+                    final List<Timeline> timelines,
+                    final long loadSequence) {
             this.eventType = eventType;
             this.eventTypeValidator = eventTypeValidator;
             this.timelines = timelines;
+            this.loadSequence = loadSequence;
         }
 
         public EventType getEventType() {
@@ -259,5 +350,9 @@ public class EventTypeCache {
         public List<Timeline> getTimelines() {
             return timelines;
         }
+
+        public long getLoadSequence() {
+            return loadSequence;
+        }
     }
 }
@@ -27,6 +27,7 @@ import org.zalando.nakadi.exceptions.runtime.ServiceTemporarilyUnavailableExcept
 import org.zalando.nakadi.util.HashGenerator;
 import org.zalando.nakadi.util.UUIDGenerator;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -110,6 +111,25 @@ public class SubscriptionDbRepository extends AbstractDbRepository {
     public List<Subscription> listSubscriptions(final Set<String> eventTypes, final Optional<String> owningApplication,
                                                 final int offset, final int limit)
             throws ServiceTemporarilyUnavailableException {
+        return listSubscriptions(eventTypes, owningApplication, null, offset, limit);
+    }
+
+    /**
+     * Lists subscriptions that follow the subscription with id {@code afterId} in the listing order. Unlike paging
+     * with offset, the cost of a page doesn't depend on how deep it is, as the position is found with the index on
+     * (created_at, id).
+     */
+    public List<Subscription> listSubscriptionsAfter(final Set<String> eventTypes,
+                                                     final Optional<String> owningApplication,
+                                                     final String afterId, final int limit)
+            throws ServiceTemporarilyUnavailableException {
+        return listSubscriptions(eventTypes, owningApplication, afterId, 0, limit);
+    }
+
+    private List<Subscription> listSubscriptions(final Set<String> eventTypes,
+                                                 final Optional<String> owningApplication,
+                                                 @Nullable final String afterId, final int offset, final int limit)
+            throws ServiceTemporarilyUnavailableException {
 
         final StringBuilder queryBuilder = new StringBuilder("SELECT s_subscription_object FROM zn_data.subscription ");
         final List<String> clauses = Lists.newArrayList();
@@ -128,12 +148,18 @@ public class SubscriptionDbRepository extends AbstractDbRepository {
                     .map(et -> format("\"{0}\"", et))
                     .forEach(params::add);
         }
+        if (afterId != null) {
+            clauses.add(" (s_subscription_object->>'created_at', s_id) < " +
+                    "(SELECT s_subscription_object->>'created_at', s_id FROM zn_data.subscription WHERE s_id = ?) ");
+            params.add(afterId);
+        }
         if (!clauses.isEmpty()) {
             queryBuilder.append(" WHERE ");
             queryBuilder.append(StringUtils.join(clauses, " AND "));
         }
 
-        queryBuilder.append(" ORDER BY s_subscription_object->>'created_at' DESC LIMIT ? OFFSET ? ");
+        // id makes the order stable for subscriptions created at the same time
+        queryBuilder.append(" ORDER BY s_subscription_object->>'created_at' DESC, s_id DESC LIMIT ? OFFSET ? ");
         params.add(limit);
         params.add(offset);
         try {
@@ -0,0 +1,99 @@
+package org.zalando.nakadi.repository.db;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.CallableStatementCallback;
+import org.springframework.jdbc.core.CallableStatementCreator;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.StatementCallback;
+
+import javax.sql.DataSource;
+
+/**
+ * JdbcTemplate that measures every database call, including the time spent waiting for a connection from the pool.
+ * Every repository gets its own template with its own timer (see {@link #forRepository(String)}), so that slow
+ * queries and pool contention can be attributed to the repository.
+ */
+public class TimedJdbcTemplate extends JdbcTemplate {
+
+    private final MetricRegistry metricRegistry;
+    private final String metricPrefix;
+    private final Timer timer;
+
+    public TimedJdbcTemplate(final DataSource dataSource, final MetricRegistry metricRegistry,
+                             final String metricPrefix) {
+        this(dataSource, metricRegistry, metricPrefix, "other");
+    }
+
+    private TimedJdbcTemplate(final DataSource dataSource, final MetricRegistry metricRegistry,
+                              final String metricPrefix, final String repositoryName) {
+        super(dataSource);
+        this.metricRegistry = metricRegistry;
+        this.metricPrefix = metricPrefix;
+        this.timer = metricRegistry.timer(MetricRegistry.name(metricPrefix, repositoryName));
+    }
+
+    /**
+     * @return template that uses the same data source and settings, but reports to the timer of the repository
+     */
+    public TimedJdbcTemplate forRepository(final String repositoryName) {
+        final TimedJdbcTemplate template = new TimedJdbcTemplate(
+                getDataSource(), metricRegistry, metricPrefix, repositoryName);
+        template.setFetchSize(getFetchSize());
+        template.setMaxRows(getMaxRows());
+        template.setQueryTimeout(getQueryTimeout());
+        template.setIgnoreWarnings(isIgnoreWarnings());
+        template.setExceptionTranslator(getExceptionTranslator());
+        return template;
+    }
+
+    @Override
+    public <T> T execute(final ConnectionCallback<T> action) throws DataAccessException {
+        final Timer.Context context = timer.time();
+        try {
+            return super.execute(action);
+        } finally {
+            context.stop();
+        }
+    }
+
+    @Override
+    public <T> T execute(final StatementCallback<T> action) throws DataAccessException {
+        final Timer.Context context = timer.time();
+        try {
+            return super.execute(action);
+        } finally {
+            context.stop();
+        }
+    }
+
+    @Override
+    public <T> T execute(final PreparedStatementCreator psc, final PreparedStatementCallback<T> action)
+            throws DataAccessException {
+        final Timer.Context context = timer.time();
+        try {
+            return super.execute(psc, action);
+        } finally {
+            context.stop();
+        }
+    }
+
+    @Override
+    public <T> T execute(final CallableStatementCreator csc, final CallableStatementCallback<T> action)
+            throws DataAccessException {
+        final Timer.Context context = timer.time();
+        try {
+            return super.execute(csc, action);
+        } finally {
+            context.stop();
+        }
+    }
+
+    Timer getTimer() {
+        return timer;
+    }
+}
@@ -0,0 +1,63 @@
+package org.zalando.nakadi.repository.db;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.zalando.nakadi.annotations.DB;
+import org.zalando.nakadi.exceptions.runtime.RepositoryProblemException;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps the list of topics that were created in advance and are not yet bound to any timeline.
+ */
+@DB
+@Repository
+public class TopicPoolDbRepository extends AbstractDbRepository {
+
+    @Autowired
+    public TopicPoolDbRepository(final JdbcTemplate jdbcTemplate, final ObjectMapper objectMapper) {
+        super(jdbcTemplate, objectMapper);
+    }
+
+    public int countTopics(final String storageId, final int partitions) throws RepositoryProblemException {
+        try {
+            return jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM zn_data.topic_pool WHERE st_id=? AND tp_partitions=?",
+                    Integer.class, storageId, partitions);
+        } catch (final DataAccessException e) {
+            throw new RepositoryProblemException("Error occurred when counting pooled topics", e);
+        }
+    }
+
+    public void addTopic(final String storageId, final int partitions, final String topic)
+            throws RepositoryProblemException {
+        try {
+            jdbcTemplate.update("INSERT INTO zn_data.topic_pool (tp_topic, st_id, tp_partitions) VALUES (?, ?, ?)",
+                    topic, storageId, partitions);
+        } catch (final DataAccessException e) {
+            throw new RepositoryProblemException("Error occurred when adding topic " + topic + " to the pool", e);
+        }
+    }
+
+    /**
+     * Removes the oldest pooled topic with given number of partitions from the pool and returns it. Rows that are
+     * being claimed by concurrent transactions are skipped, so that the same topic is never returned twice.
+     */
+    public Optional<String> claimTopic(final String storageId, final int partitions)
+            throws RepositoryProblemException {
+        try {
+            final List<String> topics = jdbcTemplate.queryForList(
+                    "DELETE FROM zn_data.topic_pool WHERE tp_topic = (" +
+                            "SELECT tp_topic FROM zn_data.topic_pool WHERE st_id=? AND tp_partitions=? " +
+                            "ORDER BY tp_created_at LIMIT 1 FOR UPDATE SKIP LOCKED) RETURNING tp_topic",
+                    String.class, storageId, partitions);
+            return topics.stream().findFirst();
+        } catch (final DataAccessException e) {
+            throw new RepositoryProblemException("Error occurred when claiming topic from the pool", e);
+        }
+    }
+}
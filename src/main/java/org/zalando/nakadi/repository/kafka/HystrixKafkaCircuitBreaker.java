@@ -17,7 +17,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Class wraps Hystrix API to count success/failures without using Hystrix command. In general we just use Hystrix to
  * collect metrics and check for opened circuit.
  */
-public class HystrixKafkaCircuitBreaker {
+public class HystrixKafkaCircuitBreaker implements KafkaCircuitBreaker {
 
     private static final HystrixCommandGroupKey HYSTRIX_CMD_GROUP_KEY = HystrixCommandGroupKey.Factory.asKey("kafka");
 
@@ -45,16 +45,19 @@ public class HystrixKafkaCircuitBreaker {
         concurrentExecutionCount = new AtomicInteger();
     }
 
+    @Override
     public boolean allowRequest() {
         return circuitBreaker.allowRequest();
     }
 
+    @Override
     public void markStart() {
         final int currentCount = concurrentExecutionCount.incrementAndGet();
         HystrixThreadEventStream.getInstance().commandExecutionStarted(commandKey, threadPoolKey,
                 HystrixCommandProperties.ExecutionIsolationStrategy.SEMAPHORE, currentCount);
     }
 
+    @Override
     public void markSuccessfully() {
         concurrentExecutionCount.decrementAndGet();
         HystrixThreadEventStream.getInstance()
@@ -62,12 +65,14 @@ public class HystrixKafkaCircuitBreaker {
         circuitBreaker.markSuccess();
     }
 
+    @Override
     public void markFailure() {
         concurrentExecutionCount.decrementAndGet();
         HystrixThreadEventStream.getInstance()
                 .executionDone(ExecutionResult.from(HystrixEventType.FAILURE), commandKey, threadPoolKey);
     }
 
+    @Override
     public String getMetrics() {
         return hystrixCommandMetrics.getHealthCounts().toString();
     }
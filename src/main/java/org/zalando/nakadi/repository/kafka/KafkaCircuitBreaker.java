@@ -0,0 +1,24 @@
+package org.zalando.nakadi.repository.kafka;
+
+/**
+ * Per-broker circuit breaker used by {@link KafkaTopicRepository} while publishing. Implementations only count
+ * successes/failures of sends and decide whether a request to the broker is allowed, they never wrap the call itself.
+ */
+public interface KafkaCircuitBreaker {
+
+    enum Type {
+        HYSTRIX,
+        ROLLING
+    }
+
+    boolean allowRequest();
+
+    void markStart();
+
+    void markSuccessfully();
+
+    void markFailure();
+
+    String getMetrics();
+
+}
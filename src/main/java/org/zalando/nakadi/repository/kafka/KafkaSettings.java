@@ -17,16 +17,40 @@ public class KafkaSettings {
     private final int batchSize;
     private final long lingerMs;
     private final boolean enableAutoCommit;
+    private final KafkaCircuitBreaker.Type circuitBreakerType;
+    private final int circuitBreakerRequestVolumeThreshold;
+    private final int circuitBreakerErrorThresholdPercentage;
+    private final long circuitBreakerSleepWindowMs;
+    private final long circuitBreakerRollingWindowMs;
+    private final int circuitBreakerRollingWindowBuckets;
 
     @Autowired
     public KafkaSettings(@Value("${nakadi.kafka.request.timeout.ms}") final int requestTimeoutMs,
                          @Value("${nakadi.kafka.batch.size}") final int batchSize,
                          @Value("${nakadi.kafka.linger.ms}") final long lingerMs,
-                         @Value("${nakadi.kafka.enable.auto.commit}") final boolean enableAutoCommit) {
+                         @Value("${nakadi.kafka.enable.auto.commit}") final boolean enableAutoCommit,
+                         @Value("${nakadi.kafka.circuitBreaker.type:HYSTRIX}")
+                         final KafkaCircuitBreaker.Type circuitBreakerType,
+                         @Value("${hystrix.command.default.circuitBreaker.requestVolumeThreshold:20}")
+                         final int circuitBreakerRequestVolumeThreshold,
+                         @Value("${hystrix.command.default.circuitBreaker.errorThresholdPercentage:50}")
+                         final int circuitBreakerErrorThresholdPercentage,
+                         @Value("${hystrix.command.default.circuitBreaker.sleepWindowInMilliseconds:5000}")
+                         final long circuitBreakerSleepWindowMs,
+                         @Value("${hystrix.command.default.metrics.rollingStats.timeInMilliseconds:10000}")
+                         final long circuitBreakerRollingWindowMs,
+                         @Value("${hystrix.command.default.metrics.rollingStats.numBuckets:10}")
+                         final int circuitBreakerRollingWindowBuckets) {
         this.requestTimeoutMs = requestTimeoutMs;
         this.batchSize = batchSize;
         this.lingerMs = lingerMs;
         this.enableAutoCommit = enableAutoCommit;
+        this.circuitBreakerType = circuitBreakerType;
+        this.circuitBreakerRequestVolumeThreshold = circuitBreakerRequestVolumeThreshold;
+        this.circuitBreakerErrorThresholdPercentage = circuitBreakerErrorThresholdPercentage;
+        this.circuitBreakerSleepWindowMs = circuitBreakerSleepWindowMs;
+        this.circuitBreakerRollingWindowMs = circuitBreakerRollingWindowMs;
+        this.circuitBreakerRollingWindowBuckets = circuitBreakerRollingWindowBuckets;
     }
 
     public int getRequestTimeoutMs() {
@@ -44,4 +68,28 @@ public class KafkaSettings {
     public boolean getEnableAutoCommit() {
         return enableAutoCommit;
     }
+
+    public KafkaCircuitBreaker.Type getCircuitBreakerType() {
+        return circuitBreakerType;
+    }
+
+    public int getCircuitBreakerRequestVolumeThreshold() {
+        return circuitBreakerRequestVolumeThreshold;
+    }
+
+    public int getCircuitBreakerErrorThresholdPercentage() {
+        return circuitBreakerErrorThresholdPercentage;
+    }
+
+    public long getCircuitBreakerSleepWindowMs() {
+        return circuitBreakerSleepWindowMs;
+    }
+
+    public long getCircuitBreakerRollingWindowMs() {
+        return circuitBreakerRollingWindowMs;
+    }
+
+    public int getCircuitBreakerRollingWindowBuckets() {
+        return circuitBreakerRollingWindowBuckets;
+    }
 }
@@ -48,7 +48,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
@@ -79,7 +78,7 @@ public class KafkaTopicRepository implements TopicRepository {
     private final NakadiSettings nakadiSettings;
     private final KafkaSettings kafkaSettings;
     private final ZookeeperSettings zookeeperSettings;
-    private final ConcurrentMap<String, HystrixKafkaCircuitBreaker> circuitBreakers;
+    private final ConcurrentMap<String, KafkaCircuitBreaker> circuitBreakers;
     private final UUIDGenerator uuidGenerator;
 
     public KafkaTopicRepository(final ZooKeeperHolder zkFactory,
@@ -178,7 +177,7 @@ public class KafkaTopicRepository implements TopicRepository {
             final Producer<String, String> producer,
             final String topicId,
             final BatchItem item,
-            final HystrixKafkaCircuitBreaker circuitBreaker) throws EventPublishingException {
+            final KafkaCircuitBreaker circuitBreaker) throws EventPublishingException {
         try {
             final CompletableFuture<Exception> result = new CompletableFuture<>();
             final ProducerRecord<String, String> kafkaRecord = new ProducerRecord<>(
@@ -247,8 +246,8 @@ public class KafkaTopicRepository implements TopicRepository {
             final Map<BatchItem, CompletableFuture<Exception>> sendFutures = new HashMap<>();
             for (final BatchItem item : batch) {
                 item.setStep(EventPublishingStep.PUBLISHING);
-                final HystrixKafkaCircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(
-                        item.getBrokerId(), brokerId -> new HystrixKafkaCircuitBreaker(brokerId));
+                final KafkaCircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(
+                        item.getBrokerId(), this::createCircuitBreaker);
                 if (circuitBreaker.allowRequest()) {
                     sendFutures.put(item, publishItem(producer, topicId, item, circuitBreaker));
                 } else {
@@ -295,6 +294,13 @@ public class KafkaTopicRepository implements TopicRepository {
         }
     }
 
+    private KafkaCircuitBreaker createCircuitBreaker(final String brokerId) {
+        if (kafkaSettings.getCircuitBreakerType() == KafkaCircuitBreaker.Type.ROLLING) {
+            return new RollingKafkaCircuitBreaker(brokerId, kafkaSettings);
+        }
+        return new HystrixKafkaCircuitBreaker(brokerId);
+    }
+
     private long createSendTimeout() {
         return nakadiSettings.getKafkaSendTimeoutMs() + kafkaSettings.getRequestTimeoutMs();
     }
@@ -461,27 +467,31 @@ public class KafkaTopicRepository implements TopicRepository {
     private Map<NakadiCursor, KafkaCursor> convertToKafkaCursors(final List<NakadiCursor> cursors)
             throws ServiceTemporarilyUnavailableException, InvalidCursorException {
         final List<Timeline> timelines = cursors.stream().map(NakadiCursor::getTimeline).distinct().collect(toList());
-        final List<PartitionStatistics> statistics = loadTopicStatistics(timelines);
+        // topic -> partition -> statistics
+        final Map<String, Map<String, PartitionStatistics>> statistics = new HashMap<>();
+        for (final PartitionStatistics stats : loadTopicStatistics(timelines)) {
+            statistics.computeIfAbsent(stats.getTimeline().getTopic(), t -> new HashMap<>())
+                    .put(stats.getPartition(), stats);
+        }
 
         final Map<NakadiCursor, KafkaCursor> result = new HashMap<>();
         for (final NakadiCursor position : cursors) {
             validateCursorForNulls(position);
-            final Optional<PartitionStatistics> partition =
-                    statistics.stream().filter(t -> Objects.equals(t.getPartition(), position.getPartition()))
-                            .filter(t -> Objects.equals(t.getTimeline().getTopic(), position.getTopic()))
-                            .findAny();
-            if (!partition.isPresent()) {
+            final PartitionStatistics partition = statistics
+                    .getOrDefault(position.getTopic(), Collections.emptyMap())
+                    .get(position.getPartition());
+            if (null == partition) {
                 throw new InvalidCursorException(PARTITION_NOT_FOUND, position);
             }
             final KafkaCursor toCheck = position.asKafkaCursor();
 
             // Checking oldest position
-            final KafkaCursor oldestCursor = KafkaCursor.fromNakadiCursor(partition.get().getBeforeFirst());
+            final KafkaCursor oldestCursor = KafkaCursor.fromNakadiCursor(partition.getBeforeFirst());
             if (toCheck.compareTo(oldestCursor) < 0) {
                 throw new InvalidCursorException(UNAVAILABLE, position);
             }
             // checking newest position
-            final KafkaCursor newestPosition = KafkaCursor.fromNakadiCursor(partition.get().getLast());
+            final KafkaCursor newestPosition = KafkaCursor.fromNakadiCursor(partition.getLast());
             if (toCheck.compareTo(newestPosition) > 0) {
                 throw new InvalidCursorException(UNAVAILABLE, position);
             } else {
@@ -0,0 +1,105 @@
+package org.zalando.nakadi.repository.kafka;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free rolling window of success/failure counters. The window is split into a ring of buckets, each bucket
+ * is stamped with the time slot it currently belongs to and is recycled lazily by the first writer that arrives in a
+ * new slot. Counts written concurrently with a bucket recycle may be lost, the same way as in Hystrix rolling
+ * statistics, which is acceptable for health calculation.
+ */
+class RollingCounter {
+
+    private final Bucket[] buckets;
+    private final long bucketSizeMs;
+    private final LongSupplier clock;
+
+    RollingCounter(final long windowMs, final int numBuckets, final LongSupplier clock) {
+        if (numBuckets <= 0 || windowMs < numBuckets) {
+            throw new IllegalArgumentException("Rolling window of " + windowMs + " ms can not be split into " +
+                    numBuckets + " buckets");
+        }
+        this.buckets = new Bucket[numBuckets];
+        for (int i = 0; i < numBuckets; ++i) {
+            this.buckets[i] = new Bucket();
+        }
+        this.bucketSizeMs = windowMs / numBuckets;
+        this.clock = clock;
+    }
+
+    void success() {
+        currentBucket().successes.increment();
+    }
+
+    void failure() {
+        currentBucket().failures.increment();
+    }
+
+    HealthCounts getHealthCounts() {
+        final long currentSlot = clock.getAsLong() / bucketSizeMs;
+        long successes = 0;
+        long failures = 0;
+        for (final Bucket bucket : buckets) {
+            final long slot = bucket.slot.get();
+            if (slot > currentSlot - buckets.length && slot <= currentSlot) {
+                successes += bucket.successes.sum();
+                failures += bucket.failures.sum();
+            }
+        }
+        return new HealthCounts(successes + failures, failures);
+    }
+
+    void reset() {
+        for (final Bucket bucket : buckets) {
+            bucket.slot.set(-1L);
+            bucket.successes.reset();
+            bucket.failures.reset();
+        }
+    }
+
+    private Bucket currentBucket() {
+        final long currentSlot = clock.getAsLong() / bucketSizeMs;
+        final Bucket bucket = buckets[(int) (currentSlot % buckets.length)];
+        final long slot = bucket.slot.get();
+        if (slot < currentSlot && bucket.slot.compareAndSet(slot, currentSlot)) {
+            bucket.successes.reset();
+            bucket.failures.reset();
+        }
+        return bucket;
+    }
+
+    private static class Bucket {
+        private final AtomicLong slot = new AtomicLong(-1L);
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+    }
+
+    static class HealthCounts {
+        private final long totalCount;
+        private final long errorCount;
+
+        HealthCounts(final long totalCount, final long errorCount) {
+            this.totalCount = totalCount;
+            this.errorCount = errorCount;
+        }
+
+        long getTotalCount() {
+            return totalCount;
+        }
+
+        long getErrorCount() {
+            return errorCount;
+        }
+
+        int getErrorPercentage() {
+            return totalCount > 0 ? (int) ((double) errorCount / totalCount * 100) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "HealthCounts[" + errorCount + " / " + totalCount + " : " + getErrorPercentage() + "%]";
+        }
+    }
+}
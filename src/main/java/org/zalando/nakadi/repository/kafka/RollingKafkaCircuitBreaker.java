@@ -0,0 +1,107 @@
+package org.zalando.nakadi.repository.kafka;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free replacement for {@link HystrixKafkaCircuitBreaker} with the same closed/open/half-open semantics and
+ * configuration: the circuit opens when at least {@code requestVolumeThreshold} sends were made within the rolling
+ * window and the error percentage reached {@code errorThresholdPercentage}. After {@code sleepWindowMs} a single
+ * trial request is let through (half-open); its success closes the circuit, its failure opens it for another sleep
+ * window.
+ *
+ * Health is only evaluated when a failure is reported, so the common path (closed circuit, successful send) is a
+ * volatile read and a striped counter increment.
+ */
+public class RollingKafkaCircuitBreaker implements KafkaCircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String brokerId;
+    private final int requestVolumeThreshold;
+    private final int errorThresholdPercentage;
+    private final long sleepWindowMs;
+    private final LongSupplier clock;
+    private final RollingCounter counter;
+    private final AtomicReference<State> state;
+    private final AtomicLong openedOrLastTestedTime;
+
+    public RollingKafkaCircuitBreaker(final String brokerId, final KafkaSettings kafkaSettings) {
+        this(brokerId, kafkaSettings, System::currentTimeMillis);
+    }
+
+    RollingKafkaCircuitBreaker(final String brokerId, final KafkaSettings kafkaSettings, final LongSupplier clock) {
+        this.brokerId = brokerId;
+        this.requestVolumeThreshold = kafkaSettings.getCircuitBreakerRequestVolumeThreshold();
+        this.errorThresholdPercentage = kafkaSettings.getCircuitBreakerErrorThresholdPercentage();
+        this.sleepWindowMs = kafkaSettings.getCircuitBreakerSleepWindowMs();
+        this.clock = clock;
+        this.counter = new RollingCounter(
+                kafkaSettings.getCircuitBreakerRollingWindowMs(),
+                kafkaSettings.getCircuitBreakerRollingWindowBuckets(),
+                clock);
+        this.state = new AtomicReference<>(State.CLOSED);
+        this.openedOrLastTestedTime = new AtomicLong();
+    }
+
+    @Override
+    public boolean allowRequest() {
+        if (state.get() == State.CLOSED) {
+            return true;
+        }
+        final long lastTested = openedOrLastTestedTime.get();
+        final long now = clock.getAsLong();
+        if (now >= lastTested + sleepWindowMs && openedOrLastTestedTime.compareAndSet(lastTested, now)) {
+            state.set(State.HALF_OPEN);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void markStart() {
+        // nothing to do, only completed sends are taken into account
+    }
+
+    @Override
+    public void markSuccessfully() {
+        counter.success();
+        if (state.get() == State.HALF_OPEN && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            counter.reset();
+        }
+    }
+
+    @Override
+    public void markFailure() {
+        counter.failure();
+        final State currentState = state.get();
+        if (currentState == State.HALF_OPEN) {
+            state.compareAndSet(State.HALF_OPEN, State.OPEN);
+        } else if (currentState == State.CLOSED && isUnhealthy()) {
+            // opening time is set before the circuit is seen as open, so that no trial request is let through
+            // before the sleep window passes
+            openedOrLastTestedTime.set(clock.getAsLong());
+            state.compareAndSet(State.CLOSED, State.OPEN);
+        }
+    }
+
+    @Override
+    public String getMetrics() {
+        return brokerId + " " + state.get() + " " + counter.getHealthCounts();
+    }
+
+    State getState() {
+        return state.get();
+    }
+
+    private boolean isUnhealthy() {
+        final RollingCounter.HealthCounts healthCounts = counter.getHealthCounts();
+        return healthCounts.getTotalCount() >= requestVolumeThreshold
+                && healthCounts.getErrorPercentage() >= errorThresholdPercentage;
+    }
+}
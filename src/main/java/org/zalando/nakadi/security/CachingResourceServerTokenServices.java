@@ -0,0 +1,145 @@
+package org.zalando.nakadi.security;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.common.exceptions.OAuth2Exception;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches results of token validation, so that tokeninfo is not called on every request. Valid tokens are cached
+ * until they expire, but not longer than {@code maxTtlMs}, and refreshed in background after {@code refreshAfterMs}.
+ * Tokens rejected by tokeninfo are cached for {@code invalidTokenTtlMs}. Concurrent requests with the same token wait
+ * for a single call to tokeninfo.
+ */
+public class CachingResourceServerTokenServices implements ResourceServerTokenServices {
+
+    private static final String EXPIRES_IN = "expires_in";
+    private static final int REFRESH_THREADS = 2;
+
+    private final ResourceServerTokenServices delegate;
+    private final LoadingCache<String, CachedToken> tokens;
+    private final Ticker ticker;
+    private final long maxTtlNanos;
+    private final long refreshAfterNanos;
+    private final long invalidTokenTtlNanos;
+
+    public CachingResourceServerTokenServices(final ResourceServerTokenServices delegate,
+                                              final long maxSize,
+                                              final long maxTtlMs,
+                                              final long refreshAfterMs,
+                                              final long invalidTokenTtlMs) {
+        this(delegate, maxSize, maxTtlMs, refreshAfterMs, invalidTokenTtlMs, Ticker.systemTicker(),
+                Executors.newFixedThreadPool(REFRESH_THREADS));
+    }
+
+    @VisibleForTesting
+    CachingResourceServerTokenServices(final ResourceServerTokenServices delegate,
+                                       final long maxSize,
+                                       final long maxTtlMs,
+                                       final long refreshAfterMs,
+                                       final long invalidTokenTtlMs,
+                                       final Ticker ticker,
+                                       final Executor refreshExecutor) {
+        this.delegate = delegate;
+        this.ticker = ticker;
+        this.maxTtlNanos = TimeUnit.MILLISECONDS.toNanos(maxTtlMs);
+        this.refreshAfterNanos = TimeUnit.MILLISECONDS.toNanos(refreshAfterMs);
+        this.invalidTokenTtlNanos = TimeUnit.MILLISECONDS.toNanos(invalidTokenTtlMs);
+        this.tokens = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Math.max(maxTtlMs, invalidTokenTtlMs), TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .build(CacheLoader.asyncReloading(CacheLoader.from(this::validate), refreshExecutor));
+    }
+
+    @Override
+    public OAuth2Authentication loadAuthentication(final String accessToken) throws AuthenticationException {
+        final CachedToken cached = getCachedToken(accessToken);
+        final long now = ticker.read();
+        final CachedToken token;
+        if (now >= cached.expiresAt) {
+            tokens.asMap().remove(accessToken, cached);
+            token = getCachedToken(accessToken);
+        } else {
+            if (now >= cached.refreshAt) {
+                tokens.refresh(accessToken);
+            }
+            token = cached;
+        }
+        if (null != token.error) {
+            throw token.error;
+        }
+        // Authentication is modified per request by spring security, so every request gets its own instance
+        return new OAuth2Authentication(token.authentication.getOAuth2Request(),
+                token.authentication.getUserAuthentication());
+    }
+
+    @Override
+    public OAuth2AccessToken readAccessToken(final String accessToken) {
+        return delegate.readAccessToken(accessToken);
+    }
+
+    private CachedToken getCachedToken(final String accessToken) {
+        try {
+            return tokens.get(accessToken);
+        } catch (final ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new OAuth2Exception(e.getMessage(), e);
+        }
+    }
+
+    private CachedToken validate(final String accessToken) {
+        final long now = ticker.read();
+        try {
+            final OAuth2Authentication authentication = delegate.loadAuthentication(accessToken);
+            final long ttlNanos = Math.min(maxTtlNanos, getExpiresInNanos(authentication));
+            return new CachedToken(authentication, null, now + Math.min(refreshAfterNanos, ttlNanos), now + ttlNanos);
+        } catch (final InvalidTokenException e) {
+            return new CachedToken(null, e, now + invalidTokenTtlNanos, now + invalidTokenTtlNanos);
+        }
+    }
+
+    private long getExpiresInNanos(final OAuth2Authentication authentication) {
+        final Authentication userAuthentication = authentication.getUserAuthentication();
+        final Object details = null == userAuthentication ? null : userAuthentication.getDetails();
+        if (details instanceof Map) {
+            final Object expiresIn = ((Map) details).get(EXPIRES_IN);
+            if (expiresIn instanceof Number) {
+                return TimeUnit.SECONDS.toNanos(((Number) expiresIn).longValue());
+            }
+        }
+        return maxTtlNanos;
+    }
+
+    private static class CachedToken {
+        private final OAuth2Authentication authentication;
+        private final InvalidTokenException error;
+        private final long refreshAt;
+        private final long expiresAt;
+
+        private CachedToken(final OAuth2Authentication authentication, final InvalidTokenException error,
+                            final long refreshAt, final long expiresAt) {
+            this.authentication = authentication;
+            this.error = error;
+            this.refreshAt = refreshAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
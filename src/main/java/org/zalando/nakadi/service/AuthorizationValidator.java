@@ -1,8 +1,15 @@
 package org.zalando.nakadi.service;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
 import org.springframework.stereotype.Service;
 import org.zalando.nakadi.domain.EventType;
 import org.zalando.nakadi.domain.EventTypeBase;
@@ -16,15 +23,19 @@ import org.zalando.nakadi.exceptions.runtime.ServiceTemporarilyUnavailableExcept
 import org.zalando.nakadi.plugin.api.PluginException;
 import org.zalando.nakadi.plugin.api.authz.AuthorizationAttribute;
 import org.zalando.nakadi.plugin.api.authz.AuthorizationService;
-import org.zalando.nakadi.plugin.api.authz.Resource;
 import org.zalando.nakadi.repository.EventTypeRepository;
+import org.zalando.nakadi.repository.db.EventTypeCache;
 
 import javax.annotation.Nullable;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 import static com.google.common.collect.Lists.newArrayList;
@@ -36,15 +47,45 @@ public class AuthorizationValidator {
     private final AuthorizationService authorizationService;
     private final EventTypeRepository eventTypeRepository;
     private final AdminService adminService;
+    private final Cache<DecisionKey, Decision> decisions;
+    private final long positiveTtlMs;
+    private final long negativeTtlMs;
+    private final LongSupplier clock;
 
     @Autowired
     public AuthorizationValidator(
             final AuthorizationService authorizationService,
             final EventTypeRepository eventTypeRepository,
-            final AdminService adminService) {
+            final AdminService adminService,
+            final EventTypeCache eventTypeCache,
+            @Value("${nakadi.authz.cache.positiveTtlMs:10000}") final long positiveTtlMs,
+            @Value("${nakadi.authz.cache.negativeTtlMs:2000}") final long negativeTtlMs,
+            @Value("${nakadi.authz.cache.maxSize:100000}") final long maxSize) {
+        this(authorizationService, eventTypeRepository, adminService, eventTypeCache, positiveTtlMs, negativeTtlMs,
+                maxSize, System::currentTimeMillis);
+    }
+
+    AuthorizationValidator(
+            final AuthorizationService authorizationService,
+            final EventTypeRepository eventTypeRepository,
+            final AdminService adminService,
+            final EventTypeCache eventTypeCache,
+            final long positiveTtlMs,
+            final long negativeTtlMs,
+            final long maxSize,
+            final LongSupplier clock) {
         this.authorizationService = authorizationService;
         this.eventTypeRepository = eventTypeRepository;
         this.adminService = adminService;
+        this.positiveTtlMs = positiveTtlMs;
+        this.negativeTtlMs = negativeTtlMs;
+        this.clock = clock;
+        // expiration of each decision is checked on read, the cache only has to drop what is not read anymore
+        this.decisions = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Math.max(1, Math.max(positiveTtlMs, negativeTtlMs)), TimeUnit.MILLISECONDS)
+                .build();
+        eventTypeCache.addInvalidationListener(this::invalidateDecisions);
     }
 
     public void validateAuthorization(@Nullable final ResourceAuthorization auth) throws UnableProcessException,
@@ -118,9 +159,7 @@ public class AuthorizationValidator {
         final EventTypeResource resource = new EventTypeResource(
                 eventType.getName(), eventType.getAuthorization());
         try {
-            final boolean authorized = authorizationService.isAuthorized(
-                    AuthorizationService.Operation.WRITE,
-                    resource);
+            final boolean authorized = isAuthorized(AuthorizationService.Operation.WRITE, resource);
             if (!authorized) {
                 throw new AccessDeniedException(AuthorizationService.Operation.WRITE, resource);
             }
@@ -135,9 +174,9 @@ public class AuthorizationValidator {
             return;
         }
 
-        final Resource resource = new EventTypeResource(eventType.getName(), eventType.getAuthorization());
+        final EventTypeResource resource = new EventTypeResource(eventType.getName(), eventType.getAuthorization());
         try {
-            if (!authorizationService.isAuthorized(AuthorizationService.Operation.ADMIN, resource)) {
+            if (!isAuthorized(AuthorizationService.Operation.ADMIN, resource)) {
                 if (!adminService.isAdmin(AuthorizationService.Operation.WRITE)) {
                     throw new AccessDeniedException(AuthorizationService.Operation.ADMIN, resource);
                 }
@@ -152,9 +191,9 @@ public class AuthorizationValidator {
             return;
         }
 
-        final Resource resource = new EventTypeResource(eventType.getName(), eventType.getAuthorization());
+        final EventTypeResource resource = new EventTypeResource(eventType.getName(), eventType.getAuthorization());
         try {
-            if (!authorizationService.isAuthorized(AuthorizationService.Operation.READ, resource)
+            if (!isAuthorized(AuthorizationService.Operation.READ, resource)
                     && !adminService.hasAllDataAccess(AuthorizationService.Operation.READ)) {
                 throw new AccessDeniedException(AuthorizationService.Operation.READ, resource);
             }
@@ -190,4 +229,130 @@ public class AuthorizationValidator {
 
         validateAuthorization(newAuth);
     }
+
+    /**
+     * Plugin decisions are cached per identity of the caller (uid, realm, authorities and scopes of the token),
+     * operation and authorization section of the resource. As the section is part of the key, its change is taken into
+     * account immediately, while changes on the plugin side (e.g. revoked membership of the principal) are taken into
+     * account within TTL.
+     */
+    private boolean isAuthorized(final AuthorizationService.Operation operation, final EventTypeResource resource)
+            throws PluginException {
+        final Identity identity = getIdentity();
+        if (null == identity) {
+            return authorizationService.isAuthorized(operation, resource);
+        }
+        final DecisionKey key = new DecisionKey(identity, operation, resource.getName(),
+                resource.getAuthorization());
+        final long now = clock.getAsLong();
+        final Decision cached = decisions.getIfPresent(key);
+        if (null != cached && cached.expiresAt > now) {
+            return cached.authorized;
+        }
+        final boolean authorized = authorizationService.isAuthorized(operation, resource);
+        decisions.put(key, new Decision(authorized, now + (authorized ? positiveTtlMs : negativeTtlMs)));
+        return authorized;
+    }
+
+    @Nullable
+    private static Identity getIdentity() {
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (null == authentication) {
+            return null;
+        }
+        final Set<String> authorities = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
+        if (!(authentication instanceof OAuth2Authentication)) {
+            return new Identity(authentication.getName(), null, authorities, Collections.emptySet());
+        }
+        final OAuth2Authentication oAuth2Authentication = (OAuth2Authentication) authentication;
+        final Authentication userAuthentication = oAuth2Authentication.getUserAuthentication();
+        final Object details = null == userAuthentication ? null : userAuthentication.getDetails();
+        return new Identity(
+                authentication.getName(),
+                details instanceof Map ? ((Map) details).get("realm") : null,
+                authorities,
+                oAuth2Authentication.getOAuth2Request().getScope());
+    }
+
+    private void invalidateDecisions(final String eventTypeName) {
+        decisions.asMap().keySet().removeIf(key -> key.resourceName.equals(eventTypeName));
+    }
+
+    private static class Identity {
+        private final String name;
+        private final Object realm;
+        private final Set<String> authorities;
+        private final Set<String> scopes;
+
+        private Identity(final String name, @Nullable final Object realm, final Set<String> authorities,
+                         final Set<String> scopes) {
+            this.name = name;
+            this.realm = realm;
+            this.authorities = authorities;
+            this.scopes = scopes;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Identity that = (Identity) o;
+            return name.equals(that.name) && Objects.equals(realm, that.realm)
+                    && authorities.equals(that.authorities) && scopes.equals(that.scopes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, realm, authorities, scopes);
+        }
+    }
+
+    private static class DecisionKey {
+        private final Identity identity;
+        private final AuthorizationService.Operation operation;
+        private final String resourceName;
+        private final ResourceAuthorization authorization;
+
+        private DecisionKey(final Identity identity, final AuthorizationService.Operation operation,
+                            final String resourceName, final ResourceAuthorization authorization) {
+            this.identity = identity;
+            this.operation = operation;
+            this.resourceName = resourceName;
+            this.authorization = authorization;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final DecisionKey that = (DecisionKey) o;
+            return identity.equals(that.identity) && operation == that.operation
+                    && resourceName.equals(that.resourceName) && authorization.equals(that.authorization);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(identity, operation, resourceName, authorization);
+        }
+    }
+
+    private static class Decision {
+        private final boolean authorized;
+        private final long expiresAt;
+
+        private Decision(final boolean authorized, final long expiresAt) {
+            this.authorized = authorized;
+            this.expiresAt = expiresAt;
+        }
+    }
 }
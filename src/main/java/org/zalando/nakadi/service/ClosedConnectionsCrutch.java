@@ -163,6 +163,10 @@ public class ClosedConnectionsCrutch {
             });
             toAdd.clear();
         }
+        if (listeners.isEmpty()) {
+            // most of the streams are watched by ConnectionCloseDetector, no need to read connection states then
+            return;
+        }
         final Map<ConnectionInfo, ConnectionState> currentConnections = readAllConnectionStates();
         final long closedCount =
                 new HashSet<>(listeners.keySet()).stream()
@@ -0,0 +1,182 @@
+package org.zalando.nakadi.service;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Detects streaming connections closed by consumers without waiting for the next write to fail.
+ *
+ * For every streaming request served by jetty a listener is attached to the connection, so closes noticed by jetty
+ * (failed writes, idle timeouts) are reported immediately. Additionally the socket of the stream is registered for
+ * read readiness in a selector owned by the detector. Nothing is ever read from the socket - consumers don't send
+ * anything while streaming, so the socket becomes readable only when the consumer closes or resets the connection,
+ * and any bytes are left to jetty. Requests that are not backed by a selectable socket are handed over to
+ * {@link ClosedConnectionsCrutch}.
+ *
+ * The flag returned from {@link #listenForConnectionClose(HttpServletRequest)} must be set to false by the caller
+ * when streaming is finished, the connection stops being watched within {@code probeIntervalMs} after that.
+ */
+@Component
+public class ConnectionCloseDetector {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionCloseDetector.class);
+
+    private final ClosedConnectionsCrutch closedConnectionsCrutch;
+    private final Meter meterClosed;
+    private final long probeIntervalMs;
+    private final Selector selector;
+    private final Queue<Watch> toRegister;
+    private final Set<Watch> watches;
+    private final ExecutorService executorService;
+
+    @Autowired
+    public ConnectionCloseDetector(
+            final ClosedConnectionsCrutch closedConnectionsCrutch,
+            final MetricRegistry metricRegistry,
+            @Value("${nakadi.stream.closeProbeIntervalMs:200}") final long probeIntervalMs) throws IOException {
+        this.closedConnectionsCrutch = closedConnectionsCrutch;
+        this.meterClosed = metricRegistry.meter("nakadi.close_detector.closed");
+        this.probeIntervalMs = probeIntervalMs;
+        this.selector = Selector.open();
+        this.toRegister = new ConcurrentLinkedQueue<>();
+        this.watches = ConcurrentHashMap.newKeySet();
+        this.executorService = Executors.newSingleThreadExecutor();
+        this.executorService.submit(this::selectLoop);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        executorService.shutdownNow();
+        selector.close();
+    }
+
+    public AtomicBoolean listenForConnectionClose(final HttpServletRequest request) throws UnknownHostException {
+        final EndPoint endPoint = getEndPoint(request);
+        if (null == endPoint || !(endPoint.getTransport() instanceof SelectableChannel)) {
+            return closedConnectionsCrutch.listenForConnectionClose(request);
+        }
+        final AtomicBoolean connectionReady = new AtomicBoolean(true);
+        final Watch watch = new Watch(endPoint, connectionReady);
+        endPoint.getConnection().addListener(watch);
+        if (!endPoint.isOpen()) {
+            watch.onClosed(endPoint.getConnection());
+        }
+        watches.add(watch);
+        // channels can't be registered while the selector is blocked in select, so it is done by the selecting thread
+        toRegister.add(watch);
+        selector.wakeup();
+        return connectionReady;
+    }
+
+    int getWatchedCount() {
+        return watches.size();
+    }
+
+    private static EndPoint getEndPoint(final HttpServletRequest request) {
+        final Request baseRequest = Request.getBaseRequest(request);
+        if (null == baseRequest) {
+            return null;
+        }
+        final HttpChannel httpChannel = baseRequest.getHttpChannel();
+        return null == httpChannel ? null : httpChannel.getEndPoint();
+    }
+
+    private void selectLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                selector.select(probeIntervalMs);
+                Watch watch;
+                while (null != (watch = toRegister.poll())) {
+                    watch.register();
+                }
+                final Set<SelectionKey> selectedKeys = selector.selectedKeys();
+                selectedKeys.forEach(key -> ((Watch) key.attachment()).notifyClosed());
+                selectedKeys.clear();
+                watches.removeIf(Watch::unregisterIfFinished);
+            } catch (final ClosedSelectorException e) {
+                return;
+            } catch (final IOException | RuntimeException e) {
+                LOG.error("Failed to check connections for close", e);
+            }
+        }
+    }
+
+    private class Watch implements Connection.Listener {
+        private final EndPoint endPoint;
+        private final AtomicBoolean connectionReady;
+        private SelectionKey selectionKey;
+
+        private Watch(final EndPoint endPoint, final AtomicBoolean connectionReady) {
+            this.endPoint = endPoint;
+            this.connectionReady = connectionReady;
+        }
+
+        @Override
+        public void onOpened(final Connection connection) {
+        }
+
+        @Override
+        public void onClosed(final Connection connection) {
+            notifyClosed();
+        }
+
+        private void register() {
+            if (!connectionReady.get()) {
+                return;
+            }
+            try {
+                selectionKey = ((SelectableChannel) endPoint.getTransport())
+                        .register(selector, SelectionKey.OP_READ, this);
+            } catch (final ClosedChannelException e) {
+                notifyClosed();
+            }
+        }
+
+        /**
+         * @return true if the connection is not watched anymore
+         */
+        private boolean unregisterIfFinished() {
+            if (connectionReady.get()) {
+                return false;
+            }
+            if (null != selectionKey) {
+                selectionKey.cancel();
+            }
+            endPoint.getConnection().removeListener(this);
+            return true;
+        }
+
+        private void notifyClosed() {
+            if (connectionReady.compareAndSet(true, false)) {
+                LOG.info("Detected connection close: {}", endPoint.getRemoteAddress());
+                meterClosed.mark();
+            }
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package org.zalando.nakadi.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.zalando.nakadi.domain.EventTypePartition;
 import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.NakadiCursorDistanceQuery;
 import org.zalando.nakadi.domain.NakadiCursorLag;
-import org.zalando.nakadi.domain.PartitionEndStatistics;
 import org.zalando.nakadi.domain.PartitionStatistics;
 import org.zalando.nakadi.domain.ShiftedNakadiCursor;
 import org.zalando.nakadi.domain.Storage;
@@ -16,21 +19,33 @@ import org.zalando.nakadi.exceptions.runtime.InvalidCursorOperation;
 import org.zalando.nakadi.exceptions.runtime.MyNakadiRuntimeException1;
 import org.zalando.nakadi.exceptions.runtime.ServiceTemporarilyUnavailableException;
 import org.zalando.nakadi.exceptions.runtime.UnknownStorageTypeException;
+import org.zalando.nakadi.repository.TopicRepository;
 import org.zalando.nakadi.repository.kafka.KafkaCursor;
 import org.zalando.nakadi.service.timeline.TimelineService;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.zalando.nakadi.exceptions.runtime.InvalidCursorOperation.Reason.CURSORS_WITH_DIFFERENT_PARTITION;
 import static org.zalando.nakadi.exceptions.runtime.InvalidCursorOperation.Reason.PARTITION_NOT_FOUND;
-import static org.zalando.nakadi.exceptions.runtime.InvalidCursorOperation.Reason.TIMELINE_NOT_FOUND;
 
 @Service
 public class CursorOperationsService {
-    private final TimelineService timelineService;
     private static final Logger LOG = LoggerFactory.getLogger(CursorOperationsService.class);
+    private static final long PARTITION_TIMELINES_TTL_MS = 10000;
+    private static final long PARTITION_TIMELINES_MAX_SIZE = 10000;
+
+    private final TimelineService timelineService;
+    private final Cache<EventTypePartition, PartitionTimelines> partitionTimelinesCache = CacheBuilder.newBuilder()
+            .expireAfterWrite(PARTITION_TIMELINES_TTL_MS, TimeUnit.MILLISECONDS)
+            .maximumSize(PARTITION_TIMELINES_MAX_SIZE)
+            .build();
 
     @Autowired
     public CursorOperationsService(final TimelineService timelineService) {
@@ -39,25 +54,32 @@ public class CursorOperationsService {
 
     public long calculateDistance(final NakadiCursor initialCursor, final NakadiCursor finalCursor)
             throws InvalidCursorOperation {
-        // Validate query
+        return calculateDistance(initialCursor, finalCursor, loadAllTimelines(finalCursor.getEventType()));
+    }
+
+    private long calculateDistance(final NakadiCursor initialCursor, final NakadiCursor finalCursor,
+                                   final List<Timeline> timelines) {
         if (!initialCursor.getPartition().equals(finalCursor.getPartition())) {
             throw new InvalidCursorOperation(CURSORS_WITH_DIFFERENT_PARTITION);
         }
+        return getPartitionTimelines(finalCursor, timelines).distance(initialCursor, finalCursor);
+    }
 
-        long result = numberOfEventsBeforeCursor(finalCursor) - numberOfEventsBeforeCursor(initialCursor);
-        final int initialOrder = initialCursor.getTimeline().getOrder();
-        final int finalOrder = finalCursor.getTimeline().getOrder();
-
-        int startOrder = Math.min(initialOrder, finalOrder);
-        if (startOrder == Timeline.STARTING_ORDER) {
-            startOrder += 1;
-        }
-
-        for (int order = startOrder; order < Math.max(initialOrder, finalOrder); ++order) {
-            final Timeline timeline = getTimeline(initialCursor.getEventType(), order);
-            final long eventsTotal = getStorageWorker(timeline)
-                    .totalEventsInPartition(timeline, initialCursor.getPartition());
-            result += (finalOrder > initialOrder) ? eventsTotal : -eventsTotal;
+    /**
+     * Calculates distances for all the queries at once. Timelines of every event type are looked up once and events
+     * of every partition in closed timelines are summed up once in its {@link PartitionTimelines}, no matter how many
+     * queries there are.
+     *
+     * @return distances in the same order as queries
+     */
+    public List<Long> calculateDistances(final List<NakadiCursorDistanceQuery> queries)
+            throws InvalidCursorOperation {
+        final Map<String, List<Timeline>> timelines = new HashMap<>();
+        final List<Long> result = new ArrayList<>(queries.size());
+        for (final NakadiCursorDistanceQuery query : queries) {
+            final NakadiCursor finalCursor = query.getFinalCursor();
+            result.add(calculateDistance(query.getInitialCursor(), finalCursor,
+                    timelines.computeIfAbsent(finalCursor.getEventType(), this::loadAllTimelines)));
         }
         return result;
     }
@@ -66,55 +88,85 @@ public class CursorOperationsService {
             throws InvalidCursorOperation {
         try {
             final List<Timeline> timelines = timelineService.getActiveTimelinesOrdered(eventTypeName);
-            // Next 2 calls could be optimized to 1 storage call, instead of possible 2 calls.
-            // But it is simpler not to do anything, cause timelines are not switched every day and almost all the time
-            // (except retention time after switch) there will be only 1 active timeline, and this option is covered.
-            final List<PartitionStatistics> oldestStats = getStatsForTimeline(timelines.get(0));
-            final List<PartitionStatistics> newestStats = timelines.size() == 1 ? oldestStats :
-                    getStatsForTimeline(timelines.get(timelines.size() - 1));
-
-            return cursors.stream()
-                    .map(c -> {
-                        final PartitionStatistics oldestStat = oldestStats.stream()
-                                .filter(item -> item.getPartition().equalsIgnoreCase(c.getPartition()))
-                                .findAny().orElseThrow(() -> new InvalidCursorOperation(PARTITION_NOT_FOUND));
-
-                        NakadiCursor newestPosition = newestStats.stream()
-                                .filter(item -> item.getPartition().equalsIgnoreCase(c.getPartition()))
-                                .map(PartitionEndStatistics::getLast)
-                                .findAny().orElseThrow(() -> new InvalidCursorOperation(PARTITION_NOT_FOUND));
-                        // trick to avoid -1 position - move cursor to previous timeline while there is no data before
-                        // it
-                        while (numberOfEventsBeforeCursor(newestPosition) == -1) {
-                            final int prevOrder = newestPosition.getTimeline().getOrder() - 1;
-                            final Timeline prevTimeline = timelines.stream()
-                                    .filter(t -> t.getOrder() == prevOrder)
-                                    .findAny().orElse(null);
-                            if (null == prevTimeline) {
-                                break;
-                            }
-                            // We moved back, so timeline definitely have latest position set
-                            newestPosition = prevTimeline.getLatestPosition()
-                                    .toNakadiCursor(prevTimeline, newestPosition.getPartition());
-                        }
-
-                        // It is safe to call calculate distance here, cause it will not involve any storage-related
-                        // calls (in case of kafka)
-                        return new NakadiCursorLag(
-                                oldestStat.getFirst(),
-                                newestPosition,
-                                calculateDistance(c, newestPosition)
-                        );
-                    }).collect(Collectors.toList());
-
+            final Timeline oldestTimeline = timelines.get(0);
+            final Timeline newestTimeline = timelines.get(timelines.size() - 1);
+            final Map<String, Map<String, PartitionStatistics>> stats = loadStatsByTopic(
+                    oldestTimeline == newestTimeline ?
+                            Collections.singletonList(oldestTimeline) :
+                            Arrays.asList(oldestTimeline, newestTimeline));
+
+            final List<Timeline> allTimelines = loadAllTimelines(eventTypeName);
+            final Map<String, NakadiCursor> newestPositions = new HashMap<>();
+            final List<NakadiCursorLag> result = new ArrayList<>(cursors.size());
+            for (final NakadiCursor cursor : cursors) {
+                final PartitionStatistics oldestStat = getStat(stats, oldestTimeline, cursor.getPartition());
+                final NakadiCursor newestPosition = newestPositions.computeIfAbsent(cursor.getPartition(),
+                        partition -> getNewestPosition(timelines, newestTimeline,
+                                getStat(stats, newestTimeline, partition)));
+                // It is safe to calculate distance here, cause it will not involve any storage-related calls (in case
+                // of kafka)
+                result.add(new NakadiCursorLag(
+                        NakadiCursor.of(oldestTimeline, cursor.getPartition(), oldestStat.getFirst().getOffset()),
+                        newestPosition,
+                        calculateDistance(cursor, newestPosition, allTimelines)));
+            }
+            return result;
         } catch (final NakadiException e) {
             throw new MyNakadiRuntimeException1("error", e);
         }
     }
 
-    private List<PartitionStatistics> getStatsForTimeline(final Timeline timeline)
+    private NakadiCursor getNewestPosition(final List<Timeline> timelines, final Timeline newestTimeline,
+                                           final PartitionStatistics newestStat) {
+        NakadiCursor newestPosition = NakadiCursor.of(
+                newestTimeline, newestStat.getPartition(), newestStat.getLast().getOffset());
+        // trick to avoid -1 position - move cursor to previous timeline while there is no data before it
+        while (numberOfEventsBeforeCursor(newestPosition) == -1) {
+            final int prevOrder = newestPosition.getTimeline().getOrder() - 1;
+            final Timeline prevTimeline = timelines.stream()
+                    .filter(t -> t.getOrder() == prevOrder)
+                    .findAny().orElse(null);
+            if (null == prevTimeline) {
+                break;
+            }
+            // We moved back, so timeline definitely have latest position set
+            newestPosition = prevTimeline.getLatestPosition()
+                    .toNakadiCursor(prevTimeline, newestPosition.getPartition());
+        }
+        return newestPosition;
+    }
+
+    private static PartitionStatistics getStat(final Map<String, Map<String, PartitionStatistics>> stats,
+                                               final Timeline timeline, final String partition) {
+        final PartitionStatistics stat = stats.getOrDefault(timeline.getTopic(), Collections.emptyMap())
+                .get(partition);
+        if (null == stat) {
+            throw new InvalidCursorOperation(PARTITION_NOT_FOUND);
+        }
+        return stat;
+    }
+
+    /**
+     * Loads statistics of all the timelines with one call per topic repository.
+     *
+     * @return statistics by topic and partition
+     */
+    private Map<String, Map<String, PartitionStatistics>> loadStatsByTopic(final List<Timeline> timelines)
             throws ServiceTemporarilyUnavailableException {
-        return timelineService.getTopicRepository(timeline).loadTopicStatistics(Collections.singletonList(timeline));
+        final Map<TopicRepository, Map<String, Timeline>> timelinesByRepository = new HashMap<>();
+        for (final Timeline timeline : timelines) {
+            // several timelines may share a topic, it is enough to load statistics for one of them
+            timelinesByRepository.computeIfAbsent(timelineService.getTopicRepository(timeline), r -> new HashMap<>())
+                    .putIfAbsent(timeline.getTopic(), timeline);
+        }
+        final Map<String, Map<String, PartitionStatistics>> result = new HashMap<>();
+        for (final Map.Entry<TopicRepository, Map<String, Timeline>> entry : timelinesByRepository.entrySet()) {
+            for (final PartitionStatistics stat : entry.getKey().loadTopicStatistics(entry.getValue().values())) {
+                result.computeIfAbsent(stat.getTimeline().getTopic(), t -> new HashMap<>())
+                        .put(stat.getPartition(), stat);
+            }
+        }
+        return result;
     }
 
     public List<NakadiCursor> unshiftCursors(final List<ShiftedNakadiCursor> cursors) throws InvalidCursorOperation {
@@ -132,63 +184,32 @@ public class CursorOperationsService {
     }
 
     private NakadiCursor moveForward(final ShiftedNakadiCursor cursor) {
-        NakadiCursor currentCursor = cursor.getNakadiCursor();
-        long stillToAdd = cursor.getShift();
-        while (currentCursor.getTimeline().getLatestPosition() != null) {
-            final NakadiCursor timelineLastPosition = currentCursor.getTimeline().getLatestPosition()
-                    .toNakadiCursor(currentCursor.getTimeline(), currentCursor.getPartition());
-            final long distance = calculateDistance(currentCursor, timelineLastPosition);
-            if (stillToAdd > distance) {
-                stillToAdd -= distance;
-                final Timeline nextTimeline = getTimeline(
-                        currentCursor.getEventType(), currentCursor.getTimeline().getOrder() + 1);
-
-                currentCursor = NakadiCursor.of(
-                        nextTimeline,
-                        currentCursor.getPartition(),
-                        StaticStorageWorkerFactory.get(nextTimeline).getBeforeFirstOffset());
-            } else {
-                break;
-            }
-        }
-        if (stillToAdd > 0) {
-            return currentCursor.shiftWithinTimeline(stillToAdd);
-        }
-        return currentCursor;
+        return getPartitionTimelines(cursor.getNakadiCursor())
+                .moveForward(cursor.getNakadiCursor(), cursor.getShift());
     }
 
     private NakadiCursor moveBack(final ShiftedNakadiCursor cursor) {
-        NakadiCursor currentCursor = cursor.getNakadiCursor();
-        long toMoveBack = -cursor.getShift();
-        while (toMoveBack > 0) {
-            final long totalBefore = numberOfEventsBeforeCursor(currentCursor);
-            if (totalBefore < toMoveBack) {
-                toMoveBack -= totalBefore + 1; // +1 is because end is inclusive
-
-                // Next case is a special one. User must have ability to move to the begin (actually - position before
-                // begin event that is not within limits)
-                if (toMoveBack == 0) {
-                    toMoveBack += totalBefore + 1;
-                    break;
-                }
-
-                final Timeline prevTimeline = getTimeline(
-                        currentCursor.getEventType(),
-                        currentCursor.getTimeline().getOrder() - 1);
-                // When moving back latest position is always defined
-                currentCursor = prevTimeline.getLatestPosition()
-                        .toNakadiCursor(prevTimeline, currentCursor.getPartition());
-            } else {
-                break;
-            }
-        }
-        if (toMoveBack != 0) {
-            currentCursor = currentCursor.shiftWithinTimeline(-toMoveBack);
+        return getPartitionTimelines(cursor.getNakadiCursor())
+                .moveBack(cursor.getNakadiCursor(), cursor.getShift());
+    }
+
+    private PartitionTimelines getPartitionTimelines(final NakadiCursor cursor) {
+        return getPartitionTimelines(cursor, loadAllTimelines(cursor.getEventType()));
+    }
+
+    private PartitionTimelines getPartitionTimelines(final NakadiCursor cursor, final List<Timeline> timelines) {
+        // timelines are taken from event type cache, so the check that index is up to date is cheap
+        final EventTypePartition key = cursor.getEventTypePartition();
+        final PartitionTimelines cached = partitionTimelinesCache.getIfPresent(key);
+        if (null != cached && cached.isBuiltFrom(timelines)) {
+            return cached;
         }
-        return currentCursor;
+        final PartitionTimelines partitionTimelines = new PartitionTimelines(timelines, cursor.getPartition());
+        partitionTimelinesCache.put(key, partitionTimelines);
+        return partitionTimelines;
     }
 
-    private long numberOfEventsBeforeCursor(final NakadiCursor initialCursor) {
+    static long numberOfEventsBeforeCursor(final NakadiCursor initialCursor) {
         final Storage.Type storageType = initialCursor.getTimeline().getStorage().getType();
         switch (storageType) {
             case KAFKA:
@@ -198,21 +219,12 @@ public class CursorOperationsService {
         }
     }
 
-    private Timeline getTimeline(final String eventTypeName, final int order) {
-        final List<Timeline> timelines;
+    private List<Timeline> loadAllTimelines(final String eventTypeName) {
         try {
-            timelines = timelineService.getAllTimelinesOrdered(eventTypeName);
+            return timelineService.getAllTimelinesOrdered(eventTypeName);
         } catch (final NakadiException e) {
             throw new RuntimeException(e);
         }
-        return timelines.stream()
-                .filter(t -> t.getOrder() == order)
-                .findFirst()
-                .orElseThrow(() -> new InvalidCursorOperation(TIMELINE_NOT_FOUND));
-    }
-
-    private static StaticStorageWorkerFactory.StaticStorageWorker getStorageWorker(final Timeline timeline) {
-        return StaticStorageWorkerFactory.get(timeline);
     }
 
 }
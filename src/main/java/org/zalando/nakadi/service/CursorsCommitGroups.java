@@ -0,0 +1,131 @@
+package org.zalando.nakadi.service;
+
+import org.springframework.stereotype.Component;
+import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.exceptions.InvalidCursorException;
+import org.zalando.nakadi.exceptions.NakadiRuntimeException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Collects cursor commits that come for the same subscription into one group, so that zookeeper is queried once per
+ * group instead of once per commit request. The first commit of a group commits the whole group on behalf of all
+ * the requests in it. It does it right away if no other group of the subscription is being committed, otherwise it
+ * waits for that group, and the commits that come meanwhile join its group.
+ */
+@Component
+public class CursorsCommitGroups {
+
+    private final Map<String, List<PendingCommit>> openGroups = new HashMap<>();
+    private final Set<String> committingSubscriptions = new HashSet<>();
+
+    /**
+     * Adds cursors to the group of commits of subscription and waits for the group to be committed.
+     *
+     * @param groupCommitter Commits all the cursors of the group. It is called by one of the requests in the group
+     *                       and has to complete every pending commit.
+     * @return list of commit results, one per cursor
+     */
+    List<Boolean> commit(final String subscriptionId, final String streamId, final List<NakadiCursor> cursors,
+                         final Consumer<List<PendingCommit>> groupCommitter) throws InvalidCursorException {
+        final PendingCommit commit = new PendingCommit(streamId, cursors);
+        final boolean leader;
+        synchronized (openGroups) {
+            final List<PendingCommit> group = openGroups.get(subscriptionId);
+            leader = null == group;
+            if (leader) {
+                final List<PendingCommit> newGroup = new ArrayList<>();
+                newGroup.add(commit);
+                openGroups.put(subscriptionId, newGroup);
+            } else {
+                group.add(commit);
+            }
+        }
+        if (leader) {
+            commitGroup(subscriptionId, groupCommitter);
+        }
+        return commit.await();
+    }
+
+    private void commitGroup(final String subscriptionId, final Consumer<List<PendingCommit>> groupCommitter) {
+        final List<PendingCommit> group;
+        boolean interrupted = false;
+        synchronized (openGroups) {
+            while (committingSubscriptions.contains(subscriptionId)) {
+                try {
+                    openGroups.wait();
+                } catch (final InterruptedException e) {
+                    // commits of the group were already accepted, so they are committed anyway
+                    interrupted = true;
+                }
+            }
+            group = openGroups.remove(subscriptionId);
+            committingSubscriptions.add(subscriptionId);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            groupCommitter.accept(group);
+        } catch (final RuntimeException e) {
+            group.forEach(commit -> commit.fail(e));
+        } finally {
+            group.forEach(commit -> commit.fail(new IllegalStateException("Commit was not processed")));
+            synchronized (openGroups) {
+                committingSubscriptions.remove(subscriptionId);
+                openGroups.notifyAll();
+            }
+        }
+    }
+
+    static class PendingCommit {
+        private final String streamId;
+        private final List<NakadiCursor> cursors;
+        private final CompletableFuture<List<Boolean>> result = new CompletableFuture<>();
+
+        private PendingCommit(final String streamId, final List<NakadiCursor> cursors) {
+            this.streamId = streamId;
+            this.cursors = cursors;
+        }
+
+        String getStreamId() {
+            return streamId;
+        }
+
+        List<NakadiCursor> getCursors() {
+            return cursors;
+        }
+
+        void complete(final List<Boolean> committed) {
+            result.complete(committed);
+        }
+
+        void fail(final Exception e) {
+            result.completeExceptionally(e);
+        }
+
+        private List<Boolean> await() throws InvalidCursorException {
+            try {
+                return result.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NakadiRuntimeException(e);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof InvalidCursorException) {
+                    throw (InvalidCursorException) e.getCause();
+                } else if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new NakadiRuntimeException((Exception) e.getCause());
+            }
+        }
+    }
+}
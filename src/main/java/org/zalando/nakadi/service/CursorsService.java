@@ -32,6 +32,7 @@ import org.zalando.nakadi.util.TimeLogger;
 import org.zalando.nakadi.util.UUIDGenerator;
 import org.zalando.nakadi.view.SubscriptionCursorWithoutToken;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -50,6 +51,7 @@ public class CursorsService {
     private final CursorConverter cursorConverter;
     private final UUIDGenerator uuidGenerator;
     private final TimelineService timelineService;
+    private final CursorsCommitGroups commitGroups;
 
     @Autowired
     public CursorsService(final SubscriptionDbRepository subscriptionRepository,
@@ -58,7 +60,8 @@ public class CursorsService {
                           final SubscriptionClientFactory zkSubscriptionFactory,
                           final CursorConverter cursorConverter,
                           final UUIDGenerator uuidGenerator,
-                          final TimelineService timelineService) {
+                          final TimelineService timelineService,
+                          final CursorsCommitGroups commitGroups) {
         this.subscriptionRepository = subscriptionRepository;
         this.eventTypeCache = eventTypeCache;
         this.nakadiSettings = nakadiSettings;
@@ -66,6 +69,7 @@ public class CursorsService {
         this.cursorConverter = cursorConverter;
         this.uuidGenerator = uuidGenerator;
         this.timelineService = timelineService;
+        this.commitGroups = commitGroups;
     }
 
     /**
@@ -85,32 +89,63 @@ public class CursorsService {
         final ZkSubscriptionClient zkClient = zkSubscriptionFactory.createClient(
                 subscription, "subscription." + subscriptionId + "." + streamId + ".offsets");
 
-        TimeLogger.addMeasure("validateStreamId");
-        validateStreamId(cursors, streamId, zkClient);
+        if (!uuidGenerator.isUUID(streamId)) {
+            throw new InvalidStreamIdException(
+                    String.format("Stream id has to be valid UUID, but `%s was provided", streamId), streamId);
+        }
 
         TimeLogger.addMeasure("writeToZK");
-        return zkClient.commitOffsets(
-                cursors.stream().map(cursorConverter::convertToNoToken).collect(Collectors.toList()),
-                new SubscriptionCursorComparator(new NakadiCursorComparator(eventTypeCache)));
+        return commitGroups.commit(subscriptionId, streamId, cursors, group -> commitGroup(zkClient, group));
     }
 
-    private void validateStreamId(final List<NakadiCursor> cursors, final String streamId,
-                                  final ZkSubscriptionClient subscriptionClient)
-            throws ServiceTemporarilyUnavailableException, InvalidCursorException, InvalidStreamIdException {
-
-        if (!uuidGenerator.isUUID(streamId)) {
-            throw new InvalidStreamIdException(
-                    String.format("Stream id has to be valid UUID, but `%s was provided", streamId), streamId);
+    /**
+     * Validates stream ids of all the commits of the group and commits cursors of the valid ones together. Each
+     * session is checked once per group and topology is read at most once per group.
+     */
+    private void commitGroup(final ZkSubscriptionClient zkClient,
+                             final List<CursorsCommitGroups.PendingCommit> group) {
+        final Map<String, Boolean> activeSessions = new HashMap<>();
+        Map<EventTypePartition, String> partitionSessions = null;
+        final List<CursorsCommitGroups.PendingCommit> validCommits = new ArrayList<>();
+        for (final CursorsCommitGroups.PendingCommit commit : group) {
+            try {
+                if (!activeSessions.computeIfAbsent(commit.getStreamId(), zkClient::isActiveSession)) {
+                    throw new InvalidStreamIdException(
+                            "Session with stream id " + commit.getStreamId() + " not found", commit.getStreamId());
+                }
+                if (null == partitionSessions) {
+                    partitionSessions = Stream.of(zkClient.getTopology().getPartitions())
+                            .filter(p -> p.getSession() != null)
+                            .collect(Collectors.toMap(Partition::getKey, Partition::getSession));
+                }
+                validateStreamId(commit.getCursors(), commit.getStreamId(), partitionSessions);
+                validCommits.add(commit);
+            } catch (final InvalidCursorException | InvalidStreamIdException e) {
+                commit.fail(e);
+            }
+        }
+        if (validCommits.isEmpty()) {
+            return;
         }
 
-        if (!subscriptionClient.isActiveSession(streamId)) {
-            throw new InvalidStreamIdException("Session with stream id " + streamId + " not found", streamId);
+        // cursors of all the commits are applied in the order of requests, as if they were committed one by one
+        final List<SubscriptionCursorWithoutToken> cursors = validCommits.stream()
+                .flatMap(commit -> commit.getCursors().stream())
+                .map(cursorConverter::convertToNoToken)
+                .collect(Collectors.toList());
+        final List<Boolean> committed = zkClient.commitOffsets(
+                cursors, new SubscriptionCursorComparator(new NakadiCursorComparator(eventTypeCache)));
+        int from = 0;
+        for (final CursorsCommitGroups.PendingCommit commit : validCommits) {
+            final int to = from + commit.getCursors().size();
+            commit.complete(new ArrayList<>(committed.subList(from, to)));
+            from = to;
         }
+    }
 
-        final Map<EventTypePartition, String> partitionSessions = Stream
-                .of(subscriptionClient.getTopology().getPartitions())
-                .filter(p -> p.getSession() != null)
-                .collect(Collectors.toMap(Partition::getKey, Partition::getSession));
+    private static void validateStreamId(final List<NakadiCursor> cursors, final String streamId,
+                                         final Map<EventTypePartition, String> partitionSessions)
+            throws InvalidCursorException, InvalidStreamIdException {
         for (final NakadiCursor cursor : cursors) {
             final EventTypePartition etPartition = cursor.getEventTypePartition();
             final String partitionSession = partitionSessions.get(etPartition);
@@ -1,5 +1,7 @@
 package org.zalando.nakadi.service;
 
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,6 +11,7 @@ import org.zalando.nakadi.config.NakadiSettings;
 import org.zalando.nakadi.domain.BatchFactory;
 import org.zalando.nakadi.domain.BatchItem;
 import org.zalando.nakadi.domain.BatchItemResponse;
+import org.zalando.nakadi.domain.EnrichmentStrategyDescriptor;
 import org.zalando.nakadi.domain.EventPublishResult;
 import org.zalando.nakadi.domain.EventPublishingStatus;
 import org.zalando.nakadi.domain.EventPublishingStep;
@@ -25,9 +28,11 @@ import org.zalando.nakadi.exceptions.PartitioningException;
 import org.zalando.nakadi.exceptions.runtime.AccessDeniedException;
 import org.zalando.nakadi.exceptions.runtime.ServiceTemporarilyUnavailableException;
 import org.zalando.nakadi.partitioning.PartitionResolver;
+import org.zalando.nakadi.partitioning.PartitionStrategy;
 import org.zalando.nakadi.repository.db.EventTypeCache;
 import org.zalando.nakadi.service.timeline.TimelineService;
 import org.zalando.nakadi.service.timeline.TimelineSync;
+import org.zalando.nakadi.util.FlowIdUtils;
 import org.zalando.nakadi.validation.EventTypeValidator;
 import org.zalando.nakadi.validation.ValidationError;
 
@@ -130,6 +135,109 @@ public class EventPublisher {
         }
     }
 
+    /**
+     * Publishes events that were created by nakadi itself (see {@link BatchItem#trusted(String, String)}). Such events
+     * are neither parsed nor validated against the schema, metadata enrichment is done on the serialized metadata.
+     */
+    EventPublishResult publishTrusted(final String eventTypeName, final List<BatchItem> batch)
+            throws NoSuchEventTypeException, InternalNakadiException, EventTypeTimeoutException,
+            ServiceTemporarilyUnavailableException {
+
+        Closeable publishingCloser = null;
+        try {
+            publishingCloser = timelineSync.workWithEventType(eventTypeName, nakadiSettings.getTimelineWaitTimeoutMs());
+
+            final EventType eventType = eventTypeCache.getEventType(eventTypeName);
+
+            validateEventSizes(batch);
+            partitionTrusted(batch, eventType);
+            enrichTrusted(batch, eventType);
+            submit(batch, eventType);
+
+            return ok(batch);
+        } catch (final EventValidationException e) {
+            LOG.debug("Event validation error: {}", e.getMessage());
+            return aborted(EventPublishingStep.VALIDATING, batch);
+        } catch (final PartitioningException e) {
+            LOG.debug("Event partition error: {}", e.getMessage());
+            return aborted(EventPublishingStep.PARTITIONING, batch);
+        } catch (final EventPublishingException e) {
+            LOG.error("error publishing event", e);
+            return failed(batch);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Failed to wait for timeline switch", e);
+            throw new EventTypeTimeoutException("Event type is currently in maintenance, please repeat request");
+        } catch (final TimeoutException e) {
+            LOG.error("Failed to wait for timeline switch", e);
+            throw new EventTypeTimeoutException("Event type is currently in maintenance, please repeat request");
+        } finally {
+            try {
+                if (publishingCloser != null) {
+                    publishingCloser.close();
+                }
+            } catch (final IOException e) {
+                LOG.error("Exception occurred when releasing usage of event-type", e);
+            }
+        }
+    }
+
+    private void validateEventSizes(final List<BatchItem> batch) throws EventValidationException {
+        for (final BatchItem item : batch) {
+            item.setStep(EventPublishingStep.VALIDATING);
+            try {
+                validateEventSize(item);
+            } catch (final EventValidationException e) {
+                item.updateStatusAndDetail(EventPublishingStatus.FAILED, e.getMessage());
+                throw e;
+            }
+        }
+    }
+
+    private void partitionTrusted(final List<BatchItem> batch, final EventType eventType)
+            throws PartitioningException {
+        // random strategy does not look into the event, the other ones need the event to be parsed
+        final boolean needsJson = !PartitionStrategy.RANDOM_STRATEGY.equals(eventType.getPartitionStrategy());
+        for (final BatchItem item : batch) {
+            item.setStep(EventPublishingStep.PARTITIONING);
+            try {
+                final JSONObject json = needsJson ? new JSONObject(item.dumpEventToString()) : null;
+                item.setPartition(partitionResolver.resolvePartition(eventType, json));
+            } catch (final PartitioningException e) {
+                item.updateStatusAndDetail(EventPublishingStatus.FAILED, e.getMessage());
+                throw e;
+            }
+        }
+    }
+
+    private void enrichTrusted(final List<BatchItem> batch, final EventType eventType) {
+        if (!eventType.getEnrichmentStrategies().contains(EnrichmentStrategyDescriptor.METADATA_ENRICHMENT)) {
+            return;
+        }
+        final String receivedAt = JSONObject.quote(new DateTime(DateTimeZone.UTC).toString());
+        final String eventTypeName = JSONObject.quote(eventType.getName());
+        final String version = JSONObject.quote(eventType.getSchema().getVersion().toString());
+        for (final BatchItem item : batch) {
+            item.setStep(EventPublishingStep.ENRICHING);
+            final String metadata = item.getInjection(BatchItem.Injection.METADATA);
+            final StringBuilder sb = new StringBuilder(metadata.length() + 128)
+                    .append(metadata, 0, metadata.length() - 1);
+            if (metadata.length() > 2) {
+                sb.append(',');
+            }
+            if (!metadata.contains("\"flow_id\":")) {
+                // the same as metadata enrichment strategy does for events without flow id
+                sb.append("\"flow_id\":").append(JSONObject.quote(FlowIdUtils.peek())).append(',');
+            }
+            sb.append("\"received_at\":").append(receivedAt)
+                    .append(",\"event_type\":").append(eventTypeName)
+                    .append(",\"partition\":").append(JSONObject.quote(item.getPartition()))
+                    .append(",\"version\":").append(version)
+                    .append('}');
+            item.inject(BatchItem.Injection.METADATA, sb.toString());
+        }
+    }
+
     private void enrich(final List<BatchItem> batch, final EventType eventType) throws EnrichmentException {
         for (final BatchItem batchItem : batch) {
             try {
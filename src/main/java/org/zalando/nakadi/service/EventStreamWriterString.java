@@ -1,11 +1,13 @@
 package org.zalando.nakadi.service;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import org.zalando.nakadi.domain.ConsumedEvent;
 import org.zalando.nakadi.view.Cursor;
 import org.zalando.nakadi.view.SubscriptionCursor;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
@@ -13,58 +15,159 @@ import java.util.Optional;
 
 import static com.google.common.base.Charsets.UTF_8;
 
+/**
+ * Writes the whole batch to the stream with a single write. The batch is assembled from framing bytes and raw event
+ * bytes in a buffer that is reused by the thread serving the stream, so events are neither decoded nor copied more
+ * than once. Only small buffers are kept by threads, batches that do not fit into them are assembled in a buffer
+ * that is allocated for that batch only.
+ */
 @Component
 @Qualifier("string")
 public class EventStreamWriterString implements EventStreamWriter {
 
+    // every jetty thread that serves streams keeps a buffer, so the buffers that are kept for reuse are small
+    private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    // size of cursor, framing and debug info is not known in advance, it is assumed to fit into that
+    private static final int FRAMING_SIZE_ESTIMATE = 512;
+
+    private static final byte[] B_CURSOR_PARTITION_BEGIN = "{\"cursor\":{\"partition\":\"".getBytes(UTF_8);
+    private static final byte[] B_OFFSET_BEGIN = "\",\"offset\":\"".getBytes(UTF_8);
+    private static final byte[] B_EVENT_TYPE_BEGIN = "\",\"event_type\":\"".getBytes(UTF_8);
+    private static final byte[] B_CURSOR_TOKEN_BEGIN = "\",\"cursor_token\":\"".getBytes(UTF_8);
+    private static final byte[] B_CURSOR_END = "\"}".getBytes(UTF_8);
+    private static final byte[] B_EVENTS_ARRAY_BEGIN = ",\"events\":[".getBytes(UTF_8);
+    private static final byte[] B_DEBUG_BEGIN = ",\"info\":{\"debug\":\"".getBytes(UTF_8);
+    private static final byte[] B_DEBUG_END = "\"}".getBytes(UTF_8);
+    private static final byte[] B_BATCH_END = ("}" + BATCH_SEPARATOR).getBytes(UTF_8);
+    private static final byte B_COMMA_DELIM = ',';
+    private static final byte B_CLOSE_BRACKET = ']';
+
+    private final ThreadLocal<BatchBuffer> buffers = ThreadLocal.withInitial(BatchBuffer::new);
+
     @Override
     public int writeSubscriptionBatch(final OutputStream os, final SubscriptionCursor cursor,
                                       final List<ConsumedEvent> events,
                                       final Optional<String> metadata) throws IOException {
-        final StringBuilder builder = new StringBuilder()
-                .append("{\"cursor\":{\"partition\":\"").append(cursor.getPartition())
-                .append("\",\"offset\":\"").append(cursor.getOffset())
-                .append("\",\"event_type\":\"").append(cursor.getEventType())
-                .append("\",\"cursor_token\":\"").append(cursor.getCursorToken())
-                .append("\"}");
-        if (!events.isEmpty()) {
-            builder.append(",\"events\":[");
-            events.forEach(event -> builder.append(new String(event.getEvent())).append(","));
-            builder.deleteCharAt(builder.length() - 1).append("]");
+        int eventsSize = 0;
+        for (final ConsumedEvent event : events) {
+            eventsSize += event.getEvent().length + 1;
         }
-        metadata.ifPresent(s -> builder.append(",\"info\":{\"debug\":\"").append(s).append("\"}"));
-        builder.append("}").append(BATCH_SEPARATOR);
-
-        final String eventsString = builder.toString();
+        final BatchBuffer buffer = takeBuffer(eventsSize + metadata.map(String::length).orElse(0));
+        try {
+            buffer.write(B_CURSOR_PARTITION_BEGIN);
+            buffer.write(cursor.getPartition());
+            buffer.write(B_OFFSET_BEGIN);
+            buffer.write(cursor.getOffset());
+            buffer.write(B_EVENT_TYPE_BEGIN);
+            buffer.write(cursor.getEventType());
+            buffer.write(B_CURSOR_TOKEN_BEGIN);
+            buffer.write(cursor.getCursorToken());
+            buffer.write(B_CURSOR_END);
+            if (!events.isEmpty()) {
+                buffer.write(B_EVENTS_ARRAY_BEGIN);
+                for (int i = 0; i < events.size(); i++) {
+                    if (i > 0) {
+                        buffer.write(B_COMMA_DELIM);
+                    }
+                    buffer.write(events.get(i).getEvent());
+                }
+                buffer.write(B_CLOSE_BRACKET);
+            }
+            if (metadata.isPresent()) {
+                buffer.write(B_DEBUG_BEGIN);
+                buffer.write(metadata.get());
+                buffer.write(B_DEBUG_END);
+            }
+            buffer.write(B_BATCH_END);
+            return flush(buffer, os);
+        } finally {
+            release(buffer);
+        }
+    }
 
-        final byte[] batchBytes = eventsString.getBytes(UTF_8);
-        os.write(batchBytes);
+    @Override
+    public int writeBatch(final OutputStream os, final Cursor cursor, final List<byte[]> events) throws IOException {
+        int eventsSize = 0;
+        for (final byte[] event : events) {
+            eventsSize += event.length + 1;
+        }
+        final BatchBuffer buffer = takeBuffer(eventsSize);
+        try {
+            buffer.write(B_CURSOR_PARTITION_BEGIN);
+            buffer.write(cursor.getPartition());
+            buffer.write(B_OFFSET_BEGIN);
+            buffer.write(cursor.getOffset());
+            buffer.write(B_CURSOR_END);
+            if (!events.isEmpty()) {
+                buffer.write(B_EVENTS_ARRAY_BEGIN);
+                for (int i = 0; i < events.size(); i++) {
+                    if (i > 0) {
+                        buffer.write(B_COMMA_DELIM);
+                    }
+                    buffer.write(events.get(i));
+                }
+                buffer.write(B_CLOSE_BRACKET);
+            }
+            buffer.write(B_BATCH_END);
+            return flush(buffer, os);
+        } finally {
+            release(buffer);
+        }
+    }
 
+    private static int flush(final BatchBuffer buffer, final OutputStream os) throws IOException {
+        buffer.writeTo(os);
         os.flush();
+        return buffer.size();
+    }
 
-        return batchBytes.length;
+    private BatchBuffer takeBuffer(final int contentSize) {
+        final int expectedSize = contentSize + FRAMING_SIZE_ESTIMATE;
+        return expectedSize > MAX_POOLED_BUFFER_SIZE ? new BatchBuffer(expectedSize, false) : buffers.get();
     }
 
-    @Override
-    public int writeBatch(final OutputStream os, final Cursor cursor, final List<byte[]> events) throws IOException {
-        final StringBuilder builder = new StringBuilder()
-                .append("{\"cursor\":{\"partition\":\"").append(cursor.getPartition())
-                .append("\",\"offset\":\"").append(cursor.getOffset()).append("\"}");
-        if (!events.isEmpty()) {
-            builder.append(",\"events\":[");
-            events.forEach(event -> builder.append(new String(event)).append(","));
-            builder.deleteCharAt(builder.length() - 1).append("]");
+    private void release(final BatchBuffer buffer) {
+        if (!buffer.pooled) {
+            return;
+        }
+        if (buffer.capacity() > MAX_POOLED_BUFFER_SIZE) {
+            // framing turned out to be bigger than expected
+            buffers.remove();
+        } else {
+            buffer.reset();
         }
+    }
 
-        builder.append("}").append(BATCH_SEPARATOR);
+    @VisibleForTesting
+    int getPooledBufferCapacity() {
+        return buffers.get().capacity();
+    }
 
-        final String eventsString = builder.toString();
+    private static class BatchBuffer extends ByteArrayOutputStream {
 
-        final byte[] batchBytes = eventsString.getBytes(UTF_8);
-        os.write(batchBytes);
+        private final boolean pooled;
 
-        os.flush();
+        private BatchBuffer() {
+            this(INITIAL_BUFFER_SIZE, true);
+        }
 
-        return batchBytes.length;
+        private BatchBuffer(final int size, final boolean pooled) {
+            super(size);
+            this.pooled = pooled;
+        }
+
+        private void write(final String value) {
+            write(String.valueOf(value).getBytes(UTF_8));
+        }
+
+        @Override
+        public void write(final byte[] bytes) {
+            write(bytes, 0, bytes.length);
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
     }
 }
@@ -148,7 +148,7 @@ public class EventTypeService {
             }
             throw e;
         }
-        nakadiKpiPublisher.publish(etLogEventType, () -> new JSONObject()
+        nakadiKpiPublisher.publish(etLogEventType, () -> new KpiEvent()
                 .put("event_type", eventType.getName())
                 .put("status", "created")
                 .put("category", eventType.getCategory())
@@ -235,7 +235,7 @@ public class EventTypeService {
                 }
             }
         }
-        nakadiKpiPublisher.publish(etLogEventType, () -> new JSONObject()
+        nakadiKpiPublisher.publish(etLogEventType, () -> new KpiEvent()
                 .put("event_type", eventTypeName)
                 .put("status", "deleted")
                 .put("category", eventType.getCategory())
@@ -290,7 +290,7 @@ public class EventTypeService {
                 LOG.error("Exception occurred when releasing usage of event-type", e);
             }
         }
-        nakadiKpiPublisher.publish(etLogEventType, () -> new JSONObject()
+        nakadiKpiPublisher.publish(etLogEventType, () -> new KpiEvent()
                 .put("event_type", eventTypeName)
                 .put("status", "updated")
                 .put("category", eventTypeBase.getCategory())
@@ -1,41 +1,56 @@
 package org.zalando.nakadi.service;
 
-import org.json.JSONArray;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.zalando.nakadi.domain.BatchItem;
+import org.zalando.nakadi.domain.EventPublishResult;
+import org.zalando.nakadi.domain.EventPublishingStatus;
+import org.zalando.nakadi.metrics.MetricUtils;
 import org.zalando.nakadi.util.FlowIdUtils;
+import org.zalando.nakadi.util.MpscRingBuffer;
 import org.zalando.nakadi.util.UUIDGenerator;
 
+import javax.annotation.PreDestroy;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Collects nakadi's own (KPI) events into bounded per event type buffers and publishes them in batches, either when
+ * a batch is full or when batch collection timeout is reached. Events are serialized once on submission and are
+ * published through {@link EventPublisher#publishTrusted(String, List)}, so they are not parsed nor validated again.
+ * When publishing can't keep up, new events are dropped and counted.
+ */
 @Component
 public class EventsProcessor {
 
     private static final Logger LOG = LoggerFactory.getLogger(EventsProcessor.class);
     private final EventPublisher eventPublisher;
-    private final Map<String, BlockingQueue<JSONObject>> eventTypeEvents;
-    private final ExecutorService executorService;
+    private final Map<String, EventTypeBuffer> eventTypeBuffers;
+    private final ScheduledExecutorService executorService;
     private final UUIDGenerator uuidGenerator;
+    private final Counter droppedEvents;
 
     private final long batchCollectionTimeout;
     private final int batchSize;
-    private final long pollTimeout;
     private final int eventsQueueSize;
 
     @Autowired
     public EventsProcessor(final EventPublisher eventPublisher,
                            final UUIDGenerator uuidGenerator,
+                           final MetricRegistry metricRegistry,
                            @Value("${nakadi.kpi.config.batch-collection-timeout}") final long batchCollectionTimeout,
                            @Value("${nakadi.kpi.config.batch-size}") final int batchSize,
                            @Value("${nakadi.kpi.config.workers}") final int workers,
@@ -45,68 +60,111 @@ public class EventsProcessor {
         this.uuidGenerator = uuidGenerator;
         this.batchCollectionTimeout = batchCollectionTimeout;
         this.batchSize = batchSize;
-        this.pollTimeout = pollTimeout;
         this.eventsQueueSize = eventsQueueSize;
-        this.eventTypeEvents = new ConcurrentHashMap<>();
-        this.executorService = Executors.newFixedThreadPool(workers);
+        this.eventTypeBuffers = new ConcurrentHashMap<>();
+        this.droppedEvents = metricRegistry.counter(MetricUtils.NAKADI_PREFIX + "kpi.droppedEvents");
+        this.executorService = Executors.newScheduledThreadPool(workers);
+        this.executorService.scheduleWithFixedDelay(this::flushDue, pollTimeout, pollTimeout, TimeUnit.MILLISECONDS);
     }
 
-    private void sendEventBatch(final String etName) {
-        LOG.trace("Collecting batch for {} on {}", etName, Thread.currentThread().getName());
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    /**
+     * @param etName Event type to publish event to
+     * @param event  Compact json object without metadata, like {"a":"b"}
+     */
+    void submit(final String etName, final String event) {
+        final EventTypeBuffer buffer = eventTypeBuffers.computeIfAbsent(etName, EventTypeBuffer::new);
+        final BatchItem item = BatchItem.trusted(event, createMetadata());
+        if (!buffer.events.offer(item)) {
+            droppedEvents.inc();
+            LOG.debug("Dropping event for {} due to queue overload", etName);
+            return;
+        }
+        if (buffer.events.size() >= batchSize && !buffer.flushing.get()) {
+            executorService.execute(() -> flush(buffer, false));
+        }
+    }
+
+    long getDroppedEventsCount() {
+        return droppedEvents.getCount();
+    }
+
+    private String createMetadata() {
+        final StringBuilder sb = new StringBuilder(128)
+                .append("{\"occurred_at\":").append(JSONObject.quote(Instant.now().toString()))
+                .append(",\"eid\":").append(JSONObject.quote(uuidGenerator.randomUUID().toString()));
+        final String flowId = FlowIdUtils.peek();
+        if (null != flowId && !flowId.isEmpty()) {
+            sb.append(",\"flow_id\":").append(JSONObject.quote(flowId));
+        }
+        return sb.append('}').toString();
+    }
+
+    private void flushDue() {
         try {
-            final BlockingQueue<JSONObject> events = eventTypeEvents.get(etName);
-            if (events == null) {
-                return;
-            }
+            eventTypeBuffers.values().forEach(buffer -> flush(buffer, true));
+        } catch (final RuntimeException e) {
+            LOG.error("Failed to flush kpi events", e);
+        }
+    }
 
-            final long finishAt = System.currentTimeMillis() + batchCollectionTimeout;
-            int eventsCount = 0;
-            JSONArray jsonArray = null;
-            while (eventsCount != batchSize && System.currentTimeMillis() < finishAt) {
-                try {
-                    final JSONObject event = events.poll(pollTimeout, TimeUnit.MILLISECONDS);
-                    if (event != null) {
-                        if (jsonArray == null) {
-                            jsonArray = new JSONArray();
-                        }
-                        jsonArray.put(event);
-                        eventsCount++;
-                    }
-                } catch (final InterruptedException ie) {
-                    Thread.currentThread().interrupt();
+    private void flush(final EventTypeBuffer buffer, final boolean byTime) {
+        if (!buffer.flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final long now = System.currentTimeMillis();
+            final boolean timedOut = byTime && now - buffer.lastFlushAt >= batchCollectionTimeout;
+            while (buffer.events.size() >= batchSize || (timedOut && buffer.events.size() > 0)) {
+                final List<BatchItem> batch = new ArrayList<>(Math.min(batchSize, buffer.events.size()));
+                buffer.events.drain(batch::add, batchSize);
+                if (batch.isEmpty()) {
+                    // size includes slots that are claimed by producers, but not written yet
+                    break;
                 }
-            }
-            try {
-                if (eventsCount == 0) {
-                    LOG.trace("No kpi events send to {}", etName);
-                    return;
+                publish(buffer.etName, batch);
+                buffer.lastFlushAt = now;
+                if (batch.size() < batchSize) {
+                    break;
                 }
-                eventPublisher.publishInternal(jsonArray.toString(), etName, false);
-                LOG.trace("Published batch of {} to {}", eventsCount, etName);
-            } catch (final Exception e) {
-                LOG.error("Error occurred while publishing events to {}, {}", etName, e.getMessage(), e);
+            }
+            if (timedOut) {
+                buffer.lastFlushAt = now;
             }
         } finally {
-            executorService.submit(() -> sendEventBatch(etName));
+            buffer.flushing.set(false);
         }
     }
 
-    void enrichAndSubmit(final String etName, final JSONObject event) {
-        final JSONObject metadata = new JSONObject()
-                .put("occurred_at", Instant.now())
-                .put("eid", uuidGenerator.randomUUID())
-                .put("flow_id", FlowIdUtils.peek());
-        event.put("metadata", metadata);
-
-        final BlockingQueue<JSONObject> events =
-                eventTypeEvents.computeIfAbsent(etName, etn -> {
-                    LOG.trace("Schedule events collection");
-                    executorService.submit(() -> sendEventBatch(etName));
-                    return new ArrayBlockingQueue<>(eventsQueueSize);
-                });
-
-        if (!events.offer(event)) {
-            LOG.warn("Rejecting events to be queued for {} due to queue overload", etName);
+    private void publish(final String etName, final List<BatchItem> batch) {
+        try {
+            final EventPublishResult result = eventPublisher.publishTrusted(etName, batch);
+            if (result.getStatus() != EventPublishingStatus.SUBMITTED) {
+                LOG.warn("Failed to publish batch of {} kpi events to {}: {}", batch.size(), etName,
+                        result.getStatus());
+            } else {
+                LOG.trace("Published batch of {} to {}", batch.size(), etName);
+            }
+        } catch (final Exception e) {
+            LOG.error("Error occurred while publishing events to {}, {}", etName, e.getMessage(), e);
+        }
+    }
+
+    private class EventTypeBuffer {
+        private final String etName;
+        private final MpscRingBuffer<BatchItem> events;
+        private final AtomicBoolean flushing;
+        private volatile long lastFlushAt;
+
+        private EventTypeBuffer(final String etName) {
+            this.etName = etName;
+            this.events = new MpscRingBuffer<>(eventsQueueSize);
+            this.flushing = new AtomicBoolean(false);
+            this.lastFlushAt = System.currentTimeMillis();
         }
     }
 
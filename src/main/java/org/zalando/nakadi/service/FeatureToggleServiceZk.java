@@ -1,7 +1,9 @@
 package org.zalando.nakadi.service;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.recipes.cache.PathChildrenCache;
+import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.KeeperException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,34 +11,65 @@ import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
 
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+/**
+ * Feature toggles stored in zookeeper. Enabled features are kept in an immutable snapshot, that is rebuilt from the
+ * children cache on every change of the cache. Periodically the toggles are read from zookeeper directly, in case
+ * some change was missed by the cache. Checking a feature is therefore a read of the snapshot without accessing the
+ * cache.
+ */
 public class FeatureToggleServiceZk implements FeatureToggleService {
 
     private static final Logger LOG = LoggerFactory.getLogger(FeatureToggleService.class);
     private static final String PREFIX = "/nakadi/feature_toggle";
+    private static final long DEFAULT_RECONCILE_INTERVAL_MS = 30000;
 
     private final ZooKeeperHolder zkHolder;
     private PathChildrenCache featuresCache;
     private final Map<Feature, String> featurePaths;
+    private final Map<String, Feature> featuresById;
+    private final ScheduledExecutorService reconciler;
+    // never modified after it is published, a new set is created on every rebuild
+    private volatile EnumSet<Feature> enabledFeatures = EnumSet.noneOf(Feature.class);
 
     public FeatureToggleServiceZk(final ZooKeeperHolder zkHolder) {
+        this(zkHolder, DEFAULT_RECONCILE_INTERVAL_MS);
+    }
+
+    @VisibleForTesting
+    FeatureToggleServiceZk(final ZooKeeperHolder zkHolder, final long reconcileIntervalMs) {
         this.zkHolder = zkHolder;
+        featurePaths = new HashMap<>(Feature.values().length);
+        featuresById = new HashMap<>(Feature.values().length);
+        for (final Feature feature: Feature.values()) {
+            featurePaths.put(feature, PREFIX + "/" + feature.getId());
+            featuresById.put(feature.getId(), feature);
+        }
         try {
             this.featuresCache = new PathChildrenCache(zkHolder.get(), PREFIX, false);
-            this.featuresCache.start();
+            this.featuresCache.getListenable().addListener((curator, event) -> rebuildSnapshot());
+            this.featuresCache.start(PathChildrenCache.StartMode.BUILD_INITIAL_CACHE);
+            rebuildSnapshot();
         } catch (final Exception e) {
             LOG.error(e.getMessage(), e);
         }
-        featurePaths = new HashMap<>(Feature.values().length);
-        for (final Feature feature: Feature.values()) {
-            featurePaths.put(feature, PREFIX + "/" + feature.getId());
-        }
+        this.reconciler = Executors.newSingleThreadScheduledExecutor();
+        this.reconciler.scheduleWithFixedDelay(
+                this::reconcile, reconcileIntervalMs, reconcileIntervalMs, TimeUnit.MILLISECONDS);
     }
 
     @PreDestroy
     public void cleanUp() {
+        reconciler.shutdownNow();
         try {
             this.featuresCache.close();
         } catch (final IOException e) {
@@ -45,12 +78,72 @@ public class FeatureToggleServiceZk implements FeatureToggleService {
     }
 
     public boolean isFeatureEnabled(final Feature feature) {
+        return enabledFeatures.contains(feature);
+    }
+
+    /**
+     * Replaces snapshot of enabled features with the current content of the cache. Rebuilds are serialized, so that
+     * a rebuild that has read the cache earlier can not overwrite the result of a later one.
+     */
+    @VisibleForTesting
+    synchronized void rebuildSnapshot() {
         try {
-            return featuresCache.getCurrentData(getPath(feature)) != null;
+            publish(toFeatures(featuresCache.getCurrentData().stream()
+                    .map(child -> ZKPaths.getNodeFromPath(child.getPath()))
+                    .collect(Collectors.toList())));
+        } catch (final RuntimeException e) {
+            LOG.warn("Error occurred when reading feature toggles", e);
+        }
+    }
+
+    /**
+     * Replaces snapshot of enabled features with the toggles read from zookeeper, bypassing the cache. If the cache
+     * missed some change, it is rebuilt as well, so that next rebuilds from the cache do not bring stale state back.
+     */
+    @VisibleForTesting
+    synchronized void reconcile() {
+        final EnumSet<Feature> features;
+        try {
+            features = toFeatures(listFeatureNodes());
         } catch (final Exception e) {
-            LOG.warn("Error occurred when checking if feature '" + feature.getId() + "' is toggled", e);
-            return false;
+            LOG.warn("Error occurred when reading feature toggles from zookeeper", e);
+            return;
+        }
+        final boolean cacheOutdated = !features.equals(enabledFeatures);
+        publish(features);
+        if (cacheOutdated) {
+            try {
+                featuresCache.rebuild();
+            } catch (final Exception e) {
+                LOG.warn("Failed to rebuild feature toggles cache", e);
+            }
+        }
+    }
+
+    private List<String> listFeatureNodes() throws Exception {
+        try {
+            return zkHolder.get().getChildren().forPath(PREFIX);
+        } catch (final KeeperException.NoNodeException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private EnumSet<Feature> toFeatures(final List<String> nodes) {
+        final EnumSet<Feature> features = EnumSet.noneOf(Feature.class);
+        for (final String node : nodes) {
+            final Feature feature = featuresById.get(node);
+            if (null != feature) {
+                features.add(feature);
+            }
+        }
+        return features;
+    }
+
+    private void publish(final EnumSet<Feature> features) {
+        if (!features.equals(enabledFeatures)) {
+            LOG.info("Enabled features changed to {}", features);
         }
+        enabledFeatures = features;
     }
 
     public void setFeature(final FeatureWrapper feature) {
@@ -0,0 +1,40 @@
+package org.zalando.nakadi.service;
+
+import org.json.JSONObject;
+
+/**
+ * KPI event that is written directly to compact json object without metadata, like {"a":"b","c":1}, so that no
+ * intermediate JSONObject is built and serialized afterwards. Fields with null values are skipped, the same way as
+ * JSONObject skips them.
+ */
+public class KpiEvent {
+
+    private final StringBuilder json = new StringBuilder(256).append('{');
+
+    public KpiEvent put(final String name, final String value) {
+        if (null != value) {
+            appendName(name).append(JSONObject.quote(value));
+        }
+        return this;
+    }
+
+    public KpiEvent put(final String name, final Enum<?> value) {
+        return put(name, null == value ? null : value.toString());
+    }
+
+    public KpiEvent put(final String name, final long value) {
+        appendName(name).append(value);
+        return this;
+    }
+
+    public String toJson() {
+        return json.toString() + '}';
+    }
+
+    private StringBuilder appendName(final String name) {
+        if (json.length() > 1) {
+            json.append(',');
+        }
+        return json.append(JSONObject.quote(name)).append(':');
+    }
+}
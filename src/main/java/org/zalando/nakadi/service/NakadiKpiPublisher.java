@@ -1,9 +1,11 @@
 package org.zalando.nakadi.service;
 
 import com.google.common.base.Charsets;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,11 +19,14 @@ import java.util.function.Supplier;
 public class NakadiKpiPublisher {
 
     private static final Logger LOG = LoggerFactory.getLogger(NakadiKpiPublisher.class);
+    // hashes of the most recently used values are kept, as KPI events are produced for a limited set of clients
+    private static final int HASHES_CACHE_SIZE = 10000;
 
     private final ThreadLocal<MessageDigest> messageDigestThreadLocal;
     private final FeatureToggleService featureToggleService;
     private final EventsProcessor eventsProcessor;
     private final byte[] salt;
+    private final LoadingCache<String, String> hashes;
 
     @Autowired
     protected NakadiKpiPublisher(final FeatureToggleService featureToggleService,
@@ -31,22 +36,28 @@ public class NakadiKpiPublisher {
         this.eventsProcessor = eventsProcessor;
         this.salt = salt.getBytes(Charsets.UTF_8);
         this.messageDigestThreadLocal = ThreadLocal.withInitial(DigestUtils::getSha256Digest);
+        this.hashes = CacheBuilder.newBuilder()
+                .maximumSize(HASHES_CACHE_SIZE)
+                .build(CacheLoader.from(this::calculateHash));
     }
 
-    public void publish(final String etName, final Supplier<JSONObject> eventSupplier) {
+    public void publish(final String etName, final Supplier<KpiEvent> eventSupplier) {
         try {
             if (!featureToggleService.isFeatureEnabled(FeatureToggleService.Feature.KPI_COLLECTION)) {
                 return;
             }
 
-            final JSONObject event = eventSupplier.get();
-            eventsProcessor.enrichAndSubmit(etName, event);
+            eventsProcessor.submit(etName, eventSupplier.get().toJson());
         } catch (final Exception e) {
             LOG.error("Error occurred when submitting KPI event for publishing", e);
         }
     }
 
     public String hash(final String value) {
+        return hashes.getUnchecked(value);
+    }
+
+    private String calculateHash(final String value) {
         final MessageDigest messageDigest = messageDigestThreadLocal.get();
         messageDigest.reset();
         messageDigest.update(salt);
@@ -0,0 +1,186 @@
+package org.zalando.nakadi.service;
+
+import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.Timeline;
+import org.zalando.nakadi.exceptions.runtime.InvalidCursorOperation;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.zalando.nakadi.exceptions.runtime.InvalidCursorOperation.Reason.TIMELINE_NOT_FOUND;
+
+/**
+ * Number of events of one partition in every timeline of event type, together with prefix sums of these numbers.
+ * Shifting a cursor by any number of events across timelines is resolved with a binary search over prefix sums,
+ * instead of moving through timelines one by one, and distance between cursors is a difference of prefix sums.
+ *
+ * Shifting gives exactly the same results as moving through timelines one by one: cursor moves to the next timeline
+ * only when it goes beyond the last event of the current one, and it can not go beyond the beginning of the first
+ * timeline or the end of the last closed timeline if there is no next one.
+ */
+class PartitionTimelines {
+
+    private static final long OPEN = -1L;
+
+    private final List<Timeline> source;
+    private final String partition;
+    private final Timeline[] timelines;
+    private final int[] orders;
+    // number of events in timeline, or OPEN if timeline has no latest position yet
+    private final long[] totals;
+    // prefixSums[i] - number of events in timelines with indexes [0, i)
+    private final long[] prefixSums;
+    // index of the first timeline of the sequence of timelines with consecutive orders that includes timeline i
+    private final int[] consecutiveFrom;
+    // index of the first open timeline with index >= i, or timelines.length
+    private final int[] nextOpen;
+
+    PartitionTimelines(final List<Timeline> source, final String partition) {
+        this.source = source;
+        this.partition = partition;
+        this.timelines = source.toArray(new Timeline[source.size()]);
+        Arrays.sort(timelines, Comparator.comparingInt(Timeline::getOrder));
+
+        final int size = timelines.length;
+        this.orders = new int[size];
+        this.totals = new long[size];
+        this.prefixSums = new long[size + 1];
+        this.consecutiveFrom = new int[size];
+        this.nextOpen = new int[size + 1];
+        for (int i = 0; i < size; ++i) {
+            orders[i] = timelines[i].getOrder();
+            totals[i] = null == timelines[i].getLatestPosition() ? OPEN : StaticStorageWorkerFactory
+                    .get(timelines[i]).totalEventsInPartition(timelines[i], partition);
+            prefixSums[i + 1] = prefixSums[i] + Math.max(totals[i], 0);
+            consecutiveFrom[i] = i > 0 && orders[i - 1] + 1 == orders[i] ? consecutiveFrom[i - 1] : i;
+        }
+        nextOpen[size] = size;
+        for (int i = size - 1; i >= 0; --i) {
+            nextOpen[i] = totals[i] == OPEN ? i : nextOpen[i + 1];
+        }
+    }
+
+    /**
+     * @return true if index was built from the same timelines and may be used to shift cursors of the partition
+     */
+    boolean isBuiltFrom(final List<Timeline> currentTimelines) {
+        return source == currentTimelines || source.equals(currentTimelines);
+    }
+
+    /**
+     * Distance between cursors of the partition. Events of the starting timeline are never counted, the same way as
+     * they were not counted when summing up timelines one by one.
+     */
+    long distance(final NakadiCursor initialCursor, final NakadiCursor finalCursor) {
+        final long result = CursorOperationsService.numberOfEventsBeforeCursor(finalCursor)
+                - CursorOperationsService.numberOfEventsBeforeCursor(initialCursor);
+        final int initialOrder = initialCursor.getTimeline().getOrder();
+        final int finalOrder = finalCursor.getTimeline().getOrder();
+        if (initialOrder < finalOrder) {
+            return result + eventsInTimelines(initialOrder, finalOrder);
+        } else if (initialOrder > finalOrder) {
+            return result - eventsInTimelines(finalOrder, initialOrder);
+        }
+        return result;
+    }
+
+    /**
+     * @return number of events in timelines with orders [fromOrder, toOrder), except for the starting timeline
+     */
+    private long eventsInTimelines(final int fromOrder, final int toOrder) {
+        final int from = Math.max(fromOrder, Timeline.STARTING_ORDER + 1);
+        if (from >= toOrder) {
+            return 0;
+        }
+        final int first = indexOf(from);
+        final int last = indexOf(toOrder - 1);
+        checkConsecutive(first, last);
+        return prefixSums[last + 1] - prefixSums[first];
+    }
+
+    NakadiCursor moveForward(final NakadiCursor cursor, final long shift) {
+        final Timeline timeline = cursor.getTimeline();
+        if (null == timeline.getLatestPosition()) {
+            return cursor.shiftWithinTimeline(shift);
+        }
+        final long toTimelineEnd = StaticStorageWorkerFactory.get(timeline).totalEventsInPartition(timeline, partition)
+                - 1 - CursorOperationsService.numberOfEventsBeforeCursor(cursor);
+        if (shift <= toTimelineEnd) {
+            return cursor.shiftWithinTimeline(shift);
+        }
+        // the rest is counted from the position before the first event of the next timeline
+        final long stillToAdd = shift - toTimelineEnd;
+        final int first = indexOf(timeline.getOrder() + 1);
+        final long target = prefixSums[first] + stillToAdd;
+
+        // the first closed timeline that contains target position, cursor can not go beyond open timeline
+        final int landing = Math.min(lowestIndexWithPrefixSumAtLeast(first + 1, target) - 1, nextOpen[first]);
+        if (landing == timelines.length) {
+            // there is no timeline after the last closed one
+            throw new InvalidCursorOperation(TIMELINE_NOT_FOUND);
+        }
+        checkConsecutive(first, landing);
+        return NakadiCursor.of(timelines[landing], partition,
+                StaticStorageWorkerFactory.get(timelines[landing]).getBeforeFirstOffset())
+                .shiftWithinTimeline(target - prefixSums[landing]);
+    }
+
+    NakadiCursor moveBack(final NakadiCursor cursor, final long shift) {
+        final long toMoveBack = -shift;
+        final long eventsBefore = CursorOperationsService.numberOfEventsBeforeCursor(cursor);
+        if (eventsBefore >= toMoveBack) {
+            return cursor.shiftWithinTimeline(-toMoveBack);
+        }
+        // the rest is counted from the last event of the previous timeline
+        final long stillToMoveBack = toMoveBack - (eventsBefore + 1);
+        if (stillToMoveBack == 0) {
+            // position before the first event of the timeline
+            return cursor.shiftWithinTimeline(-toMoveBack);
+        }
+        final int last = indexOf(cursor.getTimeline().getOrder() - 1);
+        final long target = prefixSums[last + 1] - stillToMoveBack;
+
+        // the last timeline that starts at or before target position
+        final int landing = lowestIndexWithPrefixSumAtLeast(0, target + 1) - 1;
+        if (landing < 0) {
+            // there is no timeline before the first one
+            throw new InvalidCursorOperation(TIMELINE_NOT_FOUND);
+        }
+        checkConsecutive(landing, last);
+        // When moving back latest position is always defined
+        return timelines[landing].getLatestPosition().toNakadiCursor(timelines[landing], partition)
+                .shiftWithinTimeline(-(prefixSums[landing + 1] - target));
+    }
+
+    /**
+     * @return the lowest index i from [from, timelines.length] with prefixSums[i] >= value, or timelines.length + 1
+     */
+    private int lowestIndexWithPrefixSumAtLeast(final int from, final long value) {
+        int low = from;
+        int high = timelines.length + 1;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (prefixSums[middle] >= value) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private int indexOf(final int order) {
+        final int index = Arrays.binarySearch(orders, order);
+        if (index < 0) {
+            throw new InvalidCursorOperation(TIMELINE_NOT_FOUND);
+        }
+        return index;
+    }
+
+    private void checkConsecutive(final int fromIndex, final int toIndex) {
+        if (consecutiveFrom[toIndex] > fromIndex) {
+            throw new InvalidCursorOperation(TIMELINE_NOT_FOUND);
+        }
+    }
+}
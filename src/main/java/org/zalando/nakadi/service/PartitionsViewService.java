@@ -0,0 +1,264 @@
+package org.zalando.nakadi.service;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.zalando.nakadi.domain.PartitionStatistics;
+import org.zalando.nakadi.domain.Timeline;
+import org.zalando.nakadi.exceptions.InternalNakadiException;
+import org.zalando.nakadi.exceptions.NoSuchEventTypeException;
+import org.zalando.nakadi.exceptions.runtime.InconsistentStateException;
+import org.zalando.nakadi.exceptions.runtime.MyNakadiRuntimeException1;
+import org.zalando.nakadi.exceptions.runtime.ServiceTemporarilyUnavailableException;
+import org.zalando.nakadi.repository.TopicRepository;
+import org.zalando.nakadi.service.timeline.TimelineService;
+import org.zalando.nakadi.view.EventTypePartitionView;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides begin and end offsets of event type partitions. Statistics are kept per timeline in a map keyed by
+ * partition and are reloaded from storage not more often than once per {@code refreshMs}. Expired timelines that are
+ * requested together are reloaded with one call per storage, and concurrent requests for the same timeline wait for
+ * a single load instead of querying storage on their own.
+ *
+ * Partition names are kept separately and much longer, as they do not change within a timeline. They are cached by
+ * topic, so a new timeline is looked up on its own, and expire after {@code namesRefreshMs} to pick up partitions
+ * that were added to a topic outside of nakadi.
+ */
+@Service
+public class PartitionsViewService {
+
+    private final TimelineService timelineService;
+    private final CursorConverter cursorConverter;
+    private final Cache<TopicKey, Map<String, PartitionStatistics>> statistics;
+    private final Cache<TopicKey, List<String>> partitionNames;
+    private final ConcurrentMap<TopicKey, CompletableFuture<Map<String, PartitionStatistics>>> inFlight =
+            new ConcurrentHashMap<>();
+
+    @Autowired
+    public PartitionsViewService(
+            final TimelineService timelineService,
+            final CursorConverter cursorConverter,
+            @Value("${nakadi.partitions.statistics.refreshMs:1000}") final long refreshMs,
+            @Value("${nakadi.partitions.statistics.maxTimelines:10000}") final long maxTimelines,
+            @Value("${nakadi.partitions.names.refreshMs:600000}") final long namesRefreshMs) {
+        this(timelineService, cursorConverter, refreshMs, maxTimelines, namesRefreshMs, Ticker.systemTicker());
+    }
+
+    PartitionsViewService(
+            final TimelineService timelineService,
+            final CursorConverter cursorConverter,
+            final long refreshMs,
+            final long maxTimelines,
+            final long namesRefreshMs,
+            final Ticker ticker) {
+        this.timelineService = timelineService;
+        this.cursorConverter = cursorConverter;
+        this.statistics = CacheBuilder.newBuilder()
+                .expireAfterWrite(refreshMs, TimeUnit.MILLISECONDS)
+                .maximumSize(maxTimelines)
+                .ticker(ticker)
+                .build();
+        this.partitionNames = CacheBuilder.newBuilder()
+                .expireAfterWrite(namesRefreshMs, TimeUnit.MILLISECONDS)
+                .maximumSize(maxTimelines)
+                .ticker(ticker)
+                .build();
+    }
+
+    public List<EventTypePartitionView> getPartitionsView(final String eventTypeName)
+            throws InternalNakadiException, NoSuchEventTypeException, ServiceTemporarilyUnavailableException {
+        final List<Timeline> timelines = timelineService.getActiveTimelinesOrdered(eventTypeName);
+        final Map<TopicKey, Map<String, PartitionStatistics>> loaded = loadFirstAndLast(timelines);
+        final Map<String, PartitionStatistics> firstStats = loaded.get(new TopicKey(timelines.get(0)));
+        final Map<String, PartitionStatistics> lastStats =
+                loaded.get(new TopicKey(timelines.get(timelines.size() - 1)));
+
+        final List<EventTypePartitionView> result = new ArrayList<>(firstStats.size());
+        for (final PartitionStatistics first : firstStats.values()) {
+            result.add(toView(eventTypeName, first, lastStats.get(first.getPartition())));
+        }
+        return result;
+    }
+
+    public Optional<EventTypePartitionView> getPartitionView(final String eventTypeName, final String partition)
+            throws InternalNakadiException, NoSuchEventTypeException, ServiceTemporarilyUnavailableException {
+        final List<Timeline> timelines = timelineService.getActiveTimelinesOrdered(eventTypeName);
+        final Map<TopicKey, Map<String, PartitionStatistics>> loaded = loadFirstAndLast(timelines);
+        final PartitionStatistics first = loaded.get(new TopicKey(timelines.get(0))).get(partition);
+        if (null == first) {
+            return Optional.empty();
+        }
+        final PartitionStatistics last =
+                loaded.get(new TopicKey(timelines.get(timelines.size() - 1))).get(partition);
+        return Optional.of(toView(eventTypeName, first, last));
+    }
+
+    /**
+     * Returns names of partitions of each of the timelines. Names are listed in storage once per topic and are not
+     * taken from statistics, that are refreshed much more often.
+     */
+    public Map<Timeline, List<String>> getPartitionNames(final Collection<Timeline> timelines)
+            throws ServiceTemporarilyUnavailableException {
+        final Map<Timeline, List<String>> result = new LinkedHashMap<>();
+        for (final Timeline timeline : timelines) {
+            result.put(timeline, getPartitionNames(timeline));
+        }
+        return result;
+    }
+
+    private List<String> getPartitionNames(final Timeline timeline) throws ServiceTemporarilyUnavailableException {
+        try {
+            return partitionNames.get(new TopicKey(timeline), () -> ImmutableList.copyOf(
+                    timelineService.getTopicRepository(timeline).listPartitionNames(timeline.getTopic())));
+        } catch (final ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof MyNakadiRuntimeException1) {
+                throw (MyNakadiRuntimeException1) e.getCause();
+            }
+            throw new ServiceTemporarilyUnavailableException("Failed to list partitions", e.getCause());
+        }
+    }
+
+    private EventTypePartitionView toView(
+            final String eventTypeName, final PartitionStatistics first, final PartitionStatistics last) {
+        if (null == last) {
+            throw new InconsistentStateException("Partition " + first.getPartition() + " of event type "
+                    + eventTypeName + " is missing in the latest timeline");
+        }
+        return new EventTypePartitionView(
+                eventTypeName,
+                first.getPartition(),
+                cursorConverter.convert(first.getFirst()).getOffset(),
+                cursorConverter.convert(last.getLast()).getOffset());
+    }
+
+    private Map<TopicKey, Map<String, PartitionStatistics>> loadFirstAndLast(final List<Timeline> timelines)
+            throws ServiceTemporarilyUnavailableException {
+        // only the first and the last timelines are needed to get the begin and the end of partitions
+        return loadStatistics(timelines.size() == 1 ?
+                ImmutableList.of(new TopicKey(timelines.get(0))) :
+                ImmutableList.of(new TopicKey(timelines.get(0)), new TopicKey(timelines.get(timelines.size() - 1))));
+    }
+
+    private Map<TopicKey, Map<String, PartitionStatistics>> loadStatistics(final List<TopicKey> keys)
+            throws ServiceTemporarilyUnavailableException {
+        final Map<TopicKey, Map<String, PartitionStatistics>> result = new HashMap<>();
+        final Map<TopicKey, CompletableFuture<Map<String, PartitionStatistics>>> ownLoads = new HashMap<>();
+        final Map<TopicKey, CompletableFuture<Map<String, PartitionStatistics>>> otherLoads = new HashMap<>();
+        for (final TopicKey key : keys) {
+            final Map<String, PartitionStatistics> cached = statistics.getIfPresent(key);
+            if (null != cached) {
+                result.put(key, cached);
+                continue;
+            }
+            final CompletableFuture<Map<String, PartitionStatistics>> future = new CompletableFuture<>();
+            final CompletableFuture<Map<String, PartitionStatistics>> existing = inFlight.putIfAbsent(key, future);
+            if (null == existing) {
+                ownLoads.put(key, future);
+            } else {
+                otherLoads.put(key, existing);
+            }
+        }
+        if (!ownLoads.isEmpty()) {
+            result.putAll(load(ownLoads));
+        }
+        for (final Map.Entry<TopicKey, CompletableFuture<Map<String, PartitionStatistics>>> entry
+                : otherLoads.entrySet()) {
+            result.put(entry.getKey(), waitFor(entry.getValue()));
+        }
+        return result;
+    }
+
+    private Map<TopicKey, Map<String, PartitionStatistics>> load(
+            final Map<TopicKey, CompletableFuture<Map<String, PartitionStatistics>>> loads)
+            throws ServiceTemporarilyUnavailableException {
+        try {
+            final Map<TopicRepository, List<Timeline>> timelinesByRepository = new HashMap<>();
+            final Map<TopicKey, Map<String, PartitionStatistics>> result = new HashMap<>();
+            for (final TopicKey key : loads.keySet()) {
+                timelinesByRepository
+                        .computeIfAbsent(timelineService.getTopicRepository(key.timeline), r -> new ArrayList<>())
+                        .add(key.timeline);
+                result.put(key, new LinkedHashMap<>());
+            }
+            for (final Map.Entry<TopicRepository, List<Timeline>> entry : timelinesByRepository.entrySet()) {
+                for (final PartitionStatistics stats : entry.getKey().loadTopicStatistics(entry.getValue())) {
+                    result.get(new TopicKey(stats.getTimeline())).put(stats.getPartition(), stats);
+                }
+            }
+            result.forEach((key, value) -> {
+                statistics.put(key, value);
+                loads.get(key).complete(value);
+            });
+            return result;
+        } catch (final RuntimeException e) {
+            loads.values().forEach(future -> future.completeExceptionally(e));
+            throw e;
+        } finally {
+            loads.forEach(inFlight::remove);
+        }
+    }
+
+    private static Map<String, PartitionStatistics> waitFor(
+            final CompletableFuture<Map<String, PartitionStatistics>> future)
+            throws ServiceTemporarilyUnavailableException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceTemporarilyUnavailableException("Interrupted while loading partition statistics", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof MyNakadiRuntimeException1) {
+                throw (MyNakadiRuntimeException1) e.getCause();
+            }
+            throw new ServiceTemporarilyUnavailableException("Failed to load partition statistics", e.getCause());
+        }
+    }
+
+    /**
+     * Statistics only depend on the topic of a timeline, while timeline objects are compared by all their fields.
+     */
+    private static class TopicKey {
+        private final Timeline timeline;
+
+        private TopicKey(final Timeline timeline) {
+            this.timeline = timeline;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TopicKey)) {
+                return false;
+            }
+            final Timeline that = ((TopicKey) o).timeline;
+            return Objects.equals(timeline.getStorage().getId(), that.getStorage().getId())
+                    && Objects.equals(timeline.getTopic(), that.getTopic());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(timeline.getStorage().getId(), timeline.getTopic());
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package org.zalando.nakadi.service;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.zalando.nakadi.metrics.MetricUtils;
+
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Compresses event streams for consumers that ask for it with {@code Accept-Encoding: gzip} or {@code deflate}. Every
+ * stream has its own {@link Deflater}, flushing the compressed stream does {@link Deflater#SYNC_FLUSH}, so everything
+ * written before a flush can be decompressed by consumer right away, the same as without compression.
+ *
+ * The number of compressed streams per node is limited, streams above the limit are sent without compression.
+ */
+@Component
+public class StreamCompressionService {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamCompressionService.class);
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] GZIP_HEADER = new byte[]{0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final MetricRegistry streamMetrics;
+    private final int compressionLevel;
+    private final int maxCompressedStreams;
+    private final AtomicInteger compressedStreams = new AtomicInteger();
+    private final Counter rejectedStreams;
+
+    @Autowired
+    public StreamCompressionService(
+            @Qualifier("streamMetricsRegistry") final MetricRegistry streamMetrics,
+            final MetricRegistry metricRegistry,
+            @Value("${nakadi.stream.compression.level:6}") final int compressionLevel,
+            @Value("${nakadi.stream.compression.maxStreams:1000}") final int maxCompressedStreams) {
+        if (compressionLevel < Deflater.BEST_SPEED || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level should be between " + Deflater.BEST_SPEED +
+                    " and " + Deflater.BEST_COMPRESSION + ", but was " + compressionLevel);
+        }
+        this.streamMetrics = streamMetrics;
+        this.compressionLevel = compressionLevel;
+        this.maxCompressedStreams = maxCompressedStreams;
+        this.rejectedStreams = metricRegistry.counter(MetricUtils.NAKADI_PREFIX + "general.compressedStreamsRejected");
+    }
+
+    /**
+     * Chooses compression for the stream according to {@code Accept-Encoding} header of the request and sets
+     * {@code Content-Encoding} header of the response. Must be called before anything is written to the response.
+     *
+     * @param compressedBytesMetricName name of the meter of bytes that are sent after compression
+     * @return stream that compresses the data and writes it to {@code out}, or {@code out} itself if consumer did not
+     * ask for compression or there are too many compressed streams. The returned stream must be closed.
+     */
+    public OutputStream compress(final HttpServletRequest request, final HttpServletResponse response,
+                                 final OutputStream out, final String compressedBytesMetricName) {
+        final String encoding = selectEncoding(request.getHeaders("Accept-Encoding"));
+        if (null == encoding) {
+            return out;
+        }
+        if (compressedStreams.incrementAndGet() > maxCompressedStreams) {
+            compressedStreams.decrementAndGet();
+            rejectedStreams.inc();
+            LOG.debug("Limit of {} compressed streams is reached, stream is sent without compression",
+                    maxCompressedStreams);
+            return out;
+        }
+        response.setHeader("Content-Encoding", encoding);
+        response.addHeader("Vary", "Accept-Encoding");
+        return new CompressedOutputStream(
+                new CountingOutputStream(out, streamMetrics.meter(compressedBytesMetricName)),
+                GZIP.equals(encoding));
+    }
+
+    @VisibleForTesting
+    int getCompressedStreams() {
+        return compressedStreams.get();
+    }
+
+    /**
+     * @return gzip or deflate, whichever is accepted with gzip preferred, or null if none of them is accepted
+     */
+    @VisibleForTesting
+    static String selectEncoding(@Nullable final Enumeration<String> acceptEncodingHeaders) {
+        if (null == acceptEncodingHeaders) {
+            return null;
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        for (final String header : Collections.list(acceptEncodingHeaders)) {
+            for (final String element : header.split(",")) {
+                final String[] parts = element.split(";");
+                final String coding = parts[0].trim().toLowerCase(Locale.ENGLISH);
+                final boolean accepted = isAccepted(parts);
+                if (GZIP.equals(coding)) {
+                    gzip = accepted;
+                } else if (DEFLATE.equals(coding)) {
+                    deflate = accepted;
+                }
+            }
+        }
+        return gzip ? GZIP : (deflate ? DEFLATE : null);
+    }
+
+    private static boolean isAccepted(final String[] codingParts) {
+        for (int i = 1; i < codingParts.length; ++i) {
+            final String parameter = codingParts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2)) > 0;
+                } catch (final NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private class CompressedOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final Deflater deflater;
+        private final DeflaterOutputStream deflaterStream;
+        private final CRC32 crc;
+        private long uncompressedSize;
+        private boolean headerWritten;
+        private boolean closed;
+
+        private CompressedOutputStream(final OutputStream out, final boolean gzip) {
+            this.out = out;
+            // gzip format is written here around raw deflate data, so that compression level can be set
+            this.deflater = new Deflater(compressionLevel, gzip);
+            this.deflaterStream = new DeflaterOutputStream(out, deflater, BUFFER_SIZE, true);
+            this.crc = gzip ? new CRC32() : null;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            writeHeaderIfNeeded();
+            deflaterStream.write(b);
+            if (null != crc) {
+                crc.update(b);
+            }
+            ++uncompressedSize;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            writeHeaderIfNeeded();
+            deflaterStream.write(b, off, len);
+            if (null != crc) {
+                crc.update(b, off, len);
+            }
+            uncompressedSize += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeHeaderIfNeeded();
+            deflaterStream.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                writeHeaderIfNeeded();
+                deflaterStream.finish();
+                if (null != crc) {
+                    writeIntLE(crc.getValue());
+                    writeIntLE(uncompressedSize);
+                }
+                out.close();
+            } finally {
+                deflater.end();
+                compressedStreams.decrementAndGet();
+            }
+        }
+
+        private void writeHeaderIfNeeded() throws IOException {
+            if (!headerWritten) {
+                headerWritten = true;
+                if (null != crc) {
+                    out.write(GZIP_HEADER);
+                }
+            }
+        }
+
+        private void writeIntLE(final long value) throws IOException {
+            out.write((int) (value & 0xff));
+            out.write((int) ((value >> 8) & 0xff));
+            out.write((int) ((value >> 16) & 0xff));
+            out.write((int) ((value >> 24) & 0xff));
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final Meter bytesMeter;
+
+        private CountingOutputStream(final OutputStream out, final Meter bytesMeter) {
+            this.out = out;
+            this.bytesMeter = bytesMeter;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            bytesMeter.mark();
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            bytesMeter.mark(len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
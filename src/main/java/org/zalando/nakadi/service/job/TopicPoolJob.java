@@ -0,0 +1,123 @@
+package org.zalando.nakadi.service.job;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.zalando.nakadi.config.NakadiSettings;
+import org.zalando.nakadi.domain.DefaultStorage;
+import org.zalando.nakadi.domain.Storage;
+import org.zalando.nakadi.exceptions.TopicCreationException;
+import org.zalando.nakadi.exceptions.TopicDeletionException;
+import org.zalando.nakadi.exceptions.runtime.RepositoryProblemException;
+import org.zalando.nakadi.repository.TopicRepository;
+import org.zalando.nakadi.repository.TopicRepositoryHolder;
+import org.zalando.nakadi.repository.db.TopicPoolDbRepository;
+import org.zalando.nakadi.service.FeatureToggleService;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Creates topics in advance for the default storage, so that event type creation only has to bind one of them to
+ * the first timeline instead of waiting for the storage to create a topic. The pool keeps {@code size} topics for
+ * every partition count from {@code partitions}.
+ */
+@Service
+public class TopicPoolJob {
+
+    private static final String JOB_NAME = "topic-pool";
+
+    private static final Logger LOG = LoggerFactory.getLogger(TopicPoolJob.class);
+
+    private final TopicRepositoryHolder topicRepositoryHolder;
+    private final DefaultStorage defaultStorage;
+    private final TopicPoolDbRepository topicPoolDbRepository;
+    private final NakadiSettings nakadiSettings;
+    private final FeatureToggleService featureToggleService;
+    private final ExclusiveJobWrapper jobWrapper;
+    private final int size;
+    private final List<Integer> partitions;
+
+    @Autowired
+    public TopicPoolJob(final TopicRepositoryHolder topicRepositoryHolder,
+                        @Qualifier("default_storage") final DefaultStorage defaultStorage,
+                        final TopicPoolDbRepository topicPoolDbRepository,
+                        final NakadiSettings nakadiSettings,
+                        final FeatureToggleService featureToggleService,
+                        final JobWrapperFactory jobWrapperFactory,
+                        @Value("${nakadi.jobs.topicPool.runPeriodMs}") final int periodMs,
+                        @Value("${nakadi.jobs.topicPool.size}") final int size,
+                        @Value("${nakadi.jobs.topicPool.partitions}") final String partitions) {
+        this.topicRepositoryHolder = topicRepositoryHolder;
+        this.defaultStorage = defaultStorage;
+        this.topicPoolDbRepository = topicPoolDbRepository;
+        this.nakadiSettings = nakadiSettings;
+        this.featureToggleService = featureToggleService;
+        this.jobWrapper = jobWrapperFactory.createExclusiveJobWrapper(JOB_NAME, periodMs);
+        this.size = size;
+        this.partitions = Arrays.stream(partitions.split(","))
+                .map(String::trim)
+                .filter(p -> !p.isEmpty())
+                .map(Integer::valueOf)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    @Scheduled(
+            fixedDelayString = "${nakadi.jobs.topicPool.checkRunMs}",
+            initialDelayString = "${random.int(${nakadi.jobs.topicPool.checkRunMs})}")
+    public void fillTopicPool() {
+        if (size <= 0) {
+            return;
+        }
+        if (featureToggleService.isFeatureEnabled(FeatureToggleService.Feature.DISABLE_DB_WRITE_OPERATIONS)) {
+            LOG.warn("Skipping topic pool filling because write operations to the DB are disabled");
+            return;
+        }
+        try {
+            jobWrapper.runJobLocked(this::fillTopicPoolLocked);
+        } catch (final RepositoryProblemException e) {
+            LOG.error("DB error occurred when filling topic pool", e);
+        }
+    }
+
+    private void fillTopicPoolLocked() {
+        final Storage storage = defaultStorage.getStorage();
+        final TopicRepository topicRepository = topicRepositoryHolder.getTopicRepository(storage);
+        for (final Integer partitionCount : partitions) {
+            final int missing = size - topicPoolDbRepository.countTopics(storage.getId(), partitionCount);
+            for (int i = 0; i < missing; ++i) {
+                if (!addTopic(topicRepository, storage, partitionCount)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean addTopic(final TopicRepository topicRepository, final Storage storage,
+                             final int partitionCount) {
+        final String topic;
+        try {
+            topic = topicRepository.createTopic(partitionCount, nakadiSettings.getDefaultTopicRetentionMs());
+        } catch (final TopicCreationException e) {
+            LOG.error("Failed to create topic with {} partitions for the pool", partitionCount, e);
+            return false;
+        }
+        try {
+            topicPoolDbRepository.addTopic(storage.getId(), partitionCount, topic);
+            return true;
+        } catch (final RepositoryProblemException e) {
+            try {
+                topicRepository.deleteTopic(topic);
+            } catch (final TopicDeletionException ex) {
+                LOG.error("Failed to delete topic {} that was not added to the pool", topic, ex);
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.zalando.nakadi.service.subscription;
+
+import org.zalando.nakadi.domain.EventTypePartition;
+import org.zalando.nakadi.service.subscription.model.Partition;
+import org.zalando.nakadi.service.subscription.model.Session;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Rebalancer that moves as few partitions as possible. Every session gets the same number of partitions as with
+ * {@link SubscriptionRebalancer#splitByWeight(int, int[])} - its whole share according to weight (at least one
+ * partition) and not more than its weight above that, but the partitions left after the split stay with the sessions
+ * that already have them, instead of going to the first sessions in sorted order.
+ *
+ * When partitions have to be taken from a session, the ones that are being reassigned already are taken first, then
+ * the ones with the lowest number of unconsumed events, so that the receiving session has less to catch up with.
+ * Numbers of unconsumed events are loaded in {@link #prepare(Supplier)}, outside of the rebalance lock. They only
+ * decide which partitions are moved first, so once loaded they are reused for {@link #BACKLOGS_TTL_MS}, and a series
+ * of rebalances caused by several sessions joining or leaving at once loads them only once.
+ */
+class StickySubscriptionRebalancer extends SubscriptionRebalancer {
+
+    static final long BACKLOGS_TTL_MS = TimeUnit.SECONDS.toMillis(30);
+
+    private final Function<Collection<EventTypePartition>, Map<EventTypePartition, Long>> backlogLoader;
+    private final LongSupplier clock;
+    private Map<EventTypePartition, Long> backlogs = Collections.emptyMap();
+    private long backlogsLoadedAt;
+
+    /**
+     * @param backlogLoader returns number of unconsumed events for partitions, partitions with unknown backlog may be
+     *                      missing in the result
+     */
+    StickySubscriptionRebalancer(
+            final Function<Collection<EventTypePartition>, Map<EventTypePartition, Long>> backlogLoader) {
+        this(backlogLoader, System::currentTimeMillis);
+    }
+
+    StickySubscriptionRebalancer(
+            final Function<Collection<EventTypePartition>, Map<EventTypePartition, Long>> backlogLoader,
+            final LongSupplier clock) {
+        this.backlogLoader = backlogLoader;
+        this.clock = clock;
+    }
+
+    @Override
+    void prepare(final Supplier<Partition[]> currentPartitions) {
+        final Partition[] partitions = currentPartitions.get();
+        final long now = clock.getAsLong();
+        final boolean loaded = Stream.of(partitions).allMatch(p -> backlogs.containsKey(p.getKey()));
+        if (loaded && now - backlogsLoadedAt < BACKLOGS_TTL_MS) {
+            return;
+        }
+        backlogs = partitions.length == 0 ? Collections.emptyMap() : backlogLoader.apply(
+                Stream.of(partitions).map(Partition::getKey).collect(Collectors.toList()));
+        backlogsLoadedAt = now;
+    }
+
+    @Override
+    Partition[] rebalanceByWeight(final Collection<Session> sessions, final Partition[] currentPartitions) {
+        final List<Session> sortedSessions = sessions.stream()
+                .sorted(Comparator.comparing(Session::getId))
+                .collect(Collectors.toList());
+        final List<String> activeSessionIds = sortedSessions.stream()
+                .map(Session::getId)
+                .collect(Collectors.toList());
+
+        // 1. Partitions that are not assigned to any existing session are rebalanced in any case.
+        final List<Partition> toRebalance = Stream.of(currentPartitions)
+                .filter(p -> p.mustBeRebalanced(activeSessionIds))
+                .collect(Collectors.toList());
+        final Map<String, List<Partition>> partitions = Stream.of(currentPartitions)
+                .filter(p -> !toRebalance.contains(p))
+                .collect(Collectors.groupingBy(Partition::getEffectiveSession));
+        final int[] currentCounts = activeSessionIds.stream()
+                .mapToInt(id -> partitions.getOrDefault(id, Collections.emptyList()).size())
+                .toArray();
+        final int[] partitionsPerSession = splitSticky(
+                currentPartitions.length,
+                sortedSessions.stream().mapToInt(Session::getWeight).toArray(),
+                currentCounts);
+
+        // 2. Take partitions from sessions that have too many of them.
+        final Comparator<Partition> takingOrder = Comparator
+                .comparing((Partition p) -> p.getState() != Partition.State.REASSIGNING)
+                .thenComparing(p -> backlogs.getOrDefault(p.getKey(), Long.MAX_VALUE));
+        for (int idx = 0; idx < activeSessionIds.size(); ++idx) {
+            final int toTake = currentCounts[idx] - partitionsPerSession[idx];
+            if (toTake > 0) {
+                final List<Partition> candidates = partitions.get(activeSessionIds.get(idx));
+                candidates.sort(takingOrder);
+                final List<Partition> taken = candidates.subList(0, toTake);
+                toRebalance.addAll(taken);
+                taken.clear();
+            }
+        }
+        if (toRebalance.isEmpty()) {
+            return new Partition[0];
+        }
+
+        // 3. Partitions that are still streamed by their session are given back to it if it waits for partitions,
+        // the rest is given to any session that waits for partitions.
+        final int[] waiting = new int[activeSessionIds.size()];
+        for (int idx = 0; idx < activeSessionIds.size(); ++idx) {
+            waiting[idx] = partitionsPerSession[idx] -
+                    partitions.getOrDefault(activeSessionIds.get(idx), Collections.emptyList()).size();
+        }
+        final List<Partition> result = new ArrayList<>();
+        for (final Iterator<Partition> it = toRebalance.iterator(); it.hasNext(); ) {
+            final Partition partition = it.next();
+            final int idx = partition.getState() == Partition.State.UNASSIGNED ?
+                    -1 : activeSessionIds.indexOf(partition.getSession());
+            if (idx >= 0 && waiting[idx] > 0) {
+                result.add(partition.moveToSessionId(activeSessionIds.get(idx), activeSessionIds));
+                waiting[idx] -= 1;
+                it.remove();
+            }
+        }
+        final Iterator<Partition> rest = toRebalance.iterator();
+        for (int idx = 0; idx < activeSessionIds.size(); ++idx) {
+            for (int i = 0; i < waiting[idx]; ++i) {
+                result.add(rest.next().moveToSessionId(activeSessionIds.get(idx), activeSessionIds));
+            }
+        }
+        return result.toArray(new Partition[result.size()]);
+    }
+
+    /**
+     * Splits items between sessions within the same bounds as {@link #splitByWeight(int, int[])}, keeping the counts
+     * as close to current ones as possible.
+     */
+    static int[] splitSticky(final int itemCount, final int[] weights, final int[] currentCounts) {
+        checkSplitArguments(itemCount, weights);
+        final int fixed = itemCount / IntStream.of(weights).sum();
+        final int[] min = new int[weights.length];
+        final int[] max = new int[weights.length];
+        final int[] result = new int[weights.length];
+        int left = itemCount;
+        for (int i = 0; i < weights.length; ++i) {
+            min[i] = fixed == 0 ? 1 : fixed * weights[i];
+            max[i] = min[i] + weights[i];
+            result[i] = Math.max(min[i], Math.min(max[i], currentCounts[i]));
+            left -= result[i];
+        }
+        // counts within bounds may not sum up to the number of items, the difference is given to (taken from) the
+        // sessions with the lowest (highest) number of items per weight
+        while (left > 0) {
+            final int idx = selectByItemsPerWeight(result, weights, i -> result[i] < max[i], false);
+            result[idx] += 1;
+            left -= 1;
+        }
+        while (left < 0) {
+            final int idx = selectByItemsPerWeight(result, weights, i -> result[i] > min[i], true);
+            result[idx] -= 1;
+            left += 1;
+        }
+        return result;
+    }
+
+    private static int selectByItemsPerWeight(final int[] counts, final int[] weights,
+                                              final IntPredicate allowed, final boolean highest) {
+        int selected = -1;
+        for (int i = 0; i < counts.length; ++i) {
+            if (!allowed.test(i)) {
+                continue;
+            }
+            if (selected < 0) {
+                selected = i;
+                continue;
+            }
+            final long diff = (long) counts[i] * weights[selected] - (long) counts[selected] * weights[i];
+            if (highest ? diff > 0 : diff < 0) {
+                selected = i;
+            }
+        }
+        return selected;
+    }
+}
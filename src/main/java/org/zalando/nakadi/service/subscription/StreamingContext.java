@@ -37,7 +37,6 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 public class StreamingContext implements SubscriptionStreamer {
@@ -56,7 +55,7 @@ public class StreamingContext implements SubscriptionStreamer {
     private final BlacklistService blacklistService;
     private final ScheduledExecutorService timer;
     private final BlockingQueue<Runnable> taskQueue = new LinkedBlockingQueue<>();
-    private final BiFunction<Collection<Session>, Partition[], Partition[]> rebalancer;
+    private final SubscriptionRebalancer rebalancer;
     private final String loggingPath;
     private final CursorConverter cursorConverter;
     private final Subscription subscription;
@@ -268,6 +267,11 @@ public class StreamingContext implements SubscriptionStreamer {
             // This call is needed to renew subscription for session list changes.
             final List<String> newSessions = sessionListSubscription.getData();
             final String sessionsHash = ZkSubscriptionClient.Topology.calculateSessionsHash(newSessions);
+            // storage may be slow, so everything rebalance needs from it is loaded before taking the lock
+            rebalancer.prepare(() -> {
+                final ZkSubscriptionClient.Topology topology = zkClient.getTopology();
+                return topology.isSameHash(sessionsHash) ? new Partition[0] : topology.getPartitions();
+            });
             zkClient.runLocked(() -> {
                 final ZkSubscriptionClient.Topology topology = zkClient.getTopology();
 
@@ -329,7 +333,7 @@ public class StreamingContext implements SubscriptionStreamer {
         private Session session;
         private ScheduledExecutorService timer;
         private ZkSubscriptionClient zkClient;
-        private BiFunction<Collection<Session>, Partition[], Partition[]> rebalancer;
+        private SubscriptionRebalancer rebalancer;
         private long kafkaPollTimeout;
         private String loggingPath;
         private AtomicBoolean connectionReady;
@@ -384,7 +388,7 @@ public class StreamingContext implements SubscriptionStreamer {
             return this;
         }
 
-        public Builder setRebalancer(final BiFunction<Collection<Session>, Partition[], Partition[]> rebalancer) {
+        public Builder setRebalancer(final SubscriptionRebalancer rebalancer) {
             this.rebalancer = rebalancer;
             return this;
         }
@@ -12,12 +12,26 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 class SubscriptionRebalancer implements BiFunction<Collection<Session>, Partition[], Partition[]> {
 
+    enum Strategy {
+        WEIGHTED,
+        STICKY
+    }
+
+    /**
+     * Loads data that rebalance depends on and that is not a part of topology. It is called before the lock for
+     * rebalance is taken, so that no slow calls are made while other sessions are waiting for the lock. Partitions
+     * are read only by rebalancers that need them.
+     */
+    void prepare(final Supplier<Partition[]> currentPartitions) {
+    }
+
     @Override
     public Partition[] apply(final Collection<Session> sessions, final Partition[] currentPartitions) {
 
@@ -65,7 +79,7 @@ class SubscriptionRebalancer implements BiFunction<Collection<Session>, Partitio
         return changedPartitions.toArray(new Partition[changedPartitions.size()]);
     }
 
-    private Partition[] rebalanceByWeight(final Collection<Session> sessions, final Partition[] currentPartitions) {
+    Partition[] rebalanceByWeight(final Collection<Session> sessions, final Partition[] currentPartitions) {
         final Map<String, Integer> activeSessionWeights = sessions.stream()
                 .collect(Collectors.toMap(Session::getId, Session::getWeight));
         // sorted session ids.
@@ -124,12 +138,7 @@ class SubscriptionRebalancer implements BiFunction<Collection<Session>, Partitio
     }
 
     static int[] splitByWeight(final int itemCount, final int[] weigths) {
-        if (itemCount < weigths.length) {
-            throw new IllegalArgumentException("Can not rebalance " + itemCount + " onto " + weigths.length);
-        }
-        if (IntStream.of(weigths).filter(w -> w <= 0).findAny().isPresent()) {
-            throw new IllegalArgumentException("Weight can not be below zero: " + Arrays.toString(weigths));
-        }
+        checkSplitArguments(itemCount, weigths);
         final int totalWeight = IntStream.of(weigths).sum();
         final int fixed = itemCount / totalWeight;
         final int[] result = IntStream.of(weigths).map(w -> fixed * w).toArray();
@@ -150,4 +159,13 @@ class SubscriptionRebalancer implements BiFunction<Collection<Session>, Partitio
         return result;
     }
 
+    static void checkSplitArguments(final int itemCount, final int[] weigths) {
+        if (itemCount < weigths.length) {
+            throw new IllegalArgumentException("Can not rebalance " + itemCount + " onto " + weigths.length);
+        }
+        if (IntStream.of(weigths).filter(w -> w <= 0).findAny().isPresent()) {
+            throw new IllegalArgumentException("Weight can not be below zero: " + Arrays.toString(weigths));
+        }
+    }
+
 }
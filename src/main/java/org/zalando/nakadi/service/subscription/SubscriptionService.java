@@ -1,7 +1,6 @@
 package org.zalando.nakadi.service.subscription;
 
 import com.google.common.collect.ImmutableSet;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +12,7 @@ import org.zalando.nakadi.domain.EventType;
 import org.zalando.nakadi.domain.EventTypePartition;
 import org.zalando.nakadi.domain.ItemsWrapper;
 import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.NakadiCursorDistanceQuery;
 import org.zalando.nakadi.domain.PaginationLinks;
 import org.zalando.nakadi.domain.PaginationWrapper;
 import org.zalando.nakadi.domain.PartitionBaseStatistics;
@@ -42,6 +42,7 @@ import org.zalando.nakadi.repository.db.SubscriptionDbRepository;
 import org.zalando.nakadi.service.CursorConverter;
 import org.zalando.nakadi.service.CursorOperationsService;
 import org.zalando.nakadi.service.FeatureToggleService;
+import org.zalando.nakadi.service.KpiEvent;
 import org.zalando.nakadi.service.NakadiKpiPublisher;
 import org.zalando.nakadi.service.Result;
 import org.zalando.nakadi.service.subscription.model.Partition;
@@ -59,10 +60,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component
@@ -117,7 +120,7 @@ public class SubscriptionService {
         subscriptionValidationService.validateSubscription(subscriptionBase);
         final Subscription subscription = subscriptionRepository.createSubscription(subscriptionBase);
 
-        nakadiKpiPublisher.publish(subLogEventType, () -> new JSONObject()
+        nakadiKpiPublisher.publish(subLogEventType, () -> new KpiEvent()
                 .put("subscription_id", subscription.getId())
                 .put("status", "created"));
 
@@ -137,7 +140,8 @@ public class SubscriptionService {
     }
 
     public Result listSubscriptions(@Nullable final String owningApplication, @Nullable final Set<String> eventTypes,
-                                    final boolean showStatus, final int limit, final int offset) {
+                                    final boolean showStatus, final int limit, final int offset,
+                                    @Nullable final String after) {
         if (limit < 1 || limit > 1000) {
             final Problem problem = Problem.valueOf(Response.Status.BAD_REQUEST,
                     "'limit' parameter should have value from 1 to 1000");
@@ -150,13 +154,30 @@ public class SubscriptionService {
             return Result.problem(problem);
         }
 
+        if (after != null && offset != 0) {
+            final Problem problem = Problem.valueOf(Response.Status.BAD_REQUEST,
+                    "'offset' and 'after' parameters can't be used together");
+            return Result.problem(problem);
+        }
+
         try {
             final Set<String> eventTypesFilter = eventTypes == null ? ImmutableSet.of() : eventTypes;
             final Optional<String> owningAppOption = Optional.ofNullable(owningApplication);
-            final List<Subscription> subscriptions =
-                    subscriptionRepository.listSubscriptions(eventTypesFilter, owningAppOption, offset, limit);
-            final PaginationLinks paginationLinks = SubscriptionsUriHelper.createSubscriptionPaginationLinks(
-                    owningAppOption, eventTypesFilter, offset, limit, showStatus, subscriptions.size());
+            final List<Subscription> subscriptions;
+            final PaginationLinks paginationLinks;
+            if (after == null) {
+                subscriptions = subscriptionRepository.listSubscriptions(
+                        eventTypesFilter, owningAppOption, offset, limit);
+                paginationLinks = SubscriptionsUriHelper.createSubscriptionPaginationLinks(
+                        owningAppOption, eventTypesFilter, offset, limit, showStatus, subscriptions.size());
+            } else {
+                // makes sure that the position exists, otherwise the page would be silently empty
+                subscriptionRepository.getSubscription(after);
+                subscriptions = subscriptionRepository.listSubscriptionsAfter(
+                        eventTypesFilter, owningAppOption, after, limit);
+                paginationLinks = SubscriptionsUriHelper.createSubscriptionKeysetPaginationLinks(
+                        owningAppOption, eventTypesFilter, subscriptions, limit, showStatus);
+            }
             final PaginationWrapper<Subscription> paginationWrapper =
                     new PaginationWrapper<>(subscriptions, paginationLinks);
             if (showStatus) {
@@ -164,6 +185,9 @@ public class SubscriptionService {
                 items.forEach(s -> s.setStatus(createSubscriptionStat(s, false)));
             }
             return Result.ok(paginationWrapper);
+        } catch (final NoSuchSubscriptionException e) {
+            return Result.problem(Problem.valueOf(Response.Status.BAD_REQUEST,
+                    "Subscription \"" + after + "\" from 'after' parameter does not exist"));
         } catch (final ServiceTemporarilyUnavailableException e) {
             LOG.error("Error occurred during listing of subscriptions", e);
             return Result.problem(Problem.valueOf(Response.Status.SERVICE_UNAVAILABLE, e.getMessage()));
@@ -196,7 +220,7 @@ public class SubscriptionService {
                     subscription, "subscription." + subscriptionId + ".delete_subscription");
             zkSubscriptionClient.deleteSubscription();
 
-            nakadiKpiPublisher.publish(subLogEventType, () -> new JSONObject()
+            nakadiKpiPublisher.publish(subLogEventType, () -> new KpiEvent()
                     .put("subscription_id", subscriptionId)
                     .put("status", "deleted"));
 
@@ -291,12 +315,12 @@ public class SubscriptionService {
         final List<SubscriptionEventTypeStats> result = new ArrayList<>(eventTypes.size());
         final Collection<NakadiCursor> committedPositions = getCommittedPositions(subscriptionNode, client);
         final List<PartitionEndStatistics> stats = loadPartitionEndStatistics(eventTypes);
+        final Map<EventTypePartition, Long> distances = computeDistances(committedPositions, stats);
         for (final EventType eventType : eventTypes) {
             final List<PartitionBaseStatistics> statsForEventType = stats.stream()
                     .filter(s -> s.getTimeline().getEventType().equals(eventType.getName()))
                     .collect(Collectors.toList());
-            result.add(getEventTypeStats(subscriptionNode, eventType.getName(), statsForEventType,
-                    committedPositions));
+            result.add(getEventTypeStats(subscriptionNode, eventType.getName(), statsForEventType, distances));
         }
         return result;
     }
@@ -314,13 +338,12 @@ public class SubscriptionService {
     private SubscriptionEventTypeStats getEventTypeStats(final Optional<ZkSubscriptionNode> subscriptionNode,
                                                          final String eventTypeName,
                                                          final List<? extends PartitionBaseStatistics> stats,
-                                                         final Collection<NakadiCursor> committedPositions) {
+                                                         final Map<EventTypePartition, Long> distances) {
         final List<SubscriptionEventTypeStats.Partition> resultPartitions =
                 new ArrayList<>(stats.size());
         for (final PartitionBaseStatistics stat : stats) {
             final String partition = stat.getPartition();
-            final NakadiCursor lastPosition = ((PartitionEndStatistics) stat).getLast();
-            final Long distance = computeDistance(committedPositions, lastPosition);
+            final Long distance = distances.get(new EventTypePartition(eventTypeName, partition));
             resultPartitions.add(getPartitionStats(subscriptionNode, eventTypeName, partition, distance));
         }
         resultPartitions.sort(Comparator.comparing(SubscriptionEventTypeStats.Partition::getPartition));
@@ -375,19 +398,31 @@ public class SubscriptionService {
                 .orElse("");
     }
 
-    private Long computeDistance(final Collection<NakadiCursor> committedPositions, final NakadiCursor lastPosition) {
-        return committedPositions.stream()
-                .filter(pos -> pos.getEventTypePartition().equals(lastPosition.getEventTypePartition()))
-                .findAny()
-                .map(committed -> {
-                    try {
-                        return cursorOperationsService.calculateDistance(committed, lastPosition);
-                    } catch (final InvalidCursorOperation ex) {
-                        throw new InconsistentStateException(
-                                "Unexpected exception while calculating distance", ex);
-                    }
-                })
-                .orElse(null);
+    private Map<EventTypePartition, Long> computeDistances(final Collection<NakadiCursor> committedPositions,
+                                                           final List<PartitionEndStatistics> stats) {
+        final Map<EventTypePartition, NakadiCursor> committedByPartition = committedPositions.stream()
+                .collect(Collectors.toMap(NakadiCursor::getEventTypePartition, Function.identity(), (c1, c2) -> c1));
+        final List<EventTypePartition> partitions = new ArrayList<>();
+        final List<NakadiCursorDistanceQuery> queries = new ArrayList<>();
+        for (final PartitionEndStatistics stat : stats) {
+            final NakadiCursor lastPosition = stat.getLast();
+            final NakadiCursor committed = committedByPartition.get(lastPosition.getEventTypePartition());
+            if (null != committed) {
+                partitions.add(lastPosition.getEventTypePartition());
+                queries.add(new NakadiCursorDistanceQuery(committed, lastPosition));
+            }
+        }
+        final List<Long> distances;
+        try {
+            distances = cursorOperationsService.calculateDistances(queries);
+        } catch (final InvalidCursorOperation ex) {
+            throw new InconsistentStateException("Unexpected exception while calculating distance", ex);
+        }
+        final Map<EventTypePartition, Long> result = new HashMap<>();
+        for (int i = 0; i < partitions.size(); ++i) {
+            result.put(partitions.get(i), distances.get(i));
+        }
+        return result;
     }
 
     private Collection<NakadiCursor> loadCommittedPositions(
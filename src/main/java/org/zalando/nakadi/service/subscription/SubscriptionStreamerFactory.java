@@ -2,10 +2,15 @@ package org.zalando.nakadi.service.subscription;
 
 import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.zalando.nakadi.domain.EventTypePartition;
+import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.NakadiCursorLag;
 import org.zalando.nakadi.domain.Subscription;
 import org.zalando.nakadi.exceptions.InternalNakadiException;
 import org.zalando.nakadi.exceptions.NoSuchEventTypeException;
@@ -13,6 +18,7 @@ import org.zalando.nakadi.repository.db.EventTypeCache;
 import org.zalando.nakadi.service.AuthorizationValidator;
 import org.zalando.nakadi.service.BlacklistService;
 import org.zalando.nakadi.service.CursorConverter;
+import org.zalando.nakadi.service.CursorOperationsService;
 import org.zalando.nakadi.service.CursorTokenService;
 import org.zalando.nakadi.service.EventStreamWriterProvider;
 import org.zalando.nakadi.service.EventTypeChangeListener;
@@ -20,14 +26,23 @@ import org.zalando.nakadi.service.NakadiCursorComparator;
 import org.zalando.nakadi.service.NakadiKpiPublisher;
 import org.zalando.nakadi.service.subscription.model.Session;
 import org.zalando.nakadi.service.subscription.zk.SubscriptionClientFactory;
+import org.zalando.nakadi.service.subscription.zk.ZkSubscriptionClient;
 import org.zalando.nakadi.service.timeline.TimelineService;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 @Service
 public class SubscriptionStreamerFactory {
+    private static final Logger LOG = LoggerFactory.getLogger(SubscriptionStreamerFactory.class);
+
     @Value("${nakadi.kafka.poll.timeoutMs}")
     private long kafkaPollTimeout;
     private final TimelineService timelineService;
@@ -45,6 +60,8 @@ public class SubscriptionStreamerFactory {
     private final String kpiDataStreamedEventType;
     private final long kpiCollectionFrequencyMs;
     private final long streamMemoryLimitBytes;
+    private final CursorOperationsService cursorOperationsService;
+    private final SubscriptionRebalancer.Strategy rebalanceStrategy;
 
     @Autowired
     public SubscriptionStreamerFactory(
@@ -61,7 +78,10 @@ public class SubscriptionStreamerFactory {
             final NakadiKpiPublisher nakadiKpiPublisher,
             @Value("${nakadi.kpi.event-types.nakadiDataStreamed}") final String kpiDataStreamedEventType,
             @Value("${nakadi.kpi.config.stream-data-collection-frequency-ms}") final long kpiCollectionFrequencyMs,
-            @Value("${nakadi.subscription.maxStreamMemoryBytes}") final long streamMemoryLimitBytes) {
+            @Value("${nakadi.subscription.maxStreamMemoryBytes}") final long streamMemoryLimitBytes,
+            final CursorOperationsService cursorOperationsService,
+            @Value("${nakadi.subscription.rebalanceStrategy:WEIGHTED}")
+            final SubscriptionRebalancer.Strategy rebalanceStrategy) {
         this.timelineService = timelineService;
         this.cursorTokenService = cursorTokenService;
         this.objectMapper = objectMapper;
@@ -76,6 +96,8 @@ public class SubscriptionStreamerFactory {
         this.kpiDataStreamedEventType = kpiDataStreamedEventType;
         this.kpiCollectionFrequencyMs = kpiCollectionFrequencyMs;
         this.streamMemoryLimitBytes = streamMemoryLimitBytes;
+        this.cursorOperationsService = cursorOperationsService;
+        this.rebalanceStrategy = rebalanceStrategy;
     }
 
     public SubscriptionStreamer build(
@@ -87,6 +109,7 @@ public class SubscriptionStreamerFactory {
             throws InternalNakadiException, NoSuchEventTypeException {
         final Session session = Session.generate(1, streamParameters.getPartitions());
         final String loggingPath = "subscription." + subscription.getId() + "." + session.getId();
+        final ZkSubscriptionClient zkClient = zkClientFactory.createClient(subscription, loggingPath);
         // Create streaming context
         return new StreamingContext.Builder()
                 .setOut(output)
@@ -94,8 +117,8 @@ public class SubscriptionStreamerFactory {
                 .setParameters(streamParameters)
                 .setSession(session)
                 .setTimer(executorService)
-                .setZkClient(zkClientFactory.createClient(subscription, loggingPath))
-                .setRebalancer(new SubscriptionRebalancer())
+                .setZkClient(zkClient)
+                .setRebalancer(createRebalancer(zkClient))
                 .setKafkaPollTimeout(kafkaPollTimeout)
                 .setLoggingPath(loggingPath)
                 .setConnectionReady(connectionReady)
@@ -116,4 +139,38 @@ public class SubscriptionStreamerFactory {
                 .build();
     }
 
+    private SubscriptionRebalancer createRebalancer(final ZkSubscriptionClient zkClient) {
+        switch (rebalanceStrategy) {
+            case STICKY:
+                return new StickySubscriptionRebalancer(partitions -> loadBacklogs(zkClient, partitions));
+            default:
+                return new SubscriptionRebalancer();
+        }
+    }
+
+    /**
+     * Called before the rebalance lock is taken. Backlog is only used to choose which partitions to move, so
+     * rebalance goes on without it if it can't be loaded.
+     */
+    private Map<EventTypePartition, Long> loadBacklogs(final ZkSubscriptionClient zkClient,
+                                                      final Collection<EventTypePartition> partitions) {
+        try {
+            final Map<String, List<NakadiCursor>> committed = cursorConverter
+                    .convert(zkClient.getOffsets(partitions).values()).stream()
+                    .collect(Collectors.groupingBy(NakadiCursor::getEventType));
+            final Map<EventTypePartition, Long> result = new HashMap<>();
+            for (final Map.Entry<String, List<NakadiCursor>> entry : committed.entrySet()) {
+                final List<NakadiCursorLag> lags = cursorOperationsService.cursorsLag(
+                        entry.getKey(), entry.getValue());
+                for (int i = 0; i < lags.size(); ++i) {
+                    result.put(entry.getValue().get(i).getEventTypePartition(), lags.get(i).getLag());
+                }
+            }
+            return result;
+        } catch (final Exception e) {
+            LOG.warn("Failed to load backlog of partitions {}, rebalancing without it", partitions, e);
+            return Collections.emptyMap();
+        }
+    }
+
 }
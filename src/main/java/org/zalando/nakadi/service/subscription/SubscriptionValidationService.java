@@ -9,6 +9,7 @@ import org.zalando.nakadi.domain.EventTypePartition;
 import org.zalando.nakadi.domain.NakadiCursor;
 import org.zalando.nakadi.domain.Subscription;
 import org.zalando.nakadi.domain.SubscriptionBase;
+import org.zalando.nakadi.domain.Timeline;
 import org.zalando.nakadi.exceptions.InternalNakadiException;
 import org.zalando.nakadi.exceptions.InvalidCursorException;
 import org.zalando.nakadi.exceptions.NakadiException;
@@ -20,15 +21,20 @@ import org.zalando.nakadi.exceptions.runtime.TooManyPartitionsException;
 import org.zalando.nakadi.exceptions.runtime.WrongInitialCursorsException;
 import org.zalando.nakadi.exceptions.runtime.WrongStreamParametersException;
 import org.zalando.nakadi.repository.EventTypeRepository;
+import org.zalando.nakadi.repository.TopicRepository;
 import org.zalando.nakadi.service.CursorConverter;
+import org.zalando.nakadi.service.PartitionsViewService;
 import org.zalando.nakadi.service.timeline.TimelineService;
 import org.zalando.nakadi.view.SubscriptionCursorWithoutToken;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -41,16 +47,19 @@ public class SubscriptionValidationService {
     private final TimelineService timelineService;
     private final int maxSubscriptionPartitions;
     private final CursorConverter cursorConverter;
+    private final PartitionsViewService partitionsViewService;
 
     @Autowired
     public SubscriptionValidationService(final TimelineService timelineService,
                                          final EventTypeRepository eventTypeRepository,
                                          final NakadiSettings nakadiSettings,
-                                         final CursorConverter cursorConverter) {
+                                         final CursorConverter cursorConverter,
+                                         final PartitionsViewService partitionsViewService) {
         this.timelineService = timelineService;
         this.eventTypeRepository = eventTypeRepository;
         this.maxSubscriptionPartitions = nakadiSettings.getMaxSubscriptionPartitions();
         this.cursorConverter = cursorConverter;
+        this.partitionsViewService = partitionsViewService;
     }
 
     public void validateSubscription(final SubscriptionBase subscription)
@@ -83,7 +92,7 @@ public class SubscriptionValidationService {
             throw new WrongStreamParametersException("Duplicated partition specified");
         }
         // check that partitions belong to subscription
-        final List<EventTypePartition> allPartitions = getAllPartitions(subscription.getEventTypes());
+        final Set<EventTypePartition> allPartitions = new HashSet<>(getAllPartitions(subscription.getEventTypes()));
         final List<EventTypePartition> wrongPartitions = partitions.stream()
                 .filter(p -> !allPartitions.contains(p))
                 .collect(Collectors.toList());
@@ -100,15 +109,17 @@ public class SubscriptionValidationService {
                                         final List<EventTypePartition> allPartitions)
             throws WrongInitialCursorsException, RepositoryProblemException {
 
-        final boolean cursorsMissing = allPartitions.stream()
-                .anyMatch(p -> !subscription.getInitialCursors().stream().anyMatch(p::ownsCursor));
+        final Set<EventTypePartition> cursorPartitions = subscription.getInitialCursors().stream()
+                .map(c -> new EventTypePartition(c.getEventType(), c.getPartition()))
+                .collect(Collectors.toSet());
+        final boolean cursorsMissing = allPartitions.stream().anyMatch(p -> !cursorPartitions.contains(p));
         if (cursorsMissing) {
             throw new WrongInitialCursorsException(
                     "initial_cursors should contain cursors for all partitions of subscription");
         }
 
-        final boolean hasCursorForWrongPartition = subscription.getInitialCursors().stream()
-                .anyMatch(c -> !allPartitions.contains(new EventTypePartition(c.getEventType(), c.getPartition())));
+        final Set<EventTypePartition> partitionsSet = new HashSet<>(allPartitions);
+        final boolean hasCursorForWrongPartition = cursorPartitions.stream().anyMatch(p -> !partitionsSet.contains(p));
         if (hasCursorForWrongPartition) {
             throw new WrongInitialCursorsException(
                     "initial_cursors should contain cursors only for partitions of this subscription");
@@ -120,13 +131,19 @@ public class SubscriptionValidationService {
         }
 
         try {
+            final Map<TopicRepository, List<NakadiCursor>> cursorsByRepository = new HashMap<>();
             for (final SubscriptionCursorWithoutToken cursor : subscription.getInitialCursors()) {
                 final NakadiCursor nakadiCursor = cursorConverter.convert(cursor);
                 if (nakadiCursor.getTimeline().isDeleted()) {
                     throw new InvalidCursorException(UNAVAILABLE, nakadiCursor);
                 }
-                timelineService.getTopicRepository(nakadiCursor.getTimeline()).validateReadCursors(
-                        Collections.singletonList(nakadiCursor));
+                cursorsByRepository
+                        .computeIfAbsent(timelineService.getTopicRepository(nakadiCursor.getTimeline()),
+                                r -> new ArrayList<>())
+                        .add(nakadiCursor);
+            }
+            for (final Map.Entry<TopicRepository, List<NakadiCursor>> entry : cursorsByRepository.entrySet()) {
+                entry.getKey().validateReadCursors(entry.getValue());
             }
         } catch (final InvalidCursorException ex) {
             throw new WrongInitialCursorsException(ex.getMessage(), ex);
@@ -136,13 +153,16 @@ public class SubscriptionValidationService {
     }
 
     private List<EventTypePartition> getAllPartitions(final Collection<String> eventTypes) {
-        return eventTypes.stream()
+        final List<Timeline> timelines = eventTypes.stream()
                 .map(timelineService::getActiveTimeline)
-                .flatMap(timeline -> timelineService.getTopicRepository(timeline)
-                        .listPartitionNames(timeline.getTopic())
-                        .stream()
-                        .map(p -> new EventTypePartition(timeline.getEventType(), p)))
                 .collect(Collectors.toList());
+        final List<EventTypePartition> result = new ArrayList<>();
+        partitionsViewService.getPartitionNames(timelines).forEach((timeline, partitions) -> {
+            for (final String partition : partitions) {
+                result.add(new EventTypePartition(timeline.getEventType(), partition));
+            }
+        });
+        return result;
     }
 
     private Map<String, Optional<EventType>> getSubscriptionEventTypesOrNone(final SubscriptionBase subscriptionBase)
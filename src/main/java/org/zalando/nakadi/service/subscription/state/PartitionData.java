@@ -96,6 +96,10 @@ class PartitionData {
         return bytesInMemory;
     }
 
+    int getEventsInMemory() {
+        return nakadiEvents.size();
+    }
+
     private List<ConsumedEvent> extract(final int count) {
         final List<ConsumedEvent> result = new ArrayList<>();
         for (int i = 0; i < count && !nakadiEvents.isEmpty(); ++i) {
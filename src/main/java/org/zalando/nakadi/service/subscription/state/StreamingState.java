@@ -2,7 +2,6 @@ package org.zalando.nakadi.service.subscription.state;
 
 import com.codahale.metrics.Meter;
 import com.google.common.base.Preconditions;
-import org.json.JSONObject;
 import org.slf4j.LoggerFactory;
 import org.zalando.nakadi.domain.ConsumedEvent;
 import org.zalando.nakadi.domain.EventTypePartition;
@@ -17,6 +16,7 @@ import org.zalando.nakadi.metrics.MetricUtils;
 import org.zalando.nakadi.metrics.StreamKpiData;
 import org.zalando.nakadi.repository.EventConsumer;
 import org.zalando.nakadi.security.Client;
+import org.zalando.nakadi.service.KpiEvent;
 import org.zalando.nakadi.service.NakadiKpiPublisher;
 import org.zalando.nakadi.service.subscription.IdleStreamWatcher;
 import org.zalando.nakadi.service.subscription.model.Partition;
@@ -27,15 +27,17 @@ import org.zalando.nakadi.view.SubscriptionCursorWithoutToken;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.OptionalLong;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -50,6 +52,13 @@ class StreamingState extends State {
     // The reasons for that if there are two partitions (p0, p1) and p0 is reassigned, if p1 is working
     // correctly, and p0 is not receiving any updates - reassignment won't complete.
     private final Map<EventTypePartition, Long> releasingPartitions = new HashMap<>();
+    // Partitions that have at least batch limit events in memory and therefore have to be flushed right away.
+    private final Set<EventTypePartition> fullBatchPartitions = new LinkedHashSet<>();
+    // Batch flush deadlines of partitions, ordered by time. Only the latest deadline of partition is actual, obsolete
+    // deadlines are dropped when they reach the head of the queue.
+    private final PriorityQueue<FlushDeadline> flushDeadlines =
+            new PriorityQueue<>(Comparator.comparingLong(FlushDeadline::getDeadlineMillis));
+    private final Map<EventTypePartition, FlushDeadline> actualDeadlines = new HashMap<>();
     private ZkSubscription<ZkSubscriptionClient.Topology> topologyChangeSubscription;
     private EventConsumer.ReassignableEventConsumer eventConsumer;
     private boolean pollPaused;
@@ -198,8 +207,57 @@ class StreamingState extends State {
     }
 
     private void rememberEvent(final ConsumedEvent event) {
-        Optional.ofNullable(offsets.get(event.getPosition().getEventTypePartition()))
-                .ifPresent(pd -> pd.addEvent(event));
+        final EventTypePartition key = event.getPosition().getEventTypePartition();
+        final PartitionData data = offsets.get(key);
+        if (null != data) {
+            data.addEvent(event);
+            if (data.getEventsInMemory() >= getParameters().batchLimitEvents) {
+                fullBatchPartitions.add(key);
+            }
+        }
+    }
+
+    /**
+     * Updates flush bookkeeping of partition after events were taken from it or its last send time has changed.
+     */
+    private void partitionDataChanged(final EventTypePartition key, final PartitionData data,
+                                      final long previousSendMillis) {
+        if (data.getEventsInMemory() < getParameters().batchLimitEvents) {
+            fullBatchPartitions.remove(key);
+        }
+        if (data.getLastSendMillis() != previousSendMillis || !actualDeadlines.containsKey(key)) {
+            scheduleFlush(key, data);
+        }
+    }
+
+    private void scheduleFlush(final EventTypePartition key, final PartitionData data) {
+        final FlushDeadline deadline =
+                new FlushDeadline(key, data.getLastSendMillis() + getParameters().batchTimeoutMillis);
+        actualDeadlines.put(key, deadline);
+        flushDeadlines.add(deadline);
+    }
+
+    /**
+     * Selects partitions that may have something to flush: the ones with full batches and the ones that reached
+     * batch flush timeout.
+     */
+    private Set<EventTypePartition> getPartitionsToFlush(final long currentTimeMillis) {
+        final Set<EventTypePartition> result = new LinkedHashSet<>(fullBatchPartitions);
+        while (!flushDeadlines.isEmpty() && flushDeadlines.peek().getDeadlineMillis() <= currentTimeMillis) {
+            final FlushDeadline deadline = flushDeadlines.poll();
+            if (deadline.isActual()) {
+                actualDeadlines.remove(deadline.getKey());
+                result.add(deadline.getKey());
+            }
+        }
+        return result;
+    }
+
+    private Optional<FlushDeadline> getNextFlushDeadline() {
+        while (!flushDeadlines.isEmpty() && !flushDeadlines.peek().isActual()) {
+            flushDeadlines.poll();
+        }
+        return Optional.ofNullable(flushDeadlines.peek());
     }
 
     private long getMessagesAllowedToSend() {
@@ -210,8 +268,8 @@ class StreamingState extends State {
 
     private void checkBatchTimeouts() {
         streamToOutput();
-        final OptionalLong lastSent = offsets.values().stream().mapToLong(PartitionData::getLastSendMillis).min();
-        final long nextCall = lastSent.orElse(System.currentTimeMillis()) + getParameters().batchTimeoutMillis;
+        final long nextCall = getNextFlushDeadline().map(FlushDeadline::getDeadlineMillis)
+                .orElse(System.currentTimeMillis() + getParameters().batchTimeoutMillis);
         final long delta = nextCall - System.currentTimeMillis();
         if (delta > 0) {
             scheduleTask(this::checkBatchTimeouts, delta, TimeUnit.MILLISECONDS);
@@ -230,22 +288,35 @@ class StreamingState extends State {
         int messagesAllowedToSend = (int) getMessagesAllowedToSend();
         final boolean wasCommitted = isEverythingCommitted();
         boolean sentSomething = false;
-
-        for (final Map.Entry<EventTypePartition, PartitionData> e : offsets.entrySet()) {
+        boolean sentKeepAlive = false;
+
+        // When less than batch limit events are allowed to be sent, batches of any partition may be full already,
+        // so all of them are checked. Otherwise only partitions with full batches or reached timeouts are checked.
+        final boolean checkAll = streamTimeoutReached ||
+                (messagesAllowedToSend > 0 && messagesAllowedToSend < getParameters().batchLimitEvents);
+        final Set<EventTypePartition> partitionsToFlush = getPartitionsToFlush(currentTimeMillis);
+        for (final EventTypePartition key : checkAll ? new ArrayList<>(offsets.keySet()) : partitionsToFlush) {
+            final PartitionData data = offsets.get(key);
+            if (null == data) {
+                continue;
+            }
+            final long previousSendMillis = data.getLastSendMillis();
             List<ConsumedEvent> toSend;
-            while (null != (toSend = e.getValue().takeEventsToStream(
+            while (null != (toSend = data.takeEventsToStream(
                     currentTimeMillis,
                     Math.min(getParameters().batchLimitEvents, messagesAllowedToSend),
                     getParameters().batchTimeoutMillis,
                     streamTimeoutReached))) {
                 sentSomething |= !toSend.isEmpty();
-                flushData(e.getKey(), toSend, batchesSent == 0 ? Optional.of("Stream started") : Optional.empty());
+                sentKeepAlive |= toSend.isEmpty();
+                flushData(key, toSend, batchesSent == 0 ? Optional.of("Stream started") : Optional.empty());
                 this.sentEvents += toSend.size();
                 if (toSend.isEmpty()) {
                     break;
                 }
                 messagesAllowedToSend -= toSend.size();
             }
+            partitionDataChanged(key, data, previousSendMillis);
         }
 
         long memoryConsumed = offsets.values().stream().mapToLong(PartitionData::getBytesInMemory).sum();
@@ -257,8 +328,10 @@ class StreamingState extends State {
             ).get(); // There is always at least 1 item in list
 
             long deltaSize = heaviestPartition.getValue().getBytesInMemory();
+            final long previousSendMillis = heaviestPartition.getValue().getLastSendMillis();
             final List<ConsumedEvent> events = heaviestPartition.getValue().extractAll(currentTimeMillis);
             deltaSize -= heaviestPartition.getValue().getBytesInMemory();
+            partitionDataChanged(heaviestPartition.getKey(), heaviestPartition.getValue(), previousSendMillis);
 
             sentSomething = true;
             flushData(
@@ -280,7 +353,8 @@ class StreamingState extends State {
             this.lastCommitMillis = System.currentTimeMillis();
         }
         pollPaused = getMessagesAllowedToSend() <= 0;
-        if (!offsets.isEmpty() &&
+        // keep alive counters change only when keep alive batches are sent
+        if (sentKeepAlive && !offsets.isEmpty() &&
                 getParameters().isKeepAliveLimitReached(offsets.values().stream()
                         .mapToInt(PartitionData::getKeepAliveInARow))) {
             shutdownGracefully("All partitions reached keepAlive limit");
@@ -301,7 +375,7 @@ class StreamingState extends State {
 
         kpiPublisher.publish(
                 getContext().getKpiDataStreamedEventType(),
-                () -> new JSONObject()
+                () -> new KpiEvent()
                         .put("api", "hila")
                         .put("subscription", getContext().getSubscription().getId())
                         .put("event_type", eventTypeName)
@@ -592,6 +666,7 @@ class StreamingState extends State {
                 System.currentTimeMillis());
 
         offsets.put(partition.getKey(), pd);
+        scheduleFlush(partition.getKey(), pd);
     }
 
     private void reassignCommitted() {
@@ -614,6 +689,7 @@ class StreamingState extends State {
             final NakadiCursor cursor = createNakadiCursor(data.getSubscription().getData());
 
             final PartitionData.CommitResult commitResult = data.onCommitOffset(cursor);
+            partitionDataChanged(key, data, data.getLastSendMillis());
             if (commitResult.seekOnKafka) {
                 reconfigureKafkaConsumer(true);
             }
@@ -638,6 +714,8 @@ class StreamingState extends State {
     private void removeFromStreaming(final EventTypePartition key) {
         getLog().info("Removing partition {} from streaming", key);
         releasingPartitions.remove(key);
+        fullBatchPartitions.remove(key);
+        actualDeadlines.remove(key);
         final PartitionData data = offsets.remove(key);
         if (null != data) {
             try {
@@ -675,4 +753,26 @@ class StreamingState extends State {
         }
     }
 
+
+    private class FlushDeadline {
+        private final EventTypePartition key;
+        private final long deadlineMillis;
+
+        private FlushDeadline(final EventTypePartition key, final long deadlineMillis) {
+            this.key = key;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        private EventTypePartition getKey() {
+            return key;
+        }
+
+        private long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        private boolean isActual() {
+            return actualDeadlines.get(key) == this;
+        }
+    }
 }
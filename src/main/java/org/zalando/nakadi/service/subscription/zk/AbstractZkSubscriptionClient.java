@@ -3,11 +3,13 @@ package org.zalando.nakadi.service.subscription.zk;
 import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
 import org.apache.curator.framework.recipes.cache.NodeCache;
 import org.apache.curator.framework.recipes.locks.InterProcessSemaphoreMutex;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
-import org.apache.zookeeper.data.Stat;
 import org.echocat.jomon.runtime.concurrent.RetryForSpecifiedCountStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +38,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
@@ -54,6 +57,8 @@ public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClie
 
     private final String subscriptionId;
     private final CuratorFramework curatorFramework;
+    private final ZkWatchRegistry watchRegistry;
+    private final int maxReadsInFlight;
     private InterProcessSemaphoreMutex lock;
     private final String resetCursorPath;
     private final Logger log;
@@ -61,9 +66,13 @@ public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClie
     public AbstractZkSubscriptionClient(
             final String subscriptionId,
             final CuratorFramework curatorFramework,
+            final ZkWatchRegistry watchRegistry,
+            final int maxReadsInFlight,
             final String loggingPath) {
         this.subscriptionId = subscriptionId;
         this.curatorFramework = curatorFramework;
+        this.watchRegistry = watchRegistry;
+        this.maxReadsInFlight = maxReadsInFlight;
         this.resetCursorPath = getSubscriptionPath("/cursor_reset");
         this.log = LoggerFactory.getLogger(loggingPath + ".zk");
     }
@@ -72,6 +81,10 @@ public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClie
         return this.curatorFramework;
     }
 
+    protected ZkWatchRegistry getWatchRegistry() {
+        return watchRegistry;
+    }
+
     protected String getSubscriptionId() {
         return subscriptionId;
     }
@@ -190,44 +203,66 @@ public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClie
         }
     }
 
+    /**
+     * Loads data of znodes of the keys from zookeeper asynchronously, with not more than maxReadsInFlight requests
+     * being sent at once. Watch caches are not used, as they may not yet contain changes made by this node.
+     */
     protected <K, V> Map<K, V> loadDataAsync(final Collection<K> keys,
                                              final Function<K, String> keyConverter,
                                              final BiFunction<K, byte[], V> valueConverter)
             throws ServiceTemporarilyUnavailableException, NakadiRuntimeException {
+        return loadNodesAsync(keys, keyConverter, (key, event) -> valueConverter.apply(key, event.getData()));
+    }
+
+    private <K, V> Map<K, V> loadNodesAsync(final Collection<K> keys,
+                                            final Function<K, String> keyConverter,
+                                            final BiFunction<K, CuratorEvent, V> valueConverter)
+            throws ServiceTemporarilyUnavailableException, NakadiRuntimeException {
         final Map<K, V> result = new HashMap<>();
         final CountDownLatch latch = new CountDownLatch(keys.size());
+        final Semaphore window = new Semaphore(maxReadsInFlight);
+        final long finishAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(MAX_ZK_RESPONSE_SECONDS);
         try {
             for (final K key : keys) {
+                if (!window.tryAcquire(finishAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) {
+                    throw new ServiceTemporarilyUnavailableException("Failed to wait for zk response", null);
+                }
                 final String zkKey = keyConverter.apply(key);
-                getCurator().getData().inBackground((client, event) -> {
-                    try {
-                        if (event.getResultCode() == KeeperException.Code.OK.intValue()) {
-                            final V value = valueConverter.apply(key, event.getData());
-                            synchronized (result) {
-                                result.put(key, value);
+                try {
+                    getCurator().getData().inBackground((client, event) -> {
+                        try {
+                            if (event.getResultCode() == KeeperException.Code.OK.intValue()) {
+                                final V value = valueConverter.apply(key, event);
+                                synchronized (result) {
+                                    result.put(key, value);
+                                }
+                            } else {
+                                getLog().error(
+                                        "Failed to get {} data from zk. status code: {}",
+                                        zkKey, event.getResultCode());
                             }
-                        } else {
-                            getLog().error(
-                                    "Failed to get {} data from zk. status code: {}",
-                                    zkKey, event.getResultCode());
+                        } catch (RuntimeException ex) {
+                            getLog().error("Failed to memorize {} key value", key, ex);
+                        } finally {
+                            window.release();
+                            latch.countDown();
                         }
-                    } catch (RuntimeException ex) {
-                        getLog().error("Failed to memorize {} key value", key, ex);
-                    } finally {
-                        latch.countDown();
-                    }
-                }).forPath(zkKey);
+                    }).forPath(zkKey);
+                } catch (final Exception ex) {
+                    window.release();
+                    throw ex;
+                }
             }
-        } catch (Exception ex) {
-            throw new NakadiRuntimeException(ex);
-        }
-        try {
-            if (!latch.await(MAX_ZK_RESPONSE_SECONDS, TimeUnit.SECONDS)) {
+            if (!latch.await(Math.max(0, finishAt - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
                 throw new ServiceTemporarilyUnavailableException("Failed to wait for zk response", null);
             }
-        } catch (InterruptedException ex) {
+        } catch (final InterruptedException ex) {
             Thread.currentThread().interrupt();
             throw new ServiceTemporarilyUnavailableException("Failed to wait for zk response", ex);
+        } catch (final ServiceTemporarilyUnavailableException ex) {
+            throw ex;
+        } catch (final Exception ex) {
+            throw new NakadiRuntimeException(ex);
         }
         if (result.size() != keys.size()) {
             throw new ServiceTemporarilyUnavailableException("Failed to wait for keys " +
@@ -306,12 +341,11 @@ public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClie
             final EventTypePartition key, final Runnable commitListener) {
         final String path = getOffsetPath(key);
         getLog().info("subscribeForOffsetChanges: {}, path: {}", key, path);
-        return new ZkSubscriptionImpl.ZkSubscriptionValueImpl<>(
-                getCurator(),
-                commitListener,
+        return watchRegistry.subscribeForData(
+                path,
                 data -> new SubscriptionCursorWithoutToken(
                         key.getEventType(), key.getPartition(), new String(data, UTF_8)),
-                path);
+                commitListener);
     }
 
     @Override
@@ -376,8 +410,7 @@ public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClie
     public final ZkSubscription<List<String>> subscribeForSessionListChanges(final Runnable listener)
             throws NakadiRuntimeException {
         getLog().info("subscribeForSessionListChanges: " + listener.hashCode());
-        return new ZkSubscriptionImpl.ZkSubscriptionChildrenImpl(
-                getCurator(), listener, getSubscriptionPath("/sessions"));
+        return watchRegistry.subscribeForChildren(getSubscriptionPath("/sessions"), listener);
     }
 
     @Override
@@ -400,6 +433,11 @@ public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClie
         }
     }
 
+    /**
+     * Commits offsets of all the partitions with one zookeeper transaction. Cursors are applied in the order they
+     * are provided, so that a cursor is reported as committed only if it is bigger than the stored offset and all the
+     * previous cursors for the same partition.
+     */
     @Override
     public List<Boolean> commitOffsets(
             final List<SubscriptionCursorWithoutToken> cursors,
@@ -407,57 +445,79 @@ public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClie
         final Map<EventTypePartition, List<SubscriptionCursorWithoutToken>> grouped =
                 cursors.stream().collect(Collectors.groupingBy(SubscriptionCursorWithoutToken::getEventTypePartition));
         try {
+            final Map<EventTypePartition, List<Boolean>> committed = executeWithRetry(
+                    () -> commitOffsetsInTransaction(grouped, comparator),
+                    new RetryForSpecifiedCountStrategy<Map<EventTypePartition, List<Boolean>>>(
+                            COMMIT_CONFLICT_RETRY_TIMES)
+                            .withExceptionsThatForceRetry(KeeperException.BadVersionException.class));
             final Map<EventTypePartition, Iterator<Boolean>> committedOverall = new HashMap<>();
             for (final Map.Entry<EventTypePartition, List<SubscriptionCursorWithoutToken>> entry : grouped.entrySet()) {
-                final String offsetPath = getOffsetPath(entry.getKey());
-                final List<Boolean> committed;
-                committed = executeWithRetry(() -> {
-                            final Stat stat = new Stat();
-                            final byte[] currentOffsetData = getCurator().getData().storingStatIn(stat)
-                                    .forPath(offsetPath);
-                            final String currentMaxOffset = new String(currentOffsetData, UTF_8);
-                            SubscriptionCursorWithoutToken currentMaxCursor = new SubscriptionCursorWithoutToken(
-                                    entry.getKey().getEventType(),
-                                    entry.getKey().getPartition(),
-                                    currentMaxOffset
-                            );
-                            final List<Boolean> commits = Lists.newArrayList();
-
-                            for (final SubscriptionCursorWithoutToken cursor : entry.getValue()) {
-                                if (comparator.compare(cursor, currentMaxCursor) > 0) {
-                                    currentMaxCursor = cursor;
-                                    commits.add(true);
-                                } else {
-                                    commits.add(false);
-                                }
-                            }
-                            if (!currentMaxCursor.getOffset().equals(currentMaxOffset)) {
-                                getLog().info("Committing {} to {}", currentMaxCursor.getOffset(), offsetPath);
-                                getCurator()
-                                        .setData()
-                                        .withVersion(stat.getVersion())
-                                        .forPath(offsetPath, currentMaxCursor.getOffset().getBytes(Charsets.UTF_8));
-                            }
-                            return commits;
-                        },
-                        new RetryForSpecifiedCountStrategy<List<Boolean>>(COMMIT_CONFLICT_RETRY_TIMES)
-                                .withExceptionsThatForceRetry(KeeperException.BadVersionException.class));
                 committedOverall.put(
                         entry.getKey(),
                         Optional.ofNullable(committed)
+                                .map(c -> c.get(entry.getKey()))
                                 .orElse(Collections.nCopies(entry.getValue().size(), false))
                                 .iterator());
-
             }
             return cursors.stream()
                     .map(cursor -> committedOverall.get(cursor.getEventTypePartition()).next())
                     .collect(Collectors.toList());
 
+        } catch (final ServiceTemporarilyUnavailableException ex) {
+            throw ex;
         } catch (final Exception ex) {
             throw new NakadiRuntimeException(ex);
         }
     }
 
+    private Map<EventTypePartition, List<Boolean>> commitOffsetsInTransaction(
+            final Map<EventTypePartition, List<SubscriptionCursorWithoutToken>> grouped,
+            final Comparator<SubscriptionCursorWithoutToken> comparator) throws Exception {
+        final Map<EventTypePartition, CuratorEvent> currentOffsets =
+                loadNodesAsync(grouped.keySet(), this::getOffsetPath, (etp, event) -> event);
+        final List<EventTypePartition> notLoaded = grouped.keySet().stream()
+                .filter(etp -> !currentOffsets.containsKey(etp))
+                .collect(Collectors.toList());
+        if (!notLoaded.isEmpty()) {
+            throw new ServiceTemporarilyUnavailableException("Failed to read offsets of " + notLoaded, null);
+        }
+        final CuratorTransaction transaction = getCurator().inTransaction();
+        CuratorTransactionFinal changes = null;
+        final Map<EventTypePartition, List<Boolean>> result = new HashMap<>();
+        for (final Map.Entry<EventTypePartition, List<SubscriptionCursorWithoutToken>> entry : grouped.entrySet()) {
+            final CuratorEvent currentOffsetNode = currentOffsets.get(entry.getKey());
+            final String currentMaxOffset = new String(currentOffsetNode.getData(), UTF_8);
+            SubscriptionCursorWithoutToken currentMaxCursor = new SubscriptionCursorWithoutToken(
+                    entry.getKey().getEventType(),
+                    entry.getKey().getPartition(),
+                    currentMaxOffset
+            );
+            final List<Boolean> commits = Lists.newArrayList();
+
+            for (final SubscriptionCursorWithoutToken cursor : entry.getValue()) {
+                if (comparator.compare(cursor, currentMaxCursor) > 0) {
+                    currentMaxCursor = cursor;
+                    commits.add(true);
+                } else {
+                    commits.add(false);
+                }
+            }
+            if (!currentMaxCursor.getOffset().equals(currentMaxOffset)) {
+                getLog().info("Committing {} to {}", currentMaxCursor.getOffset(), currentOffsetNode.getPath());
+                changes = (null == changes ? transaction : changes)
+                        .setData()
+                        .withVersion(currentOffsetNode.getStat().getVersion())
+                        .forPath(currentOffsetNode.getPath(), currentMaxCursor.getOffset().getBytes(Charsets.UTF_8))
+                        .and();
+            }
+            result.put(entry.getKey(), commits);
+        }
+        if (null != changes) {
+            changes.commit();
+        }
+        return result;
+    }
+
     protected abstract byte[] createTopologyAndOffsets(Collection<SubscriptionCursorWithoutToken> cursors)
             throws Exception;
 
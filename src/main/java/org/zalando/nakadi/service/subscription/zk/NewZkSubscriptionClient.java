@@ -65,9 +65,11 @@ public class NewZkSubscriptionClient extends AbstractZkSubscriptionClient {
     public NewZkSubscriptionClient(
             final String subscriptionId,
             final CuratorFramework curatorFramework,
+            final ZkWatchRegistry watchRegistry,
+            final int maxReadsInFlight,
             final String loggingPath,
             final ObjectMapper objectMapper) {
-        super(subscriptionId, curatorFramework, loggingPath);
+        super(subscriptionId, curatorFramework, watchRegistry, maxReadsInFlight, loggingPath);
         this.objectMapper = objectMapper;
     }
 
@@ -130,11 +132,10 @@ public class NewZkSubscriptionClient extends AbstractZkSubscriptionClient {
     public final ZkSubscription<Topology> subscribeForTopologyChanges(final Runnable onTopologyChanged)
             throws NakadiRuntimeException {
         getLog().info("subscribeForTopologyChanges");
-        return new ZkSubscriptionImpl.ZkSubscriptionValueImpl<>(
-                getCurator(),
-                onTopologyChanged,
+        return getWatchRegistry().subscribeForData(
+                getSubscriptionPath(NODE_TOPOLOGY),
                 this::parseTopology,
-                getSubscriptionPath(NODE_TOPOLOGY));
+                onTopologyChanged);
     }
 
     protected byte[] serializeSession(final Session session)
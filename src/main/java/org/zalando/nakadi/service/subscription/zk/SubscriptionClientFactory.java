@@ -3,6 +3,7 @@ package org.zalando.nakadi.service.subscription.zk;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Preconditions;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.zalando.nakadi.domain.Subscription;
 import org.zalando.nakadi.exceptions.InternalNakadiException;
@@ -13,13 +14,19 @@ import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
 public class SubscriptionClientFactory {
     private final ZooKeeperHolder zkHolder;
     private final ObjectMapper objectMapper;
+    private final ZkWatchRegistry watchRegistry;
+    private final int maxReadsInFlight;
 
     @Autowired
     public SubscriptionClientFactory(
             final ZooKeeperHolder zkHolder,
-            final ObjectMapper objectMapper) {
+            final ObjectMapper objectMapper,
+            final ZkWatchRegistry watchRegistry,
+            @Value("${nakadi.subscription.maxZkReadsInFlight:100}") final int maxReadsInFlight) {
         this.zkHolder = zkHolder;
         this.objectMapper = objectMapper;
+        this.watchRegistry = watchRegistry;
+        this.maxReadsInFlight = maxReadsInFlight;
     }
 
     public ZkSubscriptionClient createClient(final Subscription subscription, final String loggingPath)
@@ -28,6 +35,8 @@ public class SubscriptionClientFactory {
         return new NewZkSubscriptionClient(
                 subscription.getId(),
                 zkHolder.get(),
+                watchRegistry,
+                maxReadsInFlight,
                 loggingPath,
                 objectMapper);
     }
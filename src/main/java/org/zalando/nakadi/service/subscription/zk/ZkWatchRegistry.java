@@ -0,0 +1,285 @@
+package org.zalando.nakadi.service.subscription.zk;
+
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.NodeCache;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.zalando.nakadi.exceptions.NakadiRuntimeException;
+import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
+
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Node wide registry of zookeeper watches used by subscription streams. All the streams of a node that are interested
+ * in the same znode share one curator cache for it, so a change of the znode results in a single read from
+ * zookeeper, no matter how many streams are listening to it. Caches are reference counted and closed when the last
+ * {@link ZkSubscription} for the path is closed.
+ */
+@Service
+public class ZkWatchRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ZkWatchRegistry.class);
+
+    private final ZooKeeperHolder zooKeeperHolder;
+    private final Map<String, SharedWatch<?>> watches = new HashMap<>();
+    // children caches notify listeners using this executor instead of creating a thread per cache
+    private final ExecutorService childrenEventsExecutor = Executors.newSingleThreadExecutor();
+
+    @Autowired
+    public ZkWatchRegistry(final ZooKeeperHolder zooKeeperHolder) {
+        this.zooKeeperHolder = zooKeeperHolder;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        childrenEventsExecutor.shutdown();
+    }
+
+    /**
+     * Subscribes for changes of data of znode. Listener is called after the cached data was updated, so that calls
+     * to {@link ZkSubscription#getData()} made after notification return new value.
+     */
+    public <R> ZkSubscription<R> subscribeForData(
+            final String path, final Function<byte[], R> converter, final Runnable listener)
+            throws NakadiRuntimeException {
+        return new SharedZkSubscription<>(acquire("data:" + path, () -> new DataWatch(path)), converter, listener);
+    }
+
+    /**
+     * Subscribes for changes of the list of children of znode.
+     */
+    public ZkSubscription<List<String>> subscribeForChildren(final String path, final Runnable listener)
+            throws NakadiRuntimeException {
+        return new SharedZkSubscription<>(
+                acquire("children:" + path, () -> new ChildrenWatch(path)), Function.identity(), listener);
+    }
+
+    int getWatchCount() {
+        synchronized (watches) {
+            return watches.size();
+        }
+    }
+
+    /**
+     * Only registration of the watch happens under the lock, cache is started outside of it, so that slow zookeeper
+     * reads for one path do not block acquiring of other paths. Concurrent acquirers of the same path wait for the
+     * start of the cache that is registered first.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> SharedWatch<T> acquire(final String key, final Supplier<SharedWatch<T>> creator)
+            throws NakadiRuntimeException {
+        final SharedWatch<T> watch;
+        final boolean created;
+        synchronized (watches) {
+            final SharedWatch<T> existing = (SharedWatch<T>) watches.get(key);
+            created = null == existing;
+            watch = created ? creator.get() : existing;
+            if (created) {
+                watches.put(key, watch);
+            }
+            ++watch.references;
+        }
+        try {
+            if (created) {
+                try {
+                    watch.start();
+                    watch.started.complete(null);
+                } catch (final NakadiRuntimeException e) {
+                    watch.started.completeExceptionally(e);
+                    throw e;
+                }
+            } else {
+                watch.awaitStarted();
+            }
+        } catch (final NakadiRuntimeException e) {
+            release(watch);
+            throw e;
+        }
+        return watch;
+    }
+
+    private void release(final SharedWatch<?> watch) {
+        synchronized (watches) {
+            if (--watch.references > 0) {
+                return;
+            }
+            watches.values().remove(watch);
+        }
+        closeWatch(watch);
+    }
+
+    private static void closeWatch(final SharedWatch<?> watch) {
+        try {
+            watch.close();
+        } catch (final IOException e) {
+            LOG.warn("Failed to close zookeeper cache for {}", watch.path, e);
+        }
+    }
+
+    private abstract static class SharedWatch<T> implements Closeable {
+        protected final String path;
+        private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+        private final AtomicLong version = new AtomicLong();
+        private final CompletableFuture<Void> started = new CompletableFuture<>();
+        // guarded by ZkWatchRegistry.watches
+        private int references;
+
+        private SharedWatch(final String path) {
+            this.path = path;
+        }
+
+        private void awaitStarted() throws NakadiRuntimeException {
+            try {
+                started.join();
+            } catch (final CompletionException e) {
+                throw (NakadiRuntimeException) e.getCause();
+            }
+        }
+
+        protected abstract void start() throws NakadiRuntimeException;
+
+        protected abstract T getCurrentData() throws NakadiRuntimeException;
+
+        protected void onChange() {
+            version.incrementAndGet();
+            for (final Runnable listener : listeners) {
+                try {
+                    listener.run();
+                } catch (final RuntimeException e) {
+                    LOG.error("Failed to notify listener of {}", path, e);
+                }
+            }
+        }
+    }
+
+    private class DataWatch extends SharedWatch<byte[]> {
+        private final NodeCache cache;
+
+        private DataWatch(final String path) {
+            super(path);
+            this.cache = new NodeCache(zooKeeperHolder.get(), path);
+            this.cache.getListenable().addListener(this::onChange);
+        }
+
+        @Override
+        protected void start() throws NakadiRuntimeException {
+            try {
+                cache.start(true);
+            } catch (final Exception e) {
+                throw new NakadiRuntimeException(e);
+            }
+        }
+
+        @Override
+        protected byte[] getCurrentData() throws NakadiRuntimeException {
+            final ChildData data = cache.getCurrentData();
+            if (null == data) {
+                throw new NakadiRuntimeException(new KeeperException.NoNodeException(path));
+            }
+            return data.getData();
+        }
+
+        @Override
+        public void close() throws IOException {
+            cache.close();
+        }
+    }
+
+    private class ChildrenWatch extends SharedWatch<List<String>> {
+        private final PathChildrenCache cache;
+
+        private ChildrenWatch(final String path) {
+            super(path);
+            this.cache = new PathChildrenCache(zooKeeperHolder.get(), path, false, false, childrenEventsExecutor);
+            this.cache.getListenable().addListener((client, event) -> {
+                switch (event.getType()) {
+                    case CHILD_ADDED:
+                    case CHILD_REMOVED:
+                    case CHILD_UPDATED:
+                        onChange();
+                        break;
+                    default:
+                        break;
+                }
+            });
+        }
+
+        @Override
+        protected void start() throws NakadiRuntimeException {
+            try {
+                cache.start(PathChildrenCache.StartMode.BUILD_INITIAL_CACHE);
+            } catch (final Exception e) {
+                throw new NakadiRuntimeException(e);
+            }
+        }
+
+        @Override
+        protected List<String> getCurrentData() {
+            return cache.getCurrentData().stream()
+                    .map(child -> ZKPaths.getNodeFromPath(child.getPath()))
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public void close() throws IOException {
+            cache.close();
+        }
+    }
+
+    private class SharedZkSubscription<T, R> implements ZkSubscription<R> {
+        private final SharedWatch<T> watch;
+        private final Function<T, R> converter;
+        private final Runnable listener;
+        private boolean closed;
+        // converted value is reused until the data changes
+        private long convertedVersion = -1;
+        private R converted;
+
+        private SharedZkSubscription(final SharedWatch<T> watch, final Function<T, R> converter,
+                                     final Runnable listener) {
+            this.watch = watch;
+            this.converter = converter;
+            this.listener = listener;
+            watch.listeners.add(listener);
+        }
+
+        @Override
+        public synchronized R getData() throws NakadiRuntimeException {
+            final long version = watch.version.get();
+            if (version != convertedVersion) {
+                converted = converter.apply(watch.getCurrentData());
+                convertedVersion = version;
+            }
+            return converted;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            watch.listeners.remove(listener);
+            release(watch);
+        }
+    }
+}
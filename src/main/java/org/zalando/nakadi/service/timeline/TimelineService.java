@@ -34,6 +34,7 @@ import org.zalando.nakadi.exceptions.runtime.DuplicatedTimelineException;
 import org.zalando.nakadi.exceptions.runtime.InconsistentStateException;
 import org.zalando.nakadi.exceptions.runtime.RepositoryProblemException;
 import org.zalando.nakadi.exceptions.runtime.ServiceTemporarilyUnavailableException;
+import org.zalando.nakadi.exceptions.runtime.TopicConfigException;
 import org.zalando.nakadi.exceptions.runtime.TopicRepositoryException;
 import org.zalando.nakadi.plugin.api.authz.AuthorizationService;
 import org.zalando.nakadi.plugin.api.authz.Resource;
@@ -44,6 +45,7 @@ import org.zalando.nakadi.repository.TopicRepositoryHolder;
 import org.zalando.nakadi.repository.db.EventTypeCache;
 import org.zalando.nakadi.repository.db.StorageDbRepository;
 import org.zalando.nakadi.repository.db.TimelineDbRepository;
+import org.zalando.nakadi.repository.db.TopicPoolDbRepository;
 import org.zalando.nakadi.service.AdminService;
 import org.zalando.nakadi.service.FeatureToggleService;
 import org.zalando.nakadi.service.NakadiCursorComparator;
@@ -53,6 +55,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -70,6 +73,7 @@ public class TimelineService {
     private final DefaultStorage defaultStorage;
     private final AdminService adminService;
     private final FeatureToggleService featureToggleService;
+    private final TopicPoolDbRepository topicPoolDbRepository;
 
     @Autowired
     public TimelineService(final EventTypeCache eventTypeCache,
@@ -80,7 +84,8 @@ public class TimelineService {
                            final TopicRepositoryHolder topicRepositoryHolder,
                            final TransactionTemplate transactionTemplate,
                            @Qualifier("default_storage") final DefaultStorage defaultStorage,
-                           final AdminService adminService, final FeatureToggleService featureToggleService) {
+                           final AdminService adminService, final FeatureToggleService featureToggleService,
+                           final TopicPoolDbRepository topicPoolDbRepository) {
         this.eventTypeCache = eventTypeCache;
         this.storageDbRepository = storageDbRepository;
         this.timelineSync = timelineSync;
@@ -91,6 +96,7 @@ public class TimelineService {
         this.defaultStorage = defaultStorage;
         this.adminService = adminService;
         this.featureToggleService = featureToggleService;
+        this.topicPoolDbRepository = topicPoolDbRepository;
     }
 
     public void createTimeline(final String eventTypeName, final String storageId)
@@ -144,7 +150,9 @@ public class TimelineService {
                     "are blocked by feature flag.");
         }
         final TopicRepository repository = topicRepositoryHolder.getTopicRepository(defaultStorage.getStorage());
-        final String topic = repository.createTopic(partitionsCount, retentionTime);
+        final Optional<String> pooledTopic = claimPooledTopic(repository, partitionsCount, retentionTime);
+        final String topic = pooledTopic.isPresent() ?
+                pooledTopic.get() : repository.createTopic(partitionsCount, retentionTime);
 
         try {
             final Timeline timeline = Timeline.createTimeline(eventTypeName, 1,
@@ -162,6 +170,34 @@ public class TimelineService {
         }
     }
 
+    /**
+     * Takes a topic created in advance by {@link org.zalando.nakadi.service.job.TopicPoolJob}, so that event type
+     * creation does not wait for the storage to create a topic. Pooled topics are created with default retention
+     * time, which is updated if event type requires another one. The pool is only an optimization, so in case of
+     * any problem the topic is created on demand.
+     */
+    private Optional<String> claimPooledTopic(final TopicRepository repository, final int partitionsCount,
+                                              final long retentionTime) {
+        final Optional<String> topic;
+        try {
+            topic = topicPoolDbRepository.claimTopic(defaultStorage.getStorage().getId(), partitionsCount);
+        } catch (final RepositoryProblemException e) {
+            LOG.warn("Failed to claim topic from the pool, it will be created on demand", e);
+            return Optional.empty();
+        }
+        if (topic.isPresent() && retentionTime != nakadiSettings.getDefaultTopicRetentionMs()) {
+            try {
+                repository.setRetentionTime(topic.get(), retentionTime);
+            } catch (final TopicConfigException e) {
+                LOG.warn("Failed to set retention time of pooled topic {}, it will be created on demand",
+                        topic.get(), e);
+                rollbackTopic(repository, topic.get());
+                return Optional.empty();
+            }
+        }
+        return topic;
+    }
+
     private void rollbackTopic(final TopicRepository repository, final String topic) {
         try {
             repository.deleteTopic(topic);
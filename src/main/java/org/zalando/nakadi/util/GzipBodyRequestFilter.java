@@ -16,33 +16,50 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.Response;
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
-import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
 
 import static javax.ws.rs.HttpMethod.POST;
 import static javax.ws.rs.core.HttpHeaders.CONTENT_ENCODING;
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
 import static javax.ws.rs.core.Response.Status.NOT_ACCEPTABLE;
+import static javax.ws.rs.core.Response.Status.REQUEST_ENTITY_TOO_LARGE;
 
+/**
+ * Decompresses gzipped request bodies before they are passed to the application. The body is inflated completely
+ * into a pooled buffer, so that the decompressed size is known to the application (see
+ * {@link #DECOMPRESSED_SIZE_ATTRIBUTE}) and bodies that are bigger than allowed are rejected before they are read.
+ */
 public class GzipBodyRequestFilter implements Filter {
 
+    /**
+     * Request attribute with the size of decompressed body in bytes, set only for gzipped requests.
+     */
+    public static final String DECOMPRESSED_SIZE_ATTRIBUTE = "org.zalando.nakadi.decompressedBodySize";
+
     private static final Logger LOG = LoggerFactory.getLogger(GzipBodyRequestFilter.class);
 
     private final ObjectMapper objectMapper;
+    private final PooledGzipInflater inflater;
 
-    public GzipBodyRequestFilter(final ObjectMapper objectMapper) {
+    public GzipBodyRequestFilter(final ObjectMapper objectMapper, final PooledGzipInflater inflater) {
         this.objectMapper = objectMapper;
+        this.inflater = inflater;
     }
 
     @Override
     public final void doFilter(final ServletRequest servletRequest, final ServletResponse servletResponse,
                                final FilterChain chain) throws IOException, ServletException {
 
-        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        final HttpServletRequest request = (HttpServletRequest) servletRequest;
 
         final boolean isGzipped = Optional
                 .ofNullable(request.getHeader(CONTENT_ENCODING))
@@ -50,82 +67,128 @@ public class GzipBodyRequestFilter implements Filter {
                 .orElse(false);
 
         if (isGzipped && !POST.equals(request.getMethod())) {
-            reportNotAcceptableError((HttpServletResponse) servletResponse, request);
+            reportError((HttpServletResponse) servletResponse, NOT_ACCEPTABLE,
+                    request.getMethod() + " method doesn't support gzip content encoding");
+            return;
+        }
+        else if (!isGzipped) {
+            chain.doFilter(request, servletResponse);
+            return;
+        }
+
+        final PooledGzipInflater.Inflated body;
+        try {
+            body = inflater.inflate(request.getInputStream());
+        } catch (final PooledGzipInflater.DecompressedSizeExceededException e) {
+            reportError((HttpServletResponse) servletResponse, REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+            return;
+        } catch (final ZipException | EOFException e) {
+            LOG.debug("Failed to decompress request body", e);
+            reportError((HttpServletResponse) servletResponse, BAD_REQUEST, "Malformed gzip content");
             return;
         }
-        else if (isGzipped) {
-            request = new GzipServletRequestWrapper(request);
+        try {
+            request.setAttribute(DECOMPRESSED_SIZE_ATTRIBUTE, body.getLength());
+            chain.doFilter(new GzipServletRequestWrapper(request, body), servletResponse);
+        } finally {
+            body.close();
         }
-        chain.doFilter(request, servletResponse);
     }
 
-    private void reportNotAcceptableError(final HttpServletResponse response, final HttpServletRequest request)
+    private void reportError(final HttpServletResponse response, final Response.Status status, final String detail)
             throws IOException {
 
-        response.setStatus(NOT_ACCEPTABLE.getStatusCode());
+        response.setStatus(status.getStatusCode());
         final PrintWriter writer = response.getWriter();
-        final Problem problem = Problem.valueOf(NOT_ACCEPTABLE,
-                request.getMethod() + " method doesn't support gzip content encoding");
+        final Problem problem = Problem.valueOf(status, detail);
         writer.write(objectMapper.writeValueAsString(problem));
         writer.close();
     }
 
     @Override
     public void init(final FilterConfig filterConfig) throws ServletException {
-        // filter is stateless, nothing to init
+        // nothing to init
     }
 
     @Override
     public void destroy() {
-        // filter is stateless, nothing to destroy
+        // inflaters are released by garbage collection, nothing to destroy
     }
 
 
-    private class GzipServletRequestWrapper extends HttpServletRequestWrapper{
+    private static class GzipServletRequestWrapper extends HttpServletRequestWrapper {
+
+        private final PooledGzipInflater.Inflated body;
 
-        GzipServletRequestWrapper(final HttpServletRequest request) {
+        GzipServletRequestWrapper(final HttpServletRequest request, final PooledGzipInflater.Inflated body) {
             super(request);
+            this.body = body;
         }
 
         @Override
         public ServletInputStream getInputStream() throws IOException {
-            return new GzipServletInputStream(super.getInputStream());
+            return new GzipServletInputStream(body.getData(), body.getLength());
         }
 
         @Override
         public BufferedReader getReader() throws IOException {
-            return new BufferedReader(new InputStreamReader(this.getInputStream()));
+            final Charset charset = Optional.ofNullable(getCharacterEncoding())
+                    .map(Charset::forName)
+                    .orElse(StandardCharsets.UTF_8);
+            return new BufferedReader(new InputStreamReader(this.getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.getLength();
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.getLength();
         }
     }
 
 
-    private class GzipServletInputStream extends ServletInputStream {
+    private static class GzipServletInputStream extends ServletInputStream {
 
-        private final InputStream inputStream;
+        private final byte[] data;
+        private final int length;
+        private int position;
 
-        GzipServletInputStream(final InputStream inputStream) throws IOException {
+        GzipServletInputStream(final byte[] data, final int length) {
             super();
-            this.inputStream = new GZIPInputStream(inputStream);
+            this.data = data;
+            this.length = length;
         }
 
         @Override
         public int read() throws IOException {
-            return inputStream.read();
+            return position < length ? data[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == length) {
+                return -1;
+            }
+            final int read = Math.min(len, length - position);
+            System.arraycopy(data, position, b, off, read);
+            position += read;
+            return read;
         }
 
         @Override
-        public void close() throws IOException {
-            inputStream.close();
+        public int available() throws IOException {
+            return length - position;
         }
 
         @Override
         public boolean isFinished() {
-            try {
-                return inputStream.available() == 0;
-            } catch (final IOException e) {
-                LOG.error("Error occurred when reading request input stream", e);
-                return false;
-            }
+            return position == length;
         }
 
         @Override
@@ -0,0 +1,98 @@
+package org.zalando.nakadi.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer. Every slot carries a sequence number that tells
+ * whether the slot is free for the producer of a given position or already filled for the consumer, so producers only
+ * compete on one CAS and never wait for each other.
+ *
+ * {@link #offer(Object)} may be called from any thread, {@link #poll()} and {@link #drain(Consumer, int)} must only
+ * be called by one thread at a time.
+ */
+public class MpscRingBuffer<T> {
+
+    private final int capacity;
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong producerPosition;
+    private final AtomicLong consumerPosition;
+
+    public MpscRingBuffer(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity should be positive, but was " + capacity);
+        }
+        this.capacity = capacity;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; ++i) {
+            sequences.set(i, i);
+        }
+        this.producerPosition = new AtomicLong();
+        this.consumerPosition = new AtomicLong();
+    }
+
+    /**
+     * @return false if the buffer is full and the element was not added
+     */
+    public boolean offer(final T element) {
+        long position = producerPosition.get();
+        while (true) {
+            final int index = (int) (position % capacity);
+            final long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (producerPosition.compareAndSet(position, position + 1)) {
+                    elements.set(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = producerPosition.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = producerPosition.get();
+            }
+        }
+    }
+
+    public T poll() {
+        final long position = consumerPosition.get();
+        final int index = (int) (position % capacity);
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        final T element = elements.get(index);
+        elements.set(index, null);
+        sequences.set(index, position + capacity);
+        consumerPosition.set(position + 1);
+        return element;
+    }
+
+    /**
+     * @return number of elements passed to consumer
+     */
+    public int drain(final Consumer<T> consumer, final int limit) {
+        int drained = 0;
+        T element;
+        while (drained < limit && null != (element = poll())) {
+            consumer.accept(element);
+            ++drained;
+        }
+        return drained;
+    }
+
+    /**
+     * @return approximate number of elements in buffer
+     */
+    public int size() {
+        final long size = producerPosition.get() - consumerPosition.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,257 @@
+package org.zalando.nakadi.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses gzip streams into byte arrays. Inflaters and buffers are taken from a pool and returned to it when the
+ * decompressed data is closed, so that decompressing a request does not allocate native inflater state and buffers
+ * every time. Decompression stops with {@link DecompressedSizeExceededException} as soon as more than
+ * {@code maxDecompressedBytes} are produced, without inflating the rest of the stream.
+ *
+ * Concatenated gzip members are supported, bytes that follow the last member and do not start a new member are
+ * ignored, the same way {@link java.util.zip.GZIPInputStream} does it.
+ */
+public class PooledGzipInflater {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int DEFLATE = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int INPUT_BUFFER_SIZE = 8192;
+    private static final int INITIAL_OUTPUT_SIZE = 64 * 1024;
+    // output buffers that have grown bigger are not kept in the pool, so that idle pool does not hold much memory
+    private static final int MAX_RETAINED_OUTPUT_SIZE = 1024 * 1024;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final BlockingQueue<InflaterContext> pool;
+    private final long maxDecompressedBytes;
+
+    public PooledGzipInflater(final int poolSize, final long maxDecompressedBytes) {
+        this.pool = new ArrayBlockingQueue<>(poolSize);
+        this.maxDecompressedBytes = maxDecompressedBytes;
+    }
+
+    /**
+     * Reads gzip stream till the end and decompresses it. Returned data must be closed to return buffers to the pool.
+     */
+    public Inflated inflate(final InputStream in) throws IOException {
+        InflaterContext context = pool.poll();
+        if (null == context) {
+            context = new InflaterContext();
+        }
+        try {
+            context.inflate(in, maxDecompressedBytes);
+            return new Inflated(context);
+        } catch (final IOException | RuntimeException e) {
+            release(context);
+            throw e;
+        }
+    }
+
+    private void release(final InflaterContext context) {
+        context.reset();
+        if (!pool.offer(context)) {
+            context.inflater.end();
+        }
+    }
+
+    public class Inflated implements Closeable {
+        private final InflaterContext context;
+        private boolean closed;
+
+        private Inflated(final InflaterContext context) {
+            this.context = context;
+        }
+
+        /**
+         * @return buffer with decompressed data in the first {@link #getLength()} bytes, it is valid till close
+         */
+        public byte[] getData() {
+            return context.output;
+        }
+
+        public int getLength() {
+            return context.outputLength;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(context);
+            }
+        }
+    }
+
+    public static class DecompressedSizeExceededException extends IOException {
+        public DecompressedSizeExceededException(final long maxDecompressedBytes) {
+            super("Decompressed size exceeds " + maxDecompressedBytes + " bytes");
+        }
+    }
+
+    private static class InflaterContext {
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private final byte[] input = new byte[INPUT_BUFFER_SIZE];
+        private int inputPosition;
+        private int inputLimit;
+        private InputStream in;
+        private byte[] output = new byte[INITIAL_OUTPUT_SIZE];
+        private int outputLength;
+        private int inflatedMemberSize;
+
+        private void inflate(final InputStream in, final long maxDecompressedBytes) throws IOException {
+            this.in = in;
+            readHeader();
+            do {
+                inflateMember(maxDecompressedBytes);
+                readTrailer();
+            } while (hasNextMember());
+        }
+
+        private void inflateMember(final long maxDecompressedBytes) throws IOException {
+            final int memberStart = outputLength;
+            inflater.reset();
+            crc.reset();
+            inflater.setInput(input, inputPosition, inputLimit - inputPosition);
+            try {
+                while (!inflater.finished()) {
+                    if (inflater.needsInput()) {
+                        if (!fill()) {
+                            throw new EOFException("Unexpected end of gzip input stream");
+                        }
+                        inflater.setInput(input, 0, inputLimit);
+                    }
+                    if (outputLength == output.length) {
+                        grow(maxDecompressedBytes);
+                    }
+                    final int inflated = inflater.inflate(output, outputLength, output.length - outputLength);
+                    if (inflated == 0 && inflater.needsDictionary()) {
+                        throw new ZipException("Gzip member requires a dictionary");
+                    }
+                    outputLength += inflated;
+                    if (outputLength > maxDecompressedBytes) {
+                        throw new DecompressedSizeExceededException(maxDecompressedBytes);
+                    }
+                }
+            } catch (final DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+            crc.update(output, memberStart, outputLength - memberStart);
+            inputPosition = inputLimit - inflater.getRemaining();
+            inflatedMemberSize = outputLength - memberStart;
+        }
+
+        private void grow(final long maxDecompressedBytes) {
+            // one byte more than allowed is enough to detect that the limit is exceeded
+            final long limit = Math.min(maxDecompressedBytes + 1, MAX_ARRAY_SIZE);
+            if (output.length >= limit) {
+                throw new IllegalStateException("Output buffer can not grow beyond " + limit + " bytes");
+            }
+            final int newSize = (int) Math.min(limit, Math.max(1L, output.length * 2L));
+            final byte[] newOutput = new byte[newSize];
+            System.arraycopy(output, 0, newOutput, 0, outputLength);
+            output = newOutput;
+        }
+
+        private void readHeader() throws IOException {
+            if (readUnsignedShort() != GZIP_MAGIC) {
+                throw new ZipException("Not in GZIP format");
+            }
+            if (readUnsignedByte() != DEFLATE) {
+                throw new ZipException("Unsupported compression method");
+            }
+            final int flags = readUnsignedByte();
+            skip(6); // modification time, extra flags and operating system
+            if ((flags & FEXTRA) == FEXTRA) {
+                skip(readUnsignedShort());
+            }
+            if ((flags & FNAME) == FNAME) {
+                skipZeroTerminated();
+            }
+            if ((flags & FCOMMENT) == FCOMMENT) {
+                skipZeroTerminated();
+            }
+            if ((flags & FHCRC) == FHCRC) {
+                skip(2);
+            }
+        }
+
+        private void readTrailer() throws IOException {
+            final long expectedCrc = readUnsignedInt();
+            final long expectedSize = readUnsignedInt();
+            if (expectedCrc != crc.getValue() || expectedSize != (inflatedMemberSize & 0xffffffffL)) {
+                throw new ZipException("Corrupt GZIP trailer");
+            }
+        }
+
+        private boolean hasNextMember() throws IOException {
+            if (inputPosition == inputLimit && !fill()) {
+                return false;
+            }
+            try {
+                readHeader();
+                return true;
+            } catch (final IOException e) {
+                // not a gzip member, the rest of the stream is ignored
+                return false;
+            }
+        }
+
+        private boolean fill() throws IOException {
+            final int read = in.read(input, 0, input.length);
+            inputPosition = 0;
+            inputLimit = Math.max(read, 0);
+            return read > 0;
+        }
+
+        private int readUnsignedByte() throws IOException {
+            if (inputPosition == inputLimit && !fill()) {
+                throw new EOFException("Unexpected end of gzip input stream");
+            }
+            return input[inputPosition++] & 0xff;
+        }
+
+        private int readUnsignedShort() throws IOException {
+            return readUnsignedByte() | (readUnsignedByte() << 8);
+        }
+
+        private long readUnsignedInt() throws IOException {
+            return ((long) readUnsignedShort()) | ((long) readUnsignedShort() << 16);
+        }
+
+        private void skip(final int bytes) throws IOException {
+            for (int i = 0; i < bytes; ++i) {
+                readUnsignedByte();
+            }
+        }
+
+        private void skipZeroTerminated() throws IOException {
+            while (readUnsignedByte() != 0) {
+                // skipping
+            }
+        }
+
+        private void reset() {
+            in = null;
+            inputPosition = 0;
+            inputLimit = 0;
+            outputLength = 0;
+            inflatedMemberSize = 0;
+            if (output.length > MAX_RETAINED_OUTPUT_SIZE) {
+                output = new byte[INITIAL_OUTPUT_SIZE];
+            }
+        }
+    }
+}
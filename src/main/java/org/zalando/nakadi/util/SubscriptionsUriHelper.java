@@ -2,7 +2,9 @@ package org.zalando.nakadi.util;
 
 import org.springframework.web.util.UriComponentsBuilder;
 import org.zalando.nakadi.domain.PaginationLinks;
+import org.zalando.nakadi.domain.Subscription;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -30,10 +32,40 @@ public class SubscriptionsUriHelper {
         return new PaginationLinks(prevLink, nextLink);
     }
 
+    /**
+     * Links for a page requested with 'after' cursor. Only the next page is linked, as going backwards would need
+     * the reversed order.
+     */
+    public static PaginationLinks createSubscriptionKeysetPaginationLinks(final Optional<String> owningApplication,
+                                                                          final Set<String> eventTypes,
+                                                                          final List<Subscription> currentPage,
+                                                                          final int limit, final boolean showStatus) {
+        Optional<PaginationLinks.Link> nextLink = Optional.empty();
+        if (currentPage.size() >= limit) {
+            final String lastId = currentPage.get(currentPage.size() - 1).getId();
+            final String nextUri = createSubscriptionListUriBuilder(owningApplication, eventTypes, showStatus)
+                    .queryParam("after", lastId)
+                    .queryParam("limit", limit)
+                    .build()
+                    .toString();
+            nextLink = Optional.of(new PaginationLinks.Link(nextUri));
+        }
+        return new PaginationLinks(Optional.empty(), nextLink);
+    }
+
     public static String createSubscriptionListUri(final Optional<String> owningApplication,
                                                    final Set<String> eventTypes, final int offset, final int limit,
                                                    final boolean showStatus) {
+        return createSubscriptionListUriBuilder(owningApplication, eventTypes, showStatus)
+                .queryParam("offset", offset)
+                .queryParam("limit", limit)
+                .build()
+                .toString();
+    }
 
+    private static UriComponentsBuilder createSubscriptionListUriBuilder(final Optional<String> owningApplication,
+                                                                         final Set<String> eventTypes,
+                                                                         final boolean showStatus) {
         final UriComponentsBuilder urlBuilder = UriComponentsBuilder.fromPath("/subscriptions");
         if (!eventTypes.isEmpty()) {
             urlBuilder.queryParam("event_type", eventTypes.toArray());
@@ -42,10 +74,6 @@ public class SubscriptionsUriHelper {
         if (showStatus) {
             urlBuilder.queryParam("show_status", "true");
         }
-        return urlBuilder
-                .queryParam("offset", offset)
-                .queryParam("limit", limit)
-                .build()
-                .toString();
+        return urlBuilder;
     }
 }
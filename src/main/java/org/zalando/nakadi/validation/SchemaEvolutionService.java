@@ -25,7 +25,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.function.BinaryOperator;
 import java.util.stream.Collectors;
 
 import static org.zalando.nakadi.domain.SchemaChange.Type.ADDITIONAL_ITEMS_CHANGED;
@@ -181,22 +180,20 @@ public class SchemaEvolutionService {
                                            final CompatibilityMode compatibilityMode) {
         if (changes.isEmpty() && !originalSchema.equals(updatedSchema)) {
             return PATCH;
-        } else {
-            final Map<SchemaChange.Type, Version.Level> semanticOfChange = compatibilityMode
-                    .equals(CompatibilityMode.COMPATIBLE) ? compatibleChanges : forwardChanges;
-            return changes.stream().map(SchemaChange::getType).map(semanticOfChange::get)
-                    .reduce(NO_CHANGES, collectOverallChange());
         }
-    }
-
-    private BinaryOperator<Version.Level> collectOverallChange() {
-        return (acc, change) -> {
-            if (Version.Level.valueOf(change.toString()).ordinal() < Version.Level.valueOf(acc.toString()).ordinal()) {
-                return change;
-            } else {
-                return acc;
+        final Map<SchemaChange.Type, Version.Level> semanticOfChange = compatibilityMode
+                .equals(CompatibilityMode.COMPATIBLE) ? compatibleChanges : forwardChanges;
+        Version.Level result = NO_CHANGES;
+        for (final SchemaChange change : changes) {
+            final Version.Level level = semanticOfChange.get(change.getType());
+            if (level.ordinal() < result.ordinal()) {
+                result = level;
+                if (result == MAJOR) {
+                    break;
+                }
             }
-        };
+        }
+        return result;
     }
 
     private Schema schema(final EventTypeBase eventType) {
@@ -59,7 +59,7 @@ public class SchemaDiff {
             update = updateIn;
         }
 
-        state.analyzeSchema(originalIn, () -> {
+        state.analyzeSchema(originalIn, updateIn, () -> {
             if (!Objects.equals(original.getId(), update.getId())) {
                 state.addChange(ID_CHANGED);
             }
@@ -4,30 +4,72 @@ import org.everit.json.schema.Schema;
 import org.zalando.nakadi.domain.SchemaChange;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.stream.Collectors;
 
+/**
+ * Collects changes while schemas are walked in a single pass. Every pair of (original, update) subschemas is
+ * analyzed only once: changes found inside of it are remembered relative to the pair and replayed on the current
+ * path when the same pair is reached again, for instance through a shared {@code $ref} definition. Subtrees that
+ * are equal are not walked at all.
+ */
 public class SchemaDiffState {
     private final Stack<String> jsonPath;
-    private final List<SchemaChange> changes;
-    private final List<Schema> schemasInAnalysis;
+    private final List<Change> changes;
+    private final List<Frame> schemasInAnalysis;
+    private final Map<SchemaPair, List<Change>> analyzedPairs;
+    private final SubschemaHashes hashes;
 
     public SchemaDiffState() {
         jsonPath = new Stack<>();
         changes = new ArrayList<>();
         schemasInAnalysis = new ArrayList<>();
+        analyzedPairs = new HashMap<>();
+        hashes = new SubschemaHashes();
     }
 
-    public void analyzeSchema(final Schema schema, final Runnable r) {
-        // The problem here that hashCode will die for recursive schema
-        if (schemasInAnalysis.stream().anyMatch(s -> s == schema)) {
+    public void analyzeSchema(final Schema original, final Schema update, final Runnable r) {
+        // The problem here that hashCode will die for recursive schema, so schemas are compared by identity
+        for (int i = 0; i < schemasInAnalysis.size(); ++i) {
+            if (schemasInAnalysis.get(i).schema == original) {
+                // result of all the pairs that are analyzed on top of this one depends on the way they were reached
+                schemasInAnalysis.get(schemasInAnalysis.size() - 1).dependsOn(i);
+                return;
+            }
+        }
+        final SchemaPair pair = new SchemaPair(original, update);
+        final List<Change> knownChanges = analyzedPairs.get(pair);
+        if (null != knownChanges) {
+            for (final Change change : knownChanges) {
+                changes.add(change.prependPath(jsonPath));
+            }
+            return;
+        }
+        if (hashes.areEqual(original, update)) {
             return;
         }
-        schemasInAnalysis.add(schema);
+
+        final int depth = schemasInAnalysis.size();
+        final int pathDepth = jsonPath.size();
+        final int firstChange = changes.size();
+        final Frame frame = new Frame(original);
+        schemasInAnalysis.add(frame);
         try {
             r.run();
         } finally {
-            schemasInAnalysis.remove(schemasInAnalysis.size() - 1);
+            schemasInAnalysis.remove(depth);
+        }
+        if (frame.dependsOnDepth < depth) {
+            if (depth > 0) {
+                schemasInAnalysis.get(depth - 1).dependsOn(frame.dependsOnDepth);
+            }
+        } else {
+            analyzedPairs.put(pair, changes.subList(firstChange, changes.size()).stream()
+                    .map(change -> change.removePath(pathDepth))
+                    .collect(Collectors.toList()));
         }
     }
 
@@ -41,11 +83,13 @@ public class SchemaDiffState {
     }
 
     public List<SchemaChange> getChanges() {
-        return changes;
+        return changes.stream()
+                .map(change -> new SchemaChange(change.type, jsonPathString(change.path)))
+                .collect(Collectors.toList());
     }
 
     public void addChange(final SchemaChange.Type type) {
-        changes.add(new SchemaChange(type, jsonPathString(jsonPath)));
+        changes.add(new Change(type, new ArrayList<>(jsonPath)));
     }
 
     public void addChange(final String attribute, final SchemaChange.Type type) {
@@ -57,4 +101,66 @@ public class SchemaDiffState {
     private static String jsonPathString(final List<String> jsonPath) {
         return "#/" + String.join("/", jsonPath);
     }
+
+    private static class Change {
+        private final SchemaChange.Type type;
+        private final List<String> path;
+
+        private Change(final SchemaChange.Type type, final List<String> path) {
+            this.type = type;
+            this.path = path;
+        }
+
+        private Change removePath(final int pathDepth) {
+            return new Change(type, new ArrayList<>(path.subList(pathDepth, path.size())));
+        }
+
+        private Change prependPath(final List<String> prefix) {
+            final List<String> fullPath = new ArrayList<>(prefix.size() + path.size());
+            fullPath.addAll(prefix);
+            fullPath.addAll(path);
+            return new Change(type, fullPath);
+        }
+    }
+
+    private static class Frame {
+        private final Schema schema;
+        // the lowest depth of schema in analysis that was reached recursively while analyzing this one
+        private int dependsOnDepth = Integer.MAX_VALUE;
+
+        private Frame(final Schema schema) {
+            this.schema = schema;
+        }
+
+        private void dependsOn(final int depth) {
+            dependsOnDepth = Math.min(dependsOnDepth, depth);
+        }
+    }
+
+    private static class SchemaPair {
+        private final Schema original;
+        private final Schema update;
+
+        private SchemaPair(final Schema original, final Schema update) {
+            this.original = original;
+            this.update = update;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SchemaPair)) {
+                return false;
+            }
+            final SchemaPair that = (SchemaPair) o;
+            return original == that.original && update == that.update;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(original) + System.identityHashCode(update);
+        }
+    }
 }
@@ -0,0 +1,105 @@
+package org.zalando.nakadi.validation.schema.diff;
+
+import org.everit.json.schema.ArraySchema;
+import org.everit.json.schema.CombinedSchema;
+import org.everit.json.schema.NotSchema;
+import org.everit.json.schema.ObjectSchema;
+import org.everit.json.schema.ReferenceSchema;
+import org.everit.json.schema.Schema;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Structural hashes of subschemas, calculated once per schema instance. Hashes only cover fields that take part in
+ * {@link Schema#equals(Object)}, so subschemas with different hashes are never equal. Schemas containing references
+ * are never reported as equal, because their {@code equals} may not terminate for recursive schemas.
+ */
+class SubschemaHashes {
+
+    private static final Hash REFERENCE = new Hash(0, true);
+
+    private final Map<Schema, Hash> hashes = new IdentityHashMap<>();
+
+    boolean areEqual(final Schema original, final Schema update) {
+        final Hash originalHash = hash(original);
+        final Hash updateHash = hash(update);
+        return !originalHash.hasReferences
+                && !updateHash.hasReferences
+                && originalHash.value == updateHash.value
+                && original.equals(update);
+    }
+
+    private Hash hash(final Schema schema) {
+        if (null == schema) {
+            return new Hash(0, false);
+        }
+        if (schema instanceof ReferenceSchema) {
+            return REFERENCE;
+        }
+        final Hash known = hashes.get(schema);
+        if (null != known) {
+            return known;
+        }
+        final Builder builder = new Builder(Objects.hash(
+                schema.getClass(), schema.getId(), schema.getTitle(), schema.getDescription()));
+        if (schema instanceof ObjectSchema) {
+            final ObjectSchema objectSchema = (ObjectSchema) schema;
+            objectSchema.getPropertySchemas().forEach((name, property) -> builder.add(name, hash(property)));
+            builder.add(hash(objectSchema.getSchemaOfAdditionalProperties()));
+            objectSchema.getSchemaDependencies().forEach((name, dependency) -> builder.add(name, hash(dependency)));
+            objectSchema.getPatternProperties().forEach((pattern, property) ->
+                    builder.add(pattern.pattern(), hash(property)));
+        } else if (schema instanceof ArraySchema) {
+            final ArraySchema arraySchema = (ArraySchema) schema;
+            builder.add(hash(arraySchema.getAllItemSchema()));
+            if (null != arraySchema.getItemSchemas()) {
+                arraySchema.getItemSchemas().forEach(item -> builder.add(hash(item)));
+            }
+            builder.add(hash(arraySchema.getSchemaOfAdditionalItems()));
+        } else if (schema instanceof CombinedSchema) {
+            ((CombinedSchema) schema).getSubschemas().forEach(subschema -> builder.add(hash(subschema)));
+        } else if (schema instanceof NotSchema) {
+            builder.add(hash(((NotSchema) schema).getMustNotMatch()));
+        }
+        final Hash result = builder.build();
+        hashes.put(schema, result);
+        return result;
+    }
+
+    private static class Hash {
+        private final int value;
+        private final boolean hasReferences;
+
+        private Hash(final int value, final boolean hasReferences) {
+            this.value = value;
+            this.hasReferences = hasReferences;
+        }
+    }
+
+    private static class Builder {
+        private int value;
+        private int unordered;
+        private boolean hasReferences;
+
+        private Builder(final int value) {
+            this.value = value;
+        }
+
+        private void add(final Hash hash) {
+            hasReferences |= hash.hasReferences;
+            value = 31 * value + hash.value;
+        }
+
+        // entries of maps are compared regardless of their order
+        private void add(final String key, final Hash hash) {
+            hasReferences |= hash.hasReferences;
+            unordered += key.hashCode() ^ hash.value;
+        }
+
+        private Hash build() {
+            return new Hash(31 * value + unordered, hasReferences);
+        }
+    }
+}
@@ -25,6 +25,7 @@ import org.zalando.nakadi.security.ClientResolver;
 import org.zalando.nakadi.service.BlacklistService;
 import org.zalando.nakadi.service.EventPublisher;
 import org.zalando.nakadi.service.FeatureToggleService;
+import org.zalando.nakadi.service.KpiEvent;
 import org.zalando.nakadi.service.NakadiKpiPublisher;
 import org.zalando.nakadi.utils.TestUtils;
 
@@ -210,7 +211,7 @@ public class EventPublishingControllerTest {
 
         assertThat(etNameCaptor.getValue(), equalTo("kpiEventTypeName"));
 
-        final JSONObject kpi = (JSONObject) eventGeneratorCaptor.getValue().get();
+        final JSONObject kpi = new JSONObject(((KpiEvent) eventGeneratorCaptor.getValue().get()).toJson());
         assertThat(kpi,
                 is(sameJSONObjectAs(new JSONObject().put("app", "adminClientId")
                         .put("app_hashed", "hashed-application-name")
@@ -38,13 +38,14 @@ import org.zalando.nakadi.security.NakadiClient;
 import org.zalando.nakadi.service.AdminService;
 import org.zalando.nakadi.service.AuthorizationValidator;
 import org.zalando.nakadi.service.BlacklistService;
-import org.zalando.nakadi.service.ClosedConnectionsCrutch;
+import org.zalando.nakadi.service.ConnectionCloseDetector;
 import org.zalando.nakadi.service.ConsumerLimitingService;
 import org.zalando.nakadi.service.EventStream;
 import org.zalando.nakadi.service.EventStreamConfig;
 import org.zalando.nakadi.service.EventStreamFactory;
 import org.zalando.nakadi.service.EventTypeChangeListener;
 import org.zalando.nakadi.service.FeatureToggleService;
+import org.zalando.nakadi.service.StreamCompressionService;
 import org.zalando.nakadi.service.converter.CursorConverterImpl;
 import org.zalando.nakadi.service.timeline.TimelineService;
 import org.zalando.nakadi.utils.TestUtils;
@@ -145,8 +146,8 @@ public class EventStreamControllerTest {
                 eq(KAFKA_CLIENT_ID), any()))
                 .thenReturn(eventConsumerMock);
 
-        final ClosedConnectionsCrutch crutch = mock(ClosedConnectionsCrutch.class);
-        when(crutch.listenForConnectionClose(requestMock)).thenReturn(new AtomicBoolean(true));
+        final ConnectionCloseDetector connectionCloseDetector = mock(ConnectionCloseDetector.class);
+        when(connectionCloseDetector.listenForConnectionClose(requestMock)).thenReturn(new AtomicBoolean(true));
 
         blacklistService = Mockito.mock(BlacklistService.class);
         Mockito.when(blacklistService.isConsumptionBlocked(any(), any())).thenReturn(false);
@@ -167,9 +168,9 @@ public class EventStreamControllerTest {
         when(eventTypeChangeListener.registerListener(any(), any())).thenReturn(mock(Closeable.class));
         controller = new EventStreamController(
                 eventTypeRepository, timelineService, TestUtils.OBJECT_MAPPER, eventStreamFactoryMock, metricRegistry,
-                streamMetrics, crutch, blacklistService, consumerLimitingService, featureToggleService,
+                streamMetrics, connectionCloseDetector, blacklistService, consumerLimitingService, featureToggleService,
                 new CursorConverterImpl(eventTypeCache, timelineService), authorizationValidator,
-                eventTypeChangeListener, null);
+                eventTypeChangeListener, new StreamCompressionService(streamMetrics, metricRegistry, 6, 1000), null);
 
         settings = mock(SecuritySettings.class);
         when(settings.getAuthMode()).thenReturn(OFF);
@@ -26,6 +26,7 @@ import org.zalando.nakadi.service.AuthorizationValidator;
 import org.zalando.nakadi.service.CursorConverter;
 import org.zalando.nakadi.service.CursorOperationsService;
 import org.zalando.nakadi.service.FeatureToggleService;
+import org.zalando.nakadi.service.PartitionsViewService;
 import org.zalando.nakadi.service.converter.CursorConverterImpl;
 import org.zalando.nakadi.service.timeline.TimelineService;
 import org.zalando.nakadi.utils.TestUtils;
@@ -36,7 +37,6 @@ import org.zalando.problem.ThrowableProblem;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 import static javax.ws.rs.core.Response.Status.NOT_FOUND;
 import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
@@ -101,7 +101,9 @@ public class PartitionsControllerTest {
                 .thenReturn(Collections.singletonList(TIMELINE));
         when(timelineService.getTopicRepository((Timeline) any())).thenReturn(topicRepositoryMock);
         final CursorConverter cursorConverter = new CursorConverterImpl(eventTypeCache, timelineService);
-        final PartitionsController controller = new PartitionsController(timelineService, cursorConverter,
+        final PartitionsViewService partitionsViewService =
+                new PartitionsViewService(timelineService, cursorConverter, 0, 100, 0);
+        final PartitionsController controller = new PartitionsController(partitionsViewService, cursorConverter,
                 cursorOperationsService, eventTypeRepositoryMock, authorizationValidator);
 
         settings = mock(SecuritySettings.class);
@@ -155,8 +157,8 @@ public class PartitionsControllerTest {
     public void whenGetPartitionThenOk() throws Exception {
         when(eventTypeRepositoryMock.findByName(TEST_EVENT_TYPE)).thenReturn(EVENT_TYPE);
         when(topicRepositoryMock.topicExists(eq(EVENT_TYPE.getName()))).thenReturn(true);
-        when(topicRepositoryMock.loadPartitionStatistics(eq(TIMELINE), eq(TEST_PARTITION)))
-                .thenReturn(Optional.of(TEST_POSITION_STATS.get(0)));
+        when(topicRepositoryMock.loadTopicStatistics(eq(Collections.singletonList(TIMELINE))))
+                .thenReturn(TEST_POSITION_STATS);
 
         mockMvc.perform(
                 get(String.format("/event-types/%s/partitions/%s", TEST_EVENT_TYPE, TEST_PARTITION)))
@@ -202,8 +204,8 @@ public class PartitionsControllerTest {
     public void whenGetPartitionWithConsumedOffsetThenOk() throws Exception {
         when(eventTypeRepositoryMock.findByName(TEST_EVENT_TYPE)).thenReturn(EVENT_TYPE);
         when(topicRepositoryMock.topicExists(eq(EVENT_TYPE.getName()))).thenReturn(true);
-        when(topicRepositoryMock.loadPartitionStatistics(eq(TIMELINE), eq(TEST_PARTITION)))
-                .thenReturn(Optional.of(TEST_POSITION_STATS.get(0)));
+        when(topicRepositoryMock.loadTopicStatistics(eq(Collections.singletonList(TIMELINE))))
+                .thenReturn(TEST_POSITION_STATS);
         final List<NakadiCursorLag> lags = mockCursorLag();
         when(cursorOperationsService.cursorsLag(any(), any())).thenReturn(lags);
 
@@ -246,9 +248,8 @@ public class PartitionsControllerTest {
     public void whenGetPartitionForWrongPartitionThenNotFound() throws Exception {
         when(eventTypeRepositoryMock.findByName(TEST_EVENT_TYPE)).thenReturn(EVENT_TYPE);
         when(topicRepositoryMock.topicExists(eq(EVENT_TYPE.getName()))).thenReturn(true);
-        when(topicRepositoryMock.loadPartitionStatistics(
-                eq(TIMELINE), eq(UNKNOWN_PARTITION)))
-                .thenReturn(Optional.empty());
+        when(topicRepositoryMock.loadTopicStatistics(eq(Collections.singletonList(TIMELINE))))
+                .thenReturn(TEST_POSITION_STATS);
         final ThrowableProblem expectedProblem = Problem.valueOf(NOT_FOUND, "partition not found");
 
         mockMvc.perform(
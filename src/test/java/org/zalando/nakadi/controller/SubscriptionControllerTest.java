@@ -16,6 +16,7 @@ import org.zalando.nakadi.domain.EventTypeBase;
 import org.zalando.nakadi.domain.EventTypePartition;
 import org.zalando.nakadi.domain.ItemsWrapper;
 import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.NakadiCursorDistanceQuery;
 import org.zalando.nakadi.domain.PaginationLinks;
 import org.zalando.nakadi.domain.PaginationWrapper;
 import org.zalando.nakadi.domain.PartitionEndStatistics;
@@ -58,6 +59,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static java.text.MessageFormat.format;
 import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
@@ -223,6 +225,40 @@ public class SubscriptionControllerTest {
                 .andExpect(content().string(TestUtils.JSON_TEST_HELPER.matchesObject(expectedResult)));
     }
 
+    @Test
+    public void whenListSubscriptionsAfterSubscriptionThenKeysetPaginationIsUsed() throws Exception {
+        final List<Subscription> subscriptions = createRandomSubscriptions(10);
+        when(subscriptionRepository.getSubscription("sid")).thenReturn(subscriptions.get(0));
+        when(subscriptionRepository.listSubscriptionsAfter(any(), any(), any(), anyInt())).thenReturn(subscriptions);
+
+        final PaginationLinks.Link nextLink = new PaginationLinks.Link("/subscriptions?owning_application=app&after="
+                + subscriptions.get(9).getId() + "&limit=10");
+        final PaginationLinks links = new PaginationLinks(Optional.empty(), Optional.of(nextLink));
+        final PaginationWrapper expectedResult = new PaginationWrapper(subscriptions, links);
+
+        mockMvcBuilder.build().perform(get("/subscriptions?owning_application=app&after=sid&limit=10"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(TestUtils.JSON_TEST_HELPER.matchesObject(expectedResult)));
+
+        verify(subscriptionRepository, times(1))
+                .listSubscriptionsAfter(ImmutableSet.of(), Optional.of("app"), "sid", 10);
+    }
+
+    @Test
+    public void whenListSubscriptionsWithOffsetAndAfterThenBadRequest() throws Exception {
+        final Problem expectedProblem = Problem.valueOf(BAD_REQUEST,
+                "'offset' and 'after' parameters can't be used together");
+        checkForProblem(mockMvcBuilder.build().perform(get("/subscriptions?after=sid&offset=5")), expectedProblem);
+    }
+
+    @Test
+    public void whenListSubscriptionsAfterNotExistingSubscriptionThenBadRequest() throws Exception {
+        when(subscriptionRepository.getSubscription("sid")).thenThrow(new NoSuchSubscriptionException("dummy"));
+        final Problem expectedProblem = Problem.valueOf(BAD_REQUEST,
+                "Subscription \"sid\" from 'after' parameter does not exist");
+        checkForProblem(mockMvcBuilder.build().perform(get("/subscriptions?after=sid")), expectedProblem);
+    }
+
     @Test
     public void whenGetSubscriptionAndExceptionThenServiceUnavailable() throws Exception {
         when(subscriptionRepository.getSubscription(any()))
@@ -255,8 +291,14 @@ public class SubscriptionControllerTest {
         when(currentCursor.getEventTypePartition()).thenReturn(new EventTypePartition(TIMELINE.getEventType(), "0"));
         when(cursorConverter.convert((List<SubscriptionCursorWithoutToken>) any()))
                 .thenReturn(Collections.singletonList(currentCursor));
-        when(cursorOperationsService.calculateDistance(eq(currentCursor), eq(statistics.get(0).getLast())))
-                .thenReturn(10L);
+        when(cursorOperationsService.calculateDistances(any())).thenAnswer(invocation -> {
+            final List<NakadiCursorDistanceQuery> queries = (List<NakadiCursorDistanceQuery>) invocation
+                    .getArguments()[0];
+            return queries.stream()
+                    .map(q -> q.getInitialCursor() == currentCursor &&
+                            q.getFinalCursor().equals(statistics.get(0).getLast()) ? 10L : -1L)
+                    .collect(Collectors.toList());
+        });
 
         final List<SubscriptionEventTypeStats> expectedStats =
                 Collections.singletonList(new SubscriptionEventTypeStats(
@@ -7,6 +7,7 @@ import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.UUID;
 
@@ -30,6 +31,16 @@ public class BatchItemTest {
         assertEquals(20, item.getEventSize());
     }
 
+    @Test
+    public void whenTrustedItemIsCreatedThenSizeIncludesMetadata() {
+        final BatchItem item = BatchItem.trusted("{\"name\":\"香港\"}", "{\"eid\":\"some-eid\"}");
+        assertEquals(item.dumpEventToString().getBytes(StandardCharsets.UTF_8).length, item.getEventSize());
+
+        final BatchItem emptyItem = BatchItem.trusted("{}", "{\"eid\":\"some-eid\"}");
+        assertEquals(emptyItem.dumpEventToString().getBytes(StandardCharsets.UTF_8).length,
+                emptyItem.getEventSize());
+    }
+
     @Test
     public void testAmountOfBrackets1() {
         Assert.assertEquals(
@@ -0,0 +1,84 @@
+package org.zalando.nakadi.filters;
+
+import com.codahale.metrics.MetricRegistry;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.zalando.nakadi.metrics.MetricUtils;
+import org.zalando.nakadi.service.KpiEvent;
+import org.zalando.nakadi.service.NakadiKpiPublisher;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LoggingFilterTest {
+
+    private static final String ACCESS_LOG_ET = "nakadi.access.log";
+
+    private final NakadiKpiPublisher kpiPublisher = mock(NakadiKpiPublisher.class);
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private LoggingFilter filter;
+
+    @Before
+    public void setUp() {
+        when(kpiPublisher.hash("app")).thenReturn("app-hash");
+        filter = new LoggingFilter(kpiPublisher, ACCESS_LOG_ET, metricRegistry, 2,
+                mock(ScheduledExecutorService.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenRequestIsProcessedThenKpiEventIsPublished() throws Exception {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/event-types/et/events");
+        request.setQueryString("a=\"b\"");
+        request.setUserPrincipal(() -> "app");
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(422);
+
+        filter.doFilter(request, response, new MockFilterChain());
+
+        final ArgumentCaptor<Supplier> eventCaptor = ArgumentCaptor.forClass(Supplier.class);
+        verify(kpiPublisher).publish(eq(ACCESS_LOG_ET), eventCaptor.capture());
+        final JSONObject event = new JSONObject(((KpiEvent) eventCaptor.getValue().get()).toJson());
+        assertThat(event.keySet().size(), equalTo(7));
+        assertThat(event.getString("method"), equalTo("POST"));
+        assertThat(event.getString("path"), equalTo("/event-types/et/events"));
+        assertThat(event.getString("query"), equalTo("?a=\"b\""));
+        assertThat(event.getString("app"), equalTo("app"));
+        assertThat(event.getString("app_hashed"), equalTo("app-hash"));
+        assertThat(event.getInt("status_code"), equalTo(422));
+        assertThat(event.getLong("response_time_ms") >= 0, equalTo(true));
+    }
+
+    @Test
+    public void whenAccessLogBufferIsFullThenRecordsAreDroppedAndCounted() throws Exception {
+        for (int i = 0; i < 5; ++i) {
+            filter.doFilter(new MockHttpServletRequest("GET", "/health"), new MockHttpServletResponse(),
+                    new MockFilterChain());
+        }
+        assertThat(droppedRecords(), equalTo(3L));
+        verify(kpiPublisher, times(5)).publish(eq(ACCESS_LOG_ET), any());
+
+        filter.writeAccessLog();
+        filter.doFilter(new MockHttpServletRequest("GET", "/health"), new MockHttpServletResponse(),
+                new MockFilterChain());
+        assertThat(droppedRecords(), equalTo(3L));
+    }
+
+    private long droppedRecords() {
+        return metricRegistry.counter(MetricUtils.NAKADI_PREFIX + "general.accessLog.dropped").getCount();
+    }
+}
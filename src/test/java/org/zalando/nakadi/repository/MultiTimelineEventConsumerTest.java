@@ -0,0 +1,175 @@
+package org.zalando.nakadi.repository;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.PartitionStatistics;
+import org.zalando.nakadi.domain.Storage;
+import org.zalando.nakadi.domain.Timeline;
+import org.zalando.nakadi.repository.kafka.KafkaCursor;
+import org.zalando.nakadi.repository.kafka.KafkaPartitionStatistics;
+import org.zalando.nakadi.service.timeline.TimelineService;
+import org.zalando.nakadi.service.timeline.TimelineSync;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MultiTimelineEventConsumerTest {
+
+    private static final String ET = "et";
+    private static final int PARTITIONS = 100;
+    private static final Storage STORAGE = new Storage("default", Storage.Type.KAFKA);
+    // cursors of test event type are compared by timeline order and then by offset
+    private static final Comparator<NakadiCursor> COMPARATOR = Comparator
+            .comparing((NakadiCursor c) -> c.getTimeline().getOrder())
+            .thenComparing(c -> KafkaCursor.toKafkaOffset(c.getOffset()));
+
+    private final Map<String, long[]> topicOffsets = new HashMap<>();
+    private TimelineService timelineService;
+    private TopicRepository topicRepository;
+    private MultiTimelineEventConsumer consumer;
+
+    @Before
+    public void setUp() throws Exception {
+        timelineService = mock(TimelineService.class);
+        topicRepository = mock(TopicRepository.class);
+        when(timelineService.getTopicRepository(any(Timeline.class))).thenReturn(topicRepository);
+        when(topicRepository.loadTopicStatistics(anyCollectionOf(Timeline.class))).thenAnswer(invocation -> {
+            final List<PartitionStatistics> result = new ArrayList<>();
+            for (final Timeline timeline : (Collection<Timeline>) invocation.getArguments()[0]) {
+                final long[] firstAndLast = topicOffsets.get(timeline.getTopic());
+                for (int partition = 0; partition < PARTITIONS; ++partition) {
+                    result.add(new KafkaPartitionStatistics(timeline, partition, firstAndLast[0], firstAndLast[1]));
+                }
+            }
+            return result;
+        });
+        when(topicRepository.createEventConsumer(anyString(), any()))
+                .thenAnswer(invocation -> mock(EventConsumer.LowLevelConsumer.class));
+        final TimelineSync timelineSync = mock(TimelineSync.class);
+        when(timelineSync.registerTimelineChangeListener(eq(ET), any()))
+                .thenReturn(mock(TimelineSync.ListenerRegistration.class));
+        consumer = new MultiTimelineEventConsumer("client", timelineService, timelineSync, COMPARATOR);
+    }
+
+    @Test
+    public void whenSingleTimelineThenStatisticsAreNotLoaded() throws Exception {
+        final Timeline t1 = timeline(1, "t1", 0, 99, false);
+        when(timelineService.getActiveTimelinesOrdered(ET)).thenReturn(Collections.singletonList(t1));
+
+        consumer.reassign(cursors(t1, 50));
+
+        verify(topicRepository, never()).loadTopicStatistics(any());
+        verify(topicRepository, never()).loadPartitionStatistics(any(), any());
+        assertThat(createdConsumerCursors(), containsInAnyOrder(cursors(t1, 50).toArray()));
+    }
+
+    @Test
+    public void whenCursorsAreInsideOfOldTimelineThenItIsCheckedWithOneCall() throws Exception {
+        final Timeline t1 = timeline(1, "t1", 0, 9, true);
+        final Timeline t2 = timeline(2, "t2", 0, 99, false);
+        when(timelineService.getActiveTimelinesOrdered(ET)).thenReturn(Arrays.asList(t1, t2));
+
+        consumer.reassign(cursors(t1, 5));
+
+        verify(topicRepository, times(1)).loadTopicStatistics(Collections.singletonList(t1));
+        verify(topicRepository, times(1)).loadTopicStatistics(any());
+        verify(topicRepository, never()).loadPartitionStatistics(any(), any());
+        assertThat(createdConsumerCursors(), containsInAnyOrder(cursors(t1, 5).toArray()));
+    }
+
+    @Test
+    public void whenCursorsReachEndOfTimelineThenTheyJumpToNextOneWithOneCall() throws Exception {
+        final Timeline t1 = timeline(1, "t1", 0, 9, true);
+        final Timeline t2 = timeline(2, "t2", 10, 99, false);
+        when(timelineService.getActiveTimelinesOrdered(ET)).thenReturn(Arrays.asList(t1, t2));
+
+        consumer.reassign(cursors(t1, 9));
+
+        verify(topicRepository, times(1)).loadTopicStatistics(Collections.singletonList(t2));
+        verify(topicRepository, times(1)).loadTopicStatistics(any());
+        verify(topicRepository, never()).loadPartitionStatistics(any(), any());
+        assertThat(createdConsumerCursors(), containsInAnyOrder(cursors(t2, 9).toArray()));
+    }
+
+    @Test
+    public void whenEmptyTimelineInTheMiddleThenItIsSkippedWithTwoCalls() throws Exception {
+        final Timeline t1 = timeline(1, "t1", 0, 9, true);
+        final Timeline t2 = timeline(2, "t2", 0, -1, true);
+        final Timeline t3 = timeline(3, "t3", 0, 99, false);
+        when(timelineService.getActiveTimelinesOrdered(ET)).thenReturn(Arrays.asList(t1, t2, t3));
+
+        consumer.reassign(cursors(t1, 9));
+
+        // one call to check that t2 is empty and one to get positions in t3, independent of number of partitions
+        verify(topicRepository, times(1)).loadTopicStatistics(Collections.singletonList(t2));
+        verify(topicRepository, times(1)).loadTopicStatistics(Collections.singletonList(t3));
+        verify(topicRepository, times(2)).loadTopicStatistics(any());
+        verify(topicRepository, never()).loadPartitionStatistics(any(), any());
+        assertThat(createdConsumerCursors(), containsInAnyOrder(cursors(t3, -1).toArray()));
+    }
+
+    @Test
+    public void whenTimelinesAreNotEmptyThenCursorsAreMovedToNextTimeline() throws Exception {
+        final Timeline t1 = timeline(1, "t1", 0, 9, true);
+        final Timeline t2 = timeline(2, "t2", 10, 19, true);
+        final Timeline t3 = timeline(3, "t3", 20, 99, false);
+        when(timelineService.getActiveTimelinesOrdered(ET)).thenReturn(Arrays.asList(t1, t2, t3));
+
+        consumer.reassign(cursors(t1, 9));
+
+        verify(topicRepository, times(1)).loadTopicStatistics(Collections.singletonList(t2));
+        verify(topicRepository, times(1)).loadTopicStatistics(any());
+        assertThat(createdConsumerCursors(), containsInAnyOrder(cursors(t2, 9).toArray()));
+    }
+
+    private Timeline timeline(final int order, final String topic, final long first, final long last,
+                              final boolean closed) {
+        final Timeline timeline = new Timeline(ET, order, STORAGE, topic, new Date());
+        if (closed) {
+            final List<Long> offsets = new ArrayList<>();
+            for (int i = 0; i < PARTITIONS; ++i) {
+                offsets.add(last);
+            }
+            timeline.setLatestPosition(new Timeline.KafkaStoragePosition(offsets));
+        }
+        topicOffsets.put(topic, new long[]{first, last});
+        return timeline;
+    }
+
+    private static List<NakadiCursor> cursors(final Timeline timeline, final long offset) {
+        final List<NakadiCursor> result = new ArrayList<>();
+        for (int i = 0; i < PARTITIONS; ++i) {
+            result.add(NakadiCursor.of(timeline, KafkaCursor.toNakadiPartition(i), KafkaCursor.toNakadiOffset(offset)));
+        }
+        return result;
+    }
+
+    private List<NakadiCursor> createdConsumerCursors() throws Exception {
+        final ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(topicRepository, times(1)).createEventConsumer(eq("client"), captor.capture());
+        assertThat(captor.getValue().size(), equalTo(PARTITIONS));
+        return captor.getValue();
+    }
+}
@@ -1,8 +1,13 @@
 package org.zalando.nakadi.repository.db;
 
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
 import org.zalando.nakadi.domain.EventType;
@@ -18,6 +23,15 @@ import org.zalando.nakadi.validation.ValidationStrategy;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.hasItem;
 
 public class EventTypeCacheTest {
     @BeforeClass
@@ -60,4 +74,139 @@ public class EventTypeCacheTest {
         Mockito.verify(timelineRepository, Mockito.times(0)).listTimelinesOrdered(Mockito.any());
         Mockito.verify(timelineRepository, Mockito.times(1)).listTimelinesOrdered();
     }
+
+    @Test(timeout = 20000)
+    public void whenEventTypeIsUpdatedThenReadersUsePreviousEntryUntilNewOneIsLoaded() throws Exception {
+        final EventType et = TestUtils.buildDefaultEventType();
+        final EventType updatedEt = TestUtils.buildDefaultEventType();
+        updatedEt.setName(et.getName());
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch loadAllowed = new CountDownLatch(1);
+        final EventTypeRepository etRepo = Mockito.mock(EventTypeRepository.class);
+        Mockito.when(etRepo.list()).thenReturn(Collections.singletonList(et));
+        Mockito.when(etRepo.findByName(et.getName())).then(invocation -> {
+            loadStarted.countDown();
+            loadAllowed.await();
+            return updatedEt;
+        });
+
+        try (TestingServer server = new TestingServer();
+             CuratorFramework curator = startCurator(server, et.getName())) {
+            final EventTypeCache eventTypeCache = new EventTypeCache(
+                    etRepo, timelineRepository(), zooKeeperHolder(curator), timelineSync());
+
+            eventTypeCache.updated(et.getName());
+            Assert.assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+            Assert.assertSame(et, eventTypeCache.getEventType(et.getName()));
+
+            loadAllowed.countDown();
+            TestUtils.waitFor(() -> {
+                try {
+                    Assert.assertSame(updatedEt, eventTypeCache.getEventType(et.getName()));
+                } catch (final Exception e) {
+                    throw new AssertionError(e);
+                }
+            }, 5000, 50);
+            Mockito.verify(etRepo, Mockito.times(1)).findByName(et.getName());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void whenEventTypeIsUpdatedManyTimesThenPublishersAreNotBlockedByReloads() throws Exception {
+        final EventType et = TestUtils.buildDefaultEventType();
+        final Set<String> loadingThreads = ConcurrentHashMap.newKeySet();
+        final CountDownLatch reloadStarted = new CountDownLatch(1);
+        final CountDownLatch reloadReleased = new CountDownLatch(1);
+        final EventTypeRepository etRepo = Mockito.mock(EventTypeRepository.class);
+        Mockito.when(etRepo.list()).thenReturn(Collections.singletonList(et));
+        Mockito.when(etRepo.findByName(et.getName())).then(invocation -> {
+            loadingThreads.add(Thread.currentThread().getName());
+            reloadStarted.countDown();
+            // database round trip that does not finish until publishers are done
+            reloadReleased.await();
+            return et;
+        });
+
+        try (TestingServer server = new TestingServer();
+             CuratorFramework curator = startCurator(server, et.getName())) {
+            final EventTypeCache eventTypeCache = new EventTypeCache(
+                    etRepo, timelineRepository(), zooKeeperHolder(curator), timelineSync());
+            try {
+                eventTypeCache.updated(et.getName());
+                Assert.assertTrue(reloadStarted.await(5, TimeUnit.SECONDS));
+
+                // reload is held, so publishers would hang here (and the test time out) if they waited for it
+                final int updates = 50;
+                for (int i = 0; i < updates; ++i) {
+                    eventTypeCache.updated(et.getName());
+                    Assert.assertNotNull(eventTypeCache.getValidator(et.getName()));
+                    eventTypeCache.getTimelinesOrdered(et.getName());
+                }
+                reloadReleased.countDown();
+
+                assertThat(loadingThreads, not(hasItem(Thread.currentThread().getName())));
+                // updates that come while the entry is being reloaded are loaded together
+                Mockito.verify(etRepo, Mockito.atMost(updates - 1)).findByName(et.getName());
+            } finally {
+                reloadReleased.countDown();
+                eventTypeCache.shutdown();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void whenTimelinesChangeThenNewTimelinesAreLoadedBeforeListenerReturns() throws Exception {
+        final EventType et = TestUtils.buildDefaultEventType();
+        final List<Timeline> newTimelines = Collections.singletonList(TestUtils.buildTimeline(et.getName()));
+        final EventTypeRepository etRepo = Mockito.mock(EventTypeRepository.class);
+        Mockito.when(etRepo.list()).thenReturn(Collections.singletonList(et));
+        Mockito.when(etRepo.findByName(et.getName())).thenReturn(et);
+        final TimelineDbRepository timelineRepository = timelineRepository();
+        Mockito.when(timelineRepository.listTimelinesOrdered(et.getName())).thenReturn(newTimelines);
+        final TimelineSync timelineSync = timelineSync();
+
+        try (TestingServer server = new TestingServer();
+             CuratorFramework curator = startCurator(server, et.getName())) {
+            final EventTypeCache eventTypeCache = new EventTypeCache(
+                    etRepo, timelineRepository, zooKeeperHolder(curator), timelineSync);
+            Assert.assertEquals(Collections.emptyList(), eventTypeCache.getTimelinesOrdered(et.getName()));
+
+            final ArgumentCaptor<Consumer> listener = ArgumentCaptor.forClass(Consumer.class);
+            Mockito.verify(timelineSync).registerTimelineChangeListener(Matchers.eq(et.getName()), listener.capture());
+            listener.getValue().accept(et.getName());
+
+            Assert.assertEquals(newTimelines, eventTypeCache.getTimelinesOrdered(et.getName()));
+        }
+    }
+
+    private static CuratorFramework startCurator(final TestingServer server, final String eventTypeName)
+            throws Exception {
+        final CuratorFramework curator = CuratorFrameworkFactory.newClient(
+                server.getConnectString(), new RetryOneTime(100));
+        curator.start();
+        // event type is already tracked, so that cache does not receive notification about its creation
+        curator.create().creatingParentsIfNeeded().forPath(EventTypeCache.ZKNODE_PATH + "/" + eventTypeName);
+        return curator;
+    }
+
+    private static ZooKeeperHolder zooKeeperHolder(final CuratorFramework curator) {
+        final ZooKeeperHolder zkHolder = Mockito.mock(ZooKeeperHolder.class);
+        Mockito.when(zkHolder.get()).thenReturn(curator);
+        return zkHolder;
+    }
+
+    private static TimelineDbRepository timelineRepository() {
+        final TimelineDbRepository timelineRepository = Mockito.mock(TimelineDbRepository.class);
+        Mockito.when(timelineRepository.listTimelinesOrdered()).thenReturn(Collections.emptyList());
+        Mockito.when(timelineRepository.listTimelinesOrdered(Mockito.any())).thenReturn(Collections.emptyList());
+        return timelineRepository;
+    }
+
+    private static TimelineSync timelineSync() {
+        final TimelineSync timelineSync = Mockito.mock(TimelineSync.class);
+        Mockito.when(timelineSync.registerTimelineChangeListener(Mockito.any(), Mockito.any()))
+                .thenReturn(() -> {});
+        return timelineSync;
+    }
 }
@@ -0,0 +1,75 @@
+package org.zalando.nakadi.repository.db;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TimedJdbcTemplateTest {
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final DataSource dataSource = mock(DataSource.class);
+    private final Connection connection = mock(Connection.class);
+    private final ResultSet resultSet = mock(ResultSet.class);
+    private TimedJdbcTemplate template;
+
+    @Before
+    public void setUp() throws SQLException {
+        final Statement statement = mock(Statement.class);
+        final PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        template = new TimedJdbcTemplate(dataSource, metricRegistry, "nakadi.db.main");
+    }
+
+    @Test
+    public void whenQueriesAreExecutedThenTheyAreTimed() {
+        template.queryForList("SELECT 1", String.class);
+        template.queryForList("SELECT ?", String.class, "b");
+        template.execute((Connection c) -> null);
+
+        assertThat(metricRegistry.timer("nakadi.db.main.other").getCount(), equalTo(3L));
+    }
+
+    @Test
+    public void whenQueryFailsThenItIsTimed() throws SQLException {
+        when(resultSet.next()).thenThrow(new SQLException("broken"));
+        try {
+            template.queryForList("SELECT 1", String.class);
+            throw new AssertionError("Query has to fail");
+        } catch (final DataAccessException expected) {
+            assertThat(template.getTimer().getCount(), equalTo(1L));
+        }
+    }
+
+    @Test
+    public void whenTemplateIsUsedByRepositoryThenRepositoryHasItsOwnTimer() {
+        final TimelineDbRepository repository = new TimelineDbRepository(template, new ObjectMapper());
+        final TimedJdbcTemplate repositoryTemplate = (TimedJdbcTemplate) repository.jdbcTemplate;
+
+        assertThat(repositoryTemplate.getDataSource(), sameInstance(dataSource));
+        assertThat(repositoryTemplate.getTimer(),
+                sameInstance(metricRegistry.timer("nakadi.db.main.TimelineDbRepository")));
+        repository.listTimelinesOrdered();
+        assertThat(repositoryTemplate.getTimer().getCount(), equalTo(1L));
+        assertThat(template.getTimer().getCount(), equalTo(0L));
+    }
+}
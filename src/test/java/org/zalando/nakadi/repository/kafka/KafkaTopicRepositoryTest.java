@@ -315,7 +315,22 @@ public class KafkaTopicRepositoryTest {
 
     @Test
     public void whenKafkaPublishTimeoutThenCircuitIsOpened() throws Exception {
+        assertCircuitIsOpenedOnPublishTimeout();
+    }
+
+    @Test
+    public void whenKafkaPublishTimeoutThenRollingCircuitIsOpened() throws Exception {
+        when(kafkaSettings.getCircuitBreakerType()).thenReturn(KafkaCircuitBreaker.Type.ROLLING);
+        when(kafkaSettings.getCircuitBreakerRequestVolumeThreshold()).thenReturn(20);
+        when(kafkaSettings.getCircuitBreakerErrorThresholdPercentage()).thenReturn(50);
+        when(kafkaSettings.getCircuitBreakerSleepWindowMs()).thenReturn(5000L);
+        when(kafkaSettings.getCircuitBreakerRollingWindowMs()).thenReturn(10000L);
+        when(kafkaSettings.getCircuitBreakerRollingWindowBuckets()).thenReturn(10);
+
+        assertCircuitIsOpenedOnPublishTimeout();
+    }
 
+    private void assertCircuitIsOpenedOnPublishTimeout() throws Exception {
         when(nakadiSettings.getKafkaSendTimeoutMs()).thenReturn(1000L);
 
         when(kafkaProducer.partitionsFor(EXPECTED_PRODUCER_RECORD.topic())).thenReturn(ImmutableList.of(
@@ -0,0 +1,198 @@
+package org.zalando.nakadi.repository.kafka;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RollingKafkaCircuitBreakerTest {
+
+    private static final int REQUEST_VOLUME_THRESHOLD = 20;
+    private static final int ERROR_THRESHOLD_PERCENTAGE = 50;
+    private static final long SLEEP_WINDOW_MS = 5000;
+    private static final long ROLLING_WINDOW_MS = 10000;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    private KafkaSettings kafkaSettings;
+    private RollingKafkaCircuitBreaker circuitBreaker;
+
+    @Before
+    public void setUp() {
+        kafkaSettings = mock(KafkaSettings.class);
+        when(kafkaSettings.getCircuitBreakerRequestVolumeThreshold()).thenReturn(REQUEST_VOLUME_THRESHOLD);
+        when(kafkaSettings.getCircuitBreakerErrorThresholdPercentage()).thenReturn(ERROR_THRESHOLD_PERCENTAGE);
+        when(kafkaSettings.getCircuitBreakerSleepWindowMs()).thenReturn(SLEEP_WINDOW_MS);
+        when(kafkaSettings.getCircuitBreakerRollingWindowMs()).thenReturn(ROLLING_WINDOW_MS);
+        when(kafkaSettings.getCircuitBreakerRollingWindowBuckets()).thenReturn(10);
+        circuitBreaker = new RollingKafkaCircuitBreaker("1", kafkaSettings, clock::get);
+    }
+
+    @Test
+    public void whenNotEnoughRequestsThenCircuitStaysClosed() {
+        markFailures(REQUEST_VOLUME_THRESHOLD - 1);
+
+        assertThat(circuitBreaker.getState(), equalTo(RollingKafkaCircuitBreaker.State.CLOSED));
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void whenErrorPercentageBelowThresholdThenCircuitStaysClosed() {
+        markSuccesses(REQUEST_VOLUME_THRESHOLD);
+        markFailures(REQUEST_VOLUME_THRESHOLD - 1);
+
+        assertThat(circuitBreaker.getState(), equalTo(RollingKafkaCircuitBreaker.State.CLOSED));
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void whenErrorThresholdReachedThenCircuitIsOpened() {
+        markSuccesses(REQUEST_VOLUME_THRESHOLD / 2);
+        markFailures(REQUEST_VOLUME_THRESHOLD / 2);
+
+        assertThat(circuitBreaker.getState(), equalTo(RollingKafkaCircuitBreaker.State.OPEN));
+        assertFalse(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void whenOldFailuresRolledOutThenTheyAreNotCounted() {
+        markFailures(REQUEST_VOLUME_THRESHOLD - 1);
+        clock.addAndGet(ROLLING_WINDOW_MS);
+        markFailures(1);
+
+        assertThat(circuitBreaker.getState(), equalTo(RollingKafkaCircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void whenSleepWindowPassedThenSingleTrialRequestIsAllowed() {
+        markFailures(REQUEST_VOLUME_THRESHOLD);
+
+        clock.addAndGet(SLEEP_WINDOW_MS - 1);
+        assertFalse(circuitBreaker.allowRequest());
+
+        clock.addAndGet(1);
+        assertTrue(circuitBreaker.allowRequest());
+        assertThat(circuitBreaker.getState(), equalTo(RollingKafkaCircuitBreaker.State.HALF_OPEN));
+        assertFalse(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void whenTrialRequestSucceedsThenCircuitIsClosed() {
+        markFailures(REQUEST_VOLUME_THRESHOLD);
+        clock.addAndGet(SLEEP_WINDOW_MS);
+        assertTrue(circuitBreaker.allowRequest());
+
+        circuitBreaker.markSuccessfully();
+
+        assertThat(circuitBreaker.getState(), equalTo(RollingKafkaCircuitBreaker.State.CLOSED));
+        assertTrue(circuitBreaker.allowRequest());
+        // statistics were reset, so a single failure does not open the circuit again
+        markFailures(1);
+        assertThat(circuitBreaker.getState(), equalTo(RollingKafkaCircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void whenCircuitIsOpenedThenOpeningTimeIsSetBeforeCircuitIsSeenAsOpen() {
+        final List<RollingKafkaCircuitBreaker.State> statesOnClockReads = new ArrayList<>();
+        final AtomicReference<RollingKafkaCircuitBreaker> observed = new AtomicReference<>();
+        observed.set(new RollingKafkaCircuitBreaker("1", kafkaSettings, () -> {
+            if (null != observed.get()) {
+                statesOnClockReads.add(observed.get().getState());
+            }
+            return clock.get();
+        }));
+
+        for (int i = 0; i < REQUEST_VOLUME_THRESHOLD; ++i) {
+            observed.get().markFailure();
+        }
+
+        assertThat(observed.get().getState(), equalTo(RollingKafkaCircuitBreaker.State.OPEN));
+        assertThat(statesOnClockReads.get(statesOnClockReads.size() - 1),
+                equalTo(RollingKafkaCircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void whenTrialRequestFailsThenCircuitIsOpenedForAnotherSleepWindow() {
+        markFailures(REQUEST_VOLUME_THRESHOLD);
+        clock.addAndGet(SLEEP_WINDOW_MS);
+        assertTrue(circuitBreaker.allowRequest());
+
+        circuitBreaker.markFailure();
+
+        assertThat(circuitBreaker.getState(), equalTo(RollingKafkaCircuitBreaker.State.OPEN));
+        clock.addAndGet(SLEEP_WINDOW_MS - 1);
+        assertFalse(circuitBreaker.allowRequest());
+        clock.addAndGet(1);
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void whenTrialRequestHangsThenAnotherTrialIsAllowedAfterSleepWindow() {
+        markFailures(REQUEST_VOLUME_THRESHOLD);
+        clock.addAndGet(SLEEP_WINDOW_MS);
+        assertTrue(circuitBreaker.allowRequest());
+
+        clock.addAndGet(SLEEP_WINDOW_MS);
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void whenInFlightRequestSucceedsOnOpenCircuitThenCircuitStaysOpen() {
+        markFailures(REQUEST_VOLUME_THRESHOLD);
+
+        circuitBreaker.markSuccessfully();
+
+        assertThat(circuitBreaker.getState(), equalTo(RollingKafkaCircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    @Ignore("Benchmark, run manually to compare the cost of a call with hystrix circuit breaker")
+    public void compareCostOfCallWithHystrixCircuitBreaker() {
+        final int iterations = 1_000_000;
+        final KafkaCircuitBreaker rolling = new RollingKafkaCircuitBreaker("benchmark-rolling", kafkaSettings);
+        final KafkaCircuitBreaker hystrix = new HystrixKafkaCircuitBreaker("benchmark-hystrix");
+
+        // warm up both implementations before measuring
+        measureNanos(rolling, iterations);
+        measureNanos(hystrix, iterations);
+
+        System.out.println("rolling: " + measureNanos(rolling, iterations) / iterations + " ns/call");
+        System.out.println("hystrix: " + measureNanos(hystrix, iterations) / iterations + " ns/call");
+    }
+
+    private static long measureNanos(final KafkaCircuitBreaker circuitBreaker, final int iterations) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+            if (circuitBreaker.allowRequest()) {
+                circuitBreaker.markStart();
+                circuitBreaker.markSuccessfully();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void markSuccesses(final int count) {
+        for (int i = 0; i < count; ++i) {
+            assertTrue(circuitBreaker.allowRequest());
+            circuitBreaker.markStart();
+            circuitBreaker.markSuccessfully();
+        }
+    }
+
+    private void markFailures(final int count) {
+        for (int i = 0; i < count; ++i) {
+            circuitBreaker.markStart();
+            circuitBreaker.markFailure();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.zalando.nakadi.security;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.web.client.RestTemplate;
+import org.zalando.stups.oauth2.spring.authorization.DefaultUserRolesProvider;
+import org.zalando.stups.oauth2.spring.server.DefaultAuthenticationExtractor;
+import org.zalando.stups.oauth2.spring.server.TokenInfoResourceServerTokenServices;
+import org.zalando.stups.oauth2.spring.server.TokenResponseErrorHandler;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class CachingResourceServerTokenServicesTest {
+
+    private static final long MAX_TTL_MS = 60000;
+    private static final long REFRESH_AFTER_MS = 30000;
+    private static final long INVALID_TOKEN_TTL_MS = 5000;
+
+    private final AtomicInteger tokenInfoCalls = new AtomicInteger();
+    private final AtomicLong nanos = new AtomicLong();
+    private volatile long expiresInSeconds = 3600;
+    private volatile long responseDelayMs = 0;
+    private HttpServer tokenInfoServer;
+    private CachingResourceServerTokenServices tokenServices;
+
+    @Before
+    public void setUp() throws Exception {
+        tokenInfoServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        tokenInfoServer.setExecutor(Executors.newCachedThreadPool());
+        tokenInfoServer.createContext("/oauth2/tokeninfo", exchange -> {
+            tokenInfoCalls.incrementAndGet();
+            try {
+                Thread.sleep(responseDelayMs);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            final String token = exchange.getRequestHeaders().getFirst("Authorization").substring("Bearer ".length());
+            final String body = "valid".equals(token) ?
+                    "{\"uid\":\"app\",\"scope\":[\"uid\"],\"realm\":\"/services\",\"access_token\":\"valid\"," +
+                            "\"expires_in\":" + expiresInSeconds + "}" :
+                    "{\"error\":\"invalid_token\",\"error_description\":\"Access Token not valid\"}";
+            final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders("valid".equals(token) ? 200 : 400, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        tokenInfoServer.start();
+
+        final RestTemplate restTemplate = new RestTemplate();
+        restTemplate.setErrorHandler(TokenResponseErrorHandler.getDefault());
+        final TokenInfoResourceServerTokenServices remoteService = new TokenInfoResourceServerTokenServices(
+                "http://localhost:" + tokenInfoServer.getAddress().getPort() + "/oauth2/tokeninfo",
+                "nakadi",
+                new DefaultAuthenticationExtractor(),
+                new DefaultUserRolesProvider(),
+                restTemplate);
+        final Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        tokenServices = new CachingResourceServerTokenServices(remoteService, 1000, MAX_TTL_MS, REFRESH_AFTER_MS,
+                INVALID_TOKEN_TTL_MS, ticker, MoreExecutors.directExecutor());
+    }
+
+    @After
+    public void tearDown() {
+        tokenInfoServer.stop(0);
+    }
+
+    @Test
+    public void whenTokenIsValidatedThenItIsCached() {
+        for (int i = 0; i < 10; ++i) {
+            final OAuth2Authentication authentication = tokenServices.loadAuthentication("valid");
+            assertThat(authentication.getName(), equalTo("app"));
+        }
+        assertThat(tokenInfoCalls.get(), equalTo(1));
+    }
+
+    @Test
+    public void whenRefreshTimeReachedThenTokenIsValidatedAgain() {
+        tokenServices.loadAuthentication("valid");
+
+        advance(REFRESH_AFTER_MS - 1);
+        tokenServices.loadAuthentication("valid");
+        assertThat(tokenInfoCalls.get(), equalTo(1));
+
+        advance(1);
+        tokenServices.loadAuthentication("valid");
+        tokenServices.loadAuthentication("valid");
+        assertThat(tokenInfoCalls.get(), equalTo(2));
+    }
+
+    @Test
+    public void whenTokenExpiresBeforeMaxTtlThenItIsNotCachedAfterExpiry() {
+        expiresInSeconds = 10;
+        tokenServices.loadAuthentication("valid");
+
+        advance(TimeUnit.SECONDS.toMillis(10) - 1);
+        tokenServices.loadAuthentication("valid");
+        assertThat(tokenInfoCalls.get(), equalTo(1));
+
+        advance(1);
+        tokenServices.loadAuthentication("valid");
+        assertThat(tokenInfoCalls.get(), equalTo(2));
+    }
+
+    @Test
+    public void whenTokenIsInvalidThenRejectionIsCached() {
+        for (int i = 0; i < 3; ++i) {
+            assertInvalid("invalid");
+        }
+        assertThat(tokenInfoCalls.get(), equalTo(1));
+
+        advance(INVALID_TOKEN_TTL_MS);
+        assertInvalid("invalid");
+        assertThat(tokenInfoCalls.get(), equalTo(2));
+    }
+
+    @Test(timeout = 10000)
+    public void whenSameTokenIsValidatedConcurrentlyThenTokenInfoIsCalledOnce() throws Exception {
+        responseDelayMs = 200;
+        final int requests = 10;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            final List<Future<OAuth2Authentication>> results = new ArrayList<>();
+            for (int i = 0; i < requests; ++i) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return tokenServices.loadAuthentication("valid");
+                }));
+            }
+            start.countDown();
+            for (final Future<OAuth2Authentication> result : results) {
+                assertThat(result.get().getName(), equalTo("app"));
+            }
+            assertThat(tokenInfoCalls.get(), equalTo(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertInvalid(final String token) {
+        try {
+            tokenServices.loadAuthentication(token);
+            throw new AssertionError("token has to be rejected");
+        } catch (final InvalidTokenException expected) {
+            // expected
+        }
+    }
+
+    private void advance(final long millis) {
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
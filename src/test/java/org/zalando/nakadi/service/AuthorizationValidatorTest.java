@@ -2,7 +2,17 @@ package org.zalando.nakadi.service;
 
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.After;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+import org.zalando.nakadi.domain.EventType;
 import org.zalando.nakadi.domain.ResourceAuthorization;
 import org.zalando.nakadi.domain.ResourceAuthorizationAttribute;
 import org.zalando.nakadi.exceptions.UnableProcessException;
@@ -12,17 +22,26 @@ import org.zalando.nakadi.plugin.api.PluginException;
 import org.zalando.nakadi.plugin.api.authz.AuthorizationAttribute;
 import org.zalando.nakadi.plugin.api.authz.AuthorizationService;
 import org.zalando.nakadi.repository.EventTypeRepository;
+import org.zalando.nakadi.repository.db.EventTypeCache;
 import org.zalando.nakadi.utils.EventTypeTestBuilder;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class AuthorizationValidatorTest {
 
+    private static final long POSITIVE_TTL_MS = 10000;
+    private static final long NEGATIVE_TTL_MS = 2000;
+
     private final AuthorizationValidator validator;
     private final AuthorizationService authorizationService;
     private final AdminService adminService;
@@ -32,12 +51,22 @@ public class AuthorizationValidatorTest {
     private final AuthorizationAttribute attr3 = new ResourceAuthorizationAttribute("type3", "value3");
     private final AuthorizationAttribute attr4 = new ResourceAuthorizationAttribute("type4", "value4");
 
+    private final EventTypeCache eventTypeCache;
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
     public AuthorizationValidatorTest() {
         authorizationService = mock(AuthorizationService.class);
         adminService = mock(AdminService.class);
+        eventTypeCache = mock(EventTypeCache.class);
 
         validator = new AuthorizationValidator(authorizationService,
-                mock(EventTypeRepository.class), adminService);
+                mock(EventTypeRepository.class), adminService, eventTypeCache, POSITIVE_TTL_MS, NEGATIVE_TTL_MS,
+                1000, clock::get);
+    }
+
+    @After
+    public void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
     }
 
     @Test
@@ -127,4 +156,162 @@ public class AuthorizationValidatorTest {
         validator.authorizeEventTypeAdmin(EventTypeTestBuilder.builder()
                 .authorization(new ResourceAuthorization(null, null, null)).build());
     }
+
+    @Test
+    public void whenSamePrincipalPublishesRepeatedlyThenPluginIsCalledOnce() throws Exception {
+        authenticateAs("user");
+        final EventType eventType = buildEventTypeWithAuthorization("et");
+        when(authorizationService.isAuthorized(any(), any())).thenReturn(true);
+
+        for (int i = 0; i < 100; ++i) {
+            validator.authorizeEventTypeWrite(eventType);
+        }
+
+        verify(authorizationService, times(1)).isAuthorized(any(), any());
+    }
+
+    @Test
+    public void whenDifferentPrincipalsOrOperationsThenDecisionsAreCachedSeparately() throws Exception {
+        final EventType eventType = buildEventTypeWithAuthorization("et");
+        when(authorizationService.isAuthorized(any(), any())).thenReturn(true);
+
+        authenticateAs("user1");
+        validator.authorizeEventTypeWrite(eventType);
+        validator.authorizeStreamRead(eventType);
+        authenticateAs("user2");
+        validator.authorizeEventTypeWrite(eventType);
+        validator.authorizeEventTypeWrite(eventType);
+
+        verify(authorizationService, times(3)).isAuthorized(any(), any());
+    }
+
+    @Test
+    public void whenNoPrincipalThenDecisionIsNotCached() throws Exception {
+        final EventType eventType = buildEventTypeWithAuthorization("et");
+        when(authorizationService.isAuthorized(any(), any())).thenReturn(true);
+
+        validator.authorizeEventTypeWrite(eventType);
+        validator.authorizeEventTypeWrite(eventType);
+
+        verify(authorizationService, times(2)).isAuthorized(any(), any());
+    }
+
+    @Test
+    public void whenAccessRevokedThenItTakesEffectWithinPositiveTtl() throws Exception {
+        authenticateAs("user");
+        final EventType eventType = buildEventTypeWithAuthorization("et");
+        when(authorizationService.isAuthorized(any(), any())).thenReturn(true);
+        validator.authorizeEventTypeWrite(eventType);
+
+        when(authorizationService.isAuthorized(any(), any())).thenReturn(false);
+        clock.addAndGet(POSITIVE_TTL_MS - 1);
+        validator.authorizeEventTypeWrite(eventType);
+
+        clock.addAndGet(1);
+        try {
+            validator.authorizeEventTypeWrite(eventType);
+            fail("Access should be denied after positive decision expired");
+        } catch (final AccessDeniedException e) {
+            verify(authorizationService, times(2)).isAuthorized(any(), any());
+        }
+    }
+
+    @Test
+    public void whenAccessGrantedThenItTakesEffectWithinNegativeTtl() throws Exception {
+        authenticateAs("user");
+        final EventType eventType = buildEventTypeWithAuthorization("et");
+        when(authorizationService.isAuthorized(any(), any())).thenReturn(false);
+        assertAccessDenied(eventType);
+
+        when(authorizationService.isAuthorized(any(), any())).thenReturn(true);
+        clock.addAndGet(NEGATIVE_TTL_MS - 1);
+        assertAccessDenied(eventType);
+
+        clock.addAndGet(1);
+        validator.authorizeEventTypeWrite(eventType);
+        verify(authorizationService, times(2)).isAuthorized(any(), any());
+    }
+
+    @Test
+    public void whenAuthorizationSectionChangesThenPluginIsCalledAgain() throws Exception {
+        authenticateAs("user");
+        when(authorizationService.isAuthorized(any(), any())).thenReturn(true);
+        validator.authorizeEventTypeWrite(buildEventTypeWithAuthorization("et"));
+
+        final EventType changed = buildEventTypeWithAuthorization("et");
+        changed.setAuthorization(new ResourceAuthorization(
+                ImmutableList.of(attr1), ImmutableList.of(attr2), ImmutableList.of(attr4)));
+        when(authorizationService.isAuthorized(any(), any())).thenReturn(false);
+
+        assertAccessDenied(changed);
+    }
+
+    @Test
+    public void whenSameUidComesFromDifferentRealmThenDecisionIsNotShared() throws Exception {
+        final EventType eventType = buildEventTypeWithAuthorization("et");
+        when(authorizationService.isAuthorized(any(), any())).thenReturn(true);
+        authenticateAs("user", "/employees", "uid");
+        validator.authorizeEventTypeWrite(eventType);
+
+        when(authorizationService.isAuthorized(any(), any())).thenReturn(false);
+        authenticateAs("user", "/services", "uid");
+        assertAccessDenied(eventType);
+
+        authenticateAs("user", "/employees", "uid");
+        validator.authorizeEventTypeWrite(eventType);
+        verify(authorizationService, times(2)).isAuthorized(any(), any());
+    }
+
+    @Test
+    public void whenSameUidHasDifferentScopesThenDecisionIsNotShared() throws Exception {
+        final EventType eventType = buildEventTypeWithAuthorization("et");
+        when(authorizationService.isAuthorized(any(), any())).thenReturn(true);
+        authenticateAs("user", "/services", "uid", "nakadi.event_stream.write");
+        validator.authorizeEventTypeWrite(eventType);
+
+        when(authorizationService.isAuthorized(any(), any())).thenReturn(false);
+        authenticateAs("user", "/services", "uid");
+        assertAccessDenied(eventType);
+    }
+
+    @Test
+    public void whenEventTypeIsInvalidatedThenDecisionsAreDropped() throws Exception {
+        final ArgumentCaptor<Consumer> listenerCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(eventTypeCache).addInvalidationListener(listenerCaptor.capture());
+        authenticateAs("user");
+        final EventType eventType = buildEventTypeWithAuthorization("et");
+        when(authorizationService.isAuthorized(any(), any())).thenReturn(true);
+        validator.authorizeEventTypeWrite(eventType);
+
+        listenerCaptor.getValue().accept("et");
+        validator.authorizeEventTypeWrite(eventType);
+
+        verify(authorizationService, times(2)).isAuthorized(any(), any());
+    }
+
+    private void assertAccessDenied(final EventType eventType) {
+        try {
+            validator.authorizeEventTypeWrite(eventType);
+            fail("Access should be denied");
+        } catch (final AccessDeniedException e) {
+            // expected
+        }
+    }
+
+    private EventType buildEventTypeWithAuthorization(final String name) {
+        return EventTypeTestBuilder.builder().name(name).authorization(new ResourceAuthorization(
+                ImmutableList.of(attr1), ImmutableList.of(attr2), ImmutableList.of(attr3))).build();
+    }
+
+    private static void authenticateAs(final String principal) {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(principal, null));
+    }
+
+    private static void authenticateAs(final String uid, final String realm, final String... scopes) {
+        final UsernamePasswordAuthenticationToken user = new UsernamePasswordAuthenticationToken(uid, "N/A");
+        user.setDetails(ImmutableMap.of("uid", uid, "realm", realm));
+        final OAuth2Request request = new OAuth2Request(null, null, null, true, ImmutableSet.copyOf(scopes),
+                null, null, null, null);
+        SecurityContextHolder.getContext().setAuthentication(new OAuth2Authentication(request, user));
+    }
 }
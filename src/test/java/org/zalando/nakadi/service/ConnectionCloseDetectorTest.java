@@ -0,0 +1,179 @@
+package org.zalando.nakadi.service;
+
+import com.codahale.metrics.MetricRegistry;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zalando.nakadi.utils.TestUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConnectionCloseDetectorTest {
+
+    private static final long PROBE_INTERVAL_MS = 50;
+    // ClosedConnectionsCrutch scans connections once a second
+    private static final long CRUTCH_REFRESH_PERIOD_MS = 1000;
+
+    private final BlockingQueue<AtomicBoolean> streams = new ArrayBlockingQueue<>(10);
+    private final AtomicLong detectedAt = new AtomicLong();
+    private final CountDownLatch streamFinished = new CountDownLatch(1);
+    private ClosedConnectionsCrutch crutch;
+    private ConnectionCloseDetector detector;
+    private Server server;
+    private int port;
+
+    @Before
+    public void setUp() throws Exception {
+        crutch = mock(ClosedConnectionsCrutch.class);
+        detector = new ConnectionCloseDetector(crutch, new MetricRegistry(), PROBE_INTERVAL_MS);
+        server = new Server(0);
+        server.setHandler(new StreamingHandler());
+        server.start();
+        port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+        detector.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void whenClientClosesIdleStreamThenCloseIsDetected() throws Exception {
+        final Socket socket = openStream();
+        final AtomicBoolean connectionReady = streams.poll(5, TimeUnit.SECONDS);
+        assertThat(connectionReady, notNullValue());
+
+        final long closedAt = System.nanoTime();
+        socket.close();
+
+        assertThat(streamFinished.await(5, TimeUnit.SECONDS), equalTo(true));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(detectedAt.get() - closedAt), lessThan(CRUTCH_REFRESH_PERIOD_MS));
+    }
+
+    @Test(timeout = 10000)
+    public void whenClientResetsConnectionThenCloseIsDetected() throws Exception {
+        final Socket socket = openStream();
+        final AtomicBoolean connectionReady = streams.poll(5, TimeUnit.SECONDS);
+        assertThat(connectionReady, notNullValue());
+
+        final long closedAt = System.nanoTime();
+        socket.setSoLinger(true, 0);
+        socket.close();
+
+        assertThat(streamFinished.await(5, TimeUnit.SECONDS), equalTo(true));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(detectedAt.get() - closedAt), lessThan(CRUTCH_REFRESH_PERIOD_MS));
+    }
+
+    @Test(timeout = 10000)
+    public void whenClientStaysConnectedThenConnectionIsReady() throws Exception {
+        try (Socket ignore = openStream()) {
+            final AtomicBoolean connectionReady = streams.poll(5, TimeUnit.SECONDS);
+            assertThat(connectionReady, notNullValue());
+
+            Thread.sleep(PROBE_INTERVAL_MS * 5);
+
+            assertThat(connectionReady.get(), equalTo(true));
+            connectionReady.set(false);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void whenStreamIsFinishedThenConnectionIsNotWatchedAnymore() throws Exception {
+        try (Socket ignore = openStream()) {
+            final AtomicBoolean connectionReady = streams.poll(5, TimeUnit.SECONDS);
+            assertThat(connectionReady, notNullValue());
+            assertThat(detector.getWatchedCount(), equalTo(1));
+
+            connectionReady.set(false);
+
+            TestUtils.waitFor(() -> assertThat(detector.getWatchedCount(), equalTo(0)), 5000);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void whenStreamIsFinishedThenConnectionIsReusedByJetty() throws Exception {
+        try (Socket socket = openStream()) {
+            final AtomicBoolean connectionReady = streams.poll(5, TimeUnit.SECONDS);
+            assertThat(connectionReady, notNullValue());
+            connectionReady.set(false);
+            assertThat(streamFinished.await(5, TimeUnit.SECONDS), equalTo(true));
+            TestUtils.waitFor(() -> assertThat(detector.getWatchedCount(), equalTo(0)), 5000);
+
+            sendRequest(socket);
+
+            final AtomicBoolean nextConnectionReady = streams.poll(5, TimeUnit.SECONDS);
+            assertThat(nextConnectionReady, notNullValue());
+            assertThat(nextConnectionReady.get(), equalTo(true));
+            nextConnectionReady.set(false);
+        }
+    }
+
+    @Test
+    public void whenRequestIsNotServedByJettyThenCrutchIsUsed() throws Exception {
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        final AtomicBoolean crutchFlag = new AtomicBoolean(true);
+        when(crutch.listenForConnectionClose(request)).thenReturn(crutchFlag);
+
+        assertThat(detector.listenForConnectionClose(request) == crutchFlag, equalTo(true));
+        verify(crutch).listenForConnectionClose(request);
+    }
+
+    private Socket openStream() throws Exception {
+        final Socket socket = new Socket("localhost", port);
+        sendRequest(socket);
+        // wait for response status line to be sure that streaming started
+        final InputStream in = socket.getInputStream();
+        in.read();
+        return socket;
+    }
+
+    private static void sendRequest(final Socket socket) throws Exception {
+        final OutputStream out = socket.getOutputStream();
+        out.write("GET /stream HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private class StreamingHandler extends AbstractHandler {
+        @Override
+        public void handle(final String target, final org.eclipse.jetty.server.Request baseRequest,
+                           final HttpServletRequest request, final HttpServletResponse response) {
+            baseRequest.setHandled(true);
+            try {
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.flushBuffer();
+                final AtomicBoolean connectionReady = detector.listenForConnectionClose(request);
+                streams.add(connectionReady);
+                while (connectionReady.get()) {
+                    Thread.sleep(1);
+                }
+                detectedAt.set(System.nanoTime());
+                streamFinished.countDown();
+            } catch (final Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
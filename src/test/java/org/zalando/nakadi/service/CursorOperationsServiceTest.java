@@ -4,12 +4,16 @@ import com.google.common.collect.Lists;
 import org.junit.Test;
 import org.zalando.nakadi.config.NakadiSettings;
 import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.NakadiCursorDistanceQuery;
+import org.zalando.nakadi.domain.NakadiCursorLag;
+import org.zalando.nakadi.domain.PartitionStatistics;
 import org.zalando.nakadi.domain.ShiftedNakadiCursor;
 import org.zalando.nakadi.domain.Storage;
 import org.zalando.nakadi.domain.Timeline;
 import org.zalando.nakadi.exceptions.runtime.InvalidCursorOperation;
 import org.zalando.nakadi.repository.TopicRepository;
 import org.zalando.nakadi.repository.kafka.KafkaFactory;
+import org.zalando.nakadi.repository.kafka.KafkaPartitionStatistics;
 import org.zalando.nakadi.repository.kafka.KafkaSettings;
 import org.zalando.nakadi.repository.kafka.KafkaTopicRepository;
 import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
@@ -18,6 +22,7 @@ import org.zalando.nakadi.service.timeline.TimelineService;
 import org.zalando.nakadi.util.UUIDGenerator;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -28,6 +33,8 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.zalando.nakadi.exceptions.runtime.InvalidCursorOperation.Reason.CURSORS_WITH_DIFFERENT_PARTITION;
 import static org.zalando.nakadi.exceptions.runtime.InvalidCursorOperation.Reason.PARTITION_NOT_FOUND;
@@ -284,6 +291,89 @@ public class CursorOperationsServiceTest {
         service.unshiftCursor(moveBack);
     }
 
+    @Test
+    public void whenDistancesAreCalculatedInBatchThenTheyMatchSingleDistances() throws Exception {
+        final Timeline first = mockTimeline(1, 9L);
+        final Timeline second = mockTimeline(2, 4L);
+        final Timeline third = mockTimeline(3, -1L);
+        final Timeline last = mockOpenTimeline(4);
+        mockTimelines(first, second, third, last);
+
+        final List<NakadiCursorDistanceQuery> queries = Arrays.asList(
+                new NakadiCursorDistanceQuery(NakadiCursor.of(first, "0", "000000000000000001"),
+                        NakadiCursor.of(last, "0", "000000000000000003")),
+                new NakadiCursorDistanceQuery(NakadiCursor.of(last, "0", "000000000000000003"),
+                        NakadiCursor.of(second, "0", "000000000000000000")),
+                new NakadiCursorDistanceQuery(NakadiCursor.of(second, "0", "000000000000000002"),
+                        NakadiCursor.of(second, "0", "000000000000000004")),
+                new NakadiCursorDistanceQuery(NakadiCursor.of(third, "0", "-1"),
+                        NakadiCursor.of(last, "0", "000000000000000000")));
+
+        final List<Long> distances = service.calculateDistances(queries);
+
+        assertThat(distances, equalTo(Arrays.asList(8L + 5L + 4L, -4L - 5L + 1L, 2L, 1L)));
+        for (int i = 0; i < queries.size(); ++i) {
+            assertThat(service.calculateDistance(queries.get(i).getInitialCursor(),
+                    queries.get(i).getFinalCursor()), equalTo(distances.get(i)));
+        }
+    }
+
+    @Test
+    public void whenDistancesAreCalculatedInBatchThenTimelinesAreLoadedOnce() throws Exception {
+        final int partitions = 500;
+        final List<Long> latestOffsets = new ArrayList<>();
+        for (int i = 0; i < partitions; ++i) {
+            latestOffsets.add((long) i);
+        }
+        final Timeline first = mockTimeline(1, latestOffsets);
+        final Timeline second = mockTimeline(2, latestOffsets);
+        final Timeline last = mockTimeline(3, (List<Long>) null);
+        mockTimelines(first, second, last);
+
+        final List<NakadiCursorDistanceQuery> queries = new ArrayList<>();
+        for (int i = 0; i < partitions; ++i) {
+            queries.add(new NakadiCursorDistanceQuery(
+                    NakadiCursor.of(first, String.valueOf(i), "-1"),
+                    NakadiCursor.of(last, String.valueOf(i), "000000000000000000")));
+        }
+
+        final List<Long> distances = service.calculateDistances(queries);
+
+        for (int i = 0; i < partitions; ++i) {
+            assertThat(distances.get(i), equalTo(2L * (i + 1) + 1));
+        }
+        verify(timelineService, times(1)).getAllTimelinesOrdered(any());
+    }
+
+    @Test
+    public void whenCursorsLagThenStatisticsAreLoadedWithOneCall() throws Exception {
+        final Timeline first = mockTimeline(1, Arrays.asList(10L, 10L));
+        final Timeline last = mockTimeline(2, (List<Long>) null);
+        final TopicRepository topicRepository = mock(TopicRepository.class);
+        when(timelineService.getTopicRepository(first)).thenReturn(topicRepository);
+        when(timelineService.getTopicRepository(last)).thenReturn(topicRepository);
+        when(timelineService.getActiveTimelinesOrdered("et")).thenReturn(Arrays.asList(first, last));
+        mockTimelines(first, last);
+        final List<PartitionStatistics> stats = Arrays.asList(
+                new KafkaPartitionStatistics(first, 0, 2, 10),
+                new KafkaPartitionStatistics(first, 1, 0, 10),
+                new KafkaPartitionStatistics(last, 0, 0, 4),
+                new KafkaPartitionStatistics(last, 1, 0, -1));
+        when(topicRepository.loadTopicStatistics(any())).thenReturn(stats);
+
+        final List<NakadiCursorLag> lags = service.cursorsLag("et", Arrays.asList(
+                NakadiCursor.of(first, "0", "000000000000000003"),
+                NakadiCursor.of(first, "1", "000000000000000005")));
+
+        assertThat(lags.get(0).getFirstCursor(), equalTo(stats.get(0).getFirst()));
+        assertThat(lags.get(0).getLastCursor(), equalTo(stats.get(2).getLast()));
+        assertThat(lags.get(0).getLag(), equalTo(7L + 5L));
+        assertThat(lags.get(1).getFirstCursor(), equalTo(stats.get(1).getFirst()));
+        assertThat(lags.get(1).getLastCursor(), equalTo(NakadiCursor.of(first, "1", "000000000000000010")));
+        assertThat(lags.get(1).getLag(), equalTo(5L));
+        verify(topicRepository, times(1)).loadTopicStatistics(any());
+    }
+
     private void expectException(final NakadiCursor initialCursor, final NakadiCursor finalCursor,
                                  final InvalidCursorOperation.Reason invertedOffsetOrder) {
         try {
@@ -298,26 +388,31 @@ public class CursorOperationsServiceTest {
     }
 
     private Timeline mockOpenTimeline(final int order) {
-        return mockTimeline(order, null);
+        return mockTimeline(order, (Long) null);
     }
 
     private Timeline mockTimeline(final int order, @Nullable final Long latestOffset) {
+        final Timeline timeline = mockTimeline(order,
+                null == latestOffset ? null : Collections.singletonList(latestOffset));
+        when(timeline.isActive()).thenReturn(null == latestOffset);
+        return timeline;
+    }
+
+    private Timeline mockTimeline(final int order, @Nullable final List<Long> latestOffsets) {
         final Timeline timeline = mock(Timeline.class);
         when(timeline.getOrder()).thenReturn(order);
+        when(timeline.getTopic()).thenReturn("topic-" + order);
+        when(timeline.getEventType()).thenReturn("et");
 
         final Storage storage = new Storage();
         storage.setType(Storage.Type.KAFKA);
         when(timeline.getStorage()).thenReturn(storage);
 
-        if (latestOffset == null) {
-            when(timeline.isActive()).thenReturn(false);
+        if (latestOffsets == null) {
             when(timeline.getLatestPosition()).thenReturn(null);
         } else {
-            when(timeline.isActive()).thenReturn(true);
-            when(timeline.getLatestPosition()).thenReturn(new Timeline.KafkaStoragePosition(
-                    Collections.singletonList(latestOffset)));
+            when(timeline.getLatestPosition()).thenReturn(new Timeline.KafkaStoragePosition(latestOffsets));
         }
-        when(timeline.isActive()).thenReturn(null == latestOffset);
 
         final TopicRepository repository = new KafkaTopicRepository(
                 mock(ZooKeeperHolder.class),
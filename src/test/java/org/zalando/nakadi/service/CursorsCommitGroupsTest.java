@@ -0,0 +1,104 @@
+package org.zalando.nakadi.service;
+
+import org.junit.Test;
+import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.exceptions.InvalidCursorException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.zalando.nakadi.domain.CursorError.NULL_OFFSET;
+
+public class CursorsCommitGroupsTest {
+
+    private static final String SUBSCRIPTION_ID = "subscription";
+
+    @Test
+    public void whenCommitsComeWhileGroupIsCommittedThenTheyAreCommittedInOneGroup() throws Exception {
+        final CursorsCommitGroups commitGroups = new CursorsCommitGroups();
+        final int requests = 10;
+        final List<Integer> groupSizes = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch firstGroupStarted = new CountDownLatch(1);
+        final CountDownLatch firstGroupReleased = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            final List<Future<List<Boolean>>> results = new ArrayList<>();
+            for (int i = 0; i < requests; ++i) {
+                final String streamId = "stream-" + i;
+                results.add(executor.submit(() -> commitGroups.commit(SUBSCRIPTION_ID, streamId, cursors(2),
+                        group -> {
+                            groupSizes.add(group.size());
+                            firstGroupStarted.countDown();
+                            try {
+                                firstGroupReleased.await();
+                            } catch (final InterruptedException e) {
+                                throw new IllegalStateException(e);
+                            }
+                            group.forEach(commit -> commit.complete(Collections.nCopies(
+                                    commit.getCursors().size(), commit.getStreamId().endsWith("0"))));
+                        })));
+                if (i == 0) {
+                    // the first commit is alone, so it is committed without waiting for others
+                    assertThat(firstGroupStarted.await(5, TimeUnit.SECONDS), equalTo(true));
+                }
+            }
+            // let the rest of commits join the group that waits for the first one
+            Thread.sleep(200);
+            firstGroupReleased.countDown();
+            for (int i = 0; i < requests; ++i) {
+                final boolean committed = i == 0;
+                assertThat(results.get(i).get(5, TimeUnit.SECONDS), contains(committed, committed));
+            }
+            assertThat(groupSizes, contains(1, requests - 1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenGroupIsCommittedThenNextCommitStartsNewGroup() throws Exception {
+        final CursorsCommitGroups commitGroups = new CursorsCommitGroups();
+        final AtomicInteger groupsCommitted = new AtomicInteger();
+        for (int i = 0; i < 3; ++i) {
+            final List<Boolean> result = commitGroups.commit(SUBSCRIPTION_ID, "stream", cursors(1), group -> {
+                groupsCommitted.incrementAndGet();
+                assertThat(group.size(), equalTo(1));
+                group.get(0).complete(Collections.singletonList(true));
+            });
+            assertThat(result, contains(true));
+        }
+        assertThat(groupsCommitted.get(), equalTo(3));
+    }
+
+    @Test(expected = InvalidCursorException.class)
+    public void whenCommitFailsThenErrorIsThrownToItsRequest() throws Exception {
+        new CursorsCommitGroups().commit(SUBSCRIPTION_ID, "stream", cursors(1),
+                group -> group.get(0).fail(new InvalidCursorException(NULL_OFFSET)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenGroupCommitterFailsThenErrorIsThrownToAllRequests() throws Exception {
+        new CursorsCommitGroups().commit(SUBSCRIPTION_ID, "stream", cursors(1), group -> {
+            throw new IllegalStateException();
+        });
+    }
+
+    private static List<NakadiCursor> cursors(final int count) {
+        final List<NakadiCursor> cursors = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            cursors.add(mock(NakadiCursor.class));
+        }
+        return cursors;
+    }
+}
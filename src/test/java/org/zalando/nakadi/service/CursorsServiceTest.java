@@ -0,0 +1,278 @@
+package org.zalando.nakadi.service;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zalando.nakadi.config.NakadiSettings;
+import org.zalando.nakadi.domain.EventTypePartition;
+import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.Subscription;
+import org.zalando.nakadi.domain.Timeline;
+import org.zalando.nakadi.exceptions.InvalidStreamIdException;
+import org.zalando.nakadi.exceptions.runtime.ServiceTemporarilyUnavailableException;
+import org.zalando.nakadi.repository.db.EventTypeCache;
+import org.zalando.nakadi.repository.db.SubscriptionDbRepository;
+import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
+import org.zalando.nakadi.service.subscription.model.Partition;
+import org.zalando.nakadi.service.subscription.model.Session;
+import org.zalando.nakadi.service.subscription.zk.NewZkSubscriptionClient;
+import org.zalando.nakadi.service.subscription.zk.SubscriptionClientFactory;
+import org.zalando.nakadi.service.subscription.zk.ZkSubscriptionClient;
+import org.zalando.nakadi.service.subscription.zk.ZkWatchRegistry;
+import org.zalando.nakadi.service.timeline.TimelineService;
+import org.zalando.nakadi.util.UUIDGenerator;
+import org.zalando.nakadi.utils.TestUtils;
+import org.zalando.nakadi.view.SubscriptionCursorWithoutToken;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.fail;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CursorsServiceTest {
+
+    private static final String SUBSCRIPTION_ID = "sid";
+    private static final String ET = "et";
+    private static final int PARTITIONS_PER_SESSION = 4;
+    private static final Timeline TIMELINE = TestUtils.buildTimeline(ET, "topic", new Date());
+
+    private final String streamA = UUID.randomUUID().toString();
+    private final String streamB = UUID.randomUUID().toString();
+    private TestingServer server;
+    private CuratorFramework curator;
+    private ZkWatchRegistry watchRegistry;
+    private ZkSubscriptionClient zkClient;
+    private SubscriptionClientFactory zkSubscriptionFactory;
+    private CursorsService cursorsService;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new TestingServer();
+        curator = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryOneTime(100));
+        curator.start();
+        final ZooKeeperHolder zooKeeperHolder = mock(ZooKeeperHolder.class);
+        when(zooKeeperHolder.get()).thenReturn(curator);
+        watchRegistry = new ZkWatchRegistry(zooKeeperHolder);
+        zkClient = createZkClient(curator);
+
+        final List<SubscriptionCursorWithoutToken> initialCursors = IntStream.range(0, 2 * PARTITIONS_PER_SESSION)
+                .mapToObj(p -> new SubscriptionCursorWithoutToken(ET, String.valueOf(p), offset(0)))
+                .collect(Collectors.toList());
+        zkClient.fillEmptySubscription(initialCursors);
+        zkClient.registerSession(new Session(streamA, 1));
+        zkClient.registerSession(new Session(streamB, 1));
+        zkClient.updatePartitionsConfiguration("hash", IntStream.range(0, 2 * PARTITIONS_PER_SESSION)
+                .mapToObj(p -> new Partition(ET, String.valueOf(p), p < PARTITIONS_PER_SESSION ? streamA : streamB,
+                        null, Partition.State.ASSIGNED))
+                .toArray(Partition[]::new));
+
+        final Subscription subscription = new Subscription();
+        subscription.setId(SUBSCRIPTION_ID);
+        subscription.setEventTypes(ImmutableSet.of(ET));
+        final SubscriptionDbRepository subscriptionRepository = mock(SubscriptionDbRepository.class);
+        when(subscriptionRepository.getSubscription(SUBSCRIPTION_ID)).thenReturn(subscription);
+        zkSubscriptionFactory = mock(SubscriptionClientFactory.class);
+        when(zkSubscriptionFactory.createClient(any(), anyString())).thenReturn(zkClient);
+        final CursorConverter cursorConverter = mock(CursorConverter.class);
+        when(cursorConverter.convertToNoToken(any())).thenAnswer(invocation -> {
+            final NakadiCursor cursor = (NakadiCursor) invocation.getArguments()[0];
+            return new SubscriptionCursorWithoutToken(ET, cursor.getPartition(), cursor.getOffset());
+        });
+        when(cursorConverter.convert((SubscriptionCursorWithoutToken) any())).thenAnswer(invocation -> {
+            final SubscriptionCursorWithoutToken cursor = (SubscriptionCursorWithoutToken) invocation.getArguments()[0];
+            return NakadiCursor.of(TIMELINE, cursor.getPartition(), cursor.getOffset());
+        });
+
+        cursorsService = new CursorsService(subscriptionRepository, mock(EventTypeCache.class),
+                mock(NakadiSettings.class), zkSubscriptionFactory, cursorConverter, new UUIDGenerator(),
+                mock(TimelineService.class), new CursorsCommitGroups());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        watchRegistry.shutdown();
+        curator.close();
+        server.close();
+    }
+
+    @Test(timeout = 30000)
+    public void whenCommitsOfOverlappingPartitionsAreConcurrentThenMaxOffsetsAreStoredAndResultsAreSplit()
+            throws Exception {
+        final Random random = new Random(7);
+        final int committersPerSession = 10;
+        final List<List<NakadiCursor>> commits = new ArrayList<>();
+        final List<String> streamIds = new ArrayList<>();
+        for (int i = 0; i < 2 * committersPerSession; ++i) {
+            final int firstPartition = i % 2 == 0 ? 0 : PARTITIONS_PER_SESSION;
+            final List<NakadiCursor> cursors = new ArrayList<>();
+            for (int p = firstPartition; p < firstPartition + PARTITIONS_PER_SESSION; ++p) {
+                if (random.nextBoolean() || cursors.isEmpty()) {
+                    // offsets are unique per partition, so that exactly one cursor reaches the maximum
+                    cursors.add(cursor(p, 1 + random.nextInt(1000) * 100 + i));
+                }
+            }
+            Collections.shuffle(cursors, random);
+            commits.add(cursors);
+            streamIds.add(i % 2 == 0 ? streamA : streamB);
+        }
+        // requests that fail validation are grouped together with the valid ones
+        commits.add(ImmutableList.of(cursor(0, 5)));
+        streamIds.add(UUID.randomUUID().toString());
+        commits.add(ImmutableList.of(cursor(PARTITIONS_PER_SESSION, 5)));
+        streamIds.add(streamA);
+
+        final List<Future<List<Boolean>>> results = commitConcurrently(streamIds, commits);
+
+        final Map<String, Long> maxOffsets = new HashMap<>();
+        final Map<String, Integer> maxReported = new HashMap<>();
+        for (int i = 0; i < 2 * committersPerSession; ++i) {
+            commits.get(i).forEach(c -> maxOffsets.merge(c.getPartition(), Long.parseLong(c.getOffset()), Math::max));
+        }
+        for (int i = 0; i < 2 * committersPerSession; ++i) {
+            final List<NakadiCursor> cursors = commits.get(i);
+            final List<Boolean> committed = results.get(i).get();
+            assertThat(committed.size(), equalTo(cursors.size()));
+            for (int c = 0; c < cursors.size(); ++c) {
+                final NakadiCursor cursor = cursors.get(c);
+                if (committed.get(c) && Long.parseLong(cursor.getOffset()) == maxOffsets.get(cursor.getPartition())) {
+                    maxReported.merge(cursor.getPartition(), 1, Integer::sum);
+                }
+            }
+        }
+        for (final int failed : new int[]{commits.size() - 2, commits.size() - 1}) {
+            try {
+                results.get(failed).get();
+                fail("Commit with wrong stream id should fail");
+            } catch (final ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(InvalidStreamIdException.class));
+            }
+        }
+
+        final Map<EventTypePartition, SubscriptionCursorWithoutToken> stored = zkClient.getOffsets(
+                maxOffsets.keySet().stream().map(p -> new EventTypePartition(ET, p)).collect(Collectors.toList()));
+        for (final Map.Entry<String, Long> max : maxOffsets.entrySet()) {
+            assertThat(stored.get(new EventTypePartition(ET, max.getKey())).getOffset(),
+                    equalTo(offset(max.getValue())));
+            assertThat(maxReported.get(max.getKey()), equalTo(1));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void whenOffsetIsChangedDuringCommitThenTransactionIsRetried() throws Exception {
+        final CuratorFramework otherNode = CuratorFrameworkFactory.newClient(
+                server.getConnectString(), new RetryOneTime(100));
+        otherNode.start();
+        try {
+            final String offsetPath = "/nakadi/subscriptions/" + SUBSCRIPTION_ID + "/offsets/" + ET + "/0";
+            final AtomicInteger transactions = new AtomicInteger();
+            final CuratorFramework conflictingCurator = mock(CuratorFramework.class, delegatesTo(curator));
+            doAnswer(invocation -> {
+                if (transactions.incrementAndGet() == 1) {
+                    // offsets were already read, so the version in the transaction is outdated now
+                    otherNode.setData().forPath(offsetPath, offset(50).getBytes(StandardCharsets.UTF_8));
+                }
+                return curator.inTransaction();
+            }).when(conflictingCurator).inTransaction();
+            when(zkSubscriptionFactory.createClient(any(), anyString()))
+                    .thenReturn(createZkClient(conflictingCurator));
+
+            final List<Boolean> committed = cursorsService.commitCursors(
+                    streamA, SUBSCRIPTION_ID, ImmutableList.of(cursor(0, 100), cursor(1, 100)));
+
+            assertThat(committed, contains(true, true));
+            assertThat(transactions.get(), equalTo(2));
+            assertThat(new String(curator.getData().forPath(offsetPath), StandardCharsets.UTF_8),
+                    equalTo(offset(100)));
+
+            final List<Boolean> outdated = cursorsService.commitCursors(
+                    streamA, SUBSCRIPTION_ID, ImmutableList.of(cursor(0, 70)));
+            assertThat(outdated, contains(false));
+        } finally {
+            otherNode.close();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void whenOffsetIsNotFoundThenCommitFailsAsTemporarilyUnavailable() throws Exception {
+        curator.delete().forPath("/nakadi/subscriptions/" + SUBSCRIPTION_ID + "/offsets/" + ET + "/1");
+
+        try {
+            cursorsService.commitCursors(streamA, SUBSCRIPTION_ID, ImmutableList.of(cursor(0, 100), cursor(1, 100)));
+            fail("Commit of partition without offset should fail");
+        } catch (final ServiceTemporarilyUnavailableException e) {
+            assertThat(e.getMessage(), containsString("partition='1'"));
+        }
+        assertThat(new String(curator.getData().forPath(
+                "/nakadi/subscriptions/" + SUBSCRIPTION_ID + "/offsets/" + ET + "/0"), StandardCharsets.UTF_8),
+                equalTo(offset(0)));
+    }
+
+    private List<Future<List<Boolean>>> commitConcurrently(
+            final List<String> streamIds, final List<List<NakadiCursor>> commits) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(commits.size());
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<List<Boolean>>> results = new ArrayList<>();
+            for (int i = 0; i < commits.size(); ++i) {
+                final String streamId = streamIds.get(i);
+                final List<NakadiCursor> cursors = commits.get(i);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cursorsService.commitCursors(streamId, SUBSCRIPTION_ID, cursors);
+                }));
+            }
+            start.countDown();
+            executor.shutdown();
+            assertThat(executor.awaitTermination(20, TimeUnit.SECONDS), equalTo(true));
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ZkSubscriptionClient createZkClient(final CuratorFramework curatorFramework) {
+        return new NewZkSubscriptionClient(
+                SUBSCRIPTION_ID, curatorFramework, watchRegistry, 50, "test", TestUtils.OBJECT_MAPPER);
+    }
+
+    private static NakadiCursor cursor(final int partition, final long offset) {
+        return NakadiCursor.of(TIMELINE, String.valueOf(partition), offset(offset));
+    }
+
+    private static String offset(final long offset) {
+        return String.format("%018d", offset);
+    }
+}
@@ -8,6 +8,7 @@ import org.mockito.Mockito;
 import org.zalando.nakadi.config.NakadiSettings;
 import org.zalando.nakadi.domain.BatchItem;
 import org.zalando.nakadi.domain.BatchItemResponse;
+import org.zalando.nakadi.domain.EnrichmentStrategyDescriptor;
 import org.zalando.nakadi.domain.EventPublishResult;
 import org.zalando.nakadi.domain.EventPublishingStatus;
 import org.zalando.nakadi.domain.EventPublishingStep;
@@ -21,6 +22,7 @@ import org.zalando.nakadi.exceptions.EventTypeTimeoutException;
 import org.zalando.nakadi.exceptions.PartitioningException;
 import org.zalando.nakadi.exceptions.runtime.AccessDeniedException;
 import org.zalando.nakadi.partitioning.PartitionResolver;
+import org.zalando.nakadi.partitioning.PartitionStrategy;
 import org.zalando.nakadi.repository.TopicRepository;
 import org.zalando.nakadi.repository.db.EventTypeCache;
 import org.zalando.nakadi.service.timeline.TimelineService;
@@ -32,6 +34,7 @@ import org.zalando.nakadi.validation.ValidationError;
 import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeoutException;
@@ -98,6 +101,65 @@ public class EventPublisherTest {
         verify(topicRepository, times(1)).syncPostBatch(any(), any());
     }
 
+    @Test
+    public void whenPublishTrustedThenEventIsNotValidatedAndMetadataIsEnriched() throws Exception {
+        final EventType eventType = EventTypeTestBuilder.builder()
+                .enrichmentStrategies(Collections.singletonList(EnrichmentStrategyDescriptor.METADATA_ENRICHMENT))
+                .build();
+        mockSuccessfulValidation(eventType);
+        Mockito.when(partitionResolver.resolvePartition(eq(eventType), Mockito.isNull(JSONObject.class)))
+                .thenReturn("3");
+        final BatchItem item = BatchItem.trusted("{\"foo\":\"bar\"}", "{\"eid\":\"some-eid\"}");
+
+        final EventPublishResult result =
+                publisher.publishTrusted(eventType.getName(), Collections.singletonList(item));
+
+        assertThat(result.getStatus(), equalTo(EventPublishingStatus.SUBMITTED));
+        verify(cache, Mockito.never()).getValidator(any());
+        verify(enrichment, Mockito.never()).enrich(any(), any());
+        verify(topicRepository, times(1)).syncPostBatch(any(), eq(Collections.singletonList(item)));
+        final JSONObject published = new JSONObject(item.dumpEventToString());
+        assertThat(published.getString("foo"), equalTo("bar"));
+        final JSONObject metadata = published.getJSONObject("metadata");
+        assertThat(metadata.getString("eid"), equalTo("some-eid"));
+        assertThat(metadata.getString("partition"), equalTo("3"));
+        assertThat(metadata.getString("event_type"), equalTo(eventType.getName()));
+        assertThat(metadata.getString("version"), equalTo(eventType.getSchema().getVersion().toString()));
+        assertThat(metadata.has("received_at"), is(true));
+        assertThat(metadata.has("flow_id"), is(true));
+    }
+
+    @Test
+    public void whenPublishTrustedWithFlowIdThenFlowIdIsKept() throws Exception {
+        final EventType eventType = EventTypeTestBuilder.builder()
+                .enrichmentStrategies(Collections.singletonList(EnrichmentStrategyDescriptor.METADATA_ENRICHMENT))
+                .build();
+        mockSuccessfulValidation(eventType);
+        final BatchItem item = BatchItem.trusted("{}", "{\"eid\":\"some-eid\",\"flow_id\":\"some-flow\"}");
+
+        publisher.publishTrusted(eventType.getName(), Collections.singletonList(item));
+
+        final JSONObject metadata = new JSONObject(item.dumpEventToString()).getJSONObject("metadata");
+        assertThat(metadata.getString("flow_id"), equalTo("some-flow"));
+    }
+
+    @Test
+    public void whenPublishTrustedWithHashStrategyThenEventIsParsedForPartitioning() throws Exception {
+        final EventType eventType = EventTypeTestBuilder.builder()
+                .partitionStrategy(PartitionStrategy.HASH_STRATEGY)
+                .build();
+        mockSuccessfulValidation(eventType);
+        Mockito.when(partitionResolver.resolvePartition(eq(eventType), any(JSONObject.class))).thenReturn("1");
+        final BatchItem item = BatchItem.trusted("{}", "{\"eid\":\"some-eid\"}");
+
+        final EventPublishResult result =
+                publisher.publishTrusted(eventType.getName(), Collections.singletonList(item));
+
+        assertThat(result.getStatus(), equalTo(EventPublishingStatus.SUBMITTED));
+        assertThat(item.getPartition(), equalTo("1"));
+        assertThat(item.dumpEventToString(), equalTo("{\"metadata\":{\"eid\":\"some-eid\"}}"));
+    }
+
     @Test(expected = AccessDeniedException.class)
     public void whenPublishAuthorizationIsTakenIntoAccount() throws Exception {
         final EventType et = buildDefaultEventType();
@@ -0,0 +1,153 @@
+package org.zalando.nakadi.service;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+import org.zalando.nakadi.domain.ConsumedEvent;
+import org.zalando.nakadi.view.Cursor;
+import org.zalando.nakadi.view.SubscriptionCursor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.zalando.nakadi.service.EventStreamWriter.BATCH_SEPARATOR;
+
+public class EventStreamWriterStringTest {
+
+    private static final Cursor CURSOR = new Cursor("3", "001-0001-000000000000000042");
+    private static final SubscriptionCursor SUBSCRIPTION_CURSOR =
+            new SubscriptionCursor("3", "001-0001-000000000000000042", "my-event-type", "token");
+
+    private final EventStreamWriterString writer = new EventStreamWriterString();
+
+    @Test
+    public void whenBatchIsEmptyThenOnlyCursorIsWritten() throws IOException {
+        assertWriteBatch(Collections.emptyList());
+        assertWriteSubscriptionBatch(Collections.emptyList(), Optional.empty());
+        assertWriteSubscriptionBatch(Collections.emptyList(), Optional.of("Stream started"));
+    }
+
+    @Test
+    public void whenEventsAreNotAsciiThenTheyAreWrittenAsIs() throws IOException {
+        final List<byte[]> events = events("{\"a\":\"b\"}", "{\"name\":\"Grüße, 世界 😀\"}", "{}");
+
+        assertWriteBatch(events);
+        assertWriteSubscriptionBatch(events, Optional.empty());
+        assertWriteSubscriptionBatch(events, Optional.of("debug ß"));
+    }
+
+    @Test
+    public void whenEventsAre1KbThenOutputMatchesStringImplementation() throws IOException {
+        final List<byte[]> events = events(event(1024), event(1024), event(1024));
+
+        assertWriteBatch(events);
+        assertWriteSubscriptionBatch(events, Optional.empty());
+    }
+
+    @Test
+    public void whenEventsAre100KbThenOutputMatchesStringImplementation() throws IOException {
+        final List<byte[]> bigEvents = new ArrayList<>();
+        for (int i = 0; i < 20; ++i) {
+            bigEvents.add(event(100 * 1024).getBytes(UTF_8));
+        }
+
+        assertWriteBatch(bigEvents);
+        assertWriteSubscriptionBatch(bigEvents, Optional.empty());
+        // buffer that was used for a huge batch does not leave anything behind for the next ones
+        assertWriteBatch(events("{\"a\":\"b\"}"));
+        assertWriteSubscriptionBatch(events("{\"a\":\"b\"}"), Optional.empty());
+    }
+
+    @Test
+    public void whenBatchIsBiggerThanPooledBufferThenPooledBufferDoesNotGrow() throws IOException {
+        assertWriteBatch(events(event(1024)));
+        final int pooledCapacity = writer.getPooledBufferCapacity();
+
+        assertWriteBatch(events(event(100 * 1024), event(100 * 1024)));
+        assertWriteSubscriptionBatch(events(event(100 * 1024)), Optional.of("debug"));
+        // a batch that is just a bit bigger than expected is still written correctly
+        assertWriteBatch(events(event(60 * 1024)));
+
+        assertThat(writer.getPooledBufferCapacity(), equalTo(pooledCapacity));
+    }
+
+    private void assertWriteBatch(final List<byte[]> events) throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        final int written = writer.writeBatch(os, CURSOR, events);
+
+        final byte[] expected = stringWriteBatch(CURSOR, events);
+        assertThat(new String(os.toByteArray(), UTF_8), equalTo(new String(expected, UTF_8)));
+        assertThat(os.toByteArray(), equalTo(expected));
+        assertThat(written, equalTo(expected.length));
+    }
+
+    private void assertWriteSubscriptionBatch(final List<byte[]> events, final Optional<String> metadata)
+            throws IOException {
+        final List<ConsumedEvent> consumedEvents = events.stream()
+                .map(event -> new ConsumedEvent(event, null))
+                .collect(Collectors.toList());
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        final int written = writer.writeSubscriptionBatch(os, SUBSCRIPTION_CURSOR, consumedEvents, metadata);
+
+        final byte[] expected = stringWriteSubscriptionBatch(SUBSCRIPTION_CURSOR, consumedEvents, metadata);
+        assertThat(new String(os.toByteArray(), UTF_8), equalTo(new String(expected, UTF_8)));
+        assertThat(os.toByteArray(), equalTo(expected));
+        assertThat(written, equalTo(expected.length));
+    }
+
+    private static List<byte[]> events(final String... events) {
+        final List<byte[]> result = new ArrayList<>();
+        for (final String event : events) {
+            result.add(event.getBytes(UTF_8));
+        }
+        return result;
+    }
+
+    private static String event(final int size) {
+        final String prefix = "{\"payload\":\"";
+        final String suffix = "\"}";
+        return prefix + Strings.repeat("x", size - prefix.length() - suffix.length()) + suffix;
+    }
+
+    // Reference output of the string based implementation that was used before writing raw bytes
+    private static byte[] stringWriteBatch(final Cursor cursor, final List<byte[]> events) {
+        final StringBuilder builder = new StringBuilder()
+                .append("{\"cursor\":{\"partition\":\"").append(cursor.getPartition())
+                .append("\",\"offset\":\"").append(cursor.getOffset()).append("\"}");
+        if (!events.isEmpty()) {
+            builder.append(",\"events\":[");
+            events.forEach(event -> builder.append(new String(event, UTF_8)).append(","));
+            builder.deleteCharAt(builder.length() - 1).append("]");
+        }
+        builder.append("}").append(BATCH_SEPARATOR);
+        return builder.toString().getBytes(UTF_8);
+    }
+
+    private static byte[] stringWriteSubscriptionBatch(final SubscriptionCursor cursor,
+                                                       final List<ConsumedEvent> events,
+                                                       final Optional<String> metadata) {
+        final StringBuilder builder = new StringBuilder()
+                .append("{\"cursor\":{\"partition\":\"").append(cursor.getPartition())
+                .append("\",\"offset\":\"").append(cursor.getOffset())
+                .append("\",\"event_type\":\"").append(cursor.getEventType())
+                .append("\",\"cursor_token\":\"").append(cursor.getCursorToken())
+                .append("\"}");
+        if (!events.isEmpty()) {
+            builder.append(",\"events\":[");
+            events.forEach(event -> builder.append(new String(event.getEvent(), UTF_8)).append(","));
+            builder.deleteCharAt(builder.length() - 1).append("]");
+        }
+        metadata.ifPresent(s -> builder.append(",\"info\":{\"debug\":\"").append(s).append("\"}"));
+        builder.append("}").append(BATCH_SEPARATOR);
+        return builder.toString().getBytes(UTF_8);
+    }
+}
@@ -1,29 +1,160 @@
 package org.zalando.nakadi.service;
 
+import com.codahale.metrics.MetricRegistry;
 import org.json.JSONObject;
+import org.junit.After;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.zalando.nakadi.domain.BatchItem;
+import org.zalando.nakadi.domain.EventPublishResult;
+import org.zalando.nakadi.domain.EventPublishingStatus;
+import org.zalando.nakadi.domain.EventPublishingStep;
 import org.zalando.nakadi.util.UUIDGenerator;
 import org.zalando.nakadi.utils.TestUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
 public class EventsProcessorTest {
 
-    private final EventPublisher eventPublisher = Mockito.mock(EventPublisher.class);
+    private final StubEventPublisher eventPublisher = new StubEventPublisher();
     private final UUIDGenerator uuidGenerator = Mockito.mock(UUIDGenerator.class);
+    private EventsProcessor eventsProcessor;
+
+    public EventsProcessorTest() {
+        Mockito.when(uuidGenerator.randomUUID()).thenReturn(UUID.fromString("83c4b0d4-8d5d-4cd3-8b5e-4e1a3e4d9b8a"));
+    }
+
+    @After
+    public void tearDown() {
+        if (null != eventsProcessor) {
+            eventsProcessor.shutdown();
+        }
+    }
 
     @Test
     public void shouldSendEventWhenSubmitted() {
-        final EventsProcessor eventsProcessor = new EventsProcessor(eventPublisher, uuidGenerator, 100, 1, 1, 100, 10);
-        final JSONObject event = new JSONObject().put("path", "/path/to/event").put("user", "adyachkov");
+        eventsProcessor = createProcessor(100, 1, 10);
+        eventsProcessor.submit("test_et_name", "{\"path\":\"/path/to/event\",\"user\":\"adyachkov\"}");
+
+        TestUtils.waitFor(() -> assertThat(eventPublisher.getPublished("test_et_name"), hasSize(1)), 500);
+        final JSONObject published = new JSONObject(eventPublisher.getPublished("test_et_name").get(0));
+        assertThat(published.getString("path"), equalTo("/path/to/event"));
+        assertThat(published.getString("user"), equalTo("adyachkov"));
+        final JSONObject metadata = published.getJSONObject("metadata");
+        assertThat(metadata.getString("eid"), equalTo("83c4b0d4-8d5d-4cd3-8b5e-4e1a3e4d9b8a"));
+        assertThat(metadata.has("occurred_at"), equalTo(true));
+    }
+
+    @Test
+    public void whenBatchIsFullThenItIsFlushedWithoutWaitingForTimeout() {
+        eventsProcessor = createProcessor(60_000, 3, 10);
+
+        for (int i = 0; i < 3; ++i) {
+            eventsProcessor.submit("test_et_name", "{\"number\":" + i + "}");
+        }
+
+        TestUtils.waitFor(() -> assertThat(eventPublisher.getBatchSizes("test_et_name"), contains(3)), 1000);
+    }
+
+    @Test
+    public void whenBatchIsNotFullThenItIsFlushedOnTimeout() throws Exception {
+        eventsProcessor = createProcessor(200, 100, 10);
+
+        eventsProcessor.submit("test_et_name", "{}");
+        eventsProcessor.submit("test_et_name", "{\"a\":1}");
+        Thread.sleep(50);
+        assertThat(eventPublisher.getPublished("test_et_name"), hasSize(0));
+
+        TestUtils.waitFor(() -> assertThat(eventPublisher.getBatchSizes("test_et_name"), contains(2)), 1000);
+        assertThat(new JSONObject(eventPublisher.getPublished("test_et_name").get(0)).length(), equalTo(1));
+        assertThat(new JSONObject(eventPublisher.getPublished("test_et_name").get(1)).getInt("a"), equalTo(1));
+    }
+
+    @Test
+    public void whenQueueIsFullThenEventsAreDroppedAndCounted() throws Exception {
+        eventsProcessor = createProcessor(60_000, 100, 4);
+
+        for (int i = 0; i < 10; ++i) {
+            eventsProcessor.submit("test_et_name", "{\"number\":" + i + "}");
+        }
+        eventsProcessor.submit("another_et_name", "{}");
+
+        assertThat(eventsProcessor.getDroppedEventsCount(), equalTo(6L));
+        Thread.sleep(200);
+        assertThat(eventPublisher.getPublished("test_et_name"), hasSize(0));
+    }
+
+    @Test
+    public void eventsOfDifferentEventTypesArePublishedSeparately() {
+        eventsProcessor = createProcessor(100, 10, 10);
+
+        eventsProcessor.submit("et_1", "{\"et\":1}");
+        eventsProcessor.submit("et_2", "{\"et\":2}");
+        eventsProcessor.submit("et_1", "{\"et\":1}");
 
-        eventsProcessor.enrichAndSubmit("test_et_name", event);
         TestUtils.waitFor(() -> {
-            try {
-                Mockito.verify(eventPublisher).publishInternal(Mockito.any(), Mockito.any(), Mockito.eq(false));
-            } catch (final Exception e) {
-                throw new AssertionError(e);
-            }
-        }, 500);
+            assertThat(eventPublisher.getBatchSizes("et_1"), contains(2));
+            assertThat(eventPublisher.getBatchSizes("et_2"), contains(1));
+        }, 1000);
+    }
+
+    private EventsProcessor createProcessor(final long batchCollectionTimeout, final int batchSize,
+                                            final int queueSize) {
+        return new EventsProcessor(eventPublisher, uuidGenerator, new MetricRegistry(), batchCollectionTimeout,
+                batchSize, 1, 10, queueSize);
     }
 
+    private static class StubEventPublisher extends EventPublisher {
+        private final List<String> eventTypes = new ArrayList<>();
+        private final List<List<BatchItem>> batches = new ArrayList<>();
+
+        StubEventPublisher() {
+            super(null, null, null, null, null, null, null);
+        }
+
+        @Override
+        EventPublishResult publishTrusted(final String eventTypeName, final List<BatchItem> batch) {
+            synchronized (batches) {
+                eventTypes.add(eventTypeName);
+                batches.add(batch);
+            }
+            return new EventPublishResult(EventPublishingStatus.SUBMITTED, EventPublishingStep.NONE,
+                    Collections.emptyList());
+        }
+
+        List<Integer> getBatchSizes(final String eventTypeName) {
+            synchronized (batches) {
+                final List<Integer> result = new ArrayList<>();
+                for (int i = 0; i < batches.size(); ++i) {
+                    if (eventTypes.get(i).equals(eventTypeName)) {
+                        result.add(batches.get(i).size());
+                    }
+                }
+                return result;
+            }
+        }
+
+        List<String> getPublished(final String eventTypeName) {
+            synchronized (batches) {
+                final List<String> result = new ArrayList<>();
+                for (int i = 0; i < batches.size(); ++i) {
+                    if (eventTypes.get(i).equals(eventTypeName)) {
+                        result.addAll(batches.get(i).stream()
+                                .map(BatchItem::dumpEventToString)
+                                .collect(Collectors.toList()));
+                    }
+                }
+                return result;
+            }
+        }
+    }
 }
@@ -0,0 +1,154 @@
+package org.zalando.nakadi.service;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
+import org.zalando.nakadi.service.FeatureToggleService.Feature;
+import org.zalando.nakadi.service.FeatureToggleService.FeatureWrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.zalando.nakadi.utils.TestUtils.waitFor;
+
+public class FeatureToggleServiceZkTest {
+
+    private TestingServer server;
+    private CuratorFramework curator;
+    private ZooKeeperHolder zkHolder;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new TestingServer();
+        curator = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryOneTime(100));
+        curator.start();
+        zkHolder = Mockito.mock(ZooKeeperHolder.class);
+        Mockito.when(zkHolder.get()).thenReturn(curator);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        curator.close();
+        server.close();
+    }
+
+    @Test
+    public void whenServiceIsCreatedThenFeaturesEnabledBeforeAreLoaded() throws Exception {
+        curator.create().creatingParentsIfNeeded().forPath("/nakadi/feature_toggle/kpi_collection");
+        curator.create().creatingParentsIfNeeded().forPath("/nakadi/feature_toggle/unknown_feature");
+
+        final FeatureToggleServiceZk service = new FeatureToggleServiceZk(zkHolder);
+        try {
+            assertThat(service.isFeatureEnabled(Feature.KPI_COLLECTION), equalTo(true));
+            assertThat(service.isFeatureEnabled(Feature.HIGH_LEVEL_API), equalTo(false));
+        } finally {
+            service.cleanUp();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void whenFeaturesAreToggledUnderConcurrentReadsThenReadsSeeLatestState() throws Exception {
+        final FeatureToggleServiceZk service = new FeatureToggleServiceZk(zkHolder);
+        final int readers = 4;
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final CountDownLatch started = new CountDownLatch(readers);
+        final ExecutorService executor = Executors.newFixedThreadPool(readers);
+        try {
+            final List<Future<Long>> reads = new ArrayList<>();
+            for (int i = 0; i < readers; ++i) {
+                reads.add(executor.submit(() -> {
+                    started.countDown();
+                    long count = 0;
+                    while (running.get()) {
+                        for (final Feature feature : Feature.values()) {
+                            service.isFeatureEnabled(feature);
+                            ++count;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            started.await();
+
+            for (int i = 0; i < 5; ++i) {
+                final boolean enabled = i % 2 == 0;
+                service.setFeature(new FeatureWrapper(Feature.KPI_COLLECTION, enabled));
+                service.setFeature(new FeatureWrapper(Feature.HIGH_LEVEL_API, !enabled));
+                waitFor(() -> {
+                    assertThat(service.isFeatureEnabled(Feature.KPI_COLLECTION), equalTo(enabled));
+                    assertThat(service.isFeatureEnabled(Feature.HIGH_LEVEL_API), equalTo(!enabled));
+                }, 5000);
+            }
+
+            running.set(false);
+            for (final Future<Long> read : reads) {
+                assertThat(read.get(5, TimeUnit.SECONDS), greaterThan(0L));
+            }
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+            service.cleanUp();
+        }
+    }
+
+    @Test
+    public void whenSnapshotIsRebuiltThenItMatchesCache() throws Exception {
+        final FeatureToggleServiceZk service = new FeatureToggleServiceZk(zkHolder, 50);
+        try {
+            curator.create().creatingParentsIfNeeded().forPath("/nakadi/feature_toggle/limit_consumers_number");
+            waitFor(() -> assertThat(service.isFeatureEnabled(Feature.LIMIT_CONSUMERS_NUMBER), equalTo(true)),
+                    5000);
+
+            service.rebuildSnapshot();
+            assertThat(service.isFeatureEnabled(Feature.LIMIT_CONSUMERS_NUMBER), equalTo(true));
+            assertThat(service.isFeatureEnabled(Feature.KPI_COLLECTION), equalTo(false));
+        } finally {
+            service.cleanUp();
+        }
+    }
+
+    @Test
+    public void whenCacheMissesChangeThenReconcileReadsItFromZookeeper() throws Exception {
+        final CuratorFramework cacheCurator =
+                CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryOneTime(100));
+        cacheCurator.start();
+        // the cache is created with the first client, the rest goes through the second one
+        final ZooKeeperHolder holder = Mockito.mock(ZooKeeperHolder.class);
+        Mockito.when(holder.get()).thenReturn(cacheCurator, curator);
+        final FeatureToggleServiceZk service = new FeatureToggleServiceZk(holder, 60000);
+        try {
+            curator.create().creatingParentsIfNeeded().forPath("/nakadi/feature_toggle/limit_consumers_number");
+            waitFor(() -> assertThat(service.isFeatureEnabled(Feature.LIMIT_CONSUMERS_NUMBER), equalTo(true)),
+                    5000);
+
+            // cache is not notified about changes anymore
+            cacheCurator.close();
+            curator.delete().forPath("/nakadi/feature_toggle/limit_consumers_number");
+            curator.create().forPath("/nakadi/feature_toggle/kpi_collection");
+            service.rebuildSnapshot();
+            assertThat(service.isFeatureEnabled(Feature.LIMIT_CONSUMERS_NUMBER), equalTo(true));
+
+            service.reconcile();
+            assertThat(service.isFeatureEnabled(Feature.LIMIT_CONSUMERS_NUMBER), equalTo(false));
+            assertThat(service.isFeatureEnabled(Feature.KPI_COLLECTION), equalTo(true));
+        } finally {
+            service.cleanUp();
+            cacheCurator.close();
+        }
+    }
+}
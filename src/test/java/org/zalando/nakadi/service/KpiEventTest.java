@@ -0,0 +1,37 @@
+package org.zalando.nakadi.service;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.zalando.nakadi.domain.EventCategory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class KpiEventTest {
+
+    @Test
+    public void whenEventIsBuiltThenItIsTheSameAsSerializedJsonObject() {
+        final KpiEvent event = new KpiEvent()
+                .put("app", "some \"quoted\" app\n")
+                .put("realm", (String) null)
+                .put("number_of_events", 10L)
+                .put("category", EventCategory.BUSINESS)
+                .put("ms_spent", -1);
+        final JSONObject expected = new JSONObject()
+                .put("app", "some \"quoted\" app\n")
+                .put("realm", (String) null)
+                .put("number_of_events", 10L)
+                .put("category", EventCategory.BUSINESS)
+                .put("ms_spent", -1);
+
+        assertThat(new JSONObject(event.toJson()).similar(new JSONObject(expected.toString())), equalTo(true));
+        assertThat(event.toJson(), equalTo(
+                "{\"app\":\"some \\\"quoted\\\" app\\n\",\"number_of_events\":10,\"category\":\"BUSINESS\"," +
+                        "\"ms_spent\":-1}"));
+    }
+
+    @Test
+    public void whenEventHasNoFieldsThenEmptyObjectIsWritten() {
+        assertThat(new KpiEvent().toJson(), equalTo("{}"));
+    }
+}
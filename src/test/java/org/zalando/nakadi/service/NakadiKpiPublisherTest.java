@@ -1,6 +1,5 @@
 package org.zalando.nakadi.service;
 
-import org.json.JSONObject;
 import org.junit.Test;
 import org.mockito.Mockito;
 
@@ -20,21 +19,22 @@ public class NakadiKpiPublisherTest {
     public void testPublishWithFeatureToggleOn() throws Exception {
         Mockito.when(featureToggleService.isFeatureEnabled(FeatureToggleService.Feature.KPI_COLLECTION))
                 .thenReturn(true);
-        final Supplier<JSONObject> dataSupplier = () -> null;
-        new NakadiKpiPublisher(featureToggleService, eventsProcessor, "123").publish("test_et_name", dataSupplier);
+        new NakadiKpiPublisher(featureToggleService, eventsProcessor, "123")
+                .publish("test_et_name", () -> new KpiEvent().put("a", "b"));
 
-        Mockito.verify(eventsProcessor).enrichAndSubmit("test_et_name", dataSupplier.get());
+        Mockito.verify(eventsProcessor).submit("test_et_name", "{\"a\":\"b\"}");
     }
 
     @Test
     public void testPublishWithFeatureToggleOff() throws Exception {
         Mockito.when(featureToggleService.isFeatureEnabled(FeatureToggleService.Feature.KPI_COLLECTION))
                 .thenReturn(false);
-        final Supplier<JSONObject> dataSupplier = () -> null;
+        final Supplier<KpiEvent> dataSupplier = Mockito.mock(Supplier.class);
         new NakadiKpiPublisher(featureToggleService, eventsProcessor, "123")
                 .publish("test_et_name", dataSupplier);
 
-        Mockito.verify(eventsProcessor, Mockito.never()).enrichAndSubmit("test_et_name", dataSupplier.get());
+        Mockito.verify(dataSupplier, Mockito.never()).get();
+        Mockito.verify(eventsProcessor, Mockito.never()).submit(Mockito.any(), Mockito.any());
     }
 
     @Test
@@ -42,6 +42,8 @@ public class NakadiKpiPublisherTest {
         final NakadiKpiPublisher publisher = new NakadiKpiPublisher(featureToggleService, eventsProcessor, "123");
         assertThat(publisher.hash("application"),
                 equalTo("befee725ab2ed3b17020112089a693ad8d8cfbf62b2442dcb5b89d66ce72391e"));
+        assertThat(publisher.hash("application"),
+                equalTo("befee725ab2ed3b17020112089a693ad8d8cfbf62b2442dcb5b89d66ce72391e"));
     }
 
 }
@@ -0,0 +1,199 @@
+package org.zalando.nakadi.service;
+
+import org.junit.Test;
+import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.ShiftedNakadiCursor;
+import org.zalando.nakadi.domain.Storage;
+import org.zalando.nakadi.domain.Timeline;
+import org.zalando.nakadi.exceptions.runtime.InvalidCursorOperation;
+import org.zalando.nakadi.repository.kafka.KafkaCursor;
+import org.zalando.nakadi.service.timeline.TimelineService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.zalando.nakadi.exceptions.runtime.InvalidCursorOperation.Reason.TIMELINE_NOT_FOUND;
+
+public class PartitionTimelinesTest {
+
+    private static final String ET = "et";
+    private static final String PARTITION = "0";
+
+    @Test
+    public void whenShiftingCursorsThenResultsAreTheSameAsOfStepByStepShifting() {
+        final Random random = new Random(7);
+        for (int i = 0; i < 20000; ++i) {
+            final List<Timeline> timelines = randomTimelines(random);
+            final Timeline timeline = timelines.get(random.nextInt(timelines.size()));
+            final long lastOffset = null == timeline.getLatestPosition() ? 30 : lastOffset(timeline);
+            final NakadiCursor cursor = NakadiCursor.of(timeline, PARTITION,
+                    KafkaCursor.toNakadiOffset(-1 + (long) random.nextInt((int) lastOffset + 2)));
+            final long shift = (random.nextInt(160) - 80 + (random.nextBoolean() ? 0 : 1))
+                    * (random.nextInt(10) == 0 ? 1000 : 1);
+            if (shift == 0) {
+                continue;
+            }
+
+            final String expected = describe(() -> shiftStepByStep(timelines, cursor, shift));
+            final PartitionTimelines partitionTimelines = new PartitionTimelines(timelines, PARTITION);
+            final String actual = describe(() -> shift > 0 ?
+                    partitionTimelines.moveForward(cursor, shift) :
+                    partitionTimelines.moveBack(cursor, shift));
+            assertThat("Shift of " + cursor + " by " + shift + " in " + timelines, actual, equalTo(expected));
+        }
+    }
+
+    @Test
+    public void whenCalculatingDistancesThenResultsAreTheSameAsOfSummingUpTimelinesOneByOne() {
+        final Random random = new Random(13);
+        for (int i = 0; i < 20000; ++i) {
+            final List<Timeline> timelines = randomTimelines(random);
+            final NakadiCursor initialCursor = randomCursor(random, timelines);
+            final NakadiCursor finalCursor = randomCursor(random, timelines);
+
+            final String expected = describe(() -> distanceStepByStep(timelines, initialCursor, finalCursor));
+            final PartitionTimelines partitionTimelines = new PartitionTimelines(timelines, PARTITION);
+            final String actual = describe(() -> partitionTimelines.distance(initialCursor, finalCursor));
+            assertThat("Distance from " + initialCursor + " to " + finalCursor + " in " + timelines,
+                    actual, equalTo(expected));
+        }
+    }
+
+    @Test
+    public void whenTimelinesChangeThenIndexIsRebuilt() throws Exception {
+        final TimelineService timelineService = mock(TimelineService.class);
+        final CursorOperationsService service = new CursorOperationsService(timelineService);
+        final Timeline first = timeline(1, 9L);
+        when(timelineService.getAllTimelinesOrdered(ET)).thenReturn(Collections.singletonList(first));
+        final ShiftedNakadiCursor shifted = new ShiftedNakadiCursor(first, PARTITION, "000000000000000005", 10);
+
+        try {
+            service.unshiftCursor(shifted);
+            throw new AssertionError("There is no timeline to shift cursor to");
+        } catch (final InvalidCursorOperation e) {
+            assertThat(e.getReason(), equalTo(TIMELINE_NOT_FOUND));
+        }
+
+        final Timeline second = timeline(2, null);
+        final List<Timeline> timelines = new ArrayList<>();
+        timelines.add(first);
+        timelines.add(second);
+        when(timelineService.getAllTimelinesOrdered(ET)).thenReturn(timelines);
+
+        assertThat(service.unshiftCursor(shifted), equalTo(NakadiCursor.of(second, PARTITION, "000000000000000005")));
+    }
+
+    private static List<Timeline> randomTimelines(final Random random) {
+        final List<Timeline> timelines = new ArrayList<>();
+        final int count = 1 + random.nextInt(6);
+        int order = random.nextInt(3);
+        for (int i = 0; i < count; ++i) {
+            final boolean last = i == count - 1;
+            final Long latestOffset = last && random.nextBoolean() ? null :
+                    (random.nextInt(3) == 0 ? -1L : (long) random.nextInt(30));
+            timelines.add(timeline(order, latestOffset));
+            order += random.nextInt(20) == 0 ? 2 : 1;
+        }
+        return timelines;
+    }
+
+    private static Timeline timeline(final int order, final Long latestOffset) {
+        final Storage storage = new Storage();
+        storage.setType(Storage.Type.KAFKA);
+        final Timeline timeline = new Timeline(ET, order, storage, "topic-" + order, new Date());
+        if (null != latestOffset) {
+            timeline.setLatestPosition(new Timeline.KafkaStoragePosition(Collections.singletonList(latestOffset)));
+        }
+        return timeline;
+    }
+
+    private static long lastOffset(final Timeline timeline) {
+        return ((Timeline.KafkaStoragePosition) timeline.getLatestPosition()).getLastOffsetForPartition(0);
+    }
+
+    private static NakadiCursor randomCursor(final Random random, final List<Timeline> timelines) {
+        final Timeline timeline = timelines.get(random.nextInt(timelines.size()));
+        final long lastOffset = null == timeline.getLatestPosition() ? 30 : lastOffset(timeline);
+        return NakadiCursor.of(timeline, PARTITION,
+                KafkaCursor.toNakadiOffset(-1 + (long) random.nextInt((int) lastOffset + 2)));
+    }
+
+    private static String describe(final Supplier<?> supplier) {
+        try {
+            return supplier.get().toString();
+        } catch (final InvalidCursorOperation e) {
+            return e.getReason().name();
+        }
+    }
+
+    /**
+     * Sums up events of timelines between cursors one by one, the way it was done before timelines were indexed.
+     */
+    private static long distanceStepByStep(final List<Timeline> timelines, final NakadiCursor initialCursor,
+                                           final NakadiCursor finalCursor) {
+        long result = KafkaCursor.toKafkaOffset(finalCursor.getOffset())
+                - KafkaCursor.toKafkaOffset(initialCursor.getOffset());
+        final int initialOrder = initialCursor.getTimeline().getOrder();
+        final int finalOrder = finalCursor.getTimeline().getOrder();
+        final int startOrder = Math.max(Math.min(initialOrder, finalOrder), Timeline.STARTING_ORDER + 1);
+        for (int order = startOrder; order < Math.max(initialOrder, finalOrder); ++order) {
+            final long eventsTotal = lastOffset(find(timelines, order)) + 1;
+            result += finalOrder > initialOrder ? eventsTotal : -eventsTotal;
+        }
+        return result;
+    }
+
+    /**
+     * Moves cursor through timelines one by one, the way it was done before timelines were indexed.
+     */
+    private static NakadiCursor shiftStepByStep(final List<Timeline> timelines, final NakadiCursor cursor,
+                                                final long shift) {
+        NakadiCursor currentCursor = cursor;
+        if (shift > 0) {
+            long stillToAdd = shift;
+            while (currentCursor.getTimeline().getLatestPosition() != null) {
+                final long distance = lastOffset(currentCursor.getTimeline()) -
+                        KafkaCursor.toKafkaOffset(currentCursor.getOffset());
+                if (stillToAdd > distance) {
+                    stillToAdd -= distance;
+                    final Timeline nextTimeline = find(timelines, currentCursor.getTimeline().getOrder() + 1);
+                    currentCursor = NakadiCursor.of(nextTimeline, PARTITION, "-1");
+                } else {
+                    break;
+                }
+            }
+            return stillToAdd > 0 ? currentCursor.shiftWithinTimeline(stillToAdd) : currentCursor;
+        }
+        long toMoveBack = -shift;
+        while (toMoveBack > 0) {
+            final long totalBefore = KafkaCursor.toKafkaOffset(currentCursor.getOffset());
+            if (totalBefore < toMoveBack) {
+                toMoveBack -= totalBefore + 1;
+                if (toMoveBack == 0) {
+                    toMoveBack += totalBefore + 1;
+                    break;
+                }
+                final Timeline prevTimeline = find(timelines, currentCursor.getTimeline().getOrder() - 1);
+                currentCursor = prevTimeline.getLatestPosition().toNakadiCursor(prevTimeline, PARTITION);
+            } else {
+                break;
+            }
+        }
+        return toMoveBack != 0 ? currentCursor.shiftWithinTimeline(-toMoveBack) : currentCursor;
+    }
+
+    private static Timeline find(final List<Timeline> timelines, final int order) {
+        return timelines.stream()
+                .filter(t -> t.getOrder() == order)
+                .findFirst()
+                .orElseThrow(() -> new InvalidCursorOperation(TIMELINE_NOT_FOUND));
+    }
+}
@@ -0,0 +1,210 @@
+package org.zalando.nakadi.service;
+
+import com.google.common.base.Ticker;
+import org.junit.Before;
+import org.junit.Test;
+import org.zalando.nakadi.domain.PartitionStatistics;
+import org.zalando.nakadi.domain.Storage;
+import org.zalando.nakadi.domain.Timeline;
+import org.zalando.nakadi.repository.TopicRepository;
+import org.zalando.nakadi.repository.db.EventTypeCache;
+import org.zalando.nakadi.repository.kafka.KafkaPartitionStatistics;
+import org.zalando.nakadi.service.converter.CursorConverterImpl;
+import org.zalando.nakadi.service.timeline.TimelineService;
+import org.zalando.nakadi.view.EventTypePartitionView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PartitionsViewServiceTest {
+
+    private static final String ET_NAME = "et";
+    private static final long REFRESH_MS = 1000;
+    private static final long NAMES_REFRESH_MS = 600000;
+    private static final Storage STORAGE = new Storage("default", Storage.Type.KAFKA);
+    private static final Timeline FIRST = new Timeline(ET_NAME, 1, STORAGE, "topic1", new Date());
+    private static final Timeline MIDDLE = new Timeline(ET_NAME, 2, STORAGE, "topic2", new Date());
+    private static final Timeline LAST = new Timeline(ET_NAME, 3, STORAGE, "topic3", new Date());
+
+    private final AtomicLong nanos = new AtomicLong();
+    // partition -> {first, last} offsets, per topic
+    private final Map<String, long[][]> offsets = new HashMap<>();
+    private TimelineService timelineService;
+    private TopicRepository topicRepository;
+    private PartitionsViewService service;
+
+    @Before
+    public void setUp() throws Exception {
+        timelineService = mock(TimelineService.class);
+        topicRepository = mock(TopicRepository.class);
+        when(timelineService.getTopicRepository(any(Timeline.class))).thenReturn(topicRepository);
+        when(topicRepository.loadTopicStatistics(anyCollectionOf(Timeline.class))).thenAnswer(invocation -> {
+            final List<PartitionStatistics> result = new ArrayList<>();
+            for (final Timeline timeline : (Collection<Timeline>) invocation.getArguments()[0]) {
+                final long[][] topicOffsets = offsets.get(timeline.getTopic());
+                for (int partition = 0; partition < topicOffsets.length; ++partition) {
+                    result.add(new KafkaPartitionStatistics(
+                            timeline, partition, topicOffsets[partition][0], topicOffsets[partition][1]));
+                }
+            }
+            return result;
+        });
+        when(topicRepository.listPartitionNames(any())).thenAnswer(invocation -> {
+            final long[][] topicOffsets = offsets.get((String) invocation.getArguments()[0]);
+            final List<String> result = new ArrayList<>();
+            for (int partition = 0; partition < topicOffsets.length; ++partition) {
+                result.add(String.valueOf(partition));
+            }
+            return result;
+        });
+        offsets.put("topic1", new long[][]{{0, 9}, {5, 19}, {10, 29}});
+        offsets.put("topic2", new long[][]{{0, 4}, {0, 4}, {0, 4}});
+        offsets.put("topic3", new long[][]{{0, 99}, {0, 199}, {0, 299}});
+
+        final Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        service = new PartitionsViewService(
+                timelineService, new CursorConverterImpl(mock(EventTypeCache.class), timelineService),
+                REFRESH_MS, 100, NAMES_REFRESH_MS, ticker);
+    }
+
+    @Test
+    public void whenMultipleTimelinesThenBeginIsTakenFromFirstAndEndFromLast() throws Exception {
+        when(timelineService.getActiveTimelinesOrdered(ET_NAME)).thenReturn(Arrays.asList(FIRST, MIDDLE, LAST));
+
+        final List<EventTypePartitionView> partitions = service.getPartitionsView(ET_NAME);
+
+        assertThat(partitions, contains(
+                new EventTypePartitionView(ET_NAME, "0", "001-0001-000000000000000000",
+                        "001-0003-000000000000000099"),
+                new EventTypePartitionView(ET_NAME, "1", "001-0001-000000000000000005",
+                        "001-0003-000000000000000199"),
+                new EventTypePartitionView(ET_NAME, "2", "001-0001-000000000000000010",
+                        "001-0003-000000000000000299")));
+        assertThat(service.getPartitionView(ET_NAME, "1"), equalTo(Optional.of(partitions.get(1))));
+        assertThat(service.getPartitionView(ET_NAME, "3"), equalTo(Optional.empty()));
+        // both timelines are loaded with one call, the middle one is not loaded at all
+        verify(topicRepository, times(1)).loadTopicStatistics(Arrays.asList(FIRST, LAST));
+        verify(topicRepository, times(1)).loadTopicStatistics(anyCollectionOf(Timeline.class));
+    }
+
+    @Test
+    public void whenPartitionNamesAreRequestedThenTheyAreListedOncePerTopicWithoutStatistics() throws Exception {
+        for (int i = 0; i < 10; ++i) {
+            // statistics expire, but names are still cached
+            nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(REFRESH_MS));
+            final Map<Timeline, List<String>> names = service.getPartitionNames(Arrays.asList(FIRST, MIDDLE));
+            assertThat(names.get(FIRST), contains("0", "1", "2"));
+            assertThat(names.get(MIDDLE), contains("0", "1", "2"));
+        }
+
+        verify(topicRepository, times(1)).listPartitionNames("topic1");
+        verify(topicRepository, times(1)).listPartitionNames("topic2");
+        verify(topicRepository, never()).loadTopicStatistics(anyCollectionOf(Timeline.class));
+    }
+
+    @Test
+    public void whenTimelineChangesOrNamesExpireThenPartitionNamesAreListedAgain() throws Exception {
+        service.getPartitionNames(Collections.singletonList(FIRST));
+
+        offsets.put("topic1", new long[][]{{0, 9}, {5, 19}, {10, 29}, {0, 0}});
+        assertThat(service.getPartitionNames(Collections.singletonList(MIDDLE)).get(MIDDLE), contains("0", "1", "2"));
+        assertThat(service.getPartitionNames(Collections.singletonList(FIRST)).get(FIRST), contains("0", "1", "2"));
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(NAMES_REFRESH_MS));
+        assertThat(service.getPartitionNames(Collections.singletonList(FIRST)).get(FIRST),
+                contains("0", "1", "2", "3"));
+        verify(topicRepository, times(2)).listPartitionNames("topic1");
+        verify(topicRepository, times(1)).listPartitionNames("topic2");
+    }
+
+    @Test
+    public void whenStatisticsAreFreshThenStorageIsNotQueried() throws Exception {
+        when(timelineService.getActiveTimelinesOrdered(ET_NAME)).thenReturn(Collections.singletonList(FIRST));
+
+        for (int i = 0; i < 100; ++i) {
+            service.getPartitionsView(ET_NAME);
+            service.getPartitionView(ET_NAME, "0");
+        }
+
+        verify(topicRepository, times(1)).loadTopicStatistics(anyCollectionOf(Timeline.class));
+    }
+
+    @Test
+    public void whenRefreshIntervalPassedThenStatisticsAreReloaded() throws Exception {
+        when(timelineService.getActiveTimelinesOrdered(ET_NAME)).thenReturn(Collections.singletonList(FIRST));
+        assertThat(service.getPartitionView(ET_NAME, "0").get().getNewestAvailableOffset(),
+                equalTo("001-0001-000000000000000009"));
+
+        offsets.get("topic1")[0][1] = 42;
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(REFRESH_MS - 1));
+        assertThat(service.getPartitionView(ET_NAME, "0").get().getNewestAvailableOffset(),
+                equalTo("001-0001-000000000000000009"));
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(service.getPartitionView(ET_NAME, "0").get().getNewestAvailableOffset(),
+                equalTo("001-0001-000000000000000042"));
+        verify(topicRepository, times(2)).loadTopicStatistics(anyCollectionOf(Timeline.class));
+    }
+
+    @Test(timeout = 10000)
+    public void whenConcurrentRequestsThenStorageIsQueriedOnce() throws Exception {
+        when(timelineService.getActiveTimelinesOrdered(ET_NAME)).thenReturn(Arrays.asList(FIRST, LAST));
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLoad = new CountDownLatch(1);
+        final List<PartitionStatistics> stats = new ArrayList<>();
+        stats.add(new KafkaPartitionStatistics(FIRST, 0, 1, 2));
+        stats.add(new KafkaPartitionStatistics(LAST, 0, 3, 4));
+        when(topicRepository.loadTopicStatistics(anyCollectionOf(Timeline.class))).thenAnswer(invocation -> {
+            loadStarted.countDown();
+            releaseLoad.await();
+            return stats;
+        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            final List<Future<List<EventTypePartitionView>>> results = new ArrayList<>();
+            for (int i = 0; i < 10; ++i) {
+                results.add(executor.submit(() -> service.getPartitionsView(ET_NAME)));
+            }
+            loadStarted.await();
+            Thread.sleep(100);
+            releaseLoad.countDown();
+            for (final Future<List<EventTypePartitionView>> result : results) {
+                assertThat(result.get(), contains(new EventTypePartitionView(
+                        ET_NAME, "0", "001-0001-000000000000000001", "001-0003-000000000000000004")));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        verify(topicRepository, times(1)).loadTopicStatistics(anyCollectionOf(Timeline.class));
+    }
+}
@@ -0,0 +1,191 @@
+package org.zalando.nakadi.service;
+
+import com.codahale.metrics.MetricRegistry;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class StreamCompressionServiceTest {
+
+    private static final String METRIC_NAME = "compressed-bytes";
+
+    private final MetricRegistry streamMetrics = new MetricRegistry();
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final StreamCompressionService service = new StreamCompressionService(streamMetrics, metricRegistry, 6, 2);
+    private Server server;
+    private HttpClient httpClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new Server(0);
+        final ServletContextHandler context = new ServletContextHandler();
+        context.addServlet(new ServletHolder(new HttpServlet() {
+            @Override
+            protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws IOException {
+                final OutputStream out = service.compress(req, resp, resp.getOutputStream(), METRIC_NAME);
+                resp.setStatus(200);
+                resp.setContentType("application/x-json-stream");
+                try {
+                    for (int i = 0; i < 100; ++i) {
+                        out.write(batch(i));
+                        out.flush();
+                    }
+                } finally {
+                    out.close();
+                }
+            }
+        }), "/stream");
+        server.setHandler(context);
+        server.start();
+
+        httpClient = new HttpClient();
+        httpClient.start();
+        // responses are decoded by the test itself, client must not ask for compression on its own
+        httpClient.getContentDecoderFactories().clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        httpClient.stop();
+        server.stop();
+    }
+
+    @Test
+    public void whenGzipIsAcceptedThenDecompressedStreamMatchesUncompressedOne() throws Exception {
+        final ContentResponse plain = get(null);
+        final ContentResponse gzipped = get("gzip");
+
+        assertThat(plain.getHeaders().get("Content-Encoding"), nullValue());
+        assertThat(gzipped.getHeaders().get("Content-Encoding"), equalTo("gzip"));
+        assertThat(readAll(new GZIPInputStream(new ByteArrayInputStream(gzipped.getContent()))),
+                equalTo(plain.getContent()));
+        assertThat(gzipped.getContent().length, lessThan(plain.getContent().length / 5));
+        assertThat(streamMetrics.meter(METRIC_NAME).getCount(), equalTo((long) gzipped.getContent().length));
+        assertThat(service.getCompressedStreams(), equalTo(0));
+    }
+
+    @Test
+    public void whenDeflateIsAcceptedThenDecompressedStreamMatchesUncompressedOne() throws Exception {
+        final ContentResponse plain = get(null);
+        final ContentResponse deflated = get("deflate, gzip;q=0");
+
+        assertThat(deflated.getHeaders().get("Content-Encoding"), equalTo("deflate"));
+        assertThat(readAll(new InflaterInputStream(new ByteArrayInputStream(deflated.getContent()))),
+                equalTo(plain.getContent()));
+    }
+
+    @Test
+    public void whenStreamIsFlushedThenEverythingWrittenCanBeDecompressed() throws Exception {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        final OutputStream out = service.compress(request("deflate"), new MockHttpServletResponse(), compressed,
+                METRIC_NAME);
+        final Inflater inflater = new Inflater();
+        final byte[] buffer = new byte[64 * 1024];
+        int consumed = 0;
+        for (int i = 0; i < 10; ++i) {
+            out.write(batch(i));
+            out.flush();
+
+            final byte[] written = compressed.toByteArray();
+            inflater.setInput(written, consumed, written.length - consumed);
+            consumed = written.length;
+            final int inflated = inflater.inflate(buffer);
+            assertThat(new String(buffer, 0, inflated, StandardCharsets.UTF_8),
+                    equalTo(new String(batch(i), StandardCharsets.UTF_8)));
+        }
+        out.close();
+        inflater.end();
+    }
+
+    @Test
+    public void whenTooManyCompressedStreamsThenStreamIsNotCompressed() throws Exception {
+        final OutputStream first = service.compress(request("gzip"), new MockHttpServletResponse(),
+                new ByteArrayOutputStream(), METRIC_NAME);
+        final OutputStream second = service.compress(request("gzip"), new MockHttpServletResponse(),
+                new ByteArrayOutputStream(), METRIC_NAME);
+
+        final ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThat(service.compress(request("gzip"), response, raw, METRIC_NAME), sameInstance(raw));
+        assertThat(response.getHeader("Content-Encoding"), nullValue());
+
+        first.close();
+        second.close();
+        assertThat(service.getCompressedStreams(), equalTo(0));
+    }
+
+    @Test
+    public void testSelectEncoding() {
+        assertThat(StreamCompressionService.selectEncoding(null), nullValue());
+        assertThat(select("identity"), nullValue());
+        assertThat(select("br, *"), nullValue());
+        assertThat(select("deflate, gzip"), equalTo("gzip"));
+        assertThat(select("GZIP;q=0.5"), equalTo("gzip"));
+        assertThat(select("gzip;q=0, deflate;q=0.1"), equalTo("deflate"));
+        assertThat(select("gzip; q=0.0, deflate; q=0"), nullValue());
+    }
+
+    private static String select(final String acceptEncoding) {
+        return StreamCompressionService.selectEncoding(Collections.enumeration(
+                Collections.singletonList(acceptEncoding)));
+    }
+
+    private ContentResponse get(final String acceptEncoding) throws Exception {
+        final String uri = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() +
+                "/stream";
+        return acceptEncoding == null ?
+                httpClient.newRequest(uri).send() :
+                httpClient.newRequest(uri).header("Accept-Encoding", acceptEncoding).send();
+    }
+
+    private static MockHttpServletRequest request(final String acceptEncoding) {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/stream");
+        request.addHeader("Accept-Encoding", acceptEncoding);
+        return request;
+    }
+
+    private static byte[] batch(final int number) {
+        return ("{\"cursor\":{\"partition\":\"0\",\"offset\":\"" + number + "\"},\"events\":[" +
+                "{\"metadata\":{\"eid\":\"a0b6ae6e-5d52-4e12-8e0c-f1b1b5d0a5c" + (number % 10) + "\"," +
+                "\"occurred_at\":\"2017-06-01T00:00:00Z\"},\"id\":" + number + "}]}\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readAll(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
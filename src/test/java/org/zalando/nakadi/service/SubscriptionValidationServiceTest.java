@@ -4,10 +4,13 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.zalando.nakadi.config.NakadiSettings;
 import org.zalando.nakadi.domain.CursorError;
 import org.zalando.nakadi.domain.EventType;
+import org.zalando.nakadi.domain.EventTypePartition;
 import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.Subscription;
 import org.zalando.nakadi.domain.SubscriptionBase;
 import org.zalando.nakadi.domain.Timeline;
 import org.zalando.nakadi.exceptions.InternalNakadiException;
@@ -18,14 +21,18 @@ import org.zalando.nakadi.exceptions.runtime.RepositoryProblemException;
 import org.zalando.nakadi.exceptions.runtime.ServiceTemporarilyUnavailableException;
 import org.zalando.nakadi.exceptions.runtime.TooManyPartitionsException;
 import org.zalando.nakadi.exceptions.runtime.WrongInitialCursorsException;
+import org.zalando.nakadi.exceptions.runtime.WrongStreamParametersException;
 import org.zalando.nakadi.repository.EventTypeRepository;
 import org.zalando.nakadi.repository.TopicRepository;
 import org.zalando.nakadi.service.subscription.SubscriptionValidationService;
 import org.zalando.nakadi.service.timeline.TimelineService;
+import org.zalando.nakadi.utils.TestUtils;
 import org.zalando.nakadi.view.SubscriptionCursorWithoutToken;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -38,6 +45,8 @@ import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SubscriptionValidationServiceTest {
@@ -47,21 +56,26 @@ public class SubscriptionValidationServiceTest {
     public static final String ET2 = "et2";
     public static final String ET3 = "et3";
     public static final String P0 = "p0";
+    private static final int PARTITIONS_PER_ET = 1700;
+    private static final long PARTITIONS_REFRESH_MS = 60000;
 
     private TopicRepository topicRepository;
+    private TimelineService timelineService;
+    private NakadiSettings nakadiSettings;
     private EventTypeRepository etRepo;
     private SubscriptionValidationService subscriptionValidationService;
     private SubscriptionBase subscriptionBase;
     private CursorConverter cursorConverter;
+    private List<String> partitions;
 
     @Before
     public void setUp() throws InternalNakadiException {
-        final NakadiSettings nakadiSettings = mock(NakadiSettings.class);
+        nakadiSettings = mock(NakadiSettings.class);
         when(nakadiSettings.getMaxSubscriptionPartitions()).thenReturn(MAX_SUBSCRIPTION_PARTITIONS);
 
         topicRepository = mock(TopicRepository.class);
-        when(topicRepository.listPartitionNames(argThat(isOneOf(topicForET(ET1), topicForET(ET2), topicForET(ET3)))))
-                .thenReturn(ImmutableList.of(P0));
+        partitions = ImmutableList.of(P0);
+        when(topicRepository.listPartitionNames(any())).thenAnswer(invocation -> partitions);
 
         etRepo = mock(EventTypeRepository.class);
         final Map<String, EventType> eventTypes = new HashMap<>();
@@ -73,18 +87,15 @@ public class SubscriptionValidationServiceTest {
         when(etRepo.findByNameO(any()))
                 .thenAnswer(invocation -> Optional.ofNullable(eventTypes.get(invocation.getArguments()[0])));
 
-        final TimelineService timelineService = mock(TimelineService.class);
+        timelineService = mock(TimelineService.class);
         for (final EventType et : eventTypes.values()) {
-            final Timeline timeline = mock(Timeline.class);
-            when(timeline.getTopic()).thenReturn(topicForET(et.getName()));
-            when(timeline.getEventType()).thenReturn(et.getName());
+            final Timeline timeline = TestUtils.buildTimeline(et.getName(), topicForET(et.getName()), new Date());
             when(timelineService.getActiveTimeline(eq(et.getName()))).thenReturn(timeline);
         }
         when(timelineService.getTopicRepository((Timeline) any())).thenReturn(topicRepository);
         when(timelineService.getTopicRepository((EventType) any())).thenReturn(topicRepository);
         cursorConverter = mock(CursorConverter.class);
-        subscriptionValidationService = new SubscriptionValidationService(timelineService, etRepo, nakadiSettings,
-                cursorConverter);
+        subscriptionValidationService = createService();
 
         subscriptionBase = new SubscriptionBase();
         subscriptionBase.setEventTypes(ImmutableSet.of(ET1, ET2, ET3));
@@ -114,9 +125,7 @@ public class SubscriptionValidationServiceTest {
 
     @Test(expected = TooManyPartitionsException.class)
     public void whenTooManyPartitionsThenException() {
-        when(topicRepository.listPartitionNames(argThat(isOneOf(
-                topicForET(ET1), topicForET(ET2), topicForET(ET3)))))
-                .thenReturn(Collections.nCopies(4, P0)); // 4 x 3 = 12 > 10
+        partitions = partitionNames(4); // 4 x 3 = 12 > 10
         subscriptionValidationService.validateSubscription(subscriptionBase);
     }
 
@@ -196,6 +205,75 @@ public class SubscriptionValidationServiceTest {
         subscriptionValidationService.validateSubscription(subscriptionBase);
     }
 
+    @Test(timeout = 10000)
+    public void whenManyPartitionsThenInitialCursorsAreValidatedInOneBatch() throws Exception {
+        partitions = partitionNames(PARTITIONS_PER_ET);
+        final SubscriptionValidationService service = createServiceWithPartitionsLimit(3 * PARTITIONS_PER_ET);
+        final List<SubscriptionCursorWithoutToken> cursors = new ArrayList<>();
+        for (final String et : new String[]{ET1, ET2, ET3}) {
+            partitions.forEach(p -> cursors.add(new SubscriptionCursorWithoutToken(et, p, "0")));
+        }
+        subscriptionBase.setInitialCursors(cursors);
+        final Timeline timeline = TestUtils.buildTimeline(ET1);
+        when(cursorConverter.convert((SubscriptionCursorWithoutToken) any())).thenAnswer(invocation -> {
+            final SubscriptionCursorWithoutToken cursor = (SubscriptionCursorWithoutToken) invocation.getArguments()[0];
+            return NakadiCursor.of(timeline, cursor.getPartition(), cursor.getOffset());
+        });
+
+        service.validateSubscription(subscriptionBase);
+        service.validateSubscription(subscriptionBase);
+
+        final ArgumentCaptor<List> validated = ArgumentCaptor.forClass(List.class);
+        verify(topicRepository, times(2)).validateReadCursors(validated.capture());
+        assertThat(validated.getValue().size(), equalTo(3 * PARTITIONS_PER_ET));
+        // partitions are listed once per topic, not on every validation
+        verify(topicRepository, times(3)).listPartitionNames(any());
+    }
+
+    @Test(timeout = 10000)
+    public void whenManyPartitionsThenPartitionsToStreamAreValidated() {
+        partitions = partitionNames(PARTITIONS_PER_ET);
+        final SubscriptionValidationService service = createServiceWithPartitionsLimit(3 * PARTITIONS_PER_ET);
+        final Subscription subscription = new Subscription();
+        subscription.setEventTypes(ImmutableSet.of(ET1, ET2, ET3));
+        final List<EventTypePartition> toStream = new ArrayList<>();
+        for (final String et : new String[]{ET1, ET2, ET3}) {
+            partitions.forEach(p -> toStream.add(new EventTypePartition(et, p)));
+        }
+
+        for (int i = 0; i < 10; ++i) {
+            service.validatePartitionsToStream(subscription, toStream);
+        }
+        toStream.add(new EventTypePartition(ET1, "wrong"));
+        try {
+            service.validatePartitionsToStream(subscription, toStream);
+            fail("WrongStreamParametersException expected");
+        } catch (final WrongStreamParametersException e) {
+            assertThat(e.getMessage(), equalTo("Wrong partitions specified - some partitions don't belong to " +
+                    "subscription: EventTypePartition{eventType='et1', partition='wrong'}"));
+        }
+        verify(topicRepository, times(3)).listPartitionNames(any());
+    }
+
+    private SubscriptionValidationService createServiceWithPartitionsLimit(final int maxPartitions) {
+        when(nakadiSettings.getMaxSubscriptionPartitions()).thenReturn(maxPartitions);
+        return createService();
+    }
+
+    private SubscriptionValidationService createService() {
+        return new SubscriptionValidationService(timelineService, etRepo, nakadiSettings, cursorConverter,
+                new PartitionsViewService(timelineService, cursorConverter, PARTITIONS_REFRESH_MS, 100,
+                        PARTITIONS_REFRESH_MS));
+    }
+
+    private static List<String> partitionNames(final int count) {
+        final List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            result.add(String.valueOf(i));
+        }
+        return result;
+    }
+
     private static NakadiCursor mockCursorWithTimeline() {
         final Timeline timeline = mock(Timeline.class);
         when(timeline.isDeleted()).thenReturn(false);
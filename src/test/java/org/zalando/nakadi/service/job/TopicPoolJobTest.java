@@ -0,0 +1,135 @@
+package org.zalando.nakadi.service.job;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zalando.nakadi.config.NakadiSettings;
+import org.zalando.nakadi.domain.DefaultStorage;
+import org.zalando.nakadi.domain.Storage;
+import org.zalando.nakadi.exceptions.TopicCreationException;
+import org.zalando.nakadi.exceptions.runtime.RepositoryProblemException;
+import org.zalando.nakadi.repository.TopicRepository;
+import org.zalando.nakadi.repository.TopicRepositoryHolder;
+import org.zalando.nakadi.repository.db.TopicPoolDbRepository;
+import org.zalando.nakadi.service.FeatureToggleService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TopicPoolJobTest {
+
+    private static final long RETENTION_MS = 1000;
+    private static final long TOPIC_CREATION_MS = 20;
+
+    // partition count -> pooled topics
+    private final Map<Integer, List<String>> pool = new HashMap<>();
+    private final List<String> createdTopics = new ArrayList<>();
+    private TopicRepository topicRepository;
+    private TopicPoolDbRepository topicPoolDbRepository;
+    private FeatureToggleService featureToggleService;
+    private TopicPoolJob topicPoolJob;
+
+    @Before
+    public void setUp() throws Exception {
+        // fake storage that needs some time to create a topic
+        topicRepository = mock(TopicRepository.class);
+        when(topicRepository.createTopic(anyInt(), anyLong())).thenAnswer(invocation -> {
+            Thread.sleep(TOPIC_CREATION_MS);
+            final String topic = UUID.randomUUID().toString();
+            createdTopics.add(topic);
+            return topic;
+        });
+        final TopicRepositoryHolder topicRepositoryHolder = mock(TopicRepositoryHolder.class);
+        when(topicRepositoryHolder.getTopicRepository(any())).thenReturn(topicRepository);
+
+        topicPoolDbRepository = mock(TopicPoolDbRepository.class);
+        when(topicPoolDbRepository.countTopics(eq("default"), anyInt())).thenAnswer(invocation ->
+                pool.getOrDefault((Integer) invocation.getArguments()[1], new ArrayList<>()).size());
+        doAnswer(invocation -> pool.computeIfAbsent((Integer) invocation.getArguments()[1], p -> new ArrayList<>())
+                .add((String) invocation.getArguments()[2]))
+                .when(topicPoolDbRepository).addTopic(eq("default"), anyInt(), anyString());
+
+        final NakadiSettings nakadiSettings = mock(NakadiSettings.class);
+        when(nakadiSettings.getDefaultTopicRetentionMs()).thenReturn(RETENTION_MS);
+        featureToggleService = mock(FeatureToggleService.class);
+        final JobWrapperFactory jobWrapperFactory = mock(JobWrapperFactory.class);
+        final ExclusiveJobWrapper jobWrapper = DummyJobWrapper.create();
+        when(jobWrapperFactory.createExclusiveJobWrapper(any(), anyLong())).thenReturn(jobWrapper);
+
+        topicPoolJob = new TopicPoolJob(topicRepositoryHolder,
+                new DefaultStorage(new Storage("default", Storage.Type.KAFKA)), topicPoolDbRepository,
+                nakadiSettings, featureToggleService, jobWrapperFactory, 0, 3, "1, 4");
+    }
+
+    @Test
+    public void whenPoolIsEmptyThenItIsFilledForEveryPartitionCount() throws Exception {
+        topicPoolJob.fillTopicPool();
+
+        assertThat(pool.get(1), hasSize(3));
+        assertThat(pool.get(4), hasSize(3));
+        verify(topicRepository, times(3)).createTopic(1, RETENTION_MS);
+        verify(topicRepository, times(3)).createTopic(4, RETENTION_MS);
+    }
+
+    @Test
+    public void whenPoolIsPartiallyUsedThenOnlyMissingTopicsAreCreated() throws Exception {
+        topicPoolJob.fillTopicPool();
+        pool.get(4).remove(0);
+
+        topicPoolJob.fillTopicPool();
+
+        assertThat(pool.get(1), hasSize(3));
+        assertThat(pool.get(4), hasSize(3));
+        assertThat(createdTopics, hasSize(7));
+    }
+
+    @Test
+    public void whenTopicCreationFailsThenOtherPartitionCountsAreStillFilled() throws Exception {
+        when(topicRepository.createTopic(eq(1), anyLong())).thenThrow(new TopicCreationException("failed"));
+
+        topicPoolJob.fillTopicPool();
+
+        assertThat(pool.containsKey(1), equalTo(false));
+        assertThat(pool.get(4), hasSize(3));
+        verify(topicRepository, times(1)).createTopic(eq(1), anyLong());
+    }
+
+    @Test
+    public void whenTopicIsNotAddedToPoolThenItIsDeleted() throws Exception {
+        doThrow(new RepositoryProblemException("failed", new Exception()))
+                .when(topicPoolDbRepository).addTopic(eq("default"), anyInt(), anyString());
+
+        topicPoolJob.fillTopicPool();
+
+        assertThat(createdTopics, hasSize(1));
+        verify(topicRepository).deleteTopic(createdTopics.get(0));
+    }
+
+    @Test
+    public void whenDbWriteOperationsAreDisabledThenNoTopicsAreCreated() throws Exception {
+        when(featureToggleService.isFeatureEnabled(FeatureToggleService.Feature.DISABLE_DB_WRITE_OPERATIONS))
+                .thenReturn(true);
+
+        topicPoolJob.fillTopicPool();
+
+        verify(topicRepository, never()).createTopic(anyInt(), anyLong());
+    }
+}
@@ -0,0 +1,306 @@
+package org.zalando.nakadi.service.subscription;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.zalando.nakadi.domain.EventTypePartition;
+import org.zalando.nakadi.service.subscription.model.Partition;
+import org.zalando.nakadi.service.subscription.model.Session;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.zalando.nakadi.service.subscription.model.Partition.State.ASSIGNED;
+import static org.zalando.nakadi.service.subscription.model.Partition.State.REASSIGNING;
+import static org.zalando.nakadi.service.subscription.model.Partition.State.UNASSIGNED;
+
+public class StickySubscriptionRebalancerTest {
+
+    private final StickySubscriptionRebalancer rebalancer =
+            new StickySubscriptionRebalancer(partitions -> Collections.emptyMap());
+
+    @Test
+    public void splitStickyKeepsCurrentCountsWithinBoundsOfSplitByWeight() {
+        assertArrayEquals(new int[]{3, 3, 4}, StickySubscriptionRebalancer.splitSticky(
+                10, new int[]{1, 1, 1}, new int[]{0, 5, 5}));
+        assertArrayEquals(new int[]{3, 3, 4}, StickySubscriptionRebalancer.splitSticky(
+                10, new int[]{1, 1, 1}, new int[]{3, 3, 4}));
+        assertArrayEquals(new int[]{2, 2, 2, 4}, StickySubscriptionRebalancer.splitSticky(
+                10, new int[]{1, 1, 1, 2}, new int[]{4, 3, 3, 0}));
+        assertArrayEquals(new int[]{1, 2}, StickySubscriptionRebalancer.splitSticky(
+                3, new int[]{5, 1}, new int[]{0, 3}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void splitStickyAcceptsOnlyCorrectData() {
+        StickySubscriptionRebalancer.splitSticky(1, new int[]{1, 1}, new int[]{0, 0});
+    }
+
+    @Test
+    public void whenSessionJoinsThenOnlyNecessaryPartitionsAreMoved() {
+        final List<Session> sessions = ImmutableList.of(new Session("a", 1), new Session("b", 1), new Session("c", 1));
+        final Partition[] partitions = IntStream.range(0, 10)
+                .mapToObj(i -> new Partition("et", String.valueOf(i), i < 5 ? "b" : "c", null, ASSIGNED))
+                .toArray(Partition[]::new);
+
+        final Partition[] changeset = rebalancer.apply(sessions, partitions);
+
+        assertThat(changeset.length, equalTo(3));
+        for (final Partition partition : changeset) {
+            assertThat(partition.getState(), equalTo(REASSIGNING));
+            assertThat(partition.getNextSession(), equalTo("a"));
+        }
+        assertThat(new SubscriptionRebalancer().apply(sessions, partitions).length, equalTo(4));
+    }
+
+    @Test
+    public void whenPartitionsAreTakenThenTheOnesWithLowestBacklogAreMoved() {
+        final Map<EventTypePartition, Long> backlogs = ImmutableMap.of(
+                new EventTypePartition("et", "0"), 100L,
+                new EventTypePartition("et", "1"), 5L,
+                new EventTypePartition("et", "2"), 1000L,
+                new EventTypePartition("et", "3"), 7L);
+        final Partition[] partitions = new Partition[]{
+                new Partition("et", "0", "a", null, ASSIGNED),
+                new Partition("et", "1", "a", null, ASSIGNED),
+                new Partition("et", "2", "a", null, ASSIGNED),
+                new Partition("et", "3", "a", null, ASSIGNED)};
+        final StickySubscriptionRebalancer backlogRebalancer = new StickySubscriptionRebalancer(keys -> backlogs);
+        backlogRebalancer.prepare(() -> partitions);
+
+        final Partition[] changeset = backlogRebalancer.apply(
+                ImmutableList.of(new Session("a", 1), new Session("b", 1), new Session("c", 1)), partitions);
+
+        assertThat(Stream.of(changeset).map(Partition::getPartition).collect(Collectors.toList()),
+                containsInAnyOrder("1", "3"));
+    }
+
+    @Test
+    public void whenRebalancingThenBacklogsAreNotLoaded() {
+        final AtomicInteger loads = new AtomicInteger();
+        final StickySubscriptionRebalancer backlogRebalancer = new StickySubscriptionRebalancer(keys -> {
+            loads.incrementAndGet();
+            return keys.stream().collect(Collectors.toMap(key -> key, key -> 1L));
+        });
+        final Partition[] partitions = IntStream.range(0, 6)
+                .mapToObj(i -> new Partition("et", String.valueOf(i), "a", null, ASSIGNED))
+                .toArray(Partition[]::new);
+
+        backlogRebalancer.prepare(() -> partitions);
+        assertThat(loads.get(), equalTo(1));
+
+        // rebalance is done under the lock, backlogs loaded before the lock are used
+        final Partition[] changeset = backlogRebalancer.apply(
+                ImmutableList.of(new Session("a", 1), new Session("b", 1)), partitions);
+        assertThat(changeset.length, equalTo(3));
+        assertThat(loads.get(), equalTo(1));
+    }
+
+    @Test
+    public void whenBacklogsWereLoadedRecentlyThenTheyAreReused() {
+        final AtomicInteger loads = new AtomicInteger();
+        final AtomicLong now = new AtomicLong();
+        final StickySubscriptionRebalancer backlogRebalancer = new StickySubscriptionRebalancer(keys -> {
+            loads.incrementAndGet();
+            return keys.stream().collect(Collectors.toMap(key -> key, key -> 1L));
+        }, now::get);
+        final Partition[] partitions = IntStream.range(0, 6)
+                .mapToObj(i -> new Partition("et", String.valueOf(i), "a", null, ASSIGNED))
+                .toArray(Partition[]::new);
+
+        backlogRebalancer.prepare(() -> partitions);
+        now.addAndGet(StickySubscriptionRebalancer.BACKLOGS_TTL_MS - 1);
+        backlogRebalancer.prepare(() -> partitions);
+        assertThat(loads.get(), equalTo(1));
+
+        // partitions without loaded backlog appeared
+        backlogRebalancer.prepare(() -> Stream.concat(Stream.of(partitions),
+                Stream.of(new Partition("et", "6", "a", null, ASSIGNED))).toArray(Partition[]::new));
+        assertThat(loads.get(), equalTo(2));
+
+        now.addAndGet(StickySubscriptionRebalancer.BACKLOGS_TTL_MS);
+        backlogRebalancer.prepare(() -> partitions);
+        assertThat(loads.get(), equalTo(3));
+    }
+
+    @Test
+    public void whenPartitionsAreTakenThenReassigningOnesAreReturnedToTheirSessionFirst() {
+        final Partition[] changeset = rebalancer.apply(
+                ImmutableList.of(new Session("a", 1), new Session("b", 1)),
+                new Partition[]{
+                        new Partition("et", "0", "a", "b", REASSIGNING),
+                        new Partition("et", "1", "b", null, ASSIGNED),
+                        new Partition("et", "2", "b", null, ASSIGNED),
+                        new Partition("et", "3", "a", null, ASSIGNED)});
+
+        assertThat(changeset, equalTo(new Partition[]{new Partition("et", "0", "a", null, ASSIGNED)}));
+    }
+
+    @Test
+    public void rebalanceShouldHaveEmptyChangesetForBalancedData() {
+        assertThat(rebalancer.apply(
+                ImmutableList.of(new Session("0", 1), new Session("1", 1)),
+                new Partition[]{
+                        new Partition("0", "0", "0", null, ASSIGNED),
+                        new Partition("0", "1", "0", "1", REASSIGNING),
+                        new Partition("1", "0", "1", null, ASSIGNED),
+                        new Partition("1", "1", "0", null, ASSIGNED)}),
+                emptyArray());
+    }
+
+    @Test
+    public void whenTopologyIsRandomThenPartitionsAreSplitFairlyWithNotMoreMovesThanWeightedRebalance() {
+        final Random random = new Random(11);
+        for (int iteration = 0; iteration < 5000; ++iteration) {
+            final List<Session> sessions = randomSessions(random, "s", 1 + random.nextInt(6));
+            final List<String> knownSessions = new ArrayList<>(sessions.stream().map(Session::getId)
+                    .collect(Collectors.toList()));
+            knownSessions.add("dead");
+            final int partitionCount = sessions.size() + random.nextInt(40);
+            final Partition[] partitions = IntStream.range(0, partitionCount)
+                    .mapToObj(i -> randomPartition(random, String.valueOf(i), knownSessions))
+                    .toArray(Partition[]::new);
+
+            final Partition[] changeset = rebalancer.apply(sessions, partitions);
+            final Partition[] weightedChangeset = new SubscriptionRebalancer().apply(sessions, partitions);
+            final String description = sessions + " " + Stream.of(partitions).map(Partition::toString)
+                    .collect(Collectors.joining(", "));
+
+            assertFairlySplit(description, sessions, applyChangeset(partitions, changeset));
+            assertThat(description, changeset.length, lessThanOrEqualTo(weightedChangeset.length));
+        }
+    }
+
+    @Test
+    public void whenSessionsJoinAndLeaveThenStickyRebalanceMovesLessPartitions() {
+        final Random random = new Random(5);
+        long movedBySticky = 0;
+        long movedByWeighted = 0;
+        for (int sequence = 0; sequence < 200; ++sequence) {
+            final int partitionCount = 8 + random.nextInt(120);
+            final Partition[] initial = IntStream.range(0, partitionCount)
+                    .mapToObj(i -> new Partition("et", String.valueOf(i), null, null, UNASSIGNED))
+                    .toArray(Partition[]::new);
+            Partition[] sticky = initial;
+            Partition[] weighted = initial;
+            final List<Session> sessions = new ArrayList<>();
+            for (int step = 0; step < 20; ++step) {
+                if (sessions.size() > 1 && random.nextBoolean()) {
+                    sessions.remove(random.nextInt(sessions.size()));
+                } else {
+                    sessions.add(new Session(Integer.toHexString(random.nextInt()), 1 + random.nextInt(2)));
+                }
+                if (sessions.stream().mapToInt(Session::getWeight).sum() > partitionCount) {
+                    sessions.remove(sessions.size() - 1);
+                    continue;
+                }
+
+                final Partition[] stickyChangeset = rebalancer.apply(sessions, sticky);
+                final Partition[] weightedChangeset = new SubscriptionRebalancer().apply(sessions, weighted);
+                movedBySticky += stickyChangeset.length;
+                movedByWeighted += weightedChangeset.length;
+
+                // sessions finish streaming of released partitions before the next change
+                sticky = finishReassigning(applyChangeset(sticky, stickyChangeset));
+                weighted = finishReassigning(applyChangeset(weighted, weightedChangeset));
+                assertFairlySplit(sessions.toString(), sessions, sticky);
+            }
+        }
+        assertThat(movedBySticky, lessThan(movedByWeighted));
+    }
+
+    @Test
+    public void whenSessionsJoinOneByOneThenStickyRebalanceMovesOnlyPartitionsForNewSessions() {
+        final List<Session> sessions = new ArrayList<>();
+        Partition[] sticky = IntStream.range(0, 100)
+                .mapToObj(i -> new Partition("et", String.valueOf(i), null, null, UNASSIGNED))
+                .toArray(Partition[]::new);
+        Partition[] weighted = sticky;
+        int movedBySticky = 0;
+        int movedByWeighted = 0;
+        for (int i = 0; i < 12; ++i) {
+            // new sessions are not always the last ones in sorted order
+            sessions.add(new Session(String.valueOf((char) ('z' - i * 7 % 26)), 1));
+            final Partition[] stickyChangeset = rebalancer.apply(sessions, sticky);
+            final Partition[] weightedChangeset = new SubscriptionRebalancer().apply(sessions, weighted);
+            if (i > 0) {
+                // new session gets its share, nothing else moves
+                assertThat(stickyChangeset.length, equalTo(100 / sessions.size()));
+                movedBySticky += stickyChangeset.length;
+                movedByWeighted += weightedChangeset.length;
+            }
+            sticky = finishReassigning(applyChangeset(sticky, stickyChangeset));
+            weighted = finishReassigning(applyChangeset(weighted, weightedChangeset));
+        }
+        assertThat(movedBySticky, lessThan(movedByWeighted));
+    }
+
+    private static void assertFairlySplit(final String description, final List<Session> sessions,
+                                          final Partition[] partitions) {
+        final Map<String, Integer> counts = new HashMap<>();
+        for (final Partition partition : partitions) {
+            counts.merge(partition.getEffectiveSession(), 1, Integer::sum);
+        }
+        final int totalWeight = sessions.stream().mapToInt(Session::getWeight).sum();
+        final int fixed = partitions.length / totalWeight;
+        int assigned = 0;
+        for (final Session session : sessions) {
+            final int count = counts.getOrDefault(session.getId(), 0);
+            final int min = fixed == 0 ? 1 : fixed * session.getWeight();
+            assertThat(description, count >= min && count <= min + session.getWeight(), equalTo(true));
+            assigned += count;
+        }
+        assertThat(description, assigned, equalTo(partitions.length));
+    }
+
+    private static Partition[] applyChangeset(final Partition[] partitions, final Partition[] changeset) {
+        final Map<EventTypePartition, Partition> result = Stream.of(partitions)
+                .collect(Collectors.toMap(Partition::getKey, p -> p));
+        for (final Partition changed : changeset) {
+            result.put(changed.getKey(), changed);
+        }
+        return Stream.of(partitions).map(p -> result.get(p.getKey())).toArray(Partition[]::new);
+    }
+
+    private static Partition[] finishReassigning(final Partition[] partitions) {
+        return Stream.of(partitions)
+                .map(p -> p.getState() == REASSIGNING ? p.toState(ASSIGNED, p.getNextSession(), null) : p)
+                .toArray(Partition[]::new);
+    }
+
+    private static List<Session> randomSessions(final Random random, final String prefix, final int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new Session(prefix + random.nextInt(1000) + "-" + i, 1 + random.nextInt(3)))
+                .collect(Collectors.toList());
+    }
+
+    private static Partition randomPartition(final Random random, final String partition,
+                                             final List<String> sessions) {
+        final String session = sessions.get(random.nextInt(sessions.size()));
+        switch (random.nextInt(4)) {
+            case 0:
+                return new Partition("et", partition, null, null, UNASSIGNED);
+            case 1:
+                return new Partition("et", partition, session, sessions.get(random.nextInt(sessions.size())),
+                        REASSIGNING);
+            default:
+                return new Partition("et", partition, session, null, ASSIGNED);
+        }
+    }
+}
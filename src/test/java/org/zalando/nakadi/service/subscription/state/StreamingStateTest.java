@@ -1,10 +1,13 @@
 package org.zalando.nakadi.service.subscription.state;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.Lists;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.zalando.nakadi.domain.ConsumedEvent;
 import org.zalando.nakadi.domain.EventTypePartition;
 import org.zalando.nakadi.domain.NakadiCursor;
 import org.zalando.nakadi.domain.PartitionStatistics;
@@ -19,18 +22,31 @@ import org.zalando.nakadi.repository.EventConsumer;
 import org.zalando.nakadi.repository.TopicRepository;
 import org.zalando.nakadi.security.Client;
 import org.zalando.nakadi.service.CursorConverter;
+import org.zalando.nakadi.service.CursorTokenService;
+import org.zalando.nakadi.service.EventStreamWriter;
 import org.zalando.nakadi.service.subscription.StreamParameters;
 import org.zalando.nakadi.service.subscription.StreamingContext;
+import org.zalando.nakadi.service.subscription.SubscriptionOutput;
 import org.zalando.nakadi.service.subscription.model.Partition;
 import org.zalando.nakadi.service.subscription.zk.ZkSubscription;
 import org.zalando.nakadi.service.subscription.zk.ZkSubscriptionClient;
 import org.zalando.nakadi.service.timeline.TimelineService;
 import org.zalando.nakadi.view.SubscriptionCursorWithoutToken;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -46,12 +62,13 @@ public class StreamingStateTest {
     private TimelineService timelineService;
     private Subscription subscription;
     private CursorConverter cursorConverter;
+    private StreamingContext contextMock;
 
     @Before
     public void prepareMocks() throws Exception {
         state = new StreamingState();
 
-        final StreamingContext contextMock = mock(StreamingContext.class);
+        contextMock = mock(StreamingContext.class);
         when(contextMock.getCursorComparator()).thenReturn(Comparator.comparing(NakadiCursor::getOffset));
 
         when(contextMock.getSessionId()).thenReturn(SESSION_ID);
@@ -162,4 +179,69 @@ public class StreamingStateTest {
         Mockito.verify(offsetSubscription, Mockito.times(1)).getData();
     }
 
+    @Test
+    public void whenDataIsSparseThenOnlyPartitionsWithFullBatchesAreFlushed() throws Exception {
+        final int partitionsCount = 1000;
+        final Client client = mock(Client.class);
+        when(client.getClientId()).thenReturn("consumingAppId");
+        when(contextMock.getParameters()).thenReturn(createStreamParameters(
+                10, 1000000L, 100, 100L, 100, 100000, 100, client));
+        when(contextMock.getMetricRegistry().meter(any())).thenReturn(new Meter());
+        when(contextMock.getKpiCollectionFrequencyMs()).thenReturn(100000L);
+        when(contextMock.getStreamMemoryLimitBytes()).thenReturn(1000000L);
+        when(contextMock.isConnectionReady()).thenReturn(true);
+        when(contextMock.getOut()).thenReturn(mock(SubscriptionOutput.class));
+        when(contextMock.getCursorTokenService()).thenReturn(mock(CursorTokenService.class));
+        final EventStreamWriter writer = mock(EventStreamWriter.class);
+        when(contextMock.getWriter()).thenReturn(writer);
+        final Queue<Runnable> tasks = new LinkedList<>();
+        Mockito.doAnswer(invocation -> tasks.add((Runnable) invocation.getArguments()[0]))
+                .when(contextMock).addTask(any());
+
+        final Storage storage = mock(Storage.class);
+        when(storage.getType()).thenReturn(Storage.Type.KAFKA);
+        final Timeline timeline = new Timeline("t", 0, storage, "t", new Date());
+        final Partition[] partitions = IntStream.range(0, partitionsCount)
+                .mapToObj(i -> new Partition("t", String.valueOf(i), SESSION_ID, null, Partition.State.ASSIGNED))
+                .toArray(Partition[]::new);
+        final Set<EventTypePartition> assignment = Stream.of(partitions).map(Partition::getKey)
+                .collect(Collectors.toSet());
+        when(zkMock.subscribeForOffsetChanges(any(), any())).thenReturn(mock(ZkSubscription.class));
+        when(zkMock.getTopology()).thenReturn(new ZkSubscriptionClient.Topology(partitions, null, 1));
+        when(subscription.getEventTypes()).thenReturn(Collections.singleton("t"));
+        when(timelineService.getActiveTimelinesOrdered(eq("t"))).thenReturn(Collections.singletonList(timeline));
+        final TopicRepository topicRepository = mock(TopicRepository.class);
+        when(timelineService.getTopicRepository(eq(timeline))).thenReturn(topicRepository);
+        final List<PartitionStatistics> stats = new ArrayList<>();
+        for (final Partition partition : partitions) {
+            final NakadiCursor beforeFirst = NakadiCursor.of(timeline, partition.getPartition(), "0");
+            final PartitionStatistics partitionStats = mock(PartitionStatistics.class);
+            when(partitionStats.getBeforeFirst()).thenReturn(beforeFirst);
+            stats.add(partitionStats);
+        }
+        when(topicRepository.loadTopicStatistics(any())).thenReturn(stats);
+        final NakadiCursor anyCursor = NakadiCursor.of(timeline, "0", "0");
+        when(cursorConverter.convert(any(SubscriptionCursorWithoutToken.class))).thenReturn(anyCursor);
+
+        // 25 events are consumed from a single partition, all other partitions stay empty
+        final List<ConsumedEvent> events = IntStream.range(1, 26)
+                .mapToObj(i -> new ConsumedEvent(new byte[]{'{', '}'}, NakadiCursor.of(timeline, "7", "" + i)))
+                .collect(Collectors.toList());
+        final EventConsumer.ReassignableEventConsumer consumer = mock(EventConsumer.ReassignableEventConsumer.class);
+        when(consumer.getAssignment()).thenReturn(Collections.emptySet(), assignment);
+        when(consumer.readEvents()).thenReturn(events, Collections.emptyList());
+        when(timelineService.createEventConsumer(any())).thenReturn(consumer);
+
+        state.onEnter();
+        state.refreshTopologyUnlocked(partitions);
+        for (int i = 0; i < 100 && !tasks.isEmpty(); ++i) {
+            tasks.poll().run();
+        }
+
+        final ArgumentCaptor<List> batches = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(writer, Mockito.times(2)).writeSubscriptionBatch(any(), any(), batches.capture(), any());
+        for (final List batch : batches.getAllValues()) {
+            assertThat(batch.size(), equalTo(10));
+        }
+    }
 }
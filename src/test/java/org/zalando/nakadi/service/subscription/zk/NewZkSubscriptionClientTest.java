@@ -0,0 +1,160 @@
+package org.zalando.nakadi.service.subscription.zk;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.GetDataBuilder;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zalando.nakadi.domain.EventTypePartition;
+import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
+import org.zalando.nakadi.utils.TestUtils;
+import org.zalando.nakadi.view.SubscriptionCursorWithoutToken;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NewZkSubscriptionClientTest {
+
+    private static final int PARTITIONS = 5000;
+    private static final int MAX_READS_IN_FLIGHT = 50;
+    private static final String ET = "et";
+
+    private TestingServer server;
+    private CuratorFramework curator;
+    private ZkWatchRegistry registry;
+    private NewZkSubscriptionClient client;
+    private List<EventTypePartition> partitions;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new TestingServer();
+        // long session timeout, so that pings do not disturb request counting
+        curator = CuratorFrameworkFactory.newClient(server.getConnectString(), 60000, 10000, new RetryOneTime(100));
+        curator.start();
+        final ZooKeeperHolder zooKeeperHolder = mock(ZooKeeperHolder.class);
+        when(zooKeeperHolder.get()).thenReturn(curator);
+        registry = new ZkWatchRegistry(zooKeeperHolder);
+        client = new NewZkSubscriptionClient(
+                "sid", curator, registry, MAX_READS_IN_FLIGHT, "test", TestUtils.OBJECT_MAPPER);
+
+        partitions = new ArrayList<>();
+        for (int i = 0; i < PARTITIONS; ++i) {
+            final EventTypePartition etp = new EventTypePartition(ET, String.valueOf(i));
+            partitions.add(etp);
+            curator.create().creatingParentsIfNeeded().forPath(
+                    client.getOffsetPath(etp), offset(i).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        registry.shutdown();
+        curator.close();
+        server.close();
+    }
+
+    @Test(timeout = 30000)
+    public void whenOffsetsOfManyPartitionsAreLoadedThenRequestsInFlightAreLimited() {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger peakInFlight = new AtomicInteger();
+        final CuratorFramework countingCurator = mock(CuratorFramework.class);
+        when(countingCurator.getData()).thenAnswer(invocation -> {
+            final GetDataBuilder builder = mock(GetDataBuilder.class);
+            when(builder.inBackground(any(BackgroundCallback.class))).thenAnswer(call -> {
+                peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                final BackgroundCallback callback = (BackgroundCallback) call.getArguments()[0];
+                return curator.getData().inBackground((c, event) -> {
+                    inFlight.decrementAndGet();
+                    callback.processResult(c, event);
+                });
+            });
+            return builder;
+        });
+        final NewZkSubscriptionClient countingClient = new NewZkSubscriptionClient(
+                "sid", countingCurator, registry, MAX_READS_IN_FLIGHT, "test", TestUtils.OBJECT_MAPPER);
+
+        final long start = System.currentTimeMillis();
+        final Map<EventTypePartition, SubscriptionCursorWithoutToken> offsets = countingClient.getOffsets(partitions);
+        final long latency = System.currentTimeMillis() - start;
+
+        assertThat(offsets.size(), equalTo(PARTITIONS));
+        for (int i = 0; i < PARTITIONS; ++i) {
+            assertThat(offsets.get(partitions.get(i)).getOffset(), equalTo(offset(i)));
+        }
+        assertThat(peakInFlight.get(), equalTo(MAX_READS_IN_FLIGHT));
+        assertThat(latency, lessThan(5000L));
+    }
+
+    @Test(timeout = 30000)
+    public void whenOffsetsAreWatchedThenCommittedOffsetsAreReadFromZookeeperRightAway() throws Exception {
+        final List<ZkSubscription<SubscriptionCursorWithoutToken>> watches = new ArrayList<>();
+        for (final EventTypePartition etp : partitions.subList(0, 100)) {
+            watches.add(client.subscribeForOffsetChanges(etp, () -> {
+            }));
+        }
+        // caches that are just started may still send requests of their own, so only the lower bound is checked
+        final long before = getReceivedPackets();
+        client.getOffsets(partitions.subList(0, 100));
+        assertThat(requestsSince(before), greaterThanOrEqualTo(100L));
+
+        final SubscriptionCursorWithoutToken committed =
+                new SubscriptionCursorWithoutToken(ET, "0", offset(PARTITIONS));
+        assertThat(client.commitOffsets(Collections.singletonList(committed),
+                Comparator.comparing(SubscriptionCursorWithoutToken::getOffset)), contains(true));
+        final Map<EventTypePartition, SubscriptionCursorWithoutToken> offsets =
+                client.getOffsets(partitions.subList(0, 100));
+
+        // the commit is visible without waiting for the watches to be notified
+        assertThat(offsets.get(partitions.get(0)).getOffset(), equalTo(offset(PARTITIONS)));
+        assertThat(offsets.get(partitions.get(99)).getOffset(), equalTo(offset(99)));
+        watches.forEach(ZkSubscription::close);
+    }
+
+    private static String offset(final int partition) {
+        return String.format("%018d", partition);
+    }
+
+    private long requestsSince(final long receivedPackets) throws Exception {
+        // request for statistics is counted by zookeeper as well
+        return getReceivedPackets() - receivedPackets - 1;
+    }
+
+    private long getReceivedPackets() throws Exception {
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            final OutputStream out = socket.getOutputStream();
+            out.write("srvr".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            String line;
+            while (null != (line = reader.readLine())) {
+                if (line.startsWith("Received:")) {
+                    return Long.parseLong(line.substring("Received:".length()).trim());
+                }
+            }
+        }
+        throw new IllegalStateException("Failed to read zookeeper statistics");
+    }
+}
@@ -0,0 +1,209 @@
+package org.zalando.nakadi.service.subscription.zk;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zalando.nakadi.exceptions.NakadiRuntimeException;
+import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
+import org.zalando.nakadi.utils.TestUtils;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ZkWatchRegistryTest {
+
+    private static final String PATH = "/nakadi/subscriptions/sid/topology";
+
+    private TestingServer server;
+    private CuratorFramework curator;
+    private ZkWatchRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new TestingServer();
+        // long session timeout, so that pings do not disturb request counting
+        curator = CuratorFrameworkFactory.newClient(server.getConnectString(), 60000, 10000, new RetryOneTime(100));
+        curator.start();
+        curator.create().creatingParentsIfNeeded().forPath(PATH, "0".getBytes(StandardCharsets.UTF_8));
+        final ZooKeeperHolder zooKeeperHolder = mock(ZooKeeperHolder.class);
+        when(zooKeeperHolder.get()).thenReturn(curator);
+        registry = new ZkWatchRegistry(zooKeeperHolder);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        registry.shutdown();
+        curator.close();
+        server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void whenDataChangesThenAllListenersAreNotifiedAndSeeNewData() throws Exception {
+        final AtomicInteger notifications = new AtomicInteger();
+        final List<ZkSubscription<String>> subscriptions = subscribe(3, notifications);
+
+        curator.setData().forPath(PATH, "1".getBytes(StandardCharsets.UTF_8));
+
+        TestUtils.waitFor(() -> assertThat(notifications.get(), equalTo(3)), 5000);
+        for (final ZkSubscription<String> subscription : subscriptions) {
+            assertThat(subscription.getData(), equalTo("1"));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void whenChildrenChangeThenListenersAreNotified() throws Exception {
+        final String sessions = "/nakadi/subscriptions/sid/sessions";
+        curator.create().creatingParentsIfNeeded().forPath(sessions + "/s1");
+        final AtomicInteger notifications = new AtomicInteger();
+        final ZkSubscription<List<String>> first =
+                registry.subscribeForChildren(sessions, notifications::incrementAndGet);
+        final ZkSubscription<List<String>> second =
+                registry.subscribeForChildren(sessions, notifications::incrementAndGet);
+        assertThat(first.getData(), containsInAnyOrder("s1"));
+
+        curator.create().forPath(sessions + "/s2");
+
+        TestUtils.waitFor(() -> assertThat(notifications.get(), equalTo(2)), 5000);
+        assertThat(first.getData(), containsInAnyOrder("s1", "s2"));
+        assertThat(second.getData(), containsInAnyOrder("s1", "s2"));
+        assertThat(registry.getWatchCount(), equalTo(1));
+    }
+
+    @Test(timeout = 10000)
+    public void whenLastSubscriptionClosedThenCacheIsReleased() throws Exception {
+        final AtomicInteger notifications = new AtomicInteger();
+        final List<ZkSubscription<String>> subscriptions = subscribe(2, notifications);
+        assertThat(registry.getWatchCount(), equalTo(1));
+
+        subscriptions.get(0).close();
+        subscriptions.get(0).close();
+        assertThat(registry.getWatchCount(), equalTo(1));
+
+        subscriptions.get(1).close();
+        assertThat(registry.getWatchCount(), equalTo(0));
+
+        curator.setData().forPath(PATH, "1".getBytes(StandardCharsets.UTF_8));
+        Thread.sleep(200);
+        assertThat(notifications.get(), equalTo(0));
+    }
+
+    @Test(expected = NakadiRuntimeException.class)
+    public void whenNodeDoesNotExistThenGetDataFails() {
+        registry.subscribeForData("/not/existing", String::new, () -> {
+        }).getData();
+    }
+
+    @Test(timeout = 30000)
+    public void whenCacheIsStartingThenOtherPathsAreNotBlocked() throws Exception {
+        final int unusedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            unusedPort = socket.getLocalPort();
+        }
+        final CuratorFramework unreachable = CuratorFrameworkFactory.newClient(
+                "localhost:" + unusedPort, 60000, 2000, new RetryOneTime(100));
+        unreachable.start();
+        final ZooKeeperHolder zooKeeperHolder = mock(ZooKeeperHolder.class);
+        // the first cache hangs in connecting to zookeeper, all the rest use working client
+        when(zooKeeperHolder.get()).thenReturn(unreachable, curator);
+        final ZkWatchRegistry slowRegistry = new ZkWatchRegistry(zooKeeperHolder);
+        try {
+            final CompletableFuture<ZkSubscription<byte[]>> slow = CompletableFuture.supplyAsync(
+                    () -> slowRegistry.subscribeForData("/slow", Function.identity(), () -> {
+                    }));
+            TestUtils.waitFor(() -> assertThat(slowRegistry.getWatchCount(), equalTo(1)), 5000);
+
+            final ZkSubscription<String> subscription = slowRegistry.subscribeForData(
+                    PATH, data -> new String(data, StandardCharsets.UTF_8), () -> {
+                    });
+            assertThat(subscription.getData(), equalTo("0"));
+            assertThat(slow.isDone(), equalTo(false));
+
+            try {
+                slow.join();
+                fail("Subscription should fail when zookeeper is not reachable");
+            } catch (final CompletionException e) {
+                assertThat(e.getCause(), instanceOf(NakadiRuntimeException.class));
+            }
+            assertThat(slowRegistry.getWatchCount(), equalTo(1));
+            subscription.close();
+            assertThat(slowRegistry.getWatchCount(), equalTo(0));
+        } finally {
+            slowRegistry.shutdown();
+            unreachable.close();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void zookeeperRequestsPerChangeDoNotGrowWithNumberOfLocalStreams() throws Exception {
+        final int streams = 50;
+        final long requests = measureRequestsPerChange(streams);
+
+        // without sharing every stream would read the znode and set its own watch after each change
+        assertThat(requests, lessThan((long) streams));
+    }
+
+    private long measureRequestsPerChange(final int streams) throws Exception {
+        final AtomicInteger notifications = new AtomicInteger();
+        final List<ZkSubscription<String>> subscriptions = subscribe(streams, notifications);
+        try {
+            final long before = getReceivedPackets();
+            curator.setData().forPath(PATH, String.valueOf(streams).getBytes(StandardCharsets.UTF_8));
+            TestUtils.waitFor(() -> assertThat(notifications.get(), equalTo(streams)), 5000);
+            for (final ZkSubscription<String> subscription : subscriptions) {
+                assertThat(subscription.getData(), equalTo(String.valueOf(streams)));
+            }
+            return getReceivedPackets() - before;
+        } finally {
+            subscriptions.forEach(ZkSubscription::close);
+        }
+    }
+
+    private List<ZkSubscription<String>> subscribe(final int count, final AtomicInteger notifications) {
+        final List<ZkSubscription<String>> subscriptions = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            subscriptions.add(registry.subscribeForData(
+                    PATH, data -> new String(data, StandardCharsets.UTF_8), notifications::incrementAndGet));
+        }
+        return subscriptions;
+    }
+
+    private long getReceivedPackets() throws Exception {
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            final OutputStream out = socket.getOutputStream();
+            out.write("srvr".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            String line;
+            while (null != (line = reader.readLine())) {
+                if (line.startsWith("Received:")) {
+                    return Long.parseLong(line.substring("Received:".length()).trim());
+                }
+            }
+        }
+        throw new IllegalStateException("Failed to read zookeeper statistics");
+    }
+}
@@ -2,6 +2,7 @@ package org.zalando.nakadi.service.timeline;
 
 import com.google.common.collect.ImmutableList;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -21,6 +22,7 @@ import org.zalando.nakadi.repository.TopicRepositoryHolder;
 import org.zalando.nakadi.repository.db.EventTypeCache;
 import org.zalando.nakadi.repository.db.StorageDbRepository;
 import org.zalando.nakadi.repository.db.TimelineDbRepository;
+import org.zalando.nakadi.repository.db.TopicPoolDbRepository;
 import org.zalando.nakadi.service.AdminService;
 import org.zalando.nakadi.service.FeatureToggleService;
 import org.zalando.nakadi.utils.EventTypeTestBuilder;
@@ -28,26 +30,43 @@ import org.zalando.nakadi.utils.EventTypeTestBuilder;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static java.util.stream.IntStream.range;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.zalando.nakadi.utils.TestUtils.buildDefaultEventType;
 
 public class TimelineServiceTest {
 
+    private static final long DEFAULT_RETENTION_MS = 1000;
+    private static final long TOPIC_CREATION_MS = 30000;
+
     private final EventTypeCache eventTypeCache = mock(EventTypeCache.class);
     private final StorageDbRepository storageDbRepository = mock(StorageDbRepository.class);
     private final AdminService adminService = mock(AdminService.class);
     private final TimelineDbRepository timelineDbRepository = mock(TimelineDbRepository.class);
     private final TopicRepositoryHolder topicRepositoryHolder = mock(TopicRepositoryHolder.class);
     private final FeatureToggleService featureToggleService = mock(FeatureToggleService.class);
+    private final NakadiSettings nakadiSettings = mock(NakadiSettings.class);
+    private final TopicPoolDbRepository topicPoolDbRepository = mock(TopicPoolDbRepository.class);
     private final TimelineService timelineService = new TimelineService(eventTypeCache,
-            storageDbRepository, mock(TimelineSync.class), mock(NakadiSettings.class), timelineDbRepository,
+            storageDbRepository, mock(TimelineSync.class), nakadiSettings, timelineDbRepository,
             topicRepositoryHolder, new TransactionTemplate(mock(PlatformTransactionManager.class)),
-            new DefaultStorage(new Storage()), adminService, featureToggleService);
+            new DefaultStorage(new Storage("default", Storage.Type.KAFKA)), adminService, featureToggleService,
+            topicPoolDbRepository);
+
+    @Before
+    public void setUp() {
+        Mockito.when(topicPoolDbRepository.claimTopic(any(), anyInt())).thenReturn(Optional.empty());
+        Mockito.when(nakadiSettings.getDefaultTopicRetentionMs()).thenReturn(DEFAULT_RETENTION_MS);
+    }
 
     @Test(expected = NotFoundException.class)
     public void testGetTimelinesNotFound() throws Exception {
@@ -138,4 +157,50 @@ public class TimelineServiceTest {
         Mockito.verify(timelineDbRepository, Mockito.times(2)).deleteTimeline(Mockito.any());
     }
 
+    @Test(timeout = TOPIC_CREATION_MS / 2)
+    public void whenPoolHasTopicThenTimelineIsCreatedWithoutWaitingForStorage() throws Exception {
+        final TopicRepository repository = slowTopicRepository();
+        Mockito.when(topicPoolDbRepository.claimTopic("default", 4)).thenReturn(Optional.of("pooled-topic"));
+
+        final Timeline timeline = timelineService.createDefaultTimeline("event_type_1", 4, DEFAULT_RETENTION_MS);
+
+        assertThat(timeline.getTopic(), equalTo("pooled-topic"));
+        Mockito.verify(timelineDbRepository).createTimeline(timeline);
+        Mockito.verify(repository, Mockito.never()).createTopic(anyInt(), anyLong());
+        Mockito.verify(repository, Mockito.never()).setRetentionTime(any(), anyLong());
+    }
+
+    @Test(timeout = TOPIC_CREATION_MS / 2)
+    public void whenPooledTopicHasOtherRetentionThenRetentionIsUpdated() throws Exception {
+        final TopicRepository repository = slowTopicRepository();
+        Mockito.when(topicPoolDbRepository.claimTopic("default", 1)).thenReturn(Optional.of("pooled-topic"));
+
+        final Timeline timeline = timelineService.createDefaultTimeline("event_type_1", 1, DEFAULT_RETENTION_MS * 2);
+
+        assertThat(timeline.getTopic(), equalTo("pooled-topic"));
+        Mockito.verify(repository).setRetentionTime("pooled-topic", DEFAULT_RETENTION_MS * 2);
+        Mockito.verify(repository, Mockito.never()).createTopic(anyInt(), anyLong());
+    }
+
+    @Test
+    public void whenPoolIsEmptyThenTopicIsCreatedOnDemand() throws Exception {
+        final TopicRepository repository = mock(TopicRepository.class);
+        Mockito.when(topicRepositoryHolder.getTopicRepository(any())).thenReturn(repository);
+        Mockito.when(repository.createTopic(1, DEFAULT_RETENTION_MS)).thenReturn("new-topic");
+
+        final Timeline timeline = timelineService.createDefaultTimeline("event_type_1", 1, DEFAULT_RETENTION_MS);
+
+        assertThat(timeline.getTopic(), equalTo("new-topic"));
+        Mockito.verify(topicPoolDbRepository).claimTopic("default", 1);
+    }
+
+    private TopicRepository slowTopicRepository() throws Exception {
+        final TopicRepository repository = mock(TopicRepository.class);
+        Mockito.when(topicRepositoryHolder.getTopicRepository(any())).thenReturn(repository);
+        Mockito.when(repository.createTopic(anyInt(), anyLong())).thenAnswer(invocation -> {
+            Thread.sleep(TOPIC_CREATION_MS);
+            return "new-topic";
+        });
+        return repository;
+    }
 }
@@ -0,0 +1,84 @@
+package org.zalando.nakadi.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class GzipBodyRequestFilterTest {
+
+    private final GzipBodyRequestFilter filter = new GzipBodyRequestFilter(new ObjectMapper(),
+            new PooledGzipInflater(1, 100000));
+
+    @Test
+    public void whenGzippedBodyThenApplicationReadsDecompressedBody() throws Exception {
+        final byte[] body = PooledGzipInflaterTest.randomJson(50000);
+        final MockHttpServletRequest request = gzippedRequest(PooledGzipInflaterTest.gzip(body));
+        final AtomicReference<String> received = new AtomicReference<>();
+        final AtomicReference<Object> size = new AtomicReference<>();
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, resp) -> {
+            received.set(StreamUtils.copyToString(req.getInputStream(), StandardCharsets.UTF_8));
+            size.set(req.getAttribute(GzipBodyRequestFilter.DECOMPRESSED_SIZE_ATTRIBUTE));
+            assertThat(((HttpServletRequest) req).getContentLengthLong(), equalTo((long) body.length));
+        });
+
+        assertThat(received.get(), equalTo(new String(body, StandardCharsets.UTF_8)));
+        assertThat(size.get(), equalTo(body.length));
+    }
+
+    @Test
+    public void whenDecompressedBodyIsTooLargeThenRequestIsRejected() throws Exception {
+        final MockHttpServletRequest request = gzippedRequest(PooledGzipInflaterTest.gzip(new byte[100001]));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(response.getStatus(), equalTo(413));
+        assertThat(response.getContentAsString(), containsString("Decompressed size exceeds 100000 bytes"));
+        assertThat(chain.getRequest(), nullValue());
+    }
+
+    @Test
+    public void whenBodyIsNotGzipThenRequestIsRejected() throws Exception {
+        final MockHttpServletRequest request = gzippedRequest("[{}]".getBytes(StandardCharsets.UTF_8));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(response.getStatus(), equalTo(400));
+        assertThat(chain.getRequest(), nullValue());
+    }
+
+    @Test
+    public void whenBodyIsNotGzippedThenItIsPassedAsIs() throws Exception {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/event-types/et/events");
+        request.setContent("[{}]".getBytes(StandardCharsets.UTF_8));
+        final MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThat(chain.getRequest() == request, equalTo(true));
+        assertThat(request.getAttribute(GzipBodyRequestFilter.DECOMPRESSED_SIZE_ATTRIBUTE), nullValue());
+    }
+
+    private static MockHttpServletRequest gzippedRequest(final byte[] body) {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/event-types/et/events");
+        request.addHeader("Content-Encoding", "gzip");
+        request.setContent(body);
+        return request;
+    }
+}
@@ -0,0 +1,102 @@
+package org.zalando.nakadi.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class MpscRingBufferTest {
+
+    @Test
+    public void whenBufferIsFullThenOfferIsRejected() {
+        final MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(3);
+
+        assertThat(buffer.offer(1), equalTo(true));
+        assertThat(buffer.offer(2), equalTo(true));
+        assertThat(buffer.offer(3), equalTo(true));
+        assertThat(buffer.offer(4), equalTo(false));
+        assertThat(buffer.size(), equalTo(3));
+
+        assertThat(buffer.poll(), equalTo(1));
+        assertThat(buffer.offer(5), equalTo(true));
+        assertThat(buffer.size(), equalTo(3));
+    }
+
+    @Test
+    public void elementsAreReturnedInOrderOfInsertionAcrossWrapAround() {
+        final MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(2);
+        final List<Integer> drained = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            buffer.offer(i * 2);
+            buffer.offer(i * 2 + 1);
+            buffer.drain(drained::add, 10);
+        }
+
+        assertThat(drained, contains(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+        assertThat(buffer.poll(), nullValue());
+    }
+
+    @Test
+    public void drainRespectsLimit() {
+        final MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(5);
+        for (int i = 0; i < 5; ++i) {
+            buffer.offer(i);
+        }
+        final List<Integer> drained = new ArrayList<>();
+
+        assertThat(buffer.drain(drained::add, 2), equalTo(2));
+        assertThat(drained, contains(0, 1));
+        assertThat(buffer.size(), equalTo(3));
+    }
+
+    @Test(timeout = 10000)
+    public void whenManyProducersThenNoElementIsLostOrDuplicated() throws Exception {
+        final int producers = 4;
+        final int perProducer = 50_000;
+        final MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(128);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; ++p) {
+            final int producer = p;
+            final Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perProducer; ++i) {
+                    final Integer value = producer * perProducer + i;
+                    while (!buffer.offer(value)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+
+        final Set<Integer> received = new HashSet<>();
+        while (received.size() < producers * perProducer) {
+            final Integer value = buffer.poll();
+            if (null == value) {
+                Thread.yield();
+            } else {
+                assertThat(received.add(value), equalTo(true));
+            }
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(buffer.poll(), nullValue());
+    }
+}
@@ -0,0 +1,195 @@
+package org.zalando.nakadi.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class PooledGzipInflaterTest {
+
+    private final PooledGzipInflater inflater = new PooledGzipInflater(2, 10 * 1024 * 1024);
+
+    @Test
+    public void whenInflateThenResultIsTheSameAsOfGzipInputStream() throws IOException {
+        final byte[] data = randomJson(3 * 1024 * 1024);
+        final byte[] compressed = gzip(data);
+
+        try (PooledGzipInflater.Inflated inflated = inflater.inflate(new ByteArrayInputStream(compressed))) {
+            assertThat(inflated.getLength(), equalTo(data.length));
+            assertThat(Arrays.copyOf(inflated.getData(), inflated.getLength()), equalTo(data));
+            assertThat(Arrays.copyOf(inflated.getData(), inflated.getLength()), equalTo(gunzip(compressed)));
+        }
+    }
+
+    @Test
+    public void whenInflateEmptyBodyThenResultIsEmpty() throws IOException {
+        try (PooledGzipInflater.Inflated inflated = inflater.inflate(new ByteArrayInputStream(gzip(new byte[0])))) {
+            assertThat(inflated.getLength(), equalTo(0));
+        }
+    }
+
+    @Test
+    public void whenInflateConcatenatedMembersThenAllMembersAreInflated() throws IOException {
+        final byte[] first = "[{\"a\":1},".getBytes(StandardCharsets.UTF_8);
+        final byte[] second = "{\"b\":2}]".getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(gzip(first));
+        compressed.write(gzip(second));
+
+        try (PooledGzipInflater.Inflated inflated = inflater.inflate(
+                new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertThat(new String(inflated.getData(), 0, inflated.getLength(), StandardCharsets.UTF_8),
+                    equalTo("[{\"a\":1},{\"b\":2}]"));
+        }
+    }
+
+    @Test
+    public void whenHeaderHasOptionalFieldsThenTheyAreSkipped() throws IOException {
+        final byte[] deflated = gzip("[]".getBytes(StandardCharsets.UTF_8));
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        // FEXTRA and FNAME flags, then original header without flags
+        compressed.write(new byte[]{0x1f, (byte) 0x8b, 8, 4 | 8});
+        compressed.write(deflated, 4, 6);
+        compressed.write(new byte[]{3, 0, 'x', 'y', 'z'});
+        compressed.write("name.json\0".getBytes(StandardCharsets.US_ASCII));
+        compressed.write(deflated, 10, deflated.length - 10);
+
+        try (PooledGzipInflater.Inflated inflated = inflater.inflate(
+                new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertThat(new String(inflated.getData(), 0, inflated.getLength(), StandardCharsets.UTF_8),
+                    equalTo("[]"));
+        }
+    }
+
+    @Test(expected = PooledGzipInflater.DecompressedSizeExceededException.class)
+    public void whenDecompressedSizeExceedsLimitThenException() throws IOException {
+        new PooledGzipInflater(1, 1000).inflate(new ByteArrayInputStream(gzip(new byte[1001])));
+    }
+
+    @Test
+    public void whenDecompressedSizeIsExactlyLimitThenOk() throws IOException {
+        try (PooledGzipInflater.Inflated inflated = new PooledGzipInflater(1, 1000)
+                .inflate(new ByteArrayInputStream(gzip(new byte[1000])))) {
+            assertThat(inflated.getLength(), equalTo(1000));
+        }
+    }
+
+    @Test
+    public void whenZipBombIsInflatedThenItStopsAfterLimit() throws IOException {
+        final byte[] compressed = gzip(new byte[100 * 1024 * 1024]);
+        final CountingInputStream in = new CountingInputStream(new ByteArrayInputStream(compressed));
+        try {
+            inflater.inflate(in);
+            throw new AssertionError("Decompression has to fail");
+        } catch (final PooledGzipInflater.DecompressedSizeExceededException expected) {
+            assertThat(in.count, lessThan((long) compressed.length / 2));
+        }
+    }
+
+    @Test(expected = ZipException.class)
+    public void whenNotGzipThenException() throws IOException {
+        inflater.inflate(new ByteArrayInputStream("[{}]".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test(expected = ZipException.class)
+    public void whenTrailerIsCorruptThenException() throws IOException {
+        final byte[] compressed = gzip("[{}]".getBytes(StandardCharsets.UTF_8));
+        compressed[compressed.length - 8] ^= 1;
+        inflater.inflate(new ByteArrayInputStream(compressed));
+    }
+
+    @Test(expected = EOFException.class)
+    public void whenStreamIsTruncatedThenException() throws IOException {
+        final byte[] compressed = gzip(randomJson(10000));
+        inflater.inflate(new ByteArrayInputStream(Arrays.copyOf(compressed, compressed.length / 2)));
+    }
+
+    @Test
+    public void whenInflatedAfterFailureThenPooledContextIsReusedCorrectly() throws IOException {
+        final PooledGzipInflater singleInflater = new PooledGzipInflater(1, 1000);
+        for (int i = 0; i < 3; ++i) {
+            try {
+                singleInflater.inflate(new ByteArrayInputStream(gzip(new byte[2000])));
+                throw new AssertionError("Decompression has to fail");
+            } catch (final PooledGzipInflater.DecompressedSizeExceededException expected) {
+                // expected
+            }
+            final byte[] data = ("[{\"i\":" + i + "}]").getBytes(StandardCharsets.UTF_8);
+            try (PooledGzipInflater.Inflated inflated = singleInflater.inflate(
+                    new ByteArrayInputStream(gzip(data)))) {
+                assertThat(Arrays.copyOf(inflated.getData(), inflated.getLength()), equalTo(data));
+            }
+        }
+    }
+
+    static byte[] gzip(final byte[] data) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(final byte[] data) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = gzip.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] randomJson(final int size) {
+        final Random random = new Random(42);
+        final StringBuilder sb = new StringBuilder(size + 100).append('[');
+        while (sb.length() < size) {
+            sb.append("{\"id\":").append(random.nextInt()).append(",\"name\":\"event-")
+                    .append(Long.toHexString(random.nextLong())).append("\"},");
+        }
+        sb.setCharAt(sb.length() - 1, ']');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class CountingInputStream extends InputStream {
+        private final InputStream delegate;
+        private long count;
+
+        private CountingInputStream(final InputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int result = delegate.read();
+            if (result != -1) {
+                ++count;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int result = delegate.read(b, off, len);
+            if (result > 0) {
+                count += result;
+            }
+            return result;
+        }
+    }
+}
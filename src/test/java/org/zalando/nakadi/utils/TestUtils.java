@@ -26,6 +26,7 @@ import org.zalando.nakadi.exceptions.runtime.AccessDeniedException;
 import org.zalando.nakadi.plugin.api.authz.AuthorizationService;
 import org.zalando.nakadi.plugin.api.authz.Resource;
 import org.zalando.nakadi.problem.ValidationProblem;
+import org.zalando.nakadi.service.KpiEvent;
 import org.zalando.nakadi.service.NakadiKpiPublisher;
 import org.zalando.problem.Problem;
 
@@ -240,6 +241,8 @@ public class TestUtils {
                                               final JSONObject expectedEvent) {
         final ArgumentCaptor<Supplier> supplierCaptor = ArgumentCaptor.forClass(Supplier.class);
         verify(nakadiKpiPublisher, times(1)).publish(eq(eventType), supplierCaptor.capture());
-        assertThat(expectedEvent.similar(supplierCaptor.getValue().get()), is(true));
+        final KpiEvent event = (KpiEvent) supplierCaptor.getValue().get();
+        // expected event is serialized as well, as it may contain values like enums, that are written as strings
+        assertThat(new JSONObject(expectedEvent.toString()).similar(new JSONObject(event.toJson())), is(true));
     }
 }
@@ -11,6 +11,7 @@ import org.zalando.nakadi.domain.SchemaChange;
 import org.zalando.nakadi.validation.schema.diff.SchemaDiff;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 import static java.util.stream.Collectors.toList;
@@ -67,4 +68,83 @@ public class SchemaDiffTest {
         final List<SchemaChange> changes = service.collectChanges(first, second);
         Assert.assertTrue(changes.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void whenSharedDefinitionChangesThenChangeIsReportedOnEveryPath() {
+        final Schema original = SchemaLoader.load(new JSONObject(sharedDefinitionSchema("string")));
+        final Schema update = SchemaLoader.load(new JSONObject(sharedDefinitionSchema("number")));
+
+        assertThat(service.collectChanges(original, update).stream()
+                .map(change -> change.getType() + " " + change.getJsonPath())
+                .sorted()
+                .collect(toList()), is(Arrays.asList(
+                "TYPE_CHANGED #/properties/a/$ref/properties/x",
+                "TYPE_CHANGED #/properties/b/$ref/properties/x",
+                "TYPE_CHANGED #/properties/c/items/$ref/properties/x")));
+    }
+
+    @Test(timeout = 10000)
+    public void whenDefinitionsAreSharedThenTheyAreComparedOnce() {
+        // every definition is reachable through 2^depth paths, so it is only feasible to compare them once
+        final int depth = 40;
+        final Schema original = SchemaLoader.load(chainOfDefinitions(depth, "original"));
+        final Schema update = SchemaLoader.load(chainOfDefinitions(depth, "update"));
+
+        final List<SchemaChange> changes = service.collectChanges(original, update);
+
+        assertThat(changes.size(), is(1));
+        assertThat(changes.get(0).getType(), is(SchemaChange.Type.TITLE_CHANGED));
+        assertThat(changes.get(0).getJsonPath(), is("#/"));
+    }
+
+    @Test(timeout = 10000)
+    public void whenSchemaHasThousandsOfPropertiesThenOnlyChangedOnesAreReported() {
+        final int propertiesCount = 5000;
+        final JSONObject originalJson = wideSchema(propertiesCount);
+        final JSONObject updateJson = wideSchema(propertiesCount);
+        updateJson.getJSONObject("properties").remove("property_10");
+        updateJson.getJSONObject("properties").getJSONObject("property_20")
+                .getJSONObject("properties").getJSONObject("nested_20").put("type", "number");
+
+        final List<String> changes = service.collectChanges(SchemaLoader.load(originalJson),
+                SchemaLoader.load(updateJson)).stream()
+                .map(change -> change.getType() + " " + change.getJsonPath())
+                .collect(toList());
+
+        assertThat(changes.size(), is(2));
+        assertThat(changes.contains("PROPERTY_REMOVED #/properties/property_10"), is(true));
+        assertThat(changes.contains("TYPE_CHANGED #/properties/property_20/properties/nested_20"), is(true));
+    }
+
+    private static String sharedDefinitionSchema(final String type) {
+        return "{\"definitions\": {\"d\": {\"type\": \"object\", \"properties\": {\"x\": {\"type\": \"" + type
+                + "\"}}}}, \"properties\": {\"a\": {\"$ref\": \"#/definitions/d\"}, "
+                + "\"b\": {\"$ref\": \"#/definitions/d\"}, "
+                + "\"c\": {\"type\": \"array\", \"items\": {\"$ref\": \"#/definitions/d\"}}}}";
+    }
+
+    private static JSONObject chainOfDefinitions(final int depth, final String title) {
+        final JSONObject definitions = new JSONObject();
+        for (int i = 0; i < depth; ++i) {
+            final JSONObject next = new JSONObject().put("$ref", "#/definitions/d" + (i + 1));
+            definitions.put("d" + i, new JSONObject()
+                    .put("type", "object")
+                    .put("properties", new JSONObject().put("a", next).put("b", next)));
+        }
+        definitions.put("d" + depth, new JSONObject().put("type", "string"));
+        return new JSONObject()
+                .put("title", title)
+                .put("definitions", definitions)
+                .put("properties", new JSONObject().put("root", new JSONObject().put("$ref", "#/definitions/d0")));
+    }
+
+    private static JSONObject wideSchema(final int propertiesCount) {
+        final JSONObject properties = new JSONObject();
+        for (int i = 0; i < propertiesCount; ++i) {
+            properties.put("property_" + i, new JSONObject()
+                    .put("type", "object")
+                    .put("properties", new JSONObject().put("nested_" + i, new JSONObject().put("type", "string"))));
+        }
+        return new JSONObject().put("type", "object").put("properties", properties);
+    }
+}